@@ -0,0 +1,401 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.httpclient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import io.vertigo.core.lang.Assertion;
+import io.vertigo.core.lang.WrappedException;
+
+/**
+ * Streaming BodyHandlers, to avoid materializing large responses as String or byte[].
+ * Responses with a gzip or deflate Content-Encoding are transparently decompressed, other encodings fail before the body is read.
+ *
+ * @author npiedeloup
+ */
+public final class HttpClientBodyHandlers {
+
+	public static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+	/** Encodings supported by the JDK (brotli needs a third party decoder) */
+	public static final String ACCEPT_ENCODING_VALUE = "gzip, deflate";
+
+	private static final String IDENTITY = "identity";
+	private static final String GZIP = "gzip";
+	private static final String DEFLATE = "deflate";
+	private static final Set<String> SUPPORTED_ENCODINGS = Set.of(IDENTITY, GZIP, DEFLATE);
+	private static final int GZIP_BUFFER_SIZE = 8192;
+
+	private HttpClientBodyHandlers() {
+		//util class : private constructor
+	}
+
+	/**
+	 * Body as a decompressed InputStream, read while the response is received.
+	 * The InputStream must be closed.
+	 *
+	 * @return the BodyHandler
+	 */
+	public static BodyHandler<InputStream> ofDecodedInputStream() {
+		return responseInfo -> {
+			final var contentEncoding = getContentEncoding(responseInfo);
+			if (!SUPPORTED_ENCODINGS.contains(contentEncoding)) {
+				return new FailedBodySubscriber<>(unsupportedEncoding(contentEncoding));
+			}
+			return BodySubscribers.mapping(BodySubscribers.ofInputStream(), inputStream -> decode(inputStream, contentEncoding));
+		};
+	}
+
+	/**
+	 * Body streamed into a parser (ie a JSON parser), using the charset of the response Content-Type (UTF-8 by default).
+	 * The parser is called by the returned Supplier : it must be called outside of the HttpClient threads, as it blocks while the body is received.
+	 * The Supplier is AutoCloseable : an unused response must be closed, as its body is not read.
+	 *
+	 * @param <T> parsed type
+	 * @param parser the parser, reading the body
+	 * @return the BodyHandler
+	 */
+	public static <T> BodyHandler<Supplier<T>> ofReader(final Function<Reader, T> parser) {
+		Assertion.check().isNotNull(parser);
+		//---
+		return responseInfo -> {
+			final var contentEncoding = getContentEncoding(responseInfo);
+			if (!SUPPORTED_ENCODINGS.contains(contentEncoding)) {
+				return new FailedBodySubscriber<>(unsupportedEncoding(contentEncoding));
+			}
+			final var charset = getCharset(responseInfo);
+			return BodySubscribers.mapping(BodySubscribers.ofInputStream(), inputStream -> new ReaderSupplier<>(inputStream, contentEncoding, charset, parser));
+		};
+	}
+
+	/**
+	 * Body written into a file, through a FileChannel.
+	 * Compressed responses are downloaded in a temporary file of the target directory, then decompressed into the target file
+	 * in the common ForkJoinPool.
+	 *
+	 * @param file the target file
+	 * @return the BodyHandler
+	 */
+	public static BodyHandler<Path> ofFile(final Path file) {
+		return ofFile(file, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Body written into a file, through a FileChannel.
+	 * Compressed responses are downloaded in a temporary file of the target directory, then decompressed into the target file
+	 * by the executor : never in the HttpClient threads, as it blocks. The temporary file is always deleted.
+	 *
+	 * @param file the target file
+	 * @param decodeExecutor executor decompressing downloaded files
+	 * @return the BodyHandler
+	 */
+	public static BodyHandler<Path> ofFile(final Path file, final Executor decodeExecutor) {
+		Assertion.check()
+				.isNotNull(file)
+				.isNotNull(decodeExecutor);
+		//---
+		return responseInfo -> {
+			final var contentEncoding = getContentEncoding(responseInfo);
+			if (IDENTITY.equals(contentEncoding)) {
+				return BodySubscribers.ofFile(file);
+			}
+			if (!SUPPORTED_ENCODINGS.contains(contentEncoding)) {
+				return new FailedBodySubscriber<>(unsupportedEncoding(contentEncoding));
+			}
+			final Path encodedFile;
+			try {
+				// named from the target file only : Content-Encoding is chosen by the server
+				encodedFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".download");
+			} catch (final IOException e) {
+				return new FailedBodySubscriber<>(e);
+			}
+			return new DecodingFileBodySubscriber(BodySubscribers.ofFile(encodedFile), encodedFile, contentEncoding, file, decodeExecutor);
+		};
+	}
+
+	/**
+	 * Body copied into pooled ByteBuffers, with a max size.
+	 * The returned HttpClientPooledBody must be closed to give buffers back to the pool.
+	 *
+	 * @param byteBufferPool the pool
+	 * @param maxBytes max body size, the response fails over it
+	 * @return the BodyHandler
+	 */
+	public static BodyHandler<HttpClientPooledBody> ofPooledBuffers(final HttpClientByteBufferPool byteBufferPool, final long maxBytes) {
+		Assertion.check()
+				.isNotNull(byteBufferPool)
+				.isTrue(maxBytes > 0, "maxBytes must be strictly positive");
+		//---
+		return responseInfo -> {
+			final var contentEncoding = getContentEncoding(responseInfo);
+			if (!SUPPORTED_ENCODINGS.contains(contentEncoding)) {
+				return new FailedBodySubscriber<>(unsupportedEncoding(contentEncoding));
+			}
+			return new HttpClientPooledBodySubscriber(byteBufferPool, maxBytes, contentEncoding);
+		};
+	}
+
+	static InputStream decode(final InputStream inputStream, final String contentEncoding) {
+		switch (contentEncoding) {
+			case IDENTITY:
+				return inputStream;
+			case GZIP:
+				// GZIPInputStream reads the header in its constructor : it must be lazy, to not block the HttpClient threads
+				return new LazyInputStream(inputStream, () -> new GZIPInputStream(inputStream, GZIP_BUFFER_SIZE));
+			case DEFLATE:
+				return new InflaterInputStream(inputStream);
+			default:
+				throw new UncheckedIOException(unsupportedEncoding(contentEncoding));
+		}
+	}
+
+	private static IOException unsupportedEncoding(final String contentEncoding) {
+		return new IOException("Unsupported Content-Encoding '" + contentEncoding + "'");
+	}
+
+	private static Path decodeFile(final Path encodedFile, final String contentEncoding, final Path file) {
+		try (var inputStream = decode(Files.newInputStream(encodedFile), contentEncoding)) {
+			Files.copy(inputStream, file, StandardCopyOption.REPLACE_EXISTING);
+			return file;
+		} catch (final IOException e) {
+			deleteQuietly(file); // partially decoded
+			throw new UncheckedIOException(e);
+		} finally {
+			deleteQuietly(encodedFile);
+		}
+	}
+
+	private static void deleteQuietly(final Path path) {
+		try {
+			Files.deleteIfExists(path);
+		} catch (final IOException e) {
+			path.toFile().deleteOnExit();
+		}
+	}
+
+	private static String getContentEncoding(final ResponseInfo responseInfo) {
+		return responseInfo.headers()
+				.firstValue("Content-Encoding")
+				.map(contentEncoding -> contentEncoding.trim().toLowerCase(Locale.ROOT))
+				.filter(contentEncoding -> !contentEncoding.isEmpty())
+				.orElse(IDENTITY);
+	}
+
+	private static Charset getCharset(final ResponseInfo responseInfo) {
+		final var contentTypeOpt = responseInfo.headers().firstValue("Content-Type");
+		if (contentTypeOpt.isPresent()) {
+			for (final String parameter : contentTypeOpt.get().split(";")) {
+				final var trimmedParameter = parameter.trim();
+				if (trimmedParameter.regionMatches(true, 0, "charset=", 0, "charset=".length())) {
+					try {
+						return Charset.forName(trimmedParameter.substring("charset=".length()).replace("\"", ""));
+					} catch (final IllegalArgumentException e) {
+						return StandardCharsets.UTF_8;
+					}
+				}
+			}
+		}
+		return StandardCharsets.UTF_8;
+	}
+
+	/**
+	 * Parses the body once, or releases it when closed without being parsed.
+	 */
+	private static final class ReaderSupplier<T> implements Supplier<T>, AutoCloseable {
+		private final InputStream inputStream;
+		private final String contentEncoding;
+		private final Charset charset;
+		private final Function<Reader, T> parser;
+
+		ReaderSupplier(final InputStream inputStream, final String contentEncoding, final Charset charset, final Function<Reader, T> parser) {
+			this.inputStream = inputStream;
+			this.contentEncoding = contentEncoding;
+			this.charset = charset;
+			this.parser = parser;
+		}
+
+		@Override
+		public T get() {
+			try (var reader = new InputStreamReader(decode(inputStream, contentEncoding), charset)) {
+				return parser.apply(reader);
+			} catch (final IOException e) {
+				throw WrappedException.wrap(e);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			inputStream.close();
+		}
+	}
+
+	/**
+	 * Downloads the encoded body into a temporary file, then decompresses it into the target file with the executor.
+	 */
+	private static final class DecodingFileBodySubscriber implements BodySubscriber<Path> {
+		private final BodySubscriber<Path> downloadSubscriber;
+		private final CompletableFuture<Path> body;
+
+		DecodingFileBodySubscriber(final BodySubscriber<Path> downloadSubscriber, final Path encodedFile, final String contentEncoding, final Path file,
+				final Executor decodeExecutor) {
+			this.downloadSubscriber = downloadSubscriber;
+			body = downloadSubscriber.getBody().toCompletableFuture()
+					.thenApplyAsync(downloadedFile -> decodeFile(downloadedFile, contentEncoding, file), decodeExecutor)
+					.whenComplete((decodedFile, throwable) -> {
+						if (throwable != null) {
+							deleteQuietly(encodedFile); // download failed : decodeFile wasn't called
+						}
+					});
+		}
+
+		@Override
+		public CompletionStage<Path> getBody() {
+			return body;
+		}
+
+		@Override
+		public void onSubscribe(final Subscription subscription) {
+			downloadSubscriber.onSubscribe(subscription);
+		}
+
+		@Override
+		public void onNext(final List<ByteBuffer> items) {
+			downloadSubscriber.onNext(items);
+		}
+
+		@Override
+		public void onError(final Throwable throwable) {
+			downloadSubscriber.onError(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			downloadSubscriber.onComplete();
+		}
+	}
+
+	/**
+	 * Fails without reading the body : the subscription is cancelled.
+	 */
+	private static final class FailedBodySubscriber<T> implements BodySubscriber<T> {
+		private final CompletableFuture<T> body;
+
+		FailedBodySubscriber(final IOException exception) {
+			body = CompletableFuture.failedFuture(exception);
+		}
+
+		@Override
+		public CompletionStage<T> getBody() {
+			return body;
+		}
+
+		@Override
+		public void onSubscribe(final Subscription subscription) {
+			subscription.cancel();
+		}
+
+		@Override
+		public void onNext(final List<ByteBuffer> items) {
+			// cancelled
+		}
+
+		@Override
+		public void onError(final Throwable throwable) {
+			// already failed
+		}
+
+		@Override
+		public void onComplete() {
+			// already failed
+		}
+	}
+
+	private static final class LazyInputStream extends InputStream {
+		private final InputStream source;
+		private final Callable<InputStream> inputStreamFactory;
+		private InputStream delegate;
+
+		LazyInputStream(final InputStream source, final Callable<InputStream> inputStreamFactory) {
+			this.source = source;
+			this.inputStreamFactory = inputStreamFactory;
+		}
+
+		private InputStream getDelegate() throws IOException {
+			if (delegate == null) {
+				try {
+					delegate = inputStreamFactory.call();
+				} catch (final IOException e) {
+					throw e;
+				} catch (final Exception e) {
+					throw new IOException(e);
+				}
+			}
+			return delegate;
+		}
+
+		@Override
+		public int read() throws IOException {
+			return getDelegate().read();
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) throws IOException {
+			return getDelegate().read(b, off, len);
+		}
+
+		@Override
+		public int available() throws IOException {
+			return delegate == null ? 0 : delegate.available();
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (delegate != null) {
+				delegate.close();
+			} else {
+				source.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.httpclient;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.vertigo.core.lang.Assertion;
+
+/**
+ * Pool of fixed size ByteBuffers, used by HttpClientBodyHandlers.ofPooledBuffers.
+ * At most maxPooledBuffers are kept, extra buffers are left to the GC.
+ *
+ * @author npiedeloup
+ */
+public final class HttpClientByteBufferPool {
+
+	private final int bufferSize;
+	private final int maxPooledBuffers;
+	private final Queue<ByteBuffer> pooledBuffers = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pooledCount = new AtomicInteger();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param bufferSize size of each buffer (ie 64KB)
+	 * @param maxPooledBuffers max number of buffers kept in the pool
+	 */
+	public HttpClientByteBufferPool(final int bufferSize, final int maxPooledBuffers) {
+		Assertion.check()
+				.isTrue(bufferSize > 0, "bufferSize must be strictly positive")
+				.isTrue(maxPooledBuffers >= 0, "maxPooledBuffers must be positive");
+		//---
+		this.bufferSize = bufferSize;
+		this.maxPooledBuffers = maxPooledBuffers;
+	}
+
+	ByteBuffer acquire() {
+		final var byteBuffer = pooledBuffers.poll();
+		if (byteBuffer == null) {
+			return ByteBuffer.allocate(bufferSize);
+		}
+		pooledCount.decrementAndGet();
+		byteBuffer.clear();
+		return byteBuffer;
+	}
+
+	void release(final ByteBuffer byteBuffer) {
+		if (byteBuffer.capacity() == bufferSize && pooledCount.incrementAndGet() <= maxPooledBuffers) {
+			pooledBuffers.offer(byteBuffer);
+		} else if (byteBuffer.capacity() == bufferSize) {
+			pooledCount.decrementAndGet();
+		}
+	}
+
+	/**
+	 * @return number of buffers currently available in the pool
+	 */
+	public int getPooledCount() {
+		return pooledCount.get();
+	}
+}
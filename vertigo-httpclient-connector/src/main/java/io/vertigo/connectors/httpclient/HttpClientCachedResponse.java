@@ -0,0 +1,90 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.httpclient;
+
+import java.net.URI;
+import java.net.http.HttpClient.Version;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Optional;
+
+import javax.net.ssl.SSLSession;
+
+/**
+ * HttpResponse served from the HttpClientResponseCache.
+ *
+ * @author npiedeloup
+ * @param <T> body type
+ */
+final class HttpClientCachedResponse<T> implements HttpResponse<T> {
+
+	private final HttpRequest request;
+	private final int statusCode;
+	private final HttpHeaders headers;
+	private final Version version;
+	private final T body;
+
+	HttpClientCachedResponse(final HttpRequest request, final int statusCode, final HttpHeaders headers, final Version version, final T body) {
+		this.request = request;
+		this.statusCode = statusCode;
+		this.headers = headers;
+		this.version = version;
+		this.body = body;
+	}
+
+	@Override
+	public int statusCode() {
+		return statusCode;
+	}
+
+	@Override
+	public HttpRequest request() {
+		return request;
+	}
+
+	@Override
+	public Optional<HttpResponse<T>> previousResponse() {
+		return Optional.empty();
+	}
+
+	@Override
+	public HttpHeaders headers() {
+		return headers;
+	}
+
+	@Override
+	public T body() {
+		return body;
+	}
+
+	@Override
+	public Optional<SSLSession> sslSession() {
+		return Optional.empty();
+	}
+
+	@Override
+	public URI uri() {
+		return request.uri();
+	}
+
+	@Override
+	public Version version() {
+		return version;
+	}
+}
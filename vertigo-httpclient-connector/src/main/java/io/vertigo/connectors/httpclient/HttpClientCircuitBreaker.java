@@ -0,0 +1,231 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.httpclient;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import io.vertigo.core.lang.Assertion;
+
+/**
+ * Circuit breaker over a count based sliding window.
+ * - CLOSED : calls are permitted, the circuit opens when the failure rate or the slow call rate of the window reaches its threshold;
+ * - OPEN : calls are rejected, until the open duration is elapsed;
+ * - HALF_OPEN : a few probe calls are permitted, the circuit closes if they are below thresholds, or opens again.
+ *
+ * @author npiedeloup
+ */
+final class HttpClientCircuitBreaker {
+
+	enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final int failureRateThreshold;
+	private final int slowCallRateThreshold;
+	private final long slowCallMillis;
+	private final long openDurationNanos;
+	private final int halfOpenProbes;
+	private final Consumer<State> stateListener;
+	private final LongSupplier nanoClock;
+
+	//guarded by this
+	private State state = State.CLOSED;
+	private final boolean[] windowFailures;
+	private final boolean[] windowSlowCalls;
+	private int windowIndex;
+	private int windowCount;
+	private int failureCount;
+	private int slowCallCount;
+	private long openedAtNanos;
+	private int halfOpenPermits;
+	private int halfOpenCompleted;
+	private int halfOpenFailures;
+	private int halfOpenSlowCalls;
+
+	/**
+	 * @param windowSize number of calls of the sliding window
+	 * @param failureRateThreshold failure rate (in percent) opening the circuit
+	 * @param slowCallRateThreshold slow call rate (in percent) opening the circuit
+	 * @param slowCallMillis duration above which a call is slow
+	 * @param openDurationSeconds duration of the OPEN state, before probing
+	 * @param halfOpenProbes number of probe calls in HALF_OPEN state
+	 * @param stateListener listener of state transitions
+	 */
+	HttpClientCircuitBreaker(
+			final int windowSize,
+			final int failureRateThreshold,
+			final int slowCallRateThreshold,
+			final long slowCallMillis,
+			final int openDurationSeconds,
+			final int halfOpenProbes,
+			final Consumer<State> stateListener) {
+		this(windowSize, failureRateThreshold, slowCallRateThreshold, slowCallMillis, openDurationSeconds, halfOpenProbes, stateListener, System::nanoTime);
+	}
+
+	/**
+	 * Constructor with a clock, for tests.
+	 * @param nanoClock current time in nanoseconds, as System.nanoTime
+	 */
+	HttpClientCircuitBreaker(
+			final int windowSize,
+			final int failureRateThreshold,
+			final int slowCallRateThreshold,
+			final long slowCallMillis,
+			final int openDurationSeconds,
+			final int halfOpenProbes,
+			final Consumer<State> stateListener,
+			final LongSupplier nanoClock) {
+		Assertion.check()
+				.isTrue(windowSize > 0, "circuitBreakerWindowSize must be strictly positive")
+				.isTrue(failureRateThreshold > 0 && failureRateThreshold <= 100, "circuitBreakerFailureRatePercent ({0}) must be in ]0, 100]", failureRateThreshold)
+				.isTrue(slowCallRateThreshold > 0, "circuitBreakerSlowCallRatePercent must be strictly positive")
+				.isTrue(slowCallMillis > 0, "circuitBreakerSlowCallMillis must be strictly positive")
+				.isTrue(openDurationSeconds > 0, "circuitBreakerOpenSeconds must be strictly positive")
+				.isTrue(halfOpenProbes > 0, "circuitBreakerHalfOpenProbes must be strictly positive")
+				.isNotNull(stateListener)
+				.isNotNull(nanoClock);
+		//---
+		windowFailures = new boolean[windowSize];
+		windowSlowCalls = new boolean[windowSize];
+		this.failureRateThreshold = failureRateThreshold;
+		this.slowCallRateThreshold = slowCallRateThreshold;
+		this.slowCallMillis = slowCallMillis;
+		openDurationNanos = TimeUnit.SECONDS.toNanos(openDurationSeconds);
+		this.halfOpenProbes = halfOpenProbes;
+		this.stateListener = stateListener;
+		this.nanoClock = nanoClock;
+	}
+
+	/**
+	 * @return if a call is permitted, each permitted call must end by onResult or releasePermission
+	 */
+	boolean tryAcquirePermission() {
+		final boolean permitted;
+		final boolean halfOpened;
+		synchronized (this) {
+			halfOpened = state == State.OPEN && nanoClock.getAsLong() - openedAtNanos >= openDurationNanos;
+			if (halfOpened) {
+				toHalfOpen();
+			}
+			if (state == State.CLOSED) {
+				permitted = true;
+			} else if (state == State.HALF_OPEN && halfOpenPermits > 0) {
+				halfOpenPermits--;
+				permitted = true;
+			} else {
+				permitted = false;
+			}
+		}
+		if (halfOpened) {
+			stateListener.accept(State.HALF_OPEN);
+		}
+		return permitted;
+	}
+
+	/**
+	 * Gives back a permission for a call that wasn't sent.
+	 */
+	synchronized void releasePermission() {
+		if (state == State.HALF_OPEN && halfOpenPermits + halfOpenCompleted < halfOpenProbes) {
+			halfOpenPermits++;
+		}
+	}
+
+	/**
+	 * Records the result of a permitted call.
+	 * @param failure if the call failed
+	 * @param durationMillis duration of the call
+	 */
+	void onResult(final boolean failure, final long durationMillis) {
+		final var slowCall = durationMillis >= slowCallMillis;
+		State newState = null;
+		synchronized (this) {
+			if (state == State.CLOSED) {
+				recordInWindow(failure, slowCall);
+				if (windowCount == windowFailures.length && isAboveThresholds(failureCount, slowCallCount, windowCount)) {
+					toOpen();
+					newState = State.OPEN;
+				}
+			} else if (state == State.HALF_OPEN) {
+				halfOpenCompleted++;
+				halfOpenFailures += failure ? 1 : 0;
+				halfOpenSlowCalls += slowCall ? 1 : 0;
+				if (halfOpenCompleted >= halfOpenProbes) {
+					if (isAboveThresholds(halfOpenFailures, halfOpenSlowCalls, halfOpenCompleted)) {
+						toOpen();
+						newState = State.OPEN;
+					} else {
+						toClosed();
+						newState = State.CLOSED;
+					}
+				}
+			}
+			//results of calls sent before the circuit was opened are ignored
+		}
+		if (newState != null) {
+			stateListener.accept(newState);
+		}
+	}
+
+	synchronized State getState() {
+		return state;
+	}
+
+	private boolean isAboveThresholds(final int failures, final int slowCalls, final int calls) {
+		return failures * 100 >= failureRateThreshold * calls
+				|| slowCalls * 100 >= slowCallRateThreshold * calls;
+	}
+
+	private void recordInWindow(final boolean failure, final boolean slowCall) {
+		if (windowCount == windowFailures.length) {
+			//remove the oldest call from counters
+			failureCount -= windowFailures[windowIndex] ? 1 : 0;
+			slowCallCount -= windowSlowCalls[windowIndex] ? 1 : 0;
+		} else {
+			windowCount++;
+		}
+		windowFailures[windowIndex] = failure;
+		windowSlowCalls[windowIndex] = slowCall;
+		failureCount += failure ? 1 : 0;
+		slowCallCount += slowCall ? 1 : 0;
+		windowIndex = (windowIndex + 1) % windowFailures.length;
+	}
+
+	private void toOpen() {
+		state = State.OPEN;
+		openedAtNanos = nanoClock.getAsLong();
+	}
+
+	private void toHalfOpen() {
+		state = State.HALF_OPEN;
+		halfOpenPermits = halfOpenProbes;
+		halfOpenCompleted = 0;
+		halfOpenFailures = 0;
+		halfOpenSlowCalls = 0;
+	}
+
+	private void toClosed() {
+		state = State.CLOSED;
+		windowIndex = 0;
+		windowCount = 0;
+		failureCount = 0;
+		slowCallCount = 0;
+	}
+}
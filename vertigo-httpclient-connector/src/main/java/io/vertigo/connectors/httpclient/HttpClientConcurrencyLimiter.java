@@ -0,0 +1,145 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.httpclient;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import io.vertigo.core.lang.Assertion;
+
+/**
+ * Limits the number of concurrent asynchronous calls (bulkhead).
+ * Calls over the limit are queued (without blocking the caller) and started as soon as a running call completes.
+ * When the queue is full, calls are rejected with a RejectedExecutionException.
+ *
+ * @author npiedeloup
+ */
+final class HttpClientConcurrencyLimiter {
+
+	private final int maxConcurrent;
+	private final int maxQueueSize;
+	private final Queue<Runnable> pendingTasks = new ArrayDeque<>();
+	private int running; //guarded by this
+	private boolean draining; //guarded by this
+
+	HttpClientConcurrencyLimiter(final int maxConcurrent, final int maxQueueSize) {
+		Assertion.check()
+				.isTrue(maxConcurrent > 0, "maxConcurrent ({0}) must be strictly positive", maxConcurrent)
+				.isTrue(maxQueueSize >= 0, "maxQueueSize ({0}) must be positive", maxQueueSize);
+		//---
+		this.maxConcurrent = maxConcurrent;
+		this.maxQueueSize = maxQueueSize;
+	}
+
+	<T> CompletableFuture<T> submit(final Supplier<CompletableFuture<T>> task) {
+		final var result = new CompletableFuture<T>();
+		final Runnable start = () -> start(task, result);
+		synchronized (this) {
+			if (running >= maxConcurrent) {
+				if (pendingTasks.size() >= maxQueueSize) {
+					return CompletableFuture.failedFuture(new RejectedExecutionException("Too many pending requests (" + maxQueueSize + "), request rejected"));
+				}
+				pendingTasks.add(start);
+				return result;
+			}
+			running++;
+		}
+		start.run();
+		return result;
+	}
+
+	synchronized int getRunningCount() {
+		return running;
+	}
+
+	synchronized int getPendingCount() {
+		return pendingTasks.size();
+	}
+
+	private <T> void start(final Supplier<CompletableFuture<T>> task, final CompletableFuture<T> result) {
+		if (result.isDone()) {
+			//cancelled while queued
+			release();
+			return;
+		}
+		CompletableFuture<T> future;
+		try {
+			future = task.get();
+		} catch (final RuntimeException e) {
+			future = CompletableFuture.failedFuture(e);
+		}
+		final var underlyingFuture = future;
+		result.whenComplete((response, throwable) -> {
+			if (result.isCancelled()) {
+				//abandoned by the caller (hedging, timeout) : the underlying request is cancelled too, its permit is released
+				underlyingFuture.cancel(true);
+			}
+		});
+		underlyingFuture.whenComplete((response, throwable) -> {
+			release();
+			if (throwable != null) {
+				result.completeExceptionally(throwable);
+			} else {
+				result.complete(response);
+			}
+		});
+	}
+
+	private void release() {
+		synchronized (this) {
+			running--;
+		}
+		drain();
+	}
+
+	/**
+	 * Starts pending tasks while permits are available.
+	 * Tasks completing immediately release their permit on the same thread : a single drain loop runs at a time (no recursion on the stack),
+	 * other releases only give back their permit to this loop.
+	 */
+	private void drain() {
+		synchronized (this) {
+			if (draining) {
+				return;
+			}
+			draining = true;
+		}
+		while (true) {
+			final Runnable next;
+			synchronized (this) {
+				if (running >= maxConcurrent || pendingTasks.isEmpty()) {
+					draining = false;
+					return;
+				}
+				running++;
+				next = pendingTasks.poll();
+			}
+			try {
+				next.run();
+			} catch (final RuntimeException e) {
+				synchronized (this) {
+					draining = false;
+				}
+				throw e;
+			}
+		}
+	}
+}
@@ -20,58 +20,240 @@ package io.vertigo.connectors.httpclient;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.ProxySelector;
+import java.net.URI;
 import java.net.URL;
 import java.net.http.HttpClient;
 import java.net.http.HttpClient.Builder;
 import java.net.http.HttpClient.Redirect;
+import java.net.http.HttpClient.Version;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.nio.file.Path;
 import java.security.GeneralSecurityException;
 import java.security.KeyStore;
 import java.security.SecureRandom;
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import javax.inject.Inject;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManagerFactory;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.vertigo.connectors.httpclient.HttpClientCircuitBreaker.State;
+import io.vertigo.connectors.httpclient.HttpClientLoadBalancer.Strategy;
+import io.vertigo.core.analytics.AnalyticsManager;
 import io.vertigo.core.lang.Assertion;
 import io.vertigo.core.lang.WrappedException;
+import io.vertigo.core.node.component.Activeable;
 import io.vertigo.core.node.component.Connector;
 import io.vertigo.core.param.ParamValue;
 import io.vertigo.core.resource.ResourceManager;
 
 /**
+ * Idle connections of the JDK HttpClient are set by JVM options, read once by the JDK for all HttpClients of the JVM :
+ * -Djdk.httpclient.keepalive.timeout (idle seconds before closing a pooled connection, 30 by default) and
+ * -Djdk.httpclient.connectionPoolSize (max idle connections, unlimited by default). See maxConnections to bound connections of a connector.
+ *
  * @author npiedeloup
  */
-public class HttpClientConnector implements Connector<HttpClient> {
+public class HttpClientConnector implements Connector<HttpClient>, Activeable {
+
+	private static final Logger LOG = LogManager.getLogger(HttpClientConnector.class);
+	private static final String ANALYTICS_CATEGORY = "httpclient";
 
 	private static final int DEFAULT_CONNECT_TIMEOUT = 20; //20 seconds
+	private static final int DEFAULT_RETRY_INITIAL_BACKOFF = 100; //100 milliseconds
+	private static final int DEFAULT_RETRY_MAX_BACKOFF = 2000; //2 seconds
+	private static final int DEFAULT_HEDGING_MIN_DELAY = 10; //10 milliseconds
+	private static final int DEFAULT_CIRCUIT_BREAKER_WINDOW_SIZE = 20; //20 calls
+	private static final int DEFAULT_CIRCUIT_BREAKER_SLOW_CALL = 5000; //5 seconds
+	private static final int DEFAULT_CIRCUIT_BREAKER_OPEN = 30; //30 seconds
+	private static final int DEFAULT_CIRCUIT_BREAKER_HALF_OPEN_PROBES = 3;
+	private static final int SLOW_CALL_RATE_DISABLED = 101; //never reached
+	private static final int DEFAULT_EJECTION_FAILURES = 5;
+	private static final int DEFAULT_EJECTION = 30; //30 seconds
+	private static final long DEFAULT_CACHE_DISK_MAX_BYTES = 100 * 1024 * 1024L; //100 MB
 	private final String connectionName;
 	private final Optional<ProxySelector> proxyOpt;
 	private final String urlPrefix;
 	private final int connectTimeout;
+	private final Version httpVersion;
+	private final boolean acceptCompression;
+	private final Optional<Duration> requestTimeoutOpt;
+	private final Optional<ExecutorService> executorOpt;
+	private final Optional<HttpClientConcurrencyLimiter> concurrencyLimiterOpt;
+	private final HttpClientRequestExecutor requestExecutor;
+	private final Optional<HttpClientCircuitBreaker> circuitBreakerOpt;
+	private final Optional<HttpClientResponseCache> responseCacheOpt;
+	private final Optional<HttpClientLoadBalancer> loadBalancerOpt;
+	private final AnalyticsManager analyticsManager;
+	private final HttpClientMetrics metrics = new HttpClientMetrics();
 	private Optional<SSLContext> sslContextOpt;
+	private final HttpClient sharedHttpClient;
 
+	/**
+	 * Constructor.
+	 *
+	 * @param connectionNameOpt name of the connector (main by default)
+	 * @param urlPrefix url prefix of the backend (with protocol, without ending /), or url prefixes of its instances separated by ;
+	 * @param loadBalancingOpt load balancing between url prefixes : roundRobin (default), leastOutstanding or latencyEwma
+	 * @param ejectionFailuresOpt consecutive failures (IOException or 5xx) ejecting an url prefix from load balancing (5 by default)
+	 * @param ejectionSecondsOpt duration of ejection before sending a probe request to an url prefix (30s by default)
+	 * @param connectTimeoutOpt connect timeout in seconds (20s by default)
+	 * @param requestTimeoutOpt timeout in seconds of requests without their own timeout, until response headers are received (no timeout by default)
+	 * @param executorOpt executor of the client : default (JDK cached thread pool), virtual (virtual threads, needs java 21) or bounded (fixed thread pool)
+	 * @param executorThreadsOpt threads of the bounded executor (2 x processors by default)
+	 * @param maxConnectionsOpt max connections used by this connector in HTTP/1.1 : bounds its concurrent requests (if maxConcurrentStreams isn't set), ignored in HTTP/2
+	 * @param httpVersionOpt HTTP version : HTTP_1_1 (default) or HTTP_2 (fallback to HTTP_1_1 if the server doesn't support it)
+	 * @param acceptCompressionOpt if requests created by newRequest accept gzip and deflate responses (false by default), see HttpClientBodyHandlers
+	 * @param maxConcurrentStreamsOpt max concurrent requests sent through this connector (unlimited by default), acts as a bulkhead
+	 * @param maxQueuedRequestsOpt max requests waiting for maxConcurrentStreams, others are rejected (unlimited by default)
+	 * @param retryMaxAttemptsOpt max attempts for idempotent requests (1 by default : no retry)
+	 * @param retryInitialBackoffMillisOpt back-off before the first retry, doubled for each next retry (100ms by default)
+	 * @param retryMaxBackoffMillisOpt max back-off between retries (2s by default)
+	 * @param hedgingPercentileOpt latency percentile (ie 95) after which an hedged request is sent for idempotent requests (no hedging by default)
+	 * @param hedgingMinDelayMillisOpt min delay before sending an hedged request (10ms by default)
+	 * @param circuitBreakerFailureRatePercentOpt failure rate (IOException or 5xx) opening the circuit (no circuit breaker by default)
+	 * @param circuitBreakerSlowCallRatePercentOpt slow call rate opening the circuit (slow calls ignored by default)
+	 * @param circuitBreakerSlowCallMillisOpt duration above which a call is slow (5s by default)
+	 * @param circuitBreakerWindowSizeOpt number of latest calls used to compute rates (20 by default)
+	 * @param circuitBreakerOpenSecondsOpt duration while calls are rejected before probing the backend (30s by default)
+	 * @param circuitBreakerHalfOpenProbesOpt number of probe calls deciding to close or reopen the circuit (3 by default)
+	 * @param cacheMaxBytesOpt max bytes of responses kept in the memory cache of GET requests, following HTTP caching headers (no cache by default)
+	 * @param cacheDirectoryOpt directory of the disk cache, for responses evicted from the memory cache (no disk cache by default)
+	 * @param cacheDiskMaxBytesOpt max bytes of responses kept in the disk cache (100MB by default)
+	 */
 	@Inject
 	public HttpClientConnector(
 			@ParamValue("name") final Optional<String> connectionNameOpt,
 			@ParamValue("urlPrefix") final String urlPrefix,
+			@ParamValue("loadBalancing") final Optional<String> loadBalancingOpt,
+			@ParamValue("ejectionFailures") final Optional<Integer> ejectionFailuresOpt,
+			@ParamValue("ejectionSeconds") final Optional<Integer> ejectionSecondsOpt,
 			@ParamValue("connectTimeoutSecond") final Optional<Integer> connectTimeoutOpt,
+			@ParamValue("requestTimeoutSecond") final Optional<Integer> requestTimeoutOpt,
+			@ParamValue("executor") final Optional<String> executorOpt,
+			@ParamValue("executorThreads") final Optional<Integer> executorThreadsOpt,
+			@ParamValue("maxConnections") final Optional<Integer> maxConnectionsOpt,
+			@ParamValue("httpVersion") final Optional<String> httpVersionOpt,
+			@ParamValue("acceptCompression") final Optional<Boolean> acceptCompressionOpt,
+			@ParamValue("maxConcurrentStreams") final Optional<Integer> maxConcurrentStreamsOpt,
+			@ParamValue("maxQueuedRequests") final Optional<Integer> maxQueuedRequestsOpt,
+			@ParamValue("retryMaxAttempts") final Optional<Integer> retryMaxAttemptsOpt,
+			@ParamValue("retryInitialBackoffMillis") final Optional<Integer> retryInitialBackoffMillisOpt,
+			@ParamValue("retryMaxBackoffMillis") final Optional<Integer> retryMaxBackoffMillisOpt,
+			@ParamValue("hedgingPercentile") final Optional<Integer> hedgingPercentileOpt,
+			@ParamValue("hedgingMinDelayMillis") final Optional<Integer> hedgingMinDelayMillisOpt,
+			@ParamValue("circuitBreakerFailureRatePercent") final Optional<Integer> circuitBreakerFailureRatePercentOpt,
+			@ParamValue("circuitBreakerSlowCallRatePercent") final Optional<Integer> circuitBreakerSlowCallRatePercentOpt,
+			@ParamValue("circuitBreakerSlowCallMillis") final Optional<Integer> circuitBreakerSlowCallMillisOpt,
+			@ParamValue("circuitBreakerWindowSize") final Optional<Integer> circuitBreakerWindowSizeOpt,
+			@ParamValue("circuitBreakerOpenSeconds") final Optional<Integer> circuitBreakerOpenSecondsOpt,
+			@ParamValue("circuitBreakerHalfOpenProbes") final Optional<Integer> circuitBreakerHalfOpenProbesOpt,
+			@ParamValue("cacheMaxBytes") final Optional<Long> cacheMaxBytesOpt,
+			@ParamValue("cacheDirectory") final Optional<String> cacheDirectoryOpt,
+			@ParamValue("cacheDiskMaxBytes") final Optional<Long> cacheDiskMaxBytesOpt,
 			@ParamValue("proxy") final Optional<String> proxyHostOpt,
 			@ParamValue("proxyPort") final Optional<Integer> proxyPortOpt,
 			@ParamValue("trustStoreUrl") final Optional<String> trustStoreUrlOpt,
 			@ParamValue("trustStorePassword") final Optional<String> trustStorePasswordOpt,
-			final ResourceManager resourceManager) {
+			final ResourceManager resourceManager,
+			final AnalyticsManager analyticsManager) {
+		Assertion.check()
+				.isNotBlank(urlPrefix);
+		final List<String> urlPrefixes = Arrays.stream(urlPrefix.split(";")).map(String::trim).toList();
 		Assertion.check()
-				.isNotBlank(urlPrefix)
-				.isTrue(urlPrefix.startsWith("http"), "urlPrefix ({0}) must include protocol http or https", urlPrefix)
-				.isFalse(urlPrefix.endsWith("/"), "urlPrefix ({0}) mustn't end with /", urlPrefix)
+				.isTrue(urlPrefixes.stream().allMatch(prefix -> prefix.startsWith("http")), "urlPrefix ({0}) must include protocol http or https", urlPrefix)
+				.isFalse(urlPrefixes.stream().anyMatch(prefix -> prefix.endsWith("/")), "urlPrefix ({0}) mustn't end with /", urlPrefix)
+				.when(loadBalancingOpt.isPresent() || ejectionFailuresOpt.isPresent() || ejectionSecondsOpt.isPresent(),
+						() -> Assertion.check().isTrue(urlPrefixes.size() > 1, "load balancing needs several urlPrefix separated by ;"))
+				.when(loadBalancingOpt.isPresent(),
+						() -> Assertion.check().isTrue(Arrays.stream(Strategy.values()).anyMatch(strategy -> strategy.name().equals(loadBalancingOpt.get())),
+								"loadBalancing ({0}) must be roundRobin, leastOutstanding or latencyEwma", loadBalancingOpt.get()))
 				.when(proxyHostOpt.isPresent(),
-						() -> Assertion.check().isTrue(proxyPortOpt.isPresent(), "ProxyPort is mandatory if proxy was set"));
+						() -> Assertion.check().isTrue(proxyPortOpt.isPresent(), "ProxyPort is mandatory if proxy was set"))
+				.when(httpVersionOpt.isPresent(),
+						() -> Assertion.check().isTrue("HTTP_1_1".equals(httpVersionOpt.get()) || "HTTP_2".equals(httpVersionOpt.get()),
+								"httpVersion ({0}) must be HTTP_1_1 or HTTP_2", httpVersionOpt.get()))
+				.when(executorOpt.isPresent(),
+						() -> Assertion.check().isTrue("default".equals(executorOpt.get()) || "virtual".equals(executorOpt.get()) || "bounded".equals(executorOpt.get()),
+								"executor ({0}) must be default, virtual or bounded", executorOpt.get()))
+				.when(executorThreadsOpt.isPresent(),
+						() -> Assertion.check().isTrue("bounded".equals(executorOpt.orElse(null)) && executorThreadsOpt.get() > 0, "executorThreads must be strictly positive and is only used by the bounded executor"))
+				.when(requestTimeoutOpt.isPresent(),
+						() -> Assertion.check().isTrue(requestTimeoutOpt.get() > 0, "requestTimeoutSecond must be strictly positive"))
+				.when(maxConnectionsOpt.isPresent(),
+						() -> Assertion.check().isTrue(maxConnectionsOpt.get() > 0, "maxConnections must be strictly positive"))
+				.when(maxConcurrentStreamsOpt.isPresent(),
+						() -> Assertion.check().isTrue(maxConcurrentStreamsOpt.get() > 0, "maxConcurrentStreams must be strictly positive"))
+				.when(maxQueuedRequestsOpt.isPresent(),
+						() -> Assertion.check().isTrue(maxConcurrentStreamsOpt.isPresent() || maxConnectionsOpt.isPresent() && !"HTTP_2".equals(httpVersionOpt.orElse(null)),
+								"maxConcurrentStreams (or maxConnections in HTTP_1_1) is mandatory if maxQueuedRequests was set"))
+				.when(circuitBreakerFailureRatePercentOpt.isEmpty(),
+						() -> Assertion.check().isTrue(circuitBreakerSlowCallRatePercentOpt.isEmpty() && circuitBreakerSlowCallMillisOpt.isEmpty()
+								&& circuitBreakerWindowSizeOpt.isEmpty() && circuitBreakerOpenSecondsOpt.isEmpty() && circuitBreakerHalfOpenProbesOpt.isEmpty(),
+								"circuitBreakerFailureRatePercent is mandatory to enable circuit breaker"))
+				.when(cacheDirectoryOpt.isPresent() || cacheDiskMaxBytesOpt.isPresent(),
+						() -> Assertion.check().isTrue(cacheMaxBytesOpt.isPresent(), "cacheMaxBytes is mandatory to enable cache"))
+				.isNotNull(analyticsManager);
 		//---
 		connectionName = connectionNameOpt.orElse("main");
-		this.urlPrefix = urlPrefix;
+		this.urlPrefix = urlPrefixes.get(0);
 		connectTimeout = connectTimeoutOpt.orElse(DEFAULT_CONNECT_TIMEOUT);
+		httpVersion = Version.valueOf(httpVersionOpt.orElse(Version.HTTP_1_1.name()));
+		acceptCompression = acceptCompressionOpt.orElse(false);
+		this.requestTimeoutOpt = requestTimeoutOpt.map(Duration::ofSeconds);
+		this.analyticsManager = analyticsManager;
+		this.executorOpt = createExecutor(executorOpt.orElse("default"), executorThreadsOpt.orElseGet(() -> 2 * Runtime.getRuntime().availableProcessors()));
+		//in HTTP/1.1 each in flight request uses its own connection
+		concurrencyLimiterOpt = maxConcurrentStreamsOpt
+				.or(() -> httpVersion == Version.HTTP_1_1 ? maxConnectionsOpt : Optional.empty())
+				.map(maxConcurrentStreams -> new HttpClientConcurrencyLimiter(maxConcurrentStreams, maxQueuedRequestsOpt.orElse(Integer.MAX_VALUE)));
+		circuitBreakerOpt = circuitBreakerFailureRatePercentOpt
+				.map(failureRatePercent -> new HttpClientCircuitBreaker(
+						circuitBreakerWindowSizeOpt.orElse(DEFAULT_CIRCUIT_BREAKER_WINDOW_SIZE),
+						failureRatePercent,
+						circuitBreakerSlowCallRatePercentOpt.orElse(SLOW_CALL_RATE_DISABLED),
+						circuitBreakerSlowCallMillisOpt.orElse(DEFAULT_CIRCUIT_BREAKER_SLOW_CALL),
+						circuitBreakerOpenSecondsOpt.orElse(DEFAULT_CIRCUIT_BREAKER_OPEN),
+						circuitBreakerHalfOpenProbesOpt.orElse(DEFAULT_CIRCUIT_BREAKER_HALF_OPEN_PROBES),
+						this::onCircuitBreakerStateChange));
+		requestExecutor = new HttpClientRequestExecutor(
+				retryMaxAttemptsOpt.orElse(1),
+				retryInitialBackoffMillisOpt.orElse(DEFAULT_RETRY_INITIAL_BACKOFF),
+				retryMaxBackoffMillisOpt.orElse(DEFAULT_RETRY_MAX_BACKOFF),
+				hedgingPercentileOpt,
+				hedgingMinDelayMillisOpt.orElse(DEFAULT_HEDGING_MIN_DELAY));
+		loadBalancerOpt = urlPrefixes.size() > 1
+				? Optional.of(new HttpClientLoadBalancer(
+						urlPrefixes,
+						Strategy.valueOf(loadBalancingOpt.orElse(Strategy.roundRobin.name())),
+						ejectionFailuresOpt.orElse(DEFAULT_EJECTION_FAILURES),
+						ejectionSecondsOpt.orElse(DEFAULT_EJECTION),
+						this::onEndpointEjected))
+				: Optional.empty();
+		responseCacheOpt = cacheMaxBytesOpt
+				.map(cacheMaxBytes -> new HttpClientResponseCache(
+						cacheMaxBytes,
+						cacheDirectoryOpt.map(Path::of),
+						cacheDiskMaxBytesOpt.orElse(DEFAULT_CACHE_DISK_MAX_BYTES)));
 		proxyOpt = proxyHostOpt.map(proxy -> ProxySelector.of(new InetSocketAddress(proxy, proxyPortOpt.get())));
 
 		if (trustStoreUrlOpt.isPresent()) {
@@ -83,32 +265,275 @@ public class HttpClientConnector implements Connector<HttpClient> {
 		} else {
 			sslContextOpt = Optional.empty();
 		}
+		sharedHttpClient = createClientBuilder().build();
 	}
 
+	/**
+	 * Get the HttpClient.
+	 * The same client is shared by all callers, so connections (and HTTP/2 streams) are reused.
+	 * Inside an HttpClientCookie scope, a dedicated client using the current CookieManager is returned.
+	 * @return the HttpClient
+	 */
 	@Override
 	public HttpClient getClient() {
+		final var cookieManagerOpt = HttpClientCookie.getCurrentCookieManager();
+		if (cookieManagerOpt.isEmpty()) {
+			return sharedHttpClient;
+		}
+		return createClientBuilder()
+				.cookieHandler(cookieManagerOpt.get())
+				.build();
+	}
+
+	/**
+	 * Creates a request builder for a path of this connector's backend.
+	 * If acceptCompression is set, the Accept-Encoding header is added : the response must be read with HttpClientBodyHandlers.
+	 *
+	 * @param path the path, starting with /, appended to the urlPrefix (the first one if load balanced, replaced when the request is sent)
+	 * @return the request builder
+	 */
+	public HttpRequest.Builder newRequest(final String path) {
+		Assertion.check()
+				.isNotNull(path)
+				.isTrue(path.isEmpty() || path.startsWith("/") || path.startsWith("?"), "path ({0}) must start with /", path);
+		//---
+		final var requestBuilder = HttpRequest.newBuilder(URI.create(urlPrefix + path));
+		if (acceptCompression) {
+			requestBuilder.header(HttpClientBodyHandlers.ACCEPT_ENCODING_HEADER, HttpClientBodyHandlers.ACCEPT_ENCODING_VALUE);
+		}
+		return requestBuilder;
+	}
+
+	/**
+	 * Sends a request asynchronously, within the maxConcurrentStreams limit of this connector.
+	 * Requests over the limit are queued until a running request completes, or rejected if maxQueuedRequests is reached.
+	 * Requests are rejected while the circuit breaker is open (RejectedExecutionException).
+	 * Idempotent requests are retried and hedged according to this connector's configuration.
+	 * If the cache is enabled, GET responses are served from it while fresh (outside of HttpClientCookie scopes).
+	 * The request is traced when its response is received, the caller's span only counts it.
+	 *
+	 * @param <T> response body type
+	 * @param request the request
+	 * @param bodyHandler the response body handler
+	 * @return the future response
+	 */
+	public <T> CompletableFuture<HttpResponse<T>> sendAsync(final HttpRequest request, final BodyHandler<T> bodyHandler) {
+		Assertion.check()
+				.isNotNull(request)
+				.isNotNull(bodyHandler);
+		//---
+		analyticsManager.getCurrentTracer().ifPresent(tracer -> tracer.incMeasure(ANALYTICS_CATEGORY + "AsyncRequests", 1));
+		final var start = System.nanoTime();
+		final var responseFuture = doSendAsync(request, bodyHandler);
+		responseFuture.whenComplete((response, throwable) -> analyticsManager.trace(ANALYTICS_CATEGORY, getSpanName(request), tracer -> {
+			tracer.setTag("host", request.uri().getAuthority());
+			tracer.setTag("method", request.method());
+			tracer.setTag("status", String.valueOf(response != null ? response.statusCode() : 0));
+			tracer.setMeasure("durationMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		}));
+		return responseFuture;
+	}
+
+	/**
+	 * Sends a request and waits for the response, within the maxConcurrentStreams limit of this connector.
+	 * The request is traced as a span of the caller.
+	 *
+	 * @param <T> response body type
+	 * @param request the request
+	 * @param bodyHandler the response body handler
+	 * @return the response
+	 */
+	public <T> HttpResponse<T> send(final HttpRequest request, final BodyHandler<T> bodyHandler) {
+		Assertion.check()
+				.isNotNull(request)
+				.isNotNull(bodyHandler);
+		//---
+		return analyticsManager.traceWithReturn(ANALYTICS_CATEGORY, getSpanName(request), tracer -> {
+			tracer.setTag("host", request.uri().getAuthority());
+			tracer.setTag("method", request.method());
+			try {
+				final var response = doSendAsync(request, bodyHandler).get();
+				tracer.setTag("status", String.valueOf(response.statusCode()));
+				return response;
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw WrappedException.wrap(e);
+			} catch (final ExecutionException e) {
+				tracer.setTag("status", "0");
+				throw WrappedException.wrap(e.getCause());
+			}
+		});
+	}
+
+	/**
+	 * @return the circuit breaker state (CLOSED, OPEN or HALF_OPEN), CLOSED if there is no circuit breaker
+	 */
+	public String getCircuitBreakerState() {
+		return circuitBreakerOpt
+				.map(HttpClientCircuitBreaker::getState)
+				.orElse(State.CLOSED)
+				.name();
+	}
+
+	/**
+	 * Metrics of the requests sent by send and sendAsync (each retry or hedged request is counted).
+	 * @return the metrics of this connector
+	 */
+	public HttpClientMetrics getMetrics() {
+		return metrics;
+	}
+
+	private <T> CompletableFuture<HttpResponse<T>> doSendAsync(final HttpRequest originalRequest, final BodyHandler<T> bodyHandler) {
+		final var httpClient = getClient();
+		final var request = requestTimeoutOpt.isPresent() && originalRequest.timeout().isEmpty()
+				? HttpRequest.newBuilder(originalRequest, (name, value) -> true).timeout(requestTimeoutOpt.get()).build()
+				: originalRequest;
+		if (responseCacheOpt.isEmpty() || httpClient != sharedHttpClient) {
+			//no cache for cookie scopes : responses are user specific
+			return requestExecutor.execute(request, attemptRequest -> routeAttempt(httpClient, attemptRequest, bodyHandler));
+		}
+		return responseCacheOpt.get().sendAsync(request, bodyHandler,
+				(backendRequest, backendBodyHandler) -> requestExecutor.execute(backendRequest, attemptRequest -> routeAttempt(httpClient, attemptRequest, backendBodyHandler)));
+	}
+
+	private <T> CompletableFuture<HttpResponse<T>> routeAttempt(final HttpClient httpClient, final HttpRequest request, final BodyHandler<T> bodyHandler) {
+		//each attempt (retry or hedged request) is balanced
+		if (loadBalancerOpt.isEmpty()) {
+			return sendAttempt(httpClient, request, bodyHandler);
+		}
+		return loadBalancerOpt.get().sendAsync(request, routedRequest -> sendAttempt(httpClient, routedRequest, bodyHandler));
+	}
+
+	private String getSpanName(final HttpRequest request) {
+		return "/" + connectionName + "/" + request.method();
+	}
+
+	private <T> CompletableFuture<HttpResponse<T>> sendAttempt(final HttpClient httpClient, final HttpRequest request, final BodyHandler<T> bodyHandler) {
+		if (circuitBreakerOpt.isPresent() && !circuitBreakerOpt.get().tryAcquirePermission()) {
+			traceRejectedRequest("circuitBreakerOpen");
+			return CompletableFuture.failedFuture(new RejectedExecutionException("Circuit breaker of HttpClientConnector '" + connectionName + "' is open, request rejected"));
+		}
+		final var sent = new AtomicBoolean();
+		final Supplier<CompletableFuture<HttpResponse<T>>> sender = () -> {
+			sent.set(true);
+			metrics.onRequestStart(request.bodyPublisher().map(BodyPublisher::contentLength).orElse(0L));
+			final var start = System.nanoTime();
+			final var responseFuture = httpClient.sendAsync(request, bodyHandler);
+			responseFuture.whenComplete((response, throwable) -> {
+				final var durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+				metrics.onRequestEnd(request.uri().getAuthority(), request.method(),
+						response != null ? response.statusCode() : 0,
+						durationMillis,
+						response != null ? response.headers().firstValueAsLong("Content-Length").orElse(-1) : -1);
+				circuitBreakerOpt.ifPresent(circuitBreaker -> {
+					if (throwable instanceof CancellationException) {
+						circuitBreaker.releasePermission(); //hedged request cancelled : not a backend failure
+					} else {
+						circuitBreaker.onResult(throwable != null || response.statusCode() >= 500, durationMillis);
+					}
+				});
+			});
+			return responseFuture;
+		};
+		if (concurrencyLimiterOpt.isEmpty()) {
+			return sender.get();
+		}
+		final var responseFuture = concurrencyLimiterOpt.get().submit(sender);
+		responseFuture.whenComplete((response, throwable) -> {
+			if (!sent.get()) {
+				//rejected by the bulkhead, or cancelled while queued
+				circuitBreakerOpt.ifPresent(HttpClientCircuitBreaker::releasePermission);
+				if (throwable instanceof RejectedExecutionException) {
+					traceRejectedRequest("bulkheadFull");
+				}
+			}
+		});
+		return responseFuture;
+	}
+
+	private void onCircuitBreakerStateChange(final State state) {
+		if (state == State.OPEN) {
+			LOG.warn("Circuit breaker of HttpClientConnector '{}' is open, requests to {} are rejected", connectionName, urlPrefix);
+		} else {
+			LOG.info("Circuit breaker of HttpClientConnector '{}' is {}", connectionName, state);
+		}
+		analyticsManager.trace(ANALYTICS_CATEGORY, "/circuitBreaker/" + connectionName, tracer -> tracer.setTag("state", state.name()));
+	}
+
+	private void onEndpointEjected(final String endpointUrlPrefix) {
+		LOG.warn("{} is ejected from load balancing of HttpClientConnector '{}' after failures", endpointUrlPrefix, connectionName);
+		analyticsManager.trace(ANALYTICS_CATEGORY, "/loadBalancer/" + connectionName, tracer -> tracer.setTag("ejected", endpointUrlPrefix));
+	}
+
+	private void traceRejectedRequest(final String reason) {
+		analyticsManager.getCurrentTracer().ifPresent(tracer -> tracer.setTag("httpclientRejected", reason));
+	}
+
+	private Builder createClientBuilder() {
 		final Builder builder = HttpClient.newBuilder()
-				.version(HttpClient.Version.HTTP_1_1)
+				.version(httpVersion)
 				.followRedirects(Redirect.NORMAL)
 				.connectTimeout(Duration.ofSeconds(connectTimeout));
 
-		HttpClientCookie.getCurrentCookieManager()
-				.ifPresent((cookieManager) -> builder.cookieHandler(cookieManager));
-
 		proxyOpt.ifPresent((proxy) -> builder.proxy(proxy));
 		sslContextOpt.ifPresent(builder::sslContext);
-		return builder.build();
+		executorOpt.ifPresent(builder::executor);
+		return builder;
+	}
+
+	private Optional<ExecutorService> createExecutor(final String executor, final int executorThreads) {
+		switch (executor) {
+			case "virtual":
+				try {
+					//java 21+, called by reflection to keep java 17 compatibility
+					return Optional.of((ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null));
+				} catch (final ReflectiveOperationException e) {
+					LOG.warn("Virtual threads aren't available on java {}, HttpClientConnector '{}' uses a bounded executor of {} threads",
+							Runtime.version().feature(), connectionName, executorThreads);
+					return createExecutor("bounded", executorThreads);
+				}
+			case "bounded":
+				final var threadCount = new AtomicInteger();
+				return Optional.of(Executors.newFixedThreadPool(executorThreads, runnable -> {
+					final var thread = new Thread(runnable, "httpclient-" + connectionName + "-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}));
+			default:
+				return Optional.empty(); //JDK default cached thread pool
+		}
 	}
 
 	public String getUrlPrefix() {
 		return urlPrefix;
 	}
 
+	/**
+	 * @return url prefixes currently ejected from load balancing after failures
+	 */
+	public List<String> getEjectedUrlPrefixes() {
+		return loadBalancerOpt
+				.map(HttpClientLoadBalancer::getEjectedUrlPrefixes)
+				.orElseGet(List::of);
+	}
+
 	@Override
 	public String getName() {
 		return connectionName;
 	}
 
+	/** {@inheritDoc} */
+	@Override
+	public void start() {
+		//
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void stop() {
+		executorOpt.ifPresent(ExecutorService::shutdown);
+	}
+
 	private static SSLContext createTrustStoreSslContext(final URL trustStoreUrl, final String trustStorePassword) throws GeneralSecurityException, IOException {
 		final var trustStore = KeyStore.getInstance("pkcs12");
 		try (var inputStream = trustStoreUrl.openStream()) {
@@ -0,0 +1,73 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.httpclient;
+
+import java.util.Arrays;
+
+import io.vertigo.core.lang.Assertion;
+
+/**
+ * Keeps the latest latencies in a ring buffer and computes a percentile over them.
+ * The percentile is only recomputed every few records, to keep the read path cheap.
+ *
+ * @author npiedeloup
+ */
+final class HttpClientLatencyTracker {
+
+	private final long[] samples;
+	private final double percentile;
+	private final int recomputeInterval;
+
+	//guarded by this
+	private int sampleCount;
+	private int nextIndex;
+	private int recordsSinceCompute;
+	private long cachedPercentileMillis;
+
+	HttpClientLatencyTracker(final int capacity, final double percentile) {
+		Assertion.check()
+				.isTrue(capacity > 0, "capacity must be strictly positive")
+				.isTrue(percentile > 0 && percentile < 100, "percentile ({0}) must be in ]0, 100[", percentile);
+		//---
+		samples = new long[capacity];
+		this.percentile = percentile;
+		recomputeInterval = Math.max(1, capacity / 16);
+	}
+
+	synchronized void record(final long latencyMillis) {
+		samples[nextIndex] = latencyMillis;
+		nextIndex = (nextIndex + 1) % samples.length;
+		sampleCount = Math.min(sampleCount + 1, samples.length);
+		recordsSinceCompute++;
+	}
+
+	synchronized int getSampleCount() {
+		return sampleCount;
+	}
+
+	synchronized long getPercentileMillis() {
+		if (recordsSinceCompute >= recomputeInterval) {
+			final var sorted = Arrays.copyOf(samples, sampleCount);
+			Arrays.sort(sorted);
+			final var rank = (int) Math.ceil(percentile / 100 * sampleCount) - 1;
+			cachedPercentileMillis = sorted[Math.max(0, rank)];
+			recordsSinceCompute = 0;
+		}
+		return cachedPercentileMillis;
+	}
+}
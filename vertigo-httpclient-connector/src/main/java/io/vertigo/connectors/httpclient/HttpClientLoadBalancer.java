@@ -0,0 +1,241 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.httpclient;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import io.vertigo.core.lang.Assertion;
+
+/**
+ * Client side load balancing of requests between endpoints (url prefixes) of the same backend.
+ * Strategies :
+ * - roundRobin : each endpoint in turn
+ * - leastOutstanding : endpoint with the fewest in flight requests
+ * - latencyEwma : endpoint with the lowest latency moving average, weighted by its in flight requests
+ * An endpoint is ejected after consecutive failures (IOException or 5xx), and receives a single probe request after the ejection delay :
+ * a success brings it back, a failure ejects it again.
+ * If all endpoints are ejected, the one ejected first is used anyway.
+ *
+ * @author npiedeloup
+ */
+final class HttpClientLoadBalancer {
+
+	enum Strategy {
+		roundRobin, leastOutstanding, latencyEwma
+	}
+
+	private static final double EWMA_WEIGHT = 0.2; //weight of the latest latency
+	private static final double FAILURE_PENALTY_MILLIS = 1000; //fast failures (ie connection refused) mustn't attract requests
+
+	private final List<Endpoint> endpoints;
+	private final Strategy strategy;
+	private final int ejectionFailures;
+	private final long ejectionNanos;
+	private final Consumer<String> ejectionListener;
+	private final AtomicInteger roundRobinIndex = new AtomicInteger();
+
+	/**
+	 * Constructor.
+	 * @param urlPrefixes url prefixes of the endpoints
+	 * @param strategy load balancing strategy
+	 * @param ejectionFailures consecutive failures ejecting an endpoint
+	 * @param ejectionSeconds duration of ejection before probing an endpoint again
+	 * @param ejectionListener notified with the url prefix of ejected endpoints
+	 */
+	HttpClientLoadBalancer(final List<String> urlPrefixes, final Strategy strategy, final int ejectionFailures, final int ejectionSeconds, final Consumer<String> ejectionListener) {
+		Assertion.check()
+				.isFalse(urlPrefixes.isEmpty(), "At least one endpoint is needed")
+				.isNotNull(strategy)
+				.isTrue(ejectionFailures > 0, "ejectionFailures must be strictly positive")
+				.isTrue(ejectionSeconds > 0, "ejectionSeconds must be strictly positive")
+				.isNotNull(ejectionListener);
+		//---
+		endpoints = urlPrefixes.stream().map(Endpoint::new).toList();
+		this.strategy = strategy;
+		this.ejectionFailures = ejectionFailures;
+		ejectionNanos = TimeUnit.SECONDS.toNanos(ejectionSeconds);
+		this.ejectionListener = ejectionListener;
+	}
+
+	/**
+	 * Sends a request to the chosen endpoint : the url prefix of the request is replaced by the endpoint's one.
+	 * The url prefix of the request is the longest endpoint url prefix followed by /, ?, # or nothing (http://node1 doesn't match http://node10/api).
+	 * Requests whose uri doesn't start with an endpoint url prefix are sent unchanged.
+	 * @param <T> response body type
+	 * @param request the request
+	 * @param sender sends the routed request
+	 * @return the future response
+	 */
+	<T> CompletableFuture<HttpResponse<T>> sendAsync(final HttpRequest request, final Function<HttpRequest, CompletableFuture<HttpResponse<T>>> sender) {
+		final var uri = request.uri().toString();
+		final var requestEndpointOpt = endpoints.stream()
+				.filter(endpoint -> isUrlPrefixOf(endpoint.urlPrefix, uri))
+				.max(Comparator.comparingInt(endpoint -> endpoint.urlPrefix.length()));
+		if (requestEndpointOpt.isEmpty()) {
+			return sender.apply(request);
+		}
+		final var choice = choose();
+		final var endpoint = choice.endpoint();
+		final var isProbe = choice.probe();
+		final var routedRequest = endpoint == requestEndpointOpt.get()
+				? request
+				: HttpRequest.newBuilder(request, (name, value) -> true)
+						.uri(URI.create(endpoint.urlPrefix + uri.substring(requestEndpointOpt.get().urlPrefix.length())))
+						.build();
+		endpoint.outstanding.incrementAndGet();
+		final var start = System.nanoTime();
+		final CompletableFuture<HttpResponse<T>> responseFuture;
+		try {
+			responseFuture = sender.apply(routedRequest);
+		} catch (final RuntimeException e) {
+			endpoint.outstanding.decrementAndGet();
+			endProbe(endpoint, isProbe);
+			throw e;
+		}
+		responseFuture.whenComplete((response, throwable) -> {
+			endpoint.outstanding.decrementAndGet();
+			final var cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+			if (cause != null && !(cause instanceof IOException)) {
+				//cancelled hedged request or rejected by the circuit breaker / bulkhead : says nothing about the endpoint
+				endProbe(endpoint, isProbe);
+				return;
+			}
+			onResult(endpoint, isProbe, cause != null || response.statusCode() >= 500, System.nanoTime() - start);
+		});
+		return responseFuture;
+	}
+
+	/**
+	 * @return url prefixes of the endpoints currently ejected
+	 */
+	List<String> getEjectedUrlPrefixes() {
+		return endpoints.stream()
+				.filter(endpoint -> endpoint.ejected)
+				.map(endpoint -> endpoint.urlPrefix)
+				.toList();
+	}
+
+	private static boolean isUrlPrefixOf(final String urlPrefix, final String uri) {
+		if (!uri.startsWith(urlPrefix)) {
+			return false;
+		}
+		//the prefix must end on a boundary : http://node1 isn't a prefix of http://node10, nor http://host:80 of http://host:8080
+		return uri.length() == urlPrefix.length() || "/?#".indexOf(uri.charAt(urlPrefix.length())) >= 0;
+	}
+
+	private Choice choose() {
+		final var now = System.nanoTime();
+		final List<Endpoint> available = new ArrayList<>(endpoints.size());
+		for (final Endpoint endpoint : endpoints) {
+			if (!endpoint.ejected) {
+				available.add(endpoint);
+			} else if (endpoint.isProbeDue(now) && endpoint.probing.compareAndSet(false, true)) {
+				return new Choice(endpoint, true); //single probe request after the ejection delay
+			}
+		}
+		if (available.isEmpty()) {
+			return new Choice(endpoints.stream()
+					.min((endpoint1, endpoint2) -> Long.compare(endpoint1.ejectedAtNanos, endpoint2.ejectedAtNanos))
+					.orElseThrow(), false);
+		}
+		final var offset = Math.floorMod(roundRobinIndex.getAndIncrement(), available.size());
+		if (strategy == Strategy.roundRobin) {
+			return new Choice(available.get(offset), false);
+		}
+		//starts at the round robin offset, so ties are spread
+		var best = available.get(offset);
+		for (var i = 1; i < available.size(); i++) {
+			final var candidate = available.get((offset + i) % available.size());
+			if (score(candidate) < score(best)) {
+				best = candidate;
+			}
+		}
+		return new Choice(best, false);
+	}
+
+	private double score(final Endpoint endpoint) {
+		final var outstanding = endpoint.outstanding.get();
+		if (strategy == Strategy.leastOutstanding) {
+			return outstanding;
+		}
+		return endpoint.ewmaMillis * (outstanding + 1);
+	}
+
+	private static void endProbe(final Endpoint endpoint, final boolean isProbe) {
+		//only the probe request releases the probe : other requests (sent before the ejection) mustn't allow a second probe
+		if (isProbe) {
+			endpoint.probing.set(false);
+		}
+	}
+
+	private void onResult(final Endpoint endpoint, final boolean isProbe, final boolean failure, final long durationNanos) {
+		final var durationMillis = durationNanos / 1_000_000d + (failure ? FAILURE_PENALTY_MILLIS : 0);
+		endpoint.ewmaMillis = endpoint.ewmaMillis == 0 ? durationMillis : EWMA_WEIGHT * durationMillis + (1 - EWMA_WEIGHT) * endpoint.ewmaMillis;
+		if (!failure) {
+			endpoint.consecutiveFailures.set(0);
+			endpoint.ejected = false;
+		} else {
+			final var failures = endpoint.consecutiveFailures.incrementAndGet();
+			if (isProbe || failures == ejectionFailures) {
+				endpoint.ejectedAtNanos = System.nanoTime();
+				endpoint.ejected = true;
+				ejectionListener.accept(endpoint.urlPrefix);
+			}
+		}
+		//after the ejection state is updated : a failed probe mustn't be followed by an immediate second probe
+		endProbe(endpoint, isProbe);
+	}
+
+	/**
+	 * @param endpoint the chosen endpoint
+	 * @param probe if the request is the probe of an ejected endpoint
+	 */
+	private record Choice(Endpoint endpoint, boolean probe) {
+	}
+
+	private final class Endpoint {
+		private final String urlPrefix;
+		private final AtomicInteger outstanding = new AtomicInteger();
+		private final AtomicInteger consecutiveFailures = new AtomicInteger();
+		private final AtomicBoolean probing = new AtomicBoolean();
+		private volatile double ewmaMillis;
+		private volatile boolean ejected;
+		private volatile long ejectedAtNanos;
+
+		Endpoint(final String urlPrefix) {
+			this.urlPrefix = urlPrefix;
+		}
+
+		boolean isProbeDue(final long now) {
+			return now - ejectedAtNanos >= ejectionNanos && !probing.get();
+		}
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.httpclient;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the requests sent through an HttpClientConnector.
+ * Latencies are aggregated in a fixed buckets histogram by host, method and status (status 0 for IOException).
+ *
+ * @author npiedeloup
+ */
+public final class HttpClientMetrics {
+
+	/** Upper bounds (inclusive) of latency buckets, in milliseconds. The last bucket counts the slower requests. */
+	public static final long[] LATENCY_BUCKETS_MILLIS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000 };
+
+	private final Map<HistogramKey, Histogram> histograms = new ConcurrentHashMap<>();
+	private final AtomicInteger inFlightCount = new AtomicInteger();
+	private final LongAdder bytesSent = new LongAdder();
+	private final LongAdder bytesReceived = new LongAdder();
+
+	/**
+	 * Latency histogram snapshot.
+	 * @param host the backend host
+	 * @param method the HTTP method
+	 * @param status the HTTP status (0 for IOException)
+	 * @param count number of requests
+	 * @param totalMillis sum of latencies
+	 * @param bucketCounts number of requests per bucket of LATENCY_BUCKETS_MILLIS (plus one for the slower ones)
+	 */
+	public record LatencyHistogram(
+			String host,
+			String method,
+			int status,
+			long count,
+			long totalMillis,
+			long[] bucketCounts) {
+	}
+
+	HttpClientMetrics() {
+		//created by the connector
+	}
+
+	void onRequestStart(final long requestBytes) {
+		inFlightCount.incrementAndGet();
+		if (requestBytes > 0) {
+			bytesSent.add(requestBytes);
+		}
+	}
+
+	void onRequestEnd(final String host, final String method, final int status, final long durationMillis, final long responseBytes) {
+		inFlightCount.decrementAndGet();
+		if (responseBytes > 0) {
+			bytesReceived.add(responseBytes);
+		}
+		histograms.computeIfAbsent(new HistogramKey(host, method, status), key -> new Histogram())
+				.record(durationMillis);
+	}
+
+	/**
+	 * @return number of requests currently sent and waiting for their response
+	 */
+	public int getInFlightCount() {
+		return inFlightCount.get();
+	}
+
+	/**
+	 * @return bytes of the request bodies with a known length
+	 */
+	public long getBytesSent() {
+		return bytesSent.sum();
+	}
+
+	/**
+	 * @return bytes of the response bodies with a Content-Length
+	 */
+	public long getBytesReceived() {
+		return bytesReceived.sum();
+	}
+
+	/**
+	 * @return snapshots of latency histograms
+	 */
+	public List<LatencyHistogram> getLatencyHistograms() {
+		return histograms.entrySet().stream()
+				.map(entry -> entry.getValue().snapshot(entry.getKey()))
+				.toList();
+	}
+
+	private record HistogramKey(String host, String method, int status) {
+	}
+
+	private static final class Histogram {
+		private final LongAdder count = new LongAdder();
+		private final LongAdder totalMillis = new LongAdder();
+		private final LongAdder[] buckets = new LongAdder[LATENCY_BUCKETS_MILLIS.length + 1];
+
+		Histogram() {
+			Arrays.setAll(buckets, i -> new LongAdder());
+		}
+
+		void record(final long durationMillis) {
+			count.increment();
+			totalMillis.add(durationMillis);
+			var bucket = Arrays.binarySearch(LATENCY_BUCKETS_MILLIS, durationMillis);
+			if (bucket < 0) {
+				bucket = -bucket - 1; //insertion point : first bound greater than durationMillis
+			}
+			buckets[bucket].increment();
+		}
+
+		LatencyHistogram snapshot(final HistogramKey key) {
+			return new LatencyHistogram(
+					key.host(),
+					key.method(),
+					key.status(),
+					count.sum(),
+					totalMillis.sum(),
+					Arrays.stream(buckets).mapToLong(LongAdder::sum).toArray());
+		}
+	}
+}
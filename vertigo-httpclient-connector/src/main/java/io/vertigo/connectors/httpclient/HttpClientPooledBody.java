@@ -0,0 +1,117 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.httpclient;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Response body held in pooled ByteBuffers.
+ * Must be closed to give buffers back to the pool, buffers mustn't be used after that.
+ *
+ * @author npiedeloup
+ */
+public final class HttpClientPooledBody implements AutoCloseable {
+
+	private final HttpClientByteBufferPool byteBufferPool;
+	private final List<ByteBuffer> byteBuffers;
+	private final long size;
+	private final String contentEncoding;
+	private boolean closed;
+
+	HttpClientPooledBody(final HttpClientByteBufferPool byteBufferPool, final List<ByteBuffer> byteBuffers, final long size, final String contentEncoding) {
+		this.byteBufferPool = byteBufferPool;
+		this.byteBuffers = byteBuffers;
+		this.size = size;
+		this.contentEncoding = contentEncoding;
+	}
+
+	/**
+	 * @return size of the body, as received (maybe compressed)
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * @return read only views of the body buffers, as received (maybe compressed)
+	 */
+	public List<ByteBuffer> getByteBuffers() {
+		return byteBuffers.stream()
+				.map(ByteBuffer::asReadOnlyBuffer)
+				.toList();
+	}
+
+	/**
+	 * @return the body as a decompressed InputStream
+	 */
+	public InputStream getInputStream() {
+		return HttpClientBodyHandlers.decode(new ByteBuffersInputStream(getByteBuffers()), contentEncoding);
+	}
+
+	@Override
+	public synchronized void close() {
+		if (!closed) {
+			closed = true;
+			byteBuffers.forEach(byteBufferPool::release);
+		}
+	}
+
+	private static final class ByteBuffersInputStream extends InputStream {
+		private final List<ByteBuffer> byteBuffers;
+		private int index;
+
+		ByteBuffersInputStream(final List<ByteBuffer> byteBuffers) {
+			this.byteBuffers = byteBuffers;
+		}
+
+		private ByteBuffer current() {
+			while (index < byteBuffers.size() && !byteBuffers.get(index).hasRemaining()) {
+				index++;
+			}
+			return index < byteBuffers.size() ? byteBuffers.get(index) : null;
+		}
+
+		@Override
+		public int read() {
+			final var current = current();
+			return current == null ? -1 : current.get() & 0xFF;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) {
+			if (len == 0) {
+				return 0;
+			}
+			final var current = current();
+			if (current == null) {
+				return -1;
+			}
+			final var read = Math.min(len, current.remaining());
+			current.get(b, off, read);
+			return read;
+		}
+
+		@Override
+		public int available() {
+			final var current = current();
+			return current == null ? 0 : current.remaining();
+		}
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.httpclient;
+
+import java.io.IOException;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow.Subscription;
+
+/**
+ * BodySubscriber copying the received body into pooled ByteBuffers.
+ * Fails, and gives back its buffers, if the body exceeds maxBytes.
+ *
+ * @author npiedeloup
+ */
+final class HttpClientPooledBodySubscriber implements BodySubscriber<HttpClientPooledBody> {
+
+	private final HttpClientByteBufferPool byteBufferPool;
+	private final long maxBytes;
+	private final String contentEncoding;
+	private final CompletableFuture<HttpClientPooledBody> result = new CompletableFuture<>();
+	private final List<ByteBuffer> byteBuffers = new ArrayList<>();
+	private Subscription subscription;
+	private long size;
+
+	HttpClientPooledBodySubscriber(final HttpClientByteBufferPool byteBufferPool, final long maxBytes, final String contentEncoding) {
+		this.byteBufferPool = byteBufferPool;
+		this.maxBytes = maxBytes;
+		this.contentEncoding = contentEncoding;
+	}
+
+	@Override
+	public CompletionStage<HttpClientPooledBody> getBody() {
+		return result;
+	}
+
+	@Override
+	public void onSubscribe(final Subscription newSubscription) {
+		subscription = newSubscription;
+		subscription.request(1);
+	}
+
+	@Override
+	public void onNext(final List<ByteBuffer> items) {
+		if (result.isDone()) {
+			return; //already failed
+		}
+		for (final ByteBuffer item : items) {
+			size += item.remaining();
+			if (size > maxBytes) {
+				subscription.cancel();
+				fail(new IOException("Response body exceeds " + maxBytes + " bytes"));
+				return;
+			}
+			copy(item);
+		}
+		subscription.request(1);
+	}
+
+	private void copy(final ByteBuffer item) {
+		while (item.hasRemaining()) {
+			var byteBuffer = byteBuffers.isEmpty() ? null : byteBuffers.get(byteBuffers.size() - 1);
+			if (byteBuffer == null || !byteBuffer.hasRemaining()) {
+				byteBuffer = byteBufferPool.acquire();
+				byteBuffers.add(byteBuffer);
+			}
+			final var length = Math.min(byteBuffer.remaining(), item.remaining());
+			final var slice = item.slice();
+			slice.limit(length);
+			byteBuffer.put(slice);
+			item.position(item.position() + length);
+		}
+	}
+
+	@Override
+	public void onError(final Throwable throwable) {
+		fail(throwable);
+	}
+
+	@Override
+	public void onComplete() {
+		if (result.isDone()) {
+			return;
+		}
+		byteBuffers.forEach(ByteBuffer::flip);
+		result.complete(new HttpClientPooledBody(byteBufferPool, byteBuffers, size, contentEncoding));
+	}
+
+	private void fail(final Throwable throwable) {
+		if (result.completeExceptionally(throwable)) {
+			byteBuffers.forEach(byteBufferPool::release);
+			byteBuffers.clear();
+		}
+	}
+}
@@ -0,0 +1,233 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.httpclient;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.vertigo.core.lang.Assertion;
+
+/**
+ * Sends requests with retries and hedging.
+ * Only idempotent methods are retried or hedged :
+ * - retries use an exponential back-off with jitter, on IOException and on 502, 503 and 504 status codes;
+ * - a hedged request is sent when the first one is slower than the configured percentile of the latest latencies,
+ * the first response with a non retryable status wins and the other request is cancelled.
+ * Every discarded response (retried, losing hedged request) is released : its body is closed when it's closeable (InputStream,
+ * HttpClientPooledBody, ...), so the connection or HTTP/2 stream is given back.
+ * Cancelling the returned future cancels the current attempt.
+ *
+ * @author npiedeloup
+ */
+final class HttpClientRequestExecutor {
+
+	private static final Logger LOG = LogManager.getLogger(HttpClientRequestExecutor.class);
+
+	private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "OPTIONS", "PUT", "DELETE", "TRACE");
+	private static final Set<Integer> RETRYABLE_STATUS_CODES = Set.of(502, 503, 504);
+	private static final int LATENCY_SAMPLES = 256;
+	private static final int HEDGING_MIN_SAMPLES = 20; //don't hedge until we know enough about the backend latency
+	private static final int MAX_BACKOFF_SHIFT = 20;
+
+	private final int maxAttempts;
+	private final long initialBackoffMillis;
+	private final long maxBackoffMillis;
+	private final long hedgingMinDelayMillis;
+	private final Optional<HttpClientLatencyTracker> latencyTrackerOpt;
+
+	HttpClientRequestExecutor(
+			final int maxAttempts,
+			final long initialBackoffMillis,
+			final long maxBackoffMillis,
+			final Optional<Integer> hedgingPercentileOpt,
+			final long hedgingMinDelayMillis) {
+		Assertion.check()
+				.isTrue(maxAttempts > 0, "retryMaxAttempts ({0}) must be strictly positive", maxAttempts)
+				.isTrue(initialBackoffMillis >= 0, "retryInitialBackoffMillis must be positive")
+				.isTrue(maxBackoffMillis >= initialBackoffMillis, "retryMaxBackoffMillis must be greater than retryInitialBackoffMillis")
+				.isNotNull(hedgingPercentileOpt)
+				.isTrue(hedgingMinDelayMillis >= 0, "hedgingMinDelayMillis must be positive");
+		//---
+		this.maxAttempts = maxAttempts;
+		this.initialBackoffMillis = initialBackoffMillis;
+		this.maxBackoffMillis = maxBackoffMillis;
+		this.hedgingMinDelayMillis = hedgingMinDelayMillis;
+		latencyTrackerOpt = hedgingPercentileOpt.map(percentile -> new HttpClientLatencyTracker(LATENCY_SAMPLES, percentile));
+	}
+
+	<T> CompletableFuture<HttpResponse<T>> execute(final HttpRequest request, final Function<HttpRequest, CompletableFuture<HttpResponse<T>>> sender) {
+		final var idempotent = IDEMPOTENT_METHODS.contains(request.method());
+		final var result = new CompletableFuture<HttpResponse<T>>();
+		executeAttempt(request, sender, idempotent, 1, result);
+		return result;
+	}
+
+	private <T> void executeAttempt(
+			final HttpRequest request,
+			final Function<HttpRequest, CompletableFuture<HttpResponse<T>>> sender,
+			final boolean idempotent,
+			final int attempt,
+			final CompletableFuture<HttpResponse<T>> result) {
+		if (result.isDone()) {
+			return; //cancelled during the back-off
+		}
+		final var responseFuture = idempotent ? sendHedged(request, sender) : sendTimed(request, sender);
+		result.whenComplete((response, throwable) -> responseFuture.cancel(true)); //no effect once the attempt is done
+		responseFuture.whenComplete((response, throwable) -> {
+			if (!idempotent || attempt >= maxAttempts || !shouldRetry(response, throwable)) {
+				complete(result, response, throwable);
+				return;
+			}
+			if (response != null) {
+				discard(response);
+			}
+			CompletableFuture.delayedExecutor(computeBackoffMillis(attempt), TimeUnit.MILLISECONDS)
+					.execute(() -> executeAttempt(request, sender, idempotent, attempt + 1, result));
+		});
+	}
+
+	private <T> CompletableFuture<HttpResponse<T>> sendTimed(final HttpRequest request, final Function<HttpRequest, CompletableFuture<HttpResponse<T>>> sender) {
+		final var responseFuture = sender.apply(request);
+		latencyTrackerOpt.ifPresent(latencyTracker -> {
+			final var start = System.nanoTime();
+			responseFuture.thenRun(() -> latencyTracker.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+		});
+		return responseFuture;
+	}
+
+	private <T> CompletableFuture<HttpResponse<T>> sendHedged(final HttpRequest request, final Function<HttpRequest, CompletableFuture<HttpResponse<T>>> sender) {
+		final var hedgingDelayOpt = computeHedgingDelayMillis();
+		if (hedgingDelayOpt.isEmpty()) {
+			return sendTimed(request, sender);
+		}
+		final var result = new CompletableFuture<HttpResponse<T>>();
+		final var pendingCount = new AtomicInteger(1);
+		final var retryableResponseRef = new AtomicReference<HttpResponse<T>>(); //kept in case no request succeeds
+		// first non retryable response wins, otherwise the last retryable response or failure is returned once every sent request ended
+		final BiConsumer<HttpResponse<T>, Throwable> onComplete = (response, throwable) -> {
+			if (throwable == null && !RETRYABLE_STATUS_CODES.contains(response.statusCode())) {
+				complete(result, response, null);
+				return;
+			}
+			if (response != null) {
+				final var previousResponse = retryableResponseRef.getAndSet(response);
+				if (previousResponse != null) {
+					discard(previousResponse);
+				}
+				if (result.isDone()) {
+					discardRetryableResponse(result, retryableResponseRef);
+				}
+			}
+			if (pendingCount.decrementAndGet() == 0) {
+				final var retryableResponse = retryableResponseRef.getAndSet(null);
+				if (retryableResponse != null) {
+					complete(result, retryableResponse, null);
+				} else if (throwable != null) {
+					result.completeExceptionally(throwable);
+				}
+				//otherwise the result is already completed and the retryable response discarded
+			}
+		};
+		result.whenComplete((response, throwable) -> discardRetryableResponse(result, retryableResponseRef));
+		final var primary = sendTimed(request, sender);
+		primary.whenComplete(onComplete);
+		result.whenComplete((response, throwable) -> primary.cancel(true));
+
+		CompletableFuture.delayedExecutor(hedgingDelayOpt.get(), TimeUnit.MILLISECONDS).execute(() -> {
+			int pending;
+			do {
+				pending = pendingCount.get();
+				if (pending == 0 || result.isDone()) {
+					return;
+				}
+			} while (!pendingCount.compareAndSet(pending, pending + 1));
+			final var hedged = sendTimed(request, sender);
+			hedged.whenComplete(onComplete);
+			result.whenComplete((response, throwable) -> hedged.cancel(true));
+		});
+		return result;
+	}
+
+	private static <T> void discardRetryableResponse(final CompletableFuture<HttpResponse<T>> result, final AtomicReference<HttpResponse<T>> retryableResponseRef) {
+		final var retryableResponse = retryableResponseRef.getAndSet(null);
+		if (retryableResponse != null && (result.isCompletedExceptionally() || result.join() != retryableResponse)) {
+			discard(retryableResponse);
+		}
+	}
+
+	/**
+	 * Completes the result, or discards the response if the result is already completed (cancelled, or won by another request).
+	 */
+	private static <T> void complete(final CompletableFuture<HttpResponse<T>> result, final HttpResponse<T> response, final Throwable throwable) {
+		if (throwable != null) {
+			result.completeExceptionally(throwable);
+		} else if (!result.complete(response)) {
+			discard(response);
+		}
+	}
+
+	/**
+	 * Releases a response which won't be returned : a closeable body (InputStream, HttpClientPooledBody, Stream, ...) is closed,
+	 * so its connection or HTTP/2 stream is given back. Other bodies are already read.
+	 * @param response the discarded response
+	 */
+	static void discard(final HttpResponse<?> response) {
+		if (response.body() instanceof final AutoCloseable closeableBody) {
+			try {
+				closeableBody.close();
+			} catch (final Exception e) {
+				LOG.debug("Unable to close a discarded response body of {}", response.uri(), e);
+			}
+		}
+	}
+
+	private Optional<Long> computeHedgingDelayMillis() {
+		return latencyTrackerOpt
+				.filter(latencyTracker -> latencyTracker.getSampleCount() >= HEDGING_MIN_SAMPLES)
+				.map(latencyTracker -> Math.max(hedgingMinDelayMillis, latencyTracker.getPercentileMillis()));
+	}
+
+	private long computeBackoffMillis(final int attempt) {
+		// exponential back-off with equal jitter : half fixed, half random
+		final var backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, MAX_BACKOFF_SHIFT));
+		final var half = backoff / 2;
+		return half + ThreadLocalRandom.current().nextLong(backoff - half + 1);
+	}
+
+	private static boolean shouldRetry(final HttpResponse<?> response, final Throwable throwable) {
+		if (throwable != null) {
+			final var cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+			return cause instanceof IOException;
+		}
+		return RETRYABLE_STATUS_CODES.contains(response.statusCode());
+	}
+}
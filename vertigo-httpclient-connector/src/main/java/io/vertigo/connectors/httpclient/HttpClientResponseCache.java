@@ -0,0 +1,672 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.httpclient;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient.Version;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.vertigo.core.lang.Assertion;
+import io.vertigo.core.lang.WrappedException;
+
+/**
+ * Private HTTP cache of GET responses (RFC 9111 subset) for an HttpClientConnector.
+ * - freshness from Cache-Control max-age / s-maxage (minus Age) or Expires, no-store and private responses are never stored
+ * - stale responses with an ETag or a Last-Modified are revalidated with If-None-Match / If-Modified-Since, a 304 refreshes the entry;
+ * requests with Cache-Control no-cache always revalidate the stored response
+ * - non error responses to unsafe methods (POST, PUT, PATCH, DELETE, ...) invalidate the stored response of their URI, and of their
+ * Location and Content-Location on the same origin (RFC 9111 4.4)
+ * - concurrent identical GET are coalesced : only one request is sent, others wait for it and read the cached response
+ * - memory tier is a LRU bounded in bytes, evicted entries go to an optional disk tier, also a LRU bounded in bytes
+ * As the cache is shared by all users of the connector, responses with a Set-Cookie are never stored,
+ * and requests with an Authorization header are only stored if the response is explicitly shareable (public, s-maxage or must-revalidate).
+ * Bodies are stored as received (maybe compressed) and read again with the caller's BodyHandler.
+ *
+ * @author npiedeloup
+ */
+final class HttpClientResponseCache {
+
+	private static final Logger LOG = LogManager.getLogger(HttpClientResponseCache.class);
+	private static final String DISK_FILE_SUFFIX = ".httpcache";
+	private static final int MAX_ENTRY_RATIO = 8; //an entry can't use more than 1/8 of a tier
+	private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS", "TRACE");
+
+	private final long memoryMaxBytes;
+	private final Optional<Path> diskDirectoryOpt;
+	private final long diskMaxBytes;
+	private final Map<String, CacheEntry> memoryEntries = new LinkedHashMap<>(16, 0.75f, true); //access ordered : LRU
+	private final Map<String, Long> diskEntries = new LinkedHashMap<>(16, 0.75f, true); //key -> size, access ordered
+	private final Map<String, CompletableFuture<Optional<CacheEntry>>> inFlightRequests = new ConcurrentHashMap<>();
+	private long memoryBytes;
+	private long diskBytes;
+
+	/**
+	 * Constructor.
+	 * @param memoryMaxBytes max bytes of cached bodies in memory
+	 * @param diskDirectoryOpt directory of the disk tier (no disk tier by default)
+	 * @param diskMaxBytes max bytes of cached bodies on disk
+	 */
+	HttpClientResponseCache(final long memoryMaxBytes, final Optional<Path> diskDirectoryOpt, final long diskMaxBytes) {
+		Assertion.check()
+				.isTrue(memoryMaxBytes > 0, "cache memory size must be strictly positive")
+				.isNotNull(diskDirectoryOpt)
+				.when(diskDirectoryOpt.isPresent(), () -> Assertion.check().isTrue(diskMaxBytes > 0, "cache disk size must be strictly positive"));
+		//---
+		this.memoryMaxBytes = memoryMaxBytes;
+		this.diskDirectoryOpt = diskDirectoryOpt;
+		this.diskMaxBytes = diskMaxBytes;
+		diskDirectoryOpt.ifPresent(HttpClientResponseCache::prepareDiskDirectory);
+	}
+
+	/**
+	 * Sends a request through the cache.
+	 * @param <T> response body type
+	 * @param request the request
+	 * @param bodyHandler the caller's body handler
+	 * @param sender sends a request to the backend
+	 * @return the future response, from the cache or the backend
+	 */
+	<T> CompletableFuture<HttpResponse<T>> sendAsync(
+			final HttpRequest request,
+			final BodyHandler<T> bodyHandler,
+			final BiFunction<HttpRequest, BodyHandler<T>, CompletableFuture<HttpResponse<T>>> sender) {
+		if (!SAFE_METHODS.contains(request.method())) {
+			//invalidated as soon as the response is received, before its body : a following GET can't read the previous entry
+			return sender.apply(request, responseInfo -> {
+				if (responseInfo.statusCode() < 400) {
+					invalidate(request, responseInfo.headers());
+				}
+				return bodyHandler.apply(responseInfo);
+			});
+		}
+		if (!isCacheableRequest(request)) {
+			return sender.apply(request, bodyHandler);
+		}
+		final var key = request.uri().toString();
+		final var cachedEntryOpt = get(key).filter(entry -> entry.matchesVary(request));
+		final var revalidationRequired = parseCacheControl(request.headers()).containsKey("no-cache");
+		if (cachedEntryOpt.isPresent() && !revalidationRequired && cachedEntryOpt.get().isFresh(System.currentTimeMillis())) {
+			return replay(request, cachedEntryOpt.get(), bodyHandler);
+		}
+		//miss, stale or revalidation required : only one request per key, others wait for its result
+		final var leaderFuture = new CompletableFuture<Optional<CacheEntry>>();
+		final var inFlightFuture = inFlightRequests.putIfAbsent(key, leaderFuture);
+		if (inFlightFuture != null) {
+			return inFlightFuture.thenCompose(sharedEntryOpt -> sharedEntryOpt
+					.filter(entry -> entry.matchesVary(request))
+					.map(entry -> replay(request, entry, bodyHandler))
+					.orElseGet(() -> sender.apply(request, bodyHandler)));
+		}
+		final var storedEntryRef = new AtomicReference<CacheEntry>();
+		final CompletableFuture<HttpResponse<T>> responseFuture;
+		try {
+			responseFuture = fetch(request, key, cachedEntryOpt, bodyHandler, sender, storedEntryRef);
+		} catch (final RuntimeException e) {
+			inFlightRequests.remove(key, leaderFuture);
+			leaderFuture.complete(Optional.empty());
+			throw e;
+		}
+		responseFuture.whenComplete((response, throwable) -> {
+			inFlightRequests.remove(key, leaderFuture);
+			//with a streaming body handler, the body may not be read yet : waiting requests are sent
+			leaderFuture.complete(Optional.ofNullable(storedEntryRef.get()));
+		});
+		return responseFuture;
+	}
+
+	private <T> CompletableFuture<HttpResponse<T>> fetch(
+			final HttpRequest request,
+			final String key,
+			final Optional<CacheEntry> staleEntryOpt,
+			final BodyHandler<T> bodyHandler,
+			final BiFunction<HttpRequest, BodyHandler<T>, CompletableFuture<HttpResponse<T>>> sender,
+			final AtomicReference<CacheEntry> storedEntryRef) {
+		final var revalidatedEntryOpt = staleEntryOpt.filter(CacheEntry::hasValidator);
+		final HttpRequest backendRequest;
+		if (revalidatedEntryOpt.isPresent()) {
+			final var conditionalRequestBuilder = HttpRequest.newBuilder(request, (name, value) -> true);
+			revalidatedEntryOpt.get().firstHeader("ETag").ifPresent(etag -> conditionalRequestBuilder.setHeader("If-None-Match", etag));
+			revalidatedEntryOpt.get().firstHeader("Last-Modified").ifPresent(lastModified -> conditionalRequestBuilder.setHeader("If-Modified-Since", lastModified));
+			backendRequest = conditionalRequestBuilder.build();
+		} else {
+			backendRequest = request;
+		}
+
+		final BodyHandler<T> cachingBodyHandler = responseInfo -> {
+			final var now = System.currentTimeMillis();
+			if (responseInfo.statusCode() == 304 && revalidatedEntryOpt.isPresent()) {
+				final var refreshedEntry = revalidatedEntryOpt.get().refresh(request, responseInfo.headers(), now);
+				storedEntryRef.set(refreshedEntry);
+				if (refreshedEntry.isFresh(now) || refreshedEntry.hasValidator()) {
+					put(key, refreshedEntry);
+				} else {
+					remove(key);
+				}
+				return BodySubscribers.<T> replacing(null); //body is read from the cache
+			}
+			final var bodySubscriber = bodyHandler.apply(responseInfo);
+			final var freshUntilOpt = computeFreshUntil(request, responseInfo.statusCode(), responseInfo.headers(), now);
+			if (freshUntilOpt.isEmpty()) {
+				return bodySubscriber;
+			}
+			final var maxEntryBytes = Math.max(memoryMaxBytes, diskDirectoryOpt.isPresent() ? diskMaxBytes : 0) / MAX_ENTRY_RATIO;
+			if (responseInfo.headers().firstValueAsLong("Content-Length").orElse(0) > maxEntryBytes) {
+				return bodySubscriber;
+			}
+			return new CachingBodySubscriber<>(bodySubscriber, maxEntryBytes, body -> {
+				final var entry = new CacheEntry(
+						responseInfo.statusCode(),
+						copyHeaders(responseInfo.headers().map()),
+						body,
+						freshUntilOpt.get(),
+						varyValues(request, responseInfo.headers()),
+						responseInfo.version().name());
+				storedEntryRef.set(entry);
+				put(key, entry);
+			});
+		};
+
+		return sender.apply(backendRequest, cachingBodyHandler)
+				.thenCompose(response -> {
+					if (response.statusCode() == 304 && revalidatedEntryOpt.isPresent()) {
+						return replay(request, storedEntryRef.get(), bodyHandler);
+					}
+					return CompletableFuture.completedFuture(response);
+				});
+	}
+
+	private static boolean isCacheableRequest(final HttpRequest request) {
+		if (!"GET".equals(request.method())) {
+			return false;
+		}
+		return !parseCacheControl(request.headers()).containsKey("no-store");
+	}
+
+	private void invalidate(final HttpRequest request, final HttpHeaders responseHeaders) {
+		remove(request.uri().toString());
+		for (final String headerName : List.of("Location", "Content-Location")) {
+			responseHeaders.firstValue(headerName)
+					.flatMap(location -> resolveSameOrigin(request.uri(), location))
+					.ifPresent(uri -> remove(uri.toString()));
+		}
+	}
+
+	private static Optional<URI> resolveSameOrigin(final URI requestUri, final String location) {
+		try {
+			final var uri = requestUri.resolve(location.trim());
+			return Objects.equals(uri.getScheme(), requestUri.getScheme()) && Objects.equals(uri.getRawAuthority(), requestUri.getRawAuthority())
+					? Optional.of(uri)
+					: Optional.empty(); //another origin's entries can't be invalidated by this response
+		} catch (final IllegalArgumentException e) {
+			return Optional.empty();
+		}
+	}
+
+	private static Optional<Long> computeFreshUntil(final HttpRequest request, final int statusCode, final HttpHeaders headers, final long now) {
+		if (statusCode != 200) {
+			return Optional.empty();
+		}
+		final var cacheControl = parseCacheControl(headers);
+		if (cacheControl.containsKey("no-store") || cacheControl.containsKey("private")
+				|| headers.firstValue("Set-Cookie").isPresent() //user specific
+				|| "*".equals(headers.firstValue("Vary").orElse("").trim())) {
+			return Optional.empty();
+		}
+		if (request.headers().firstValue("Authorization").isPresent()
+				&& !cacheControl.containsKey("public") && !cacheControl.containsKey("s-maxage") && !cacheControl.containsKey("must-revalidate")) {
+			return Optional.empty();
+		}
+		final var hasValidator = headers.firstValue("ETag").isPresent() || headers.firstValue("Last-Modified").isPresent();
+		if (cacheControl.containsKey("no-cache")) {
+			return hasValidator ? Optional.of(now) : Optional.empty(); //stored, but always revalidated
+		}
+		final var maxAgeOpt = parseSeconds(cacheControl.get("s-maxage")).or(() -> parseSeconds(cacheControl.get("max-age")));
+		if (maxAgeOpt.isPresent()) {
+			final var ageSeconds = parseSeconds(headers.firstValue("Age").orElse(null)).orElse(0L);
+			return Optional.of(now + Math.max(0, maxAgeOpt.get() - ageSeconds) * 1000);
+		}
+		final var expiresOpt = headers.firstValue("Expires");
+		if (expiresOpt.isPresent()) {
+			final var dateMillis = parseHttpDate(headers.firstValue("Date").orElse(null)).orElse(now);
+			final var expiresMillis = parseHttpDate(expiresOpt.get()).orElse(dateMillis); //invalid Expires means already expired
+			return Optional.of(now + Math.max(0, expiresMillis - dateMillis));
+		}
+		return hasValidator ? Optional.of(now) : Optional.empty();
+	}
+
+	private static Map<String, String> parseCacheControl(final HttpHeaders headers) {
+		final Map<String, String> directives = new HashMap<>();
+		for (final String value : headers.allValues("Cache-Control")) {
+			for (final String directive : value.split(",")) {
+				final var equalsIndex = directive.indexOf('=');
+				final var name = (equalsIndex < 0 ? directive : directive.substring(0, equalsIndex)).trim().toLowerCase(Locale.ROOT);
+				final var argument = equalsIndex < 0 ? "" : directive.substring(equalsIndex + 1).trim().replace("\"", "");
+				if (!name.isEmpty()) {
+					directives.putIfAbsent(name, argument);
+				}
+			}
+		}
+		return directives;
+	}
+
+	private static Optional<Long> parseSeconds(final String value) {
+		if (value == null || value.isEmpty()) {
+			return Optional.empty();
+		}
+		try {
+			return Optional.of(Math.max(0, Long.parseLong(value.trim())));
+		} catch (final NumberFormatException e) {
+			return Optional.empty();
+		}
+	}
+
+	private static Optional<Long> parseHttpDate(final String value) {
+		if (value == null) {
+			return Optional.empty();
+		}
+		try {
+			return Optional.of(ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli());
+		} catch (final DateTimeParseException e) {
+			return Optional.empty();
+		}
+	}
+
+	private static Map<String, String> varyValues(final HttpRequest request, final HttpHeaders responseHeaders) {
+		final Map<String, String> varyValues = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		for (final String vary : responseHeaders.allValues("Vary")) {
+			for (final String headerName : vary.split(",")) {
+				if (!headerName.isBlank()) {
+					varyValues.put(headerName.trim(), String.join(",", request.headers().allValues(headerName.trim())));
+				}
+			}
+		}
+		return varyValues;
+	}
+
+	private static Map<String, List<String>> copyHeaders(final Map<String, List<String>> headers) {
+		final Map<String, List<String>> copy = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		headers.forEach((name, values) -> copy.put(name, List.copyOf(values)));
+		return copy;
+	}
+
+	private static <T> CompletableFuture<HttpResponse<T>> replay(final HttpRequest request, final CacheEntry entry, final BodyHandler<T> bodyHandler) {
+		final var headers = entry.toHttpHeaders();
+		final var version = Version.valueOf(entry.version());
+		final var bodySubscriber = bodyHandler.apply(new ResponseInfo() {
+			@Override
+			public int statusCode() {
+				return entry.statusCode();
+			}
+
+			@Override
+			public HttpHeaders headers() {
+				return headers;
+			}
+
+			@Override
+			public Version version() {
+				return version;
+			}
+		});
+		bodySubscriber.onSubscribe(new Subscription() {
+			private boolean done;
+
+			@Override
+			public synchronized void request(final long n) {
+				if (done || n <= 0) {
+					return;
+				}
+				done = true;
+				if (entry.body().length > 0) {
+					bodySubscriber.onNext(List.of(ByteBuffer.wrap(entry.body()).asReadOnlyBuffer()));
+				}
+				bodySubscriber.onComplete();
+			}
+
+			@Override
+			public synchronized void cancel() {
+				done = true;
+			}
+		});
+		return bodySubscriber.getBody().toCompletableFuture()
+				.thenApply(body -> new HttpClientCachedResponse<>(request, entry.statusCode(), headers, version, body));
+	}
+
+	private Optional<CacheEntry> get(final String key) {
+		synchronized (this) {
+			final var memoryEntry = memoryEntries.get(key);
+			if (memoryEntry != null || diskDirectoryOpt.isEmpty() || !diskEntries.containsKey(key)) {
+				return Optional.ofNullable(memoryEntry);
+			}
+		}
+		//disk I/O outside of the lock
+		final var diskEntryOpt = readFromDisk(key);
+		diskEntryOpt.ifPresentOrElse(
+				diskEntry -> put(key, diskEntry), //promoted to the memory tier
+				() -> removeFromDisk(key));
+		return diskEntryOpt;
+	}
+
+	private void put(final String key, final CacheEntry entry) {
+		final List<Map.Entry<String, CacheEntry>> evictedEntries = new ArrayList<>();
+		synchronized (this) {
+			final var previousEntry = memoryEntries.remove(key);
+			if (previousEntry != null) {
+				memoryBytes -= previousEntry.body().length;
+			}
+			if (entry.body().length > memoryMaxBytes / MAX_ENTRY_RATIO) {
+				evictedEntries.add(Map.entry(key, entry)); //too big for memory, goes directly to disk
+			} else {
+				memoryEntries.put(key, entry);
+				memoryBytes += entry.body().length;
+				final var iterator = memoryEntries.entrySet().iterator();
+				while (memoryBytes > memoryMaxBytes && iterator.hasNext()) {
+					final var eldest = iterator.next();
+					iterator.remove();
+					memoryBytes -= eldest.getValue().body().length;
+					evictedEntries.add(eldest);
+				}
+			}
+		}
+		if (diskDirectoryOpt.isPresent()) {
+			evictedEntries.forEach(evicted -> writeToDisk(evicted.getKey(), evicted.getValue()));
+		}
+	}
+
+	private void remove(final String key) {
+		synchronized (this) {
+			final var previousEntry = memoryEntries.remove(key);
+			if (previousEntry != null) {
+				memoryBytes -= previousEntry.body().length;
+			}
+		}
+		if (diskDirectoryOpt.isPresent()) {
+			removeFromDisk(key);
+		}
+	}
+
+	private void writeToDisk(final String key, final CacheEntry entry) {
+		if (entry.body().length > diskMaxBytes / MAX_ENTRY_RATIO || !(entry.isFresh(System.currentTimeMillis()) || entry.hasValidator())) {
+			return;
+		}
+		final var file = diskFile(key);
+		try {
+			final var tempFile = Files.createTempFile(diskDirectoryOpt.get(), "tmp", DISK_FILE_SUFFIX);
+			try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+				entry.writeTo(key, output);
+			}
+			Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (final IOException e) {
+			LOG.warn("Can't write http cache entry of {} to disk", key, e);
+			return;
+		}
+		final List<String> evictedKeys = new ArrayList<>();
+		synchronized (this) {
+			final var previousSize = diskEntries.put(key, (long) entry.body().length);
+			diskBytes += entry.body().length - (previousSize != null ? previousSize : 0);
+			final var iterator = diskEntries.entrySet().iterator();
+			while (diskBytes > diskMaxBytes && iterator.hasNext()) {
+				final var eldest = iterator.next();
+				iterator.remove();
+				diskBytes -= eldest.getValue();
+				evictedKeys.add(eldest.getKey());
+			}
+		}
+		evictedKeys.forEach(evictedKey -> deleteQuietly(diskFile(evictedKey)));
+	}
+
+	private Optional<CacheEntry> readFromDisk(final String key) {
+		try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(diskFile(key))))) {
+			return CacheEntry.readFrom(key, input);
+		} catch (final IOException e) {
+			LOG.debug("Can't read http cache entry of {} from disk", key, e);
+			return Optional.empty();
+		}
+	}
+
+	private void removeFromDisk(final String key) {
+		synchronized (this) {
+			final var previousSize = diskEntries.remove(key);
+			if (previousSize == null) {
+				return;
+			}
+			diskBytes -= previousSize;
+		}
+		deleteQuietly(diskFile(key));
+	}
+
+	private Path diskFile(final String key) {
+		try {
+			final var digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+			return diskDirectoryOpt.get().resolve(HexFormat.of().formatHex(digest) + DISK_FILE_SUFFIX);
+		} catch (final NoSuchAlgorithmException e) {
+			throw WrappedException.wrap(e);
+		}
+	}
+
+	private static void prepareDiskDirectory(final Path diskDirectory) {
+		try {
+			Files.createDirectories(diskDirectory);
+			//the disk index is in memory : files of a previous run are orphans
+			try (var files = Files.list(diskDirectory)) {
+				files.filter(file -> file.getFileName().toString().endsWith(DISK_FILE_SUFFIX))
+						.forEach(HttpClientResponseCache::deleteQuietly);
+			}
+		} catch (final IOException e) {
+			throw WrappedException.wrap(e);
+		}
+	}
+
+	private static void deleteQuietly(final Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (final IOException e) {
+			LOG.debug("Can't delete http cache file {}", file, e);
+		}
+	}
+
+	private record CacheEntry(
+			int statusCode,
+			Map<String, List<String>> headers,
+			byte[] body,
+			long freshUntilMillis,
+			Map<String, String> varyValues,
+			String version) {
+
+		boolean isFresh(final long now) {
+			return now < freshUntilMillis;
+		}
+
+		boolean hasValidator() {
+			return firstHeader("ETag").isPresent() || firstHeader("Last-Modified").isPresent();
+		}
+
+		Optional<String> firstHeader(final String name) {
+			final var values = headers.get(name);
+			return values == null || values.isEmpty() ? Optional.empty() : Optional.of(values.get(0));
+		}
+
+		boolean matchesVary(final HttpRequest request) {
+			return varyValues.entrySet().stream()
+					.allMatch(vary -> vary.getValue().equals(String.join(",", request.headers().allValues(vary.getKey()))));
+		}
+
+		HttpHeaders toHttpHeaders() {
+			return HttpHeaders.of(headers, (name, value) -> true);
+		}
+
+		/** Stored headers updated with the 304 ones (RFC 9111 4.3.4), and new freshness. */
+		CacheEntry refresh(final HttpRequest request, final HttpHeaders notModifiedHeaders, final long now) {
+			final var mergedHeaders = copyHeaders(headers);
+			notModifiedHeaders.map().forEach((name, values) -> {
+				if (!"Content-Length".equalsIgnoreCase(name)) {
+					mergedHeaders.put(name, List.copyOf(values));
+				}
+			});
+			final var mergedHttpHeaders = HttpHeaders.of(mergedHeaders, (name, value) -> true);
+			final var newFreshUntil = computeFreshUntil(request, statusCode, mergedHttpHeaders, now).orElse(0L);
+			return new CacheEntry(statusCode, mergedHeaders, body, newFreshUntil, varyValues, version);
+		}
+
+		void writeTo(final String key, final DataOutputStream output) throws IOException {
+			output.writeUTF(key);
+			output.writeInt(statusCode);
+			output.writeUTF(version);
+			output.writeLong(freshUntilMillis);
+			writeMap(output, headers.entrySet().stream()
+					.flatMap(header -> header.getValue().stream().map(value -> Map.entry(header.getKey(), value)))
+					.toList());
+			writeMap(output, List.copyOf(varyValues.entrySet()));
+			output.writeInt(body.length);
+			output.write(body);
+		}
+
+		static Optional<CacheEntry> readFrom(final String key, final DataInputStream input) throws IOException {
+			if (!key.equals(input.readUTF())) {
+				return Optional.empty(); //hash collision
+			}
+			final var statusCode = input.readInt();
+			final var version = input.readUTF();
+			final var freshUntilMillis = input.readLong();
+			final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+			readMap(input).forEach(header -> headers.computeIfAbsent(header.getKey(), name -> new ArrayList<>()).add(header.getValue()));
+			final Map<String, String> varyValues = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+			readMap(input).forEach(vary -> varyValues.put(vary.getKey(), vary.getValue()));
+			final var body = new byte[input.readInt()];
+			input.readFully(body);
+			return Optional.of(new CacheEntry(statusCode, headers, body, freshUntilMillis, varyValues, version));
+		}
+
+		private static void writeMap(final DataOutputStream output, final List<Map.Entry<String, String>> entries) throws IOException {
+			output.writeInt(entries.size());
+			for (final Map.Entry<String, String> entry : entries) {
+				output.writeUTF(entry.getKey());
+				output.writeUTF(entry.getValue());
+			}
+		}
+
+		private static List<Map.Entry<String, String>> readMap(final DataInputStream input) throws IOException {
+			final var size = input.readInt();
+			final List<Map.Entry<String, String>> entries = new ArrayList<>(size);
+			for (var i = 0; i < size; i++) {
+				entries.add(Map.entry(input.readUTF(), input.readUTF()));
+			}
+			return entries;
+		}
+	}
+
+	/**
+	 * Forwards the body to the caller's subscriber, and keeps a copy to be stored if it's not too big.
+	 */
+	private static final class CachingBodySubscriber<T> implements BodySubscriber<T> {
+		private final BodySubscriber<T> delegate;
+		private final long maxEntryBytes;
+		private final Consumer<byte[]> onBodyComplete;
+		private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+		CachingBodySubscriber(final BodySubscriber<T> delegate, final long maxEntryBytes, final Consumer<byte[]> onBodyComplete) {
+			this.delegate = delegate;
+			this.maxEntryBytes = maxEntryBytes;
+			this.onBodyComplete = onBodyComplete;
+		}
+
+		@Override
+		public CompletionStage<T> getBody() {
+			return delegate.getBody();
+		}
+
+		@Override
+		public void onSubscribe(final Subscription subscription) {
+			delegate.onSubscribe(subscription);
+		}
+
+		@Override
+		public void onNext(final List<ByteBuffer> items) {
+			if (copy != null) {
+				for (final ByteBuffer item : items) {
+					if (copy.size() + item.remaining() > maxEntryBytes) {
+						copy = null; //too big : not cached
+						break;
+					}
+					final var bytes = new byte[item.remaining()];
+					item.duplicate().get(bytes);
+					copy.writeBytes(bytes);
+				}
+			}
+			delegate.onNext(items);
+		}
+
+		@Override
+		public void onError(final Throwable throwable) {
+			copy = null;
+			delegate.onError(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			if (copy != null) {
+				onBodyComplete.accept(copy.toByteArray());
+				copy = null;
+			}
+			delegate.onComplete();
+		}
+	}
+}
@@ -0,0 +1,279 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.httpclient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient.Version;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow.Subscription;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class HttpClientBodyHandlersTest {
+
+	private static final String TEXT = "Vertigo streaming body, long enough to span several pooled buffers.";
+
+	@TempDir
+	public Path directory;
+
+	@Test
+	public void testDecodedInputStream() throws Exception {
+		try (var inputStream = receive(HttpClientBodyHandlers.ofDecodedInputStream(), Map.of("Content-Encoding", "GZIP "), gzip(TEXT)).get()) {
+			Assertions.assertEquals(TEXT, new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+		}
+	}
+
+	@Test
+	public void testReaderCharset() throws Exception {
+		final var text = "Cédric à l'été";
+		final var parsed = receive(HttpClientBodyHandlers.ofReader(reader -> {
+			final var writer = new StringWriter();
+			try {
+				reader.transferTo(writer);
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return writer.toString();
+		}), Map.of("Content-Encoding", "deflate", "Content-Type", "text/plain; charset=ISO-8859-1"), deflate(text.getBytes(StandardCharsets.ISO_8859_1))).get();
+		Assertions.assertEquals(text, parsed.get());
+	}
+
+	@Test
+	public void testFileIdentity() throws Exception {
+		final var file = directory.resolve("body.txt");
+		Assertions.assertEquals(file, receive(HttpClientBodyHandlers.ofFile(file), Map.of(), TEXT.getBytes(StandardCharsets.UTF_8)).get());
+		Assertions.assertEquals(TEXT, Files.readString(file));
+	}
+
+	@Test
+	public void testFileGzip() throws Exception {
+		final var file = directory.resolve("body.txt");
+		Assertions.assertEquals(file, receive(HttpClientBodyHandlers.ofFile(file, Runnable::run), Map.of("Content-Encoding", "gzip"), gzip(TEXT)).get());
+		Assertions.assertEquals(TEXT, Files.readString(file));
+		Assertions.assertEquals(List.of(file), listDirectory()); // downloaded file deleted
+	}
+
+	@Test
+	public void testFileCorruptGzip() throws Exception {
+		final var file = directory.resolve("body.txt");
+		final var body = receive(HttpClientBodyHandlers.ofFile(file, Runnable::run), Map.of("Content-Encoding", "gzip"), TEXT.getBytes(StandardCharsets.UTF_8));
+		assertFailed(body, IOException.class);
+		Assertions.assertEquals(List.of(), listDirectory());
+	}
+
+	@Test
+	public void testFileDownloadError() throws Exception {
+		final var file = directory.resolve("body.txt");
+		final var subscriber = HttpClientBodyHandlers.ofFile(file, Runnable::run).apply(responseInfo(Map.of("Content-Encoding", "gzip")));
+		final var subscription = new ChunkSubscription(subscriber, List.of());
+		subscriber.onSubscribe(subscription);
+		subscriber.onError(new IOException("connection reset"));
+		assertFailed(subscriber.getBody().toCompletableFuture(), IOException.class);
+		Assertions.assertEquals(List.of(), listDirectory());
+	}
+
+	@Test
+	public void testUnsupportedEncoding() throws Exception {
+		final var file = directory.resolve("body.txt");
+		final List<BodyHandler<?>> bodyHandlers = List.of(
+				HttpClientBodyHandlers.ofDecodedInputStream(),
+				HttpClientBodyHandlers.ofReader(reader -> "parsed"),
+				HttpClientBodyHandlers.ofFile(file),
+				HttpClientBodyHandlers.ofPooledBuffers(new HttpClientByteBufferPool(16, 4), 1024));
+		for (final String contentEncoding : List.of("br", "gzip, br", "../../x")) {
+			for (final BodyHandler<?> bodyHandler : bodyHandlers) {
+				final var subscriber = bodyHandler.apply(responseInfo(Map.of("Content-Encoding", contentEncoding)));
+				final var subscription = new ChunkSubscription(subscriber, chunks(TEXT.getBytes(StandardCharsets.UTF_8), 8));
+				subscriber.onSubscribe(subscription);
+				Assertions.assertTrue(subscription.cancelled);
+				Assertions.assertEquals(0, subscription.delivered); // body not read
+				assertFailed(subscriber.getBody().toCompletableFuture(), IOException.class);
+			}
+		}
+		Assertions.assertEquals(List.of(), listDirectory());
+	}
+
+	@Test
+	public void testPooledBuffers() throws Exception {
+		final var byteBufferPool = new HttpClientByteBufferPool(16, 100);
+		final var gzipped = gzip(TEXT);
+		try (var pooledBody = receive(HttpClientBodyHandlers.ofPooledBuffers(byteBufferPool, 1024), Map.of("Content-Encoding", "gzip"), gzipped).get()) {
+			Assertions.assertEquals(gzipped.length, pooledBody.getSize());
+			Assertions.assertEquals((gzipped.length + 15) / 16, pooledBody.getByteBuffers().size());
+			try (var inputStream = pooledBody.getInputStream()) {
+				Assertions.assertEquals(TEXT, new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+			}
+			Assertions.assertEquals(0, byteBufferPool.getPooledCount());
+		}
+		final var pooledCount = byteBufferPool.getPooledCount();
+		Assertions.assertEquals((gzipped.length + 15) / 16, pooledCount);
+
+		// buffers are reused
+		try (var pooledBody = receive(HttpClientBodyHandlers.ofPooledBuffers(byteBufferPool, 1024), Map.of(), TEXT.getBytes(StandardCharsets.UTF_8)).get()) {
+			try (var inputStream = pooledBody.getInputStream()) {
+				Assertions.assertEquals(TEXT, new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+			}
+		}
+		Assertions.assertEquals(pooledCount, byteBufferPool.getPooledCount());
+	}
+
+	@Test
+	public void testPooledBuffersMaxBytes() {
+		final var byteBufferPool = new HttpClientByteBufferPool(16, 100);
+		final var subscriber = HttpClientBodyHandlers.ofPooledBuffers(byteBufferPool, 20).apply(responseInfo(Map.of()));
+		final var subscription = new ChunkSubscription(subscriber, chunks(TEXT.getBytes(StandardCharsets.UTF_8), 8));
+		subscriber.onSubscribe(subscription);
+		Assertions.assertTrue(subscription.cancelled);
+		Assertions.assertEquals(3, subscription.delivered);
+		assertFailed(subscriber.getBody().toCompletableFuture(), IOException.class);
+		Assertions.assertEquals(1, byteBufferPool.getPooledCount()); // buffer of the first 16 bytes given back
+	}
+
+	private List<Path> listDirectory() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.toList();
+		}
+	}
+
+	private static void assertFailed(final CompletableFuture<?> body, final Class<? extends Throwable> causeClass) {
+		final var executionException = Assertions.assertThrows(ExecutionException.class, body::get);
+		var cause = executionException.getCause();
+		while (!causeClass.isInstance(cause) && cause.getCause() != null) {
+			cause = cause.getCause();
+		}
+		Assertions.assertInstanceOf(causeClass, cause);
+	}
+
+	private static <T> CompletableFuture<T> receive(final BodyHandler<T> bodyHandler, final Map<String, String> headers, final byte[] body) {
+		final var subscriber = bodyHandler.apply(responseInfo(headers));
+		subscriber.onSubscribe(new ChunkSubscription(subscriber, chunks(body, 7)));
+		return subscriber.getBody().toCompletableFuture();
+	}
+
+	private static ResponseInfo responseInfo(final Map<String, String> headers) {
+		final var httpHeaders = HttpHeaders.of(headers.entrySet().stream()
+				.collect(Collectors.toMap(Map.Entry::getKey, entry -> List.of(entry.getValue()))), (name, value) -> true);
+		return new ResponseInfo() {
+			@Override
+			public int statusCode() {
+				return 200;
+			}
+
+			@Override
+			public HttpHeaders headers() {
+				return httpHeaders;
+			}
+
+			@Override
+			public Version version() {
+				return Version.HTTP_1_1;
+			}
+		};
+	}
+
+	private static List<ByteBuffer> chunks(final byte[] body, final int chunkSize) {
+		final List<ByteBuffer> chunks = new ArrayList<>();
+		for (var offset = 0; offset < body.length; offset += chunkSize) {
+			chunks.add(ByteBuffer.wrap(Arrays.copyOfRange(body, offset, Math.min(body.length, offset + chunkSize))));
+		}
+		return chunks;
+	}
+
+	private static byte[] gzip(final String text) throws IOException {
+		final var bytes = new ByteArrayOutputStream();
+		try (var gzipOutputStream = new GZIPOutputStream(bytes)) {
+			gzipOutputStream.write(text.getBytes(StandardCharsets.UTF_8));
+		}
+		return bytes.toByteArray();
+	}
+
+	private static byte[] deflate(final byte[] data) throws IOException {
+		final var bytes = new ByteArrayOutputStream();
+		try (var deflaterOutputStream = new DeflaterOutputStream(bytes)) {
+			deflaterOutputStream.write(data);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Publishes chunks on demand, as the HttpClient does : one chunk per requested item, then completes.
+	 */
+	private static final class ChunkSubscription implements Subscription {
+		private final BodySubscriber<?> subscriber;
+		private final List<ByteBuffer> chunks;
+		private long demand;
+		private boolean publishing;
+		boolean cancelled;
+		int delivered;
+		private boolean completed;
+
+		ChunkSubscription(final BodySubscriber<?> subscriber, final List<ByteBuffer> chunks) {
+			this.subscriber = subscriber;
+			this.chunks = chunks;
+		}
+
+		@Override
+		public synchronized void request(final long n) {
+			demand += n;
+			if (publishing) {
+				return; // the publishing loop handles the new demand
+			}
+			publishing = true;
+			try {
+				while (demand > 0 && !cancelled && !completed) {
+					if (delivered < chunks.size()) {
+						demand--;
+						subscriber.onNext(List.of(chunks.get(delivered++)));
+					} else {
+						completed = true;
+						subscriber.onComplete();
+					}
+				}
+			} finally {
+				publishing = false;
+			}
+		}
+
+		@Override
+		public synchronized void cancel() {
+			cancelled = true;
+		}
+	}
+}
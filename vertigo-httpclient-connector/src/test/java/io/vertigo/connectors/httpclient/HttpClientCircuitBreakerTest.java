@@ -0,0 +1,166 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.httpclient;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.vertigo.connectors.httpclient.HttpClientCircuitBreaker.State;
+
+public class HttpClientCircuitBreakerTest {
+
+	private final AtomicLong nanoClock = new AtomicLong();
+	private final List<State> transitions = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Window of 10 calls, opens at 50% of failures or of calls over 1s, open for 30s, 2 probes.
+	 */
+	private HttpClientCircuitBreaker createCircuitBreaker() {
+		return new HttpClientCircuitBreaker(10, 50, 50, 1000, 30, 2, transitions::add, nanoClock::get);
+	}
+
+	@Test
+	public void testOpensOnFailureRate() {
+		final var circuitBreaker = createCircuitBreaker();
+		for (var i = 0; i < 5; i++) {
+			call(circuitBreaker, true, 10);
+		}
+		Assertions.assertEquals(State.CLOSED, circuitBreaker.getState()); // window not full yet
+		for (var i = 0; i < 4; i++) {
+			call(circuitBreaker, false, 10);
+		}
+		Assertions.assertEquals(State.CLOSED, circuitBreaker.getState());
+		call(circuitBreaker, false, 10); // 5 failures out of 10
+		Assertions.assertEquals(State.OPEN, circuitBreaker.getState());
+		Assertions.assertEquals(List.of(State.OPEN), transitions);
+		Assertions.assertFalse(circuitBreaker.tryAcquirePermission());
+	}
+
+	@Test
+	public void testSlidingWindow() {
+		final var circuitBreaker = createCircuitBreaker();
+		for (var i = 0; i < 4; i++) {
+			call(circuitBreaker, true, 10);
+		}
+		for (var i = 0; i < 20; i++) {
+			call(circuitBreaker, false, 10);
+		}
+		// old failures left the window
+		for (var i = 0; i < 4; i++) {
+			call(circuitBreaker, true, 10);
+		}
+		Assertions.assertEquals(State.CLOSED, circuitBreaker.getState());
+		call(circuitBreaker, true, 10);
+		Assertions.assertEquals(State.OPEN, circuitBreaker.getState());
+	}
+
+	@Test
+	public void testOpensOnSlowCallRate() {
+		final var circuitBreaker = createCircuitBreaker();
+		for (var i = 0; i < 5; i++) {
+			call(circuitBreaker, false, 10);
+		}
+		for (var i = 0; i < 5; i++) {
+			call(circuitBreaker, false, 1000);
+		}
+		Assertions.assertEquals(State.OPEN, circuitBreaker.getState());
+	}
+
+	@Test
+	public void testHalfOpenProbeLimit() {
+		final var circuitBreaker = openCircuitBreaker();
+		nanoClock.addAndGet(TimeUnit.SECONDS.toNanos(29));
+		Assertions.assertFalse(circuitBreaker.tryAcquirePermission());
+		nanoClock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+		Assertions.assertTrue(circuitBreaker.tryAcquirePermission());
+		Assertions.assertEquals(State.HALF_OPEN, circuitBreaker.getState());
+		Assertions.assertTrue(circuitBreaker.tryAcquirePermission());
+		Assertions.assertFalse(circuitBreaker.tryAcquirePermission()); // 2 probes only
+
+		circuitBreaker.releasePermission(); // probe not sent (cancelled, rejected by the bulkhead)
+		Assertions.assertTrue(circuitBreaker.tryAcquirePermission());
+		Assertions.assertFalse(circuitBreaker.tryAcquirePermission());
+		Assertions.assertEquals(List.of(State.OPEN, State.HALF_OPEN), transitions);
+	}
+
+	@Test
+	public void testClosesAfterSuccessfulProbes() {
+		final var circuitBreaker = openCircuitBreaker();
+		nanoClock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+		call(circuitBreaker, false, 10);
+		Assertions.assertEquals(State.HALF_OPEN, circuitBreaker.getState());
+		call(circuitBreaker, false, 10);
+		Assertions.assertEquals(State.CLOSED, circuitBreaker.getState());
+		Assertions.assertEquals(List.of(State.OPEN, State.HALF_OPEN, State.CLOSED), transitions);
+
+		// the window starts empty
+		for (var i = 0; i < 9; i++) {
+			call(circuitBreaker, true, 10);
+		}
+		Assertions.assertEquals(State.CLOSED, circuitBreaker.getState());
+	}
+
+	@Test
+	public void testReopensOnFailedProbe() {
+		final var circuitBreaker = openCircuitBreaker();
+		nanoClock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+		Assertions.assertTrue(circuitBreaker.tryAcquirePermission());
+		Assertions.assertTrue(circuitBreaker.tryAcquirePermission());
+		circuitBreaker.onResult(false, 10);
+		circuitBreaker.onResult(true, 10); // 1 failure out of 2 probes
+		Assertions.assertEquals(State.OPEN, circuitBreaker.getState());
+		Assertions.assertEquals(List.of(State.OPEN, State.HALF_OPEN, State.OPEN), transitions);
+
+		// open again for the whole duration
+		nanoClock.addAndGet(TimeUnit.SECONDS.toNanos(29));
+		Assertions.assertFalse(circuitBreaker.tryAcquirePermission());
+		nanoClock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+		Assertions.assertTrue(circuitBreaker.tryAcquirePermission());
+	}
+
+	@Test
+	public void testResultsIgnoredWhileOpen() {
+		final var circuitBreaker = openCircuitBreaker();
+		// calls sent before the circuit opened
+		for (var i = 0; i < 10; i++) {
+			circuitBreaker.onResult(false, 10);
+		}
+		Assertions.assertEquals(State.OPEN, circuitBreaker.getState());
+		Assertions.assertEquals(List.of(State.OPEN), transitions);
+	}
+
+	private HttpClientCircuitBreaker openCircuitBreaker() {
+		final var circuitBreaker = createCircuitBreaker();
+		for (var i = 0; i < 10; i++) {
+			call(circuitBreaker, true, 10);
+		}
+		Assertions.assertEquals(State.OPEN, circuitBreaker.getState());
+		return circuitBreaker;
+	}
+
+	private static void call(final HttpClientCircuitBreaker circuitBreaker, final boolean failure, final long durationMillis) {
+		Assertions.assertTrue(circuitBreaker.tryAcquirePermission());
+		circuitBreaker.onResult(failure, durationMillis);
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.httpclient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class HttpClientConcurrencyLimiterTest {
+
+	@Test
+	public void testQueueAndReject() throws Exception {
+		final var concurrencyLimiter = new HttpClientConcurrencyLimiter(1, 1);
+		final var first = new CompletableFuture<String>();
+		final var second = new CompletableFuture<String>();
+		final var started = new AtomicInteger();
+
+		final var firstResult = concurrencyLimiter.submit(() -> {
+			started.incrementAndGet();
+			return first;
+		});
+		final var secondResult = concurrencyLimiter.submit(() -> {
+			started.incrementAndGet();
+			return second;
+		});
+		final var rejected = concurrencyLimiter.submit(() -> Assertions.fail("queue is full"));
+		Assertions.assertEquals(1, started.get());
+		Assertions.assertEquals(1, concurrencyLimiter.getRunningCount());
+		Assertions.assertEquals(1, concurrencyLimiter.getPendingCount());
+		final var executionException = Assertions.assertThrows(ExecutionException.class, rejected::get);
+		Assertions.assertInstanceOf(RejectedExecutionException.class, executionException.getCause());
+
+		first.complete("first");
+		Assertions.assertEquals("first", firstResult.get());
+		Assertions.assertEquals(2, started.get()); // started when the first one completed
+		Assertions.assertEquals(0, concurrencyLimiter.getPendingCount());
+
+		second.completeExceptionally(new IllegalStateException("backend"));
+		Assertions.assertThrows(ExecutionException.class, secondResult::get);
+		Assertions.assertEquals(0, concurrencyLimiter.getRunningCount());
+	}
+
+	@Test
+	public void testCancelledWhileQueued() {
+		final var concurrencyLimiter = new HttpClientConcurrencyLimiter(1, 1);
+		final var first = new CompletableFuture<String>();
+		concurrencyLimiter.submit(() -> first);
+		final var queued = concurrencyLimiter.submit(() -> Assertions.fail("cancelled while queued"));
+
+		queued.cancel(true);
+		first.complete("first");
+		Assertions.assertEquals(0, concurrencyLimiter.getRunningCount());
+		Assertions.assertEquals(0, concurrencyLimiter.getPendingCount());
+	}
+
+	@Test
+	public void testCancelPropagated() {
+		final var concurrencyLimiter = new HttpClientConcurrencyLimiter(1, 0);
+		final var underlying = new CompletableFuture<String>();
+		final var result = concurrencyLimiter.submit(() -> underlying);
+
+		result.cancel(true);
+		Assertions.assertTrue(underlying.isCancelled());
+		Assertions.assertEquals(0, concurrencyLimiter.getRunningCount()); // permit released
+	}
+
+	@Test
+	public void testDrainWithoutRecursion() {
+		final var concurrencyLimiter = new HttpClientConcurrencyLimiter(1, 100_000);
+		final var first = new CompletableFuture<Integer>();
+		concurrencyLimiter.submit(() -> first);
+		final List<CompletableFuture<Integer>> results = new ArrayList<>();
+		for (var i = 0; i < 100_000; i++) {
+			final var value = i;
+			results.add(concurrencyLimiter.submit(() -> CompletableFuture.completedFuture(value))); // completing immediately
+		}
+
+		first.complete(-1);
+		Assertions.assertEquals(99_999, results.get(99_999).join());
+		Assertions.assertEquals(0, concurrencyLimiter.getRunningCount());
+		Assertions.assertEquals(0, concurrencyLimiter.getPendingCount());
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.httpclient;
+
+import java.net.http.HttpResponse.BodyHandlers;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.vertigo.core.node.AutoCloseableNode;
+import io.vertigo.core.node.component.di.DIInjector;
+import io.vertigo.core.node.config.BootConfig;
+import io.vertigo.core.node.config.NodeConfig;
+import io.vertigo.core.param.Param;
+import io.vertigo.core.plugins.resource.url.URLResourceResolverPlugin;
+
+/**
+ * Benchmarks of HttpClientConnector against an in process stub backend (see HttpStubServer).
+ * Configurations :
+ * - shared : the shared HttpClient, connections are reused
+ * - clientPerCall : a new HttpClient per call (as inside an HttpClientCookie scope), a new connection per call
+ * - cached : response cache enabled, small requests are served from the cache
+ * - loadBalanced : two stub backends with leastOutstanding load balancing
+ * Each configuration runs in http (HTTP_2 : h2c after an upgrade) and https (self-signed certificate, HTTP_2 : h2 negotiated with ALPN).
+ * Throughput and latency percentiles (SampleTime) are measured, run main to add allocation per request (gc profiler).
+ * Requests by negotiated protocol, connections and TLS handshakes seen by the stubs are reported for each iteration (StubCounters).
+ *
+ * @author npiedeloup
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class HttpClientConnectorBenchmark {
+
+	@org.openjdk.jmh.annotations.Param({ "shared", "clientPerCall", "cached", "loadBalanced" })
+	public String configuration;
+
+	@org.openjdk.jmh.annotations.Param({ "HTTP_1_1", "HTTP_2" })
+	public String httpVersion;
+
+	@org.openjdk.jmh.annotations.Param({ "http", "https" })
+	public String scheme;
+
+	@Inject
+	private HttpClientConnector httpClientConnector;
+	private HttpStubServer stubServer;
+	private HttpStubServer secondStubServer;
+	private AutoCloseableNode node;
+	// stub counts already reported : http1 requests, http2 requests, connections, TLS handshakes, guarded by this
+	private final long[] reportedCounts = new long[4];
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		final var tls = "https".equals(scheme);
+		stubServer = new HttpStubServer(tls);
+		final List<Param> params = new ArrayList<>();
+		params.add(Param.of("httpVersion", httpVersion));
+		if (tls) {
+			params.add(Param.of("trustStoreUrl", HttpStubServer.getTrustStoreUrl()));
+			params.add(Param.of("trustStorePassword", HttpStubServer.getTrustStorePassword()));
+		}
+		if ("loadBalanced".equals(configuration)) {
+			secondStubServer = new HttpStubServer(tls);
+			params.add(Param.of("urlPrefix", stubServer.getUrlPrefix() + ";" + secondStubServer.getUrlPrefix()));
+			params.add(Param.of("loadBalancing", "leastOutstanding"));
+		} else {
+			params.add(Param.of("urlPrefix", stubServer.getUrlPrefix()));
+		}
+		if ("cached".equals(configuration)) {
+			params.add(Param.of("cacheMaxBytes", String.valueOf(10 * 1024 * 1024)));
+		}
+		node = new AutoCloseableNode(NodeConfig.builder()
+				.withBoot(BootConfig.builder()
+						.addPlugin(URLResourceResolverPlugin.class) // file url of the trust store
+						.build())
+				.addModule(new HttpClientFeatures()
+						.withHttpClient(params.toArray(Param[]::new))
+						.build())
+				.build());
+		DIInjector.injectMembers(this, node.getComponentSpace());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (secondStubServer != null) {
+			secondStubServer.close();
+		}
+		node.close();
+		stubServer.close();
+	}
+
+	@Benchmark
+	public byte[] smallBody(final StubCounters stubCounters) {
+		return send("cached".equals(configuration) ? "/cacheable" : "/small");
+	}
+
+	@Benchmark
+	public byte[] largeBody(final StubCounters stubCounters) {
+		return send("/large");
+	}
+
+	private byte[] send(final String path) {
+		final var request = httpClientConnector.newRequest(path).GET().build();
+		if ("clientPerCall".equals(configuration)) {
+			try (var httpClientCookie = new HttpClientCookie()) {
+				return httpClientConnector.send(request, BodyHandlers.ofByteArray()).body();
+			}
+		}
+		return httpClientConnector.send(request, BodyHandlers.ofByteArray()).body();
+	}
+
+	/**
+	 * @return stub counts since the previous call : http1 requests, http2 requests, connections, TLS handshakes
+	 */
+	synchronized long[] takeCounts() {
+		final long[] counts = new long[4];
+		for (final HttpStubServer httpStubServer : secondStubServer == null ? List.of(stubServer) : List.of(stubServer, secondStubServer)) {
+			final var requestCounts = httpStubServer.getRequestCounts();
+			counts[0] += requestCounts.getOrDefault("HTTP/1.1", 0L);
+			counts[1] += requestCounts.getOrDefault("HTTP/2.0", 0L);
+			counts[2] += httpStubServer.getConnectionCount();
+			counts[3] += httpStubServer.getHandshakeCount();
+		}
+		final long[] delta = new long[4];
+		for (var i = 0; i < counts.length; i++) {
+			delta[i] = counts[i] - reportedCounts[i];
+			reportedCounts[i] = counts[i];
+		}
+		return delta;
+	}
+
+	/**
+	 * Stub counts of the iteration, reported by JMH as secondary results.
+	 * Counters are summed over threads : the stub counts are taken by the first thread ending the iteration.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class StubCounters {
+		public long http1Requests;
+		public long http2Requests;
+		public long connections;
+		public long tlsHandshakes;
+
+		@TearDown(Level.Iteration)
+		public void takeCounts(final HttpClientConnectorBenchmark benchmark) {
+			final var counts = benchmark.takeCounts();
+			http1Requests = counts[0];
+			http2Requests = counts[1];
+			connections = counts[2];
+			tlsHandshakes = counts[3];
+		}
+	}
+
+	public static void main(final String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(HttpClientConnectorBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build())
+				.run();
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.httpclient;
+
+import java.net.URI;
+import java.net.http.HttpClient.Version;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.net.ssl.SSLSession;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.vertigo.connectors.httpclient.HttpClientLoadBalancer.Strategy;
+
+public class HttpClientLoadBalancerTest {
+
+	@Test
+	public void testOverlappingHostPrefixes() {
+		final var routedUris = sendAll(List.of("http://node1", "http://node10"), "http://node10/api?q=1");
+		Assertions.assertEquals(Set.of("http://node1/api?q=1", "http://node10/api?q=1"), routedUris);
+	}
+
+	@Test
+	public void testOverlappingPortPrefixes() {
+		final var routedUris = sendAll(List.of("http://host:80", "http://host:8080"), "http://host:8080/api");
+		Assertions.assertEquals(Set.of("http://host:80/api", "http://host:8080/api"), routedUris);
+	}
+
+	@Test
+	public void testLongestPrefix() {
+		final var routedUris = sendAll(List.of("http://host", "http://host/app"), "http://host/app/api");
+		Assertions.assertEquals(Set.of("http://host/api", "http://host/app/api"), routedUris);
+	}
+
+	@Test
+	public void testPrefixOnly() {
+		final var routedUris = sendAll(List.of("http://node1", "http://node10"), "http://node1");
+		Assertions.assertEquals(Set.of("http://node1", "http://node10"), routedUris);
+	}
+
+	@Test
+	public void testNoBoundaryNotRouted() {
+		final var routedUris = sendAll(List.of("http://node1", "http://node2"), "http://node12/api");
+		Assertions.assertEquals(Set.of("http://node12/api"), routedUris);
+	}
+
+	private static Set<String> sendAll(final List<String> urlPrefixes, final String uri) {
+		final var loadBalancer = new HttpClientLoadBalancer(urlPrefixes, Strategy.roundRobin, 5, 30, urlPrefix -> Assertions.fail("no ejection expected"));
+		final Set<String> routedUris = ConcurrentHashMap.newKeySet();
+		final var request = HttpRequest.newBuilder(URI.create(uri)).build();
+		for (var i = 0; i < 2 * urlPrefixes.size(); i++) {
+			loadBalancer.sendAsync(request, routedRequest -> {
+				routedUris.add(routedRequest.uri().toString());
+				return CompletableFuture.completedFuture(new OkResponse(routedRequest));
+			}).join();
+		}
+		return routedUris;
+	}
+
+	private record OkResponse(HttpRequest request) implements HttpResponse<String> {
+
+		@Override
+		public int statusCode() {
+			return 200;
+		}
+
+		@Override
+		public Optional<HttpResponse<String>> previousResponse() {
+			return Optional.empty();
+		}
+
+		@Override
+		public HttpHeaders headers() {
+			return HttpHeaders.of(Map.of(), (name, value) -> true);
+		}
+
+		@Override
+		public String body() {
+			return "";
+		}
+
+		@Override
+		public Optional<SSLSession> sslSession() {
+			return Optional.empty();
+		}
+
+		@Override
+		public URI uri() {
+			return request.uri();
+		}
+
+		@Override
+		public Version version() {
+			return Version.HTTP_1_1;
+		}
+	}
+}
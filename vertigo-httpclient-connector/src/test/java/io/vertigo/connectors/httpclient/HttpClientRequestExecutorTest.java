@@ -0,0 +1,233 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.httpclient;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient.Version;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import javax.net.ssl.SSLSession;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class HttpClientRequestExecutorTest {
+
+	private static final HttpRequest GET = HttpRequest.newBuilder(URI.create("http://host/api")).build();
+	private static final HttpRequest POST = HttpRequest.newBuilder(URI.create("http://host/api")).POST(HttpRequest.BodyPublishers.noBody()).build();
+
+	@Test
+	public void testRetriedResponseReleased() throws Exception {
+		final var requestExecutor = new HttpClientRequestExecutor(3, 1, 1, Optional.empty(), 0);
+		final var responses = List.of(new TestResponse(503), new TestResponse(200));
+		final var sender = new TestSender(attempt -> CompletableFuture.completedFuture(responses.get(attempt)));
+
+		final var response = requestExecutor.execute(GET, sender).get(5, TimeUnit.SECONDS);
+		Assertions.assertSame(responses.get(1), response);
+		Assertions.assertTrue(responses.get(0).body().closed);
+		Assertions.assertFalse(responses.get(1).body().closed);
+	}
+
+	@Test
+	public void testLastAttemptReturned() throws Exception {
+		final var requestExecutor = new HttpClientRequestExecutor(2, 1, 1, Optional.empty(), 0);
+		final var responses = List.of(new TestResponse(503), new TestResponse(503));
+		final var sender = new TestSender(attempt -> CompletableFuture.completedFuture(responses.get(attempt)));
+
+		Assertions.assertSame(responses.get(1), requestExecutor.execute(GET, sender).get(5, TimeUnit.SECONDS));
+		Assertions.assertTrue(responses.get(0).body().closed);
+		Assertions.assertFalse(responses.get(1).body().closed);
+	}
+
+	@Test
+	public void testNotIdempotentNotRetried() throws Exception {
+		final var requestExecutor = new HttpClientRequestExecutor(3, 1, 1, Optional.empty(), 0);
+		final var response = new TestResponse(503);
+		final var sender = new TestSender(attempt -> CompletableFuture.completedFuture(response));
+
+		Assertions.assertSame(response, requestExecutor.execute(POST, sender).get(5, TimeUnit.SECONDS));
+		Assertions.assertEquals(1, sender.futures.size());
+	}
+
+	@Test
+	public void testCancelPropagated() throws Exception {
+		final var requestExecutor = new HttpClientRequestExecutor(3, 1, 1, Optional.empty(), 0);
+		final var sender = new TestSender(attempt -> new CompletableFuture<>());
+
+		final var result = requestExecutor.execute(GET, sender);
+		result.cancel(true);
+		Assertions.assertTrue(sender.futures.get(0).isCancelled());
+		Assertions.assertEquals(1, sender.futures.size());
+	}
+
+	@Test
+	public void testRetryableHedgedResponseDoesNotWin() throws Exception {
+		final var requestExecutor = createHedgingExecutor();
+		final var primaryResponse = new TestResponse(200);
+		final var hedgedResponse = new TestResponse(503);
+		final var primary = new CompletableFuture<HttpResponse<CloseableBody>>();
+		final var sender = new TestSender(attempt -> attempt == 0 ? primary : CompletableFuture.completedFuture(hedgedResponse));
+
+		final var result = requestExecutor.execute(GET, sender);
+		sender.awaitAttempts(2);
+		Assertions.assertFalse(result.isDone()); // the fast 503 is not the winner
+		primary.complete(primaryResponse);
+
+		Assertions.assertSame(primaryResponse, result.get(5, TimeUnit.SECONDS));
+		Assertions.assertTrue(hedgedResponse.body().closed);
+		Assertions.assertFalse(primaryResponse.body().closed);
+	}
+
+	@Test
+	public void testLosingHedgedResponseReleased() throws Exception {
+		final var requestExecutor = createHedgingExecutor();
+		final var primaryResponse = new TestResponse(200);
+		final var hedgedResponse = new TestResponse(200);
+		final var primary = new UncancellableFuture(); // already received by the HttpClient : cancel has no effect
+		final var sender = new TestSender(attempt -> attempt == 0 ? primary : CompletableFuture.completedFuture(hedgedResponse));
+
+		final var result = requestExecutor.execute(GET, sender);
+		sender.awaitAttempts(2);
+		Assertions.assertSame(hedgedResponse, result.get(5, TimeUnit.SECONDS));
+		primary.complete(primaryResponse);
+
+		Assertions.assertTrue(primaryResponse.body().closed);
+		Assertions.assertFalse(hedgedResponse.body().closed);
+	}
+
+	@Test
+	public void testCancelPropagatedToHedgedRequests() throws Exception {
+		final var requestExecutor = createHedgingExecutor();
+		final var sender = new TestSender(attempt -> new CompletableFuture<>());
+
+		final var result = requestExecutor.execute(GET, sender);
+		sender.awaitAttempts(2);
+		result.cancel(true);
+		Assertions.assertTrue(sender.futures.get(0).isCancelled());
+		sender.awaitCancelled(1); // the hedged request may still be registering on the delayed executor
+		Assertions.assertThrows(CancellationException.class, result::join);
+	}
+
+	/**
+	 * Hedges after 10ms : latencies are learnt from fast requests first.
+	 */
+	private static HttpClientRequestExecutor createHedgingExecutor() throws Exception {
+		final var requestExecutor = new HttpClientRequestExecutor(1, 1, 1, Optional.of(50), 10);
+		final var sender = new TestSender(attempt -> CompletableFuture.completedFuture(new TestResponse(200)));
+		for (var i = 0; i < 20; i++) {
+			requestExecutor.execute(GET, sender).get(5, TimeUnit.SECONDS);
+		}
+		return requestExecutor;
+	}
+
+	private static final class TestSender implements Function<HttpRequest, CompletableFuture<HttpResponse<CloseableBody>>> {
+		private final Function<Integer, CompletableFuture<HttpResponse<CloseableBody>>> responses;
+		final List<CompletableFuture<HttpResponse<CloseableBody>>> futures = new CopyOnWriteArrayList<>();
+
+		TestSender(final Function<Integer, CompletableFuture<HttpResponse<CloseableBody>>> responses) {
+			this.responses = responses;
+		}
+
+		@Override
+		public CompletableFuture<HttpResponse<CloseableBody>> apply(final HttpRequest request) {
+			final var future = responses.apply(futures.size());
+			futures.add(future);
+			return future;
+		}
+
+		void awaitAttempts(final int attempts) throws InterruptedException {
+			final var deadline = System.currentTimeMillis() + 5000;
+			while (futures.size() < attempts && System.currentTimeMillis() < deadline) {
+				Thread.sleep(5);
+			}
+			Assertions.assertEquals(attempts, futures.size());
+		}
+
+		void awaitCancelled(final int attempt) throws InterruptedException {
+			final var deadline = System.currentTimeMillis() + 5000;
+			while (!futures.get(attempt).isCancelled() && System.currentTimeMillis() < deadline) {
+				Thread.sleep(5);
+			}
+			Assertions.assertTrue(futures.get(attempt).isCancelled());
+		}
+	}
+
+	private static final class UncancellableFuture extends CompletableFuture<HttpResponse<CloseableBody>> {
+		@Override
+		public boolean cancel(final boolean mayInterruptIfRunning) {
+			return false;
+		}
+	}
+
+	private static final class CloseableBody implements AutoCloseable {
+		volatile boolean closed;
+
+		@Override
+		public void close() throws IOException {
+			closed = true;
+		}
+	}
+
+	private record TestResponse(int statusCode, CloseableBody body) implements HttpResponse<CloseableBody> {
+
+		TestResponse(final int statusCode) {
+			this(statusCode, new CloseableBody());
+		}
+
+		@Override
+		public HttpRequest request() {
+			return GET;
+		}
+
+		@Override
+		public Optional<HttpResponse<CloseableBody>> previousResponse() {
+			return Optional.empty();
+		}
+
+		@Override
+		public HttpHeaders headers() {
+			return HttpHeaders.of(Map.of(), (name, value) -> true);
+		}
+
+		@Override
+		public Optional<SSLSession> sslSession() {
+			return Optional.empty();
+		}
+
+		@Override
+		public URI uri() {
+			return GET.uri();
+		}
+
+		@Override
+		public Version version() {
+			return Version.HTTP_1_1;
+		}
+	}
+}
@@ -0,0 +1,245 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.httpclient;
+
+import java.net.URI;
+import java.net.http.HttpClient.Version;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class HttpClientResponseCacheTest {
+
+	private static final String URL = "http://host/api/items";
+
+	@Test
+	public void testFreshHit() throws Exception {
+		final var responseCache = new HttpClientResponseCache(1024 * 1024, Optional.empty(), 0);
+		final var backend = new Backend(request -> new BackendResponse(200, Map.of("Cache-Control", "max-age=60"), "items"));
+
+		Assertions.assertEquals("items", get(responseCache, backend, request("GET")).body());
+		final var cachedResponse = get(responseCache, backend, request("GET"));
+		Assertions.assertEquals(200, cachedResponse.statusCode());
+		Assertions.assertEquals("items", cachedResponse.body());
+		Assertions.assertEquals(1, backend.requests.size());
+	}
+
+	@Test
+	public void testNotStored() throws Exception {
+		final var responseCache = new HttpClientResponseCache(1024 * 1024, Optional.empty(), 0);
+		for (final Map<String, String> headers : List.of(
+				Map.of("Cache-Control", "no-store, max-age=60"),
+				Map.of("Cache-Control", "private, max-age=60"),
+				Map.of("Cache-Control", "max-age=60", "Set-Cookie", "session=1"))) {
+			final var backend = new Backend(request -> new BackendResponse(200, headers, "items"));
+			get(responseCache, backend, request("GET"));
+			get(responseCache, backend, request("GET"));
+			Assertions.assertEquals(2, backend.requests.size(), headers.toString());
+		}
+	}
+
+	@Test
+	public void testRevalidation() throws Exception {
+		final var responseCache = new HttpClientResponseCache(1024 * 1024, Optional.empty(), 0);
+		final var backend = new Backend(request -> request.headers().firstValue("If-None-Match").isPresent()
+				? new BackendResponse(304, Map.of("ETag", "\"v1\"", "Cache-Control", "max-age=0"), "")
+				: new BackendResponse(200, Map.of("ETag", "\"v1\"", "Cache-Control", "max-age=0"), "items"));
+
+		Assertions.assertEquals("items", get(responseCache, backend, request("GET")).body());
+		final var revalidatedResponse = get(responseCache, backend, request("GET"));
+		Assertions.assertEquals(200, revalidatedResponse.statusCode());
+		Assertions.assertEquals("items", revalidatedResponse.body());
+		Assertions.assertEquals(2, backend.requests.size());
+		Assertions.assertEquals(Optional.of("\"v1\""), backend.requests.get(1).headers().firstValue("If-None-Match"));
+	}
+
+	@Test
+	public void testRequestNoCacheRevalidates() throws Exception {
+		final var responseCache = new HttpClientResponseCache(1024 * 1024, Optional.empty(), 0);
+		final var backend = new Backend(request -> request.headers().firstValue("If-Modified-Since").isPresent()
+				? new BackendResponse(304, Map.of(), "")
+				: new BackendResponse(200, Map.of("Last-Modified", "Wed, 21 Oct 2015 07:28:00 GMT", "Cache-Control", "max-age=60"), "items"));
+
+		get(responseCache, backend, request("GET"));
+		final var noCacheRequest = HttpRequest.newBuilder(URI.create(URL)).header("Cache-Control", "no-cache").build();
+		Assertions.assertEquals("items", get(responseCache, backend, noCacheRequest).body());
+		Assertions.assertEquals(2, backend.requests.size()); // fresh, but revalidated
+		Assertions.assertEquals(Optional.of("Wed, 21 Oct 2015 07:28:00 GMT"), backend.requests.get(1).headers().firstValue("If-Modified-Since"));
+
+		get(responseCache, backend, request("GET"));
+		Assertions.assertEquals(2, backend.requests.size()); // still stored
+	}
+
+	@Test
+	public void testUnsafeMethodInvalidates() throws Exception {
+		final var responseCache = new HttpClientResponseCache(1024 * 1024, Optional.empty(), 0);
+		final var backend = new Backend(request -> switch (request.method()) {
+			case "GET" -> new BackendResponse(200, Map.of("Cache-Control", "max-age=60"), "items");
+			case "PUT" -> new BackendResponse(500, Map.of(), "");
+			default -> new BackendResponse(201, Map.of("Location", "/api/items/1"), "");
+		});
+
+		get(responseCache, backend, request("GET"));
+		get(responseCache, backend, request("PUT"));
+		get(responseCache, backend, request("GET"));
+		Assertions.assertEquals(2, backend.requests.size()); // an error response doesn't invalidate
+
+		get(responseCache, backend, request("POST"));
+		get(responseCache, backend, request("GET"));
+		Assertions.assertEquals(4, backend.requests.size());
+
+		// Location on the same origin is invalidated too
+		final var itemRequest = HttpRequest.newBuilder(URI.create(URL + "/1")).build();
+		get(responseCache, backend, itemRequest);
+		get(responseCache, backend, request("DELETE"));
+		get(responseCache, backend, itemRequest);
+		Assertions.assertEquals(7, backend.requests.size());
+		Assertions.assertEquals(List.of("GET", "PUT", "POST", "GET", "GET", "DELETE", "GET"),
+				backend.requests.stream().map(HttpRequest::method).toList());
+	}
+
+	@Test
+	public void testCoalescing() throws Exception {
+		final var responseCache = new HttpClientResponseCache(1024 * 1024, Optional.empty(), 0);
+		final var backend = new Backend(request -> new BackendResponse(200, Map.of("Cache-Control", "max-age=60"), "items"));
+		backend.paused = true;
+
+		final var first = responseCache.sendAsync(request("GET"), BodyHandlers.ofString(), backend::send);
+		final var second = responseCache.sendAsync(request("GET"), BodyHandlers.ofString(), backend::send);
+		Assertions.assertFalse(second.isDone());
+		backend.resume();
+
+		Assertions.assertEquals("items", first.get(5, TimeUnit.SECONDS).body());
+		Assertions.assertEquals("items", second.get(5, TimeUnit.SECONDS).body());
+		Assertions.assertEquals(1, backend.requests.size());
+	}
+
+	@Test
+	public void testByteLimit() throws Exception {
+		// 800 bytes : entries up to 100 bytes
+		final var responseCache = new HttpClientResponseCache(800, Optional.empty(), 0);
+		final var backend = new Backend(request -> new BackendResponse(200, Map.of("Cache-Control", "max-age=60"),
+				"x".repeat(request.uri().getPath().endsWith("big") ? 101 : 100)));
+
+		final var bigRequest = HttpRequest.newBuilder(URI.create(URL + "/big")).build();
+		get(responseCache, backend, bigRequest);
+		get(responseCache, backend, bigRequest);
+		Assertions.assertEquals(2, backend.requests.size()); // too big to be stored
+
+		for (var i = 0; i < 9; i++) {
+			get(responseCache, backend, HttpRequest.newBuilder(URI.create(URL + "/" + i)).build());
+		}
+		Assertions.assertEquals(11, backend.requests.size());
+		get(responseCache, backend, HttpRequest.newBuilder(URI.create(URL + "/8")).build());
+		Assertions.assertEquals(11, backend.requests.size()); // still stored
+		get(responseCache, backend, HttpRequest.newBuilder(URI.create(URL + "/0")).build());
+		Assertions.assertEquals(12, backend.requests.size()); // least recently used, evicted over 800 bytes
+	}
+
+	private static HttpRequest request(final String method) {
+		return HttpRequest.newBuilder(URI.create(URL)).method(method, HttpRequest.BodyPublishers.noBody()).build();
+	}
+
+	private static HttpResponse<String> get(final HttpClientResponseCache responseCache, final Backend backend, final HttpRequest request) throws Exception {
+		return responseCache.sendAsync(request, BodyHandlers.ofString(), backend::send).get(5, TimeUnit.SECONDS);
+	}
+
+	private record BackendResponse(int statusCode, Map<String, String> headers, String body) {
+	}
+
+	/**
+	 * Answers like the HttpClient : the caller's BodyHandler is applied to the response headers, then receives the body.
+	 */
+	private static final class Backend {
+		private final Function<HttpRequest, BackendResponse> responses;
+		final List<HttpRequest> requests = new CopyOnWriteArrayList<>();
+		private final CompletableFuture<Void> resumed = new CompletableFuture<>();
+		volatile boolean paused;
+
+		Backend(final Function<HttpRequest, BackendResponse> responses) {
+			this.responses = responses;
+		}
+
+		void resume() {
+			resumed.complete(null);
+		}
+
+		<T> CompletableFuture<HttpResponse<T>> send(final HttpRequest request, final BodyHandler<T> bodyHandler) {
+			requests.add(request);
+			final var sent = paused ? resumed : CompletableFuture.<Void> completedFuture(null);
+			return sent.thenCompose(ignored -> receive(request, responses.apply(request), bodyHandler));
+		}
+
+		private static <T> CompletableFuture<HttpResponse<T>> receive(final HttpRequest request, final BackendResponse backendResponse, final BodyHandler<T> bodyHandler) {
+			final var headers = HttpHeaders.of(backendResponse.headers().entrySet().stream()
+					.collect(Collectors.toMap(Map.Entry::getKey, header -> List.of(header.getValue()))), (name, value) -> true);
+			final var bodySubscriber = bodyHandler.apply(new ResponseInfo() {
+				@Override
+				public int statusCode() {
+					return backendResponse.statusCode();
+				}
+
+				@Override
+				public HttpHeaders headers() {
+					return headers;
+				}
+
+				@Override
+				public Version version() {
+					return Version.HTTP_1_1;
+				}
+			});
+			bodySubscriber.onSubscribe(new Subscription() {
+				private boolean done;
+
+				@Override
+				public synchronized void request(final long n) {
+					if (!done) {
+						done = true;
+						bodySubscriber.onNext(List.of(ByteBuffer.wrap(backendResponse.body().getBytes(StandardCharsets.UTF_8))));
+						bodySubscriber.onComplete();
+					}
+				}
+
+				@Override
+				public synchronized void cancel() {
+					done = true;
+				}
+			});
+			return bodySubscriber.getBody().toCompletableFuture()
+					.thenApply(body -> new HttpClientCachedResponse<>(request, backendResponse.statusCode(), headers, Version.HTTP_1_1, body));
+		}
+	}
+}
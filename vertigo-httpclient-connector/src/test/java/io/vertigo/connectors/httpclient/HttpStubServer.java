@@ -0,0 +1,228 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.httpclient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
+import org.eclipse.jetty.io.ssl.SslHandshakeListener;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.SecureRequestCustomizer;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * In process stub backend for benchmarks (Jetty), on a free port of the loopback interface.
+ * - http : HTTP/1.1 and HTTP/2 in clear (h2c, after an upgrade from HTTP/1.1)
+ * - https : TLS with a self-signed certificate generated at first use (keytool), HTTP/2 or HTTP/1.1 negotiated with ALPN
+ * Paths :
+ * - /small : 1KB body
+ * - /large : 256KB body
+ * - /cacheable : 1KB body, fresh for 60s with an ETag
+ * Counts requests by protocol, connections (each new client port is a new connection) and TLS handshakes.
+ *
+ * @author npiedeloup
+ */
+public final class HttpStubServer implements AutoCloseable {
+
+	private static final byte[] SMALL_BODY = body(1024);
+	private static final byte[] LARGE_BODY = body(256 * 1024);
+	private static final String KEY_STORE_PASSWORD = "changeit";
+	private static Path keyStorePath; // guarded by HttpStubServer.class
+
+	private final boolean tls;
+	private final Server server;
+	private final ServerConnector connector;
+	private final Map<String, LongAdder> requestCounts = new ConcurrentHashMap<>();
+	private final Set<InetSocketAddress> clientAddresses = ConcurrentHashMap.newKeySet();
+	private final LongAdder handshakeCount = new LongAdder();
+
+	/**
+	 * Starts the stub.
+	 * @param tls https if true, http otherwise
+	 */
+	public HttpStubServer(final boolean tls) {
+		this.tls = tls;
+		server = new Server(new QueuedThreadPool(Math.max(16, 2 * Runtime.getRuntime().availableProcessors())));
+		final var httpConfiguration = new HttpConfiguration();
+		final var http11 = new HttpConnectionFactory(httpConfiguration);
+		if (tls) {
+			final var secureRequestCustomizer = new SecureRequestCustomizer();
+			secureRequestCustomizer.setSniHostCheck(false); // certificate of localhost, urls with the loopback address
+			httpConfiguration.addCustomizer(secureRequestCustomizer);
+			final var sslContextFactory = new SslContextFactory.Server();
+			sslContextFactory.setKeyStorePath(getKeyStorePath().toString());
+			sslContextFactory.setKeyStorePassword(KEY_STORE_PASSWORD);
+			sslContextFactory.setKeyStoreType("PKCS12");
+			sslContextFactory.setCipherComparator(HTTP2Cipher.COMPARATOR);
+			final var alpn = new ALPNServerConnectionFactory();
+			alpn.setDefaultProtocol(http11.getProtocol());
+			final var ssl = new SslConnectionFactory(sslContextFactory, alpn.getProtocol());
+			ssl.addBean(new SslHandshakeListener() {
+				@Override
+				public void handshakeSucceeded(final Event event) {
+					handshakeCount.increment();
+				}
+			});
+			connector = new ServerConnector(server, ssl, alpn, new HTTP2ServerConnectionFactory(httpConfiguration), http11);
+		} else {
+			connector = new ServerConnector(server, http11, new HTTP2CServerConnectionFactory(httpConfiguration));
+		}
+		connector.setHost(InetAddress.getLoopbackAddress().getHostAddress());
+		connector.setPort(0);
+		connector.setAcceptQueueSize(1024);
+		server.addConnector(connector);
+		server.setHandler(new AbstractHandler() {
+			@Override
+			public void handle(final String target, final Request baseRequest, final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+				baseRequest.setHandled(true);
+				switch (target) {
+					case "/small" -> respond(request, response, SMALL_BODY, Map.of());
+					case "/large" -> respond(request, response, LARGE_BODY, Map.of());
+					case "/cacheable" -> respond(request, response, SMALL_BODY, Map.of("Cache-Control", "max-age=60", "ETag", "\"v1\""));
+					default -> response.sendError(HttpServletResponse.SC_NOT_FOUND);
+				}
+			}
+		});
+		try {
+			server.start();
+		} catch (final Exception e) {
+			throw new IllegalStateException("Unable to start the stub server", e);
+		}
+	}
+
+	/**
+	 * @return url prefix of the stub, without ending /
+	 */
+	public String getUrlPrefix() {
+		return (tls ? "https" : "http") + "://" + connector.getHost() + ":" + connector.getLocalPort();
+	}
+
+	/**
+	 * @return url of the PKCS12 store with the certificate of the stub (for trustStoreUrl)
+	 */
+	public static String getTrustStoreUrl() {
+		return getKeyStorePath().toUri().toString();
+	}
+
+	/**
+	 * @return password of the trust store
+	 */
+	public static String getTrustStorePassword() {
+		return KEY_STORE_PASSWORD;
+	}
+
+	/**
+	 * @return number of requests received, by protocol (HTTP/1.1, HTTP/2.0)
+	 */
+	public Map<String, Long> getRequestCounts() {
+		final Map<String, Long> counts = new TreeMap<>();
+		requestCounts.forEach((protocol, count) -> counts.put(protocol, count.sum()));
+		return counts;
+	}
+
+	/**
+	 * @return number of connections opened by clients
+	 */
+	public long getConnectionCount() {
+		return clientAddresses.size();
+	}
+
+	/**
+	 * @return number of TLS handshakes (0 in http)
+	 */
+	public long getHandshakeCount() {
+		return handshakeCount.sum();
+	}
+
+	private void respond(final HttpServletRequest request, final HttpServletResponse response, final byte[] body, final Map<String, String> headers) throws IOException {
+		requestCounts.computeIfAbsent(request.getProtocol(), protocol -> new LongAdder()).increment();
+		clientAddresses.add(new InetSocketAddress(request.getRemoteAddr(), request.getRemotePort()));
+		request.getInputStream().readAllBytes();
+		headers.forEach(response::setHeader);
+		response.setContentType("application/octet-stream");
+		response.setContentLength(body.length);
+		response.getOutputStream().write(body);
+	}
+
+	@Override
+	public void close() {
+		try {
+			server.stop();
+		} catch (final Exception e) {
+			throw new IllegalStateException("Unable to stop the stub server", e);
+		}
+	}
+
+	private static synchronized Path getKeyStorePath() {
+		if (keyStorePath == null) {
+			try {
+				final var path = Files.createTempFile("http-stub", ".p12");
+				Files.delete(path); // created by keytool
+				path.toFile().deleteOnExit();
+				final var keytool = Path.of(System.getProperty("java.home"), "bin", "keytool").toString();
+				final var process = new ProcessBuilder(keytool, "-genkeypair", "-alias", "stub", "-keyalg", "RSA", "-keysize", "2048",
+						"-dname", "CN=localhost", "-ext", "SAN=dns:localhost,ip:127.0.0.1,ip:::1", "-validity", "1",
+						"-storetype", "PKCS12", "-keystore", path.toString(), "-storepass", KEY_STORE_PASSWORD)
+						.redirectErrorStream(true)
+						.start();
+				process.getInputStream().transferTo(OutputStream.nullOutputStream());
+				if (process.waitFor() != 0) {
+					throw new IllegalStateException("Unable to generate the stub certificate with keytool");
+				}
+				keyStorePath = path;
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			}
+		}
+		return keyStorePath;
+	}
+
+	private static byte[] body(final int size) {
+		final var body = new byte[size];
+		Arrays.fill(body, (byte) 'a');
+		return body;
+	}
+}
@@ -23,6 +23,9 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.oauth2.sdk.TokenIntrospectionSuccessResponse;
+import com.nimbusds.oauth2.sdk.token.AccessToken;
 import com.nimbusds.openid.connect.sdk.token.OIDCTokens;
 
 import io.vertigo.connectors.oidc.state.IOIDCStateStorage;
@@ -56,6 +59,22 @@ public interface IOIDCClient {
 	 */
 	OIDCTokens parseResponse(URI responseUri, URI callbackUri, IOIDCStateStorage oidcStateStorage);
 
+	/**
+	 * Get an access token for this client itself (client_credentials grant), cached until shortly before expiry.
+	 *
+	 * @param scopes the requested scopes, none for the provider's default
+	 * @return a valid access token
+	 */
+	AccessToken getClientCredentialsToken(String... scopes);
+
+	/**
+	 * Refreshes the tokens of a user session (refresh_token grant).
+	 *
+	 * @param refreshToken the current refresh token of the user session
+	 * @return the new tokens, the refresh token is null if the provider doesn't rotate them
+	 */
+	OIDCTokens refreshTokens(String refreshToken);
+
 	/**
 	 * Retrieves the additional infos provided with the matching getLoginUrl call.
 	 *
@@ -65,6 +84,22 @@ public interface IOIDCClient {
 	 */
 	Map<String, Serializable> retrieveAdditionalInfos(URI responseUri, IOIDCStateStorage oidcStateStorage);
 
+	/**
+	 * Validates a JWT access token (signature, issuer, expiration and audience if configured).
+	 *
+	 * @param accessToken the serialized access token, without the Bearer prefix
+	 * @return the claims of the valid token
+	 */
+	JWTClaimsSet validateAccessToken(String accessToken);
+
+	/**
+	 * Introspects an opaque token with the provider introspection endpoint, results are cached for a bounded time.
+	 *
+	 * @param token the token, without the Bearer prefix
+	 * @return the introspection result, check isActive
+	 */
+	TokenIntrospectionSuccessResponse introspectToken(String token);
+
 	/**
 	 * Build the logout URL for the SSO.
 	 *
@@ -0,0 +1,110 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.oidc;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.Set;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.BadJOSEException;
+import com.nimbusds.jose.proc.DefaultJOSEObjectTypeVerifier;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.proc.DefaultJWTClaimsVerifier;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+
+import io.vertigo.core.lang.VSystemException;
+import io.vertigo.core.lang.WrappedException;
+
+/**
+ * Validates JWT access tokens (signature with the provider keys, issuer, expiration and optionally audience).
+ * Verified tokens are kept in a bounded cache, keyed by their SHA-256 hash, until they expire : a bearer token
+ * used for several requests is verified only once.
+ *
+ * @author skerdudou
+ */
+final class OIDCAccessTokenValidator {
+
+	private static final JOSEObjectType AT_JWT = new JOSEObjectType("at+jwt"); // RFC 9068
+
+	private final DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+	private final OIDCExpiringCache<JWTClaimsSet> verifiedTokens;
+
+	/**
+	 * Constructor.
+	 * @param issuer the expected issuer
+	 * @param audienceOpt the expected audience, not checked if empty
+	 * @param jwsAlgorithm the expected signature algorithm
+	 * @param jwkSource the provider keys (JWK set or client secret for HMAC)
+	 * @param cacheMaxSize max number of verified tokens kept, 0 to disable the cache
+	 */
+	OIDCAccessTokenValidator(final String issuer, final Optional<String> audienceOpt, final JWSAlgorithm jwsAlgorithm, final JWKSource<SecurityContext> jwkSource, final int cacheMaxSize) {
+		jwtProcessor.setJWSTypeVerifier(new DefaultJOSEObjectTypeVerifier<>(JOSEObjectType.JWT, AT_JWT, null));
+		jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(jwsAlgorithm, jwkSource));
+		jwtProcessor.setJWTClaimsSetVerifier(new DefaultJWTClaimsVerifier<>(
+				audienceOpt.orElse(null),
+				new JWTClaimsSet.Builder().issuer(issuer).build(),
+				Set.of("exp")));
+		verifiedTokens = new OIDCExpiringCache<>(cacheMaxSize);
+	}
+
+	/**
+	 * @param accessToken the serialized access token
+	 * @return the claims of the token
+	 */
+	JWTClaimsSet validate(final String accessToken) {
+		final var now = System.currentTimeMillis();
+		final var tokenHash = verifiedTokens.isEnabled() ? hash(accessToken) : null;
+		if (tokenHash != null) {
+			final var cachedClaims = verifiedTokens.get(tokenHash, now);
+			if (cachedClaims != null) {
+				return cachedClaims; // fast path : no parsing nor signature verification (expired : full validation reports it)
+			}
+		}
+
+		final JWTClaimsSet claims;
+		try {
+			claims = jwtProcessor.process(accessToken, null);
+		} catch (ParseException | BadJOSEException | JOSEException e) {
+			throw new VSystemException(e, "Invalid OIDC access token.");
+		}
+
+		if (tokenHash != null) {
+			verifiedTokens.put(tokenHash, claims, claims.getExpirationTime().getTime(), now);
+		}
+		return claims;
+	}
+
+	static String hash(final String accessToken) {
+		try {
+			final var digest = MessageDigest.getInstance("SHA-256").digest(accessToken.getBytes(StandardCharsets.US_ASCII));
+			return Base64.getEncoder().encodeToString(digest);
+		} catch (final NoSuchAlgorithmException e) {
+			throw WrappedException.wrap(e);
+		}
+	}
+}
@@ -21,8 +21,6 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
-import java.net.Proxy;
-import java.net.Proxy.Type;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLEncoder;
@@ -34,9 +32,14 @@ import java.util.Arrays;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
-import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -44,31 +47,36 @@ import org.apache.logging.log4j.Logger;
 import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.JWSAlgorithm;
 import com.nimbusds.jose.JWSAlgorithm.Family;
+import com.nimbusds.jose.jwk.source.ImmutableSecret;
 import com.nimbusds.jose.proc.BadJOSEException;
-import com.nimbusds.jose.util.DefaultResourceRetriever;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
 import com.nimbusds.jwt.JWT;
-import com.nimbusds.oauth2.sdk.AuthorizationCode;
+import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.oauth2.sdk.AuthorizationCodeGrant;
 import com.nimbusds.oauth2.sdk.AuthorizationGrant;
 import com.nimbusds.oauth2.sdk.AuthorizationSuccessResponse;
+import com.nimbusds.oauth2.sdk.ClientCredentialsGrant;
 import com.nimbusds.oauth2.sdk.GeneralException;
 import com.nimbusds.oauth2.sdk.ParseException;
 import com.nimbusds.oauth2.sdk.ResponseType;
 import com.nimbusds.oauth2.sdk.Scope;
+import com.nimbusds.oauth2.sdk.TokenIntrospectionRequest;
+import com.nimbusds.oauth2.sdk.TokenIntrospectionResponse;
+import com.nimbusds.oauth2.sdk.TokenIntrospectionSuccessResponse;
 import com.nimbusds.oauth2.sdk.TokenRequest;
 import com.nimbusds.oauth2.sdk.TokenResponse;
 import com.nimbusds.oauth2.sdk.auth.ClientAuthentication;
 import com.nimbusds.oauth2.sdk.auth.ClientSecretBasic;
 import com.nimbusds.oauth2.sdk.auth.Secret;
 import com.nimbusds.oauth2.sdk.http.HTTPRequest;
-import com.nimbusds.oauth2.sdk.http.HTTPRequestConfigurator;
 import com.nimbusds.oauth2.sdk.id.ClientID;
 import com.nimbusds.oauth2.sdk.id.Issuer;
 import com.nimbusds.oauth2.sdk.id.State;
 import com.nimbusds.oauth2.sdk.pkce.CodeChallengeMethod;
 import com.nimbusds.oauth2.sdk.pkce.CodeVerifier;
-import com.nimbusds.oauth2.sdk.util.tls.TLSUtils;
-import com.nimbusds.oauth2.sdk.util.tls.TLSVersion;
+import com.nimbusds.oauth2.sdk.token.AccessToken;
+import com.nimbusds.oauth2.sdk.token.TypelessAccessToken;
 import com.nimbusds.openid.connect.sdk.AuthenticationRequest;
 import com.nimbusds.openid.connect.sdk.AuthenticationResponse;
 import com.nimbusds.openid.connect.sdk.AuthenticationResponseParser;
@@ -80,6 +88,7 @@ import com.nimbusds.openid.connect.sdk.token.OIDCTokens;
 import com.nimbusds.openid.connect.sdk.validators.IDTokenValidator;
 
 import io.vertigo.connectors.oidc.state.IOIDCStateStorage;
+import io.vertigo.core.analytics.AnalyticsManager;
 import io.vertigo.core.lang.VSystemException;
 import io.vertigo.core.lang.WrappedException;
 import io.vertigo.core.node.Node;
@@ -92,7 +101,7 @@ import io.vertigo.core.util.StringUtil;
  *
  * @author skerdudou
  */
-public class OIDCClient implements IOIDCClient {
+public class OIDCClient implements IOIDCClient, AutoCloseable {
 
 	private static final Logger LOG = LogManager.getLogger(OIDCClient.class);
 	// if metadata is not available at startup, limit check frequency at runtime
@@ -101,58 +110,170 @@ public class OIDCClient implements IOIDCClient {
 	private final OIDCParameters oidcParameters;
 
 	private final ClientID clientID;
-	private OIDCProviderMetadata ssoMetadata;
-	private IDTokenValidator idTokenValidator;
+	private volatile OIDCProviderMetadata ssoMetadata; // lock free reads, replaced by background refresh
+	private final Optional<OIDCJWKSetSource> jwkSetSourceOpt; // empty for HMAC jwsAlgorithm
+	private final IDTokenValidator idTokenValidator;
+	private final OIDCAccessTokenValidator accessTokenValidator;
+	private final Optional<ScheduledExecutorService> ownRefreshExecutorOpt; // empty when shared (see OIDCClientRegistry)
+	private final Optional<ScheduledFuture<?>> metadataRefreshOpt;
+	private final OIDCTokenManager tokenManager;
+	private final OIDCTokenIntrospector tokenIntrospector;
 
 	private Instant lastMetadataCheck;
-	private final Optional<SSLSocketFactory> sslSocketFactoryOpt;
+	private final OIDCHttpTransport httpTransport;
 
 	@Inject
 	private ResourceManager resourceManager;
-	private final HTTPRequestConfigurator requestConfigurator;
+	@Inject
+	private AnalyticsManager analyticsManager;
 
 	public OIDCClient(final OIDCParameters oidcParameters) {
+		this(oidcParameters, Optional.empty(), Optional.empty());
+	}
+
+	/**
+	 * Constructor.
+	 * @param oidcParameters the parameters
+	 * @param sharedHttpTransportOpt transport shared with other clients, created from the parameters if empty
+	 * @param sharedRefreshExecutorOpt executor of background refreshes shared with other clients, created if empty
+	 */
+	OIDCClient(final OIDCParameters oidcParameters, final Optional<OIDCHttpTransport> sharedHttpTransportOpt, final Optional<ScheduledExecutorService> sharedRefreshExecutorOpt) {
 		DIInjector.injectMembers(this, Node.getNode().getComponentSpace());
 
 		this.oidcParameters = oidcParameters;
 
 		clientID = new ClientID(oidcParameters.oidcClientName());
 
+		// all calls to the provider share the same connections (keep-alive and TLS sessions)
+		httpTransport = sharedHttpTransportOpt.orElseGet(() -> createHttpTransport(oidcParameters.oidcClientName(), oidcParameters, resourceManager, analyticsManager));
+
+		final var issuer = new Issuer(oidcParameters.overrideIssuerOpt().orElseGet(() -> oidcParameters.oidcURL()));
+		final var jwsAlgorithm = JWSAlgorithm.parse(oidcParameters.jwsAlgorithm().toUpperCase());
+		if (Family.HMAC_SHA.contains(jwsAlgorithm)) {
+			final var paddedKeyBytes = getPaddedSecretKeyBytes();
+			final var paddedKey = new String(paddedKeyBytes, StandardCharsets.UTF_8);
+			jwkSetSourceOpt = Optional.empty();
+			idTokenValidator = new IDTokenValidator(issuer, clientID, jwsAlgorithm, new Secret(paddedKey));
+			accessTokenValidator = new OIDCAccessTokenValidator(issuer.getValue(), oidcParameters.accessTokenAudienceOpt(), jwsAlgorithm,
+					new ImmutableSecret<>(paddedKeyBytes), oidcParameters.accessTokenCacheSize());
+		} else {
+			final var jwkSetSource = new OIDCJWKSetSource(this::getJWKSetURL, httpTransport, oidcParameters.jwksMinRefreshSeconds() * 1000L);
+			jwkSetSourceOpt = Optional.of(jwkSetSource);
+			idTokenValidator = new IDTokenValidator(issuer, clientID, new JWSVerificationKeySelector<SecurityContext>(jwsAlgorithm, jwkSetSource), null);
+			accessTokenValidator = new OIDCAccessTokenValidator(issuer.getValue(), oidcParameters.accessTokenAudienceOpt(), jwsAlgorithm,
+					jwkSetSource, oidcParameters.accessTokenCacheSize());
+		}
+
+		loadMetadataIfNeeded(oidcParameters.dontFailAtStartup());
+
+		ownRefreshExecutorOpt = sharedRefreshExecutorOpt.isPresent()
+				? Optional.empty()
+				: Optional.of(createRefreshExecutor("oidc-refresh-" + oidcParameters.oidcClientName(), 1));
+		final var refreshExecutor = sharedRefreshExecutorOpt.orElseGet(ownRefreshExecutorOpt::get);
+		if (oidcParameters.metadataRefreshSeconds() > 0) {
+			metadataRefreshOpt = Optional.of(refreshExecutor.scheduleWithFixedDelay(this::refreshMetadata, oidcParameters.metadataRefreshSeconds(), oidcParameters.metadataRefreshSeconds(), TimeUnit.SECONDS));
+		} else {
+			metadataRefreshOpt = Optional.empty();
+		}
+		tokenManager = new OIDCTokenManager((grant, scope) -> requestTokens(getMetadata(), grant, scope), refreshExecutor, oidcParameters.tokenRefreshAheadSeconds() * 1000L);
+		tokenIntrospector = new OIDCTokenIntrospector(oidcParameters.oidcClientName(), token -> requestIntrospection(getMetadata(), token),
+				oidcParameters.introspectionCacheSeconds(), oidcParameters.introspectionCacheSize(), analyticsManager, refreshExecutor);
+	}
+
+	/**
+	 * Stops the background refresh of metadata, JWK set and tokens.
+	 */
+	@Override
+	public void close() {
+		metadataRefreshOpt.ifPresent(metadataRefresh -> metadataRefresh.cancel(false));
+		tokenManager.close();
+		tokenIntrospector.close();
+		ownRefreshExecutorOpt.ifPresent(ScheduledExecutorService::shutdownNow);
+	}
+
+	static ScheduledExecutorService createRefreshExecutor(final String threadName, final int threads) {
+		return Executors.newScheduledThreadPool(threads, runnable -> {
+			final var thread = new Thread(runnable, threadName);
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	static OIDCHttpTransport createHttpTransport(final String name, final OIDCParameters oidcParameters, final ResourceManager resourceManager, final AnalyticsManager analyticsManager) {
+		final Optional<SSLContext> sslContextOpt;
 		final var trustStoreUrlOpt = oidcParameters.trustStoreUrlOpt();
 		if (trustStoreUrlOpt.isPresent()) {
 			// load custom trust store
 			try {
-				sslSocketFactoryOpt = Optional.of(createSSLSocketFactory(
+				sslContextOpt = Optional.of(createSSLContext(
 						resourceManager.resolve(trustStoreUrlOpt.get()),
 						oidcParameters.trustStorePasswordOpt()));
 			} catch (final Exception e) {
 				throw WrappedException.wrap(e);
 			}
 		} else {
-			sslSocketFactoryOpt = Optional.empty();
+			sslContextOpt = Optional.empty();
 		}
-
-		requestConfigurator = (final var httpRequest) -> {
-			httpRequest.setConnectTimeout(oidcParameters.httpConnectTimeout());
-			httpRequest.setReadTimeout(oidcParameters.httpReadTimeout());
-			if (sslSocketFactoryOpt.isPresent()) {
-				httpRequest.setSSLSocketFactory(sslSocketFactoryOpt.get());
-			}
-			oidcParameters.proxyHostOpt().ifPresent(proxyHost -> {
-				httpRequest.setProxy(new Proxy(Type.HTTP, new InetSocketAddress(proxyHost, oidcParameters.proxyPort())));
-			});
-		};
-
-		loadMetadataIfNeeded(oidcParameters.dontFailAtStartup());
+		return new OIDCHttpTransport(
+				name,
+				oidcParameters.httpConnectTimeout(),
+				oidcParameters.httpReadTimeout(),
+				sslContextOpt,
+				oidcParameters.proxyHostOpt().map(proxyHost -> new InetSocketAddress(proxyHost, oidcParameters.proxyPort())),
+				oidcParameters.httpMaxConcurrentRequests(),
+				analyticsManager);
 	}
 
-	private static SSLSocketFactory createSSLSocketFactory(final URL trustStoreUrl, final Optional<String> trustStorePassword) throws GeneralSecurityException, IOException {
+	private static SSLContext createSSLContext(final URL trustStoreUrl, final Optional<String> trustStorePassword) throws GeneralSecurityException, IOException {
 		final var trustStore = KeyStore.getInstance("pkcs12");
 		try (var inputStream = trustStoreUrl.openStream()) {
 			trustStore.load(inputStream, trustStorePassword.map(String::toCharArray).orElseGet(() -> null));
 		}
 
-		return TLSUtils.createSSLSocketFactory(trustStore, TLSVersion.TLS_1_3);
+		final var trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+		trustManagerFactory.init(trustStore);
+		final var sslContext = SSLContext.getInstance("TLSv1.3");
+		sslContext.init(null, trustManagerFactory.getTrustManagers(), null);
+		return sslContext;
+	}
+
+	private OIDCProviderMetadata getMetadata() {
+		final var metadata = ssoMetadata;
+		if (metadata != null) {
+			return metadata; // hot path, without lock
+		}
+		loadMetadataIfNeeded(false);
+		return ssoMetadata;
+	}
+
+	private URL getJWKSetURL() {
+		try {
+			return getMetadata().getJWKSetURI().toURL();
+		} catch (final MalformedURLException e) {
+			throw WrappedException.wrap(e);
+		}
+	}
+
+	/**
+	 * Background refresh : on failure, the previous metadata and keys are kept (stale while revalidate).
+	 */
+	private void refreshMetadata() {
+		try {
+			if (ssoMetadata == null) {
+				loadMetadataIfNeeded(true);
+				return;
+			}
+			ssoMetadata = readMetadata();
+		} catch (final RuntimeException e) {
+			LOG.warn("Unable to refresh OIDC metadata, previous one is kept.", e);
+		}
+		jwkSetSourceOpt.ifPresent(jwkSetSource -> {
+			try {
+				jwkSetSource.refresh();
+			} catch (final RuntimeException e) {
+				LOG.warn("Unable to refresh OIDC JWK set.", e);
+			}
+		});
 	}
 
 	private synchronized void loadMetadataIfNeeded(final boolean silentFail) {
@@ -178,32 +299,22 @@ public class OIDCClient implements IOIDCClient {
 	}
 
 	private void doLoadMetadata() {
+		ssoMetadata = readMetadata();
+		jwkSetSourceOpt.ifPresent(OIDCJWKSetSource::refresh);
+	}
+
+	private OIDCProviderMetadata readMetadata() {
 		// get OIDC Metadata from file if provided or from the provider itself
 		final var localOIDCMetadataOp = oidcParameters.localOIDCMetadataOp();
 		if (localOIDCMetadataOp.isPresent()) {
-			ssoMetadata = getOidcMetadataFromFile(localOIDCMetadataOp.get());
-		}
-
-		final var issuer = new Issuer(oidcParameters.overrideIssuerOpt().orElseGet(() -> oidcParameters.oidcURL()));
-		if (ssoMetadata == null) { // no file or error reading file
-			ssoMetadata = getOidcMetadataFromRemote(issuer, oidcParameters.httpConnectTimeout(), oidcParameters.httpReadTimeout());
-		}
-
-		final var jwsAlgorithm = JWSAlgorithm.parse(oidcParameters.jwsAlgorithm().toUpperCase());
-		if (Family.HMAC_SHA.contains(jwsAlgorithm)) {
-			final var paddedKey = new String(getPaddedSecretKeyBytes(), StandardCharsets.UTF_8);
-			idTokenValidator = new IDTokenValidator(issuer, clientID, jwsAlgorithm, new Secret(paddedKey));
-		} else {
-			final var resourceRetriever = new DefaultResourceRetriever(oidcParameters.httpConnectTimeout(), oidcParameters.httpReadTimeout(), 0, true, sslSocketFactoryOpt.orElse(null));
-			oidcParameters.proxyHostOpt().ifPresent(proxyHost -> {
-				resourceRetriever.setProxy(new Proxy(Type.HTTP, new InetSocketAddress(proxyHost, oidcParameters.proxyPort())));
-			});
-			try {
-				idTokenValidator = new IDTokenValidator(issuer, clientID, jwsAlgorithm, ssoMetadata.getJWKSetURI().toURL(), resourceRetriever);
-			} catch (final MalformedURLException e) {
-				throw WrappedException.wrap(e);
+			final var fileMetadata = getOidcMetadataFromFile(localOIDCMetadataOp.get());
+			if (fileMetadata != null) {
+				return fileMetadata;
 			}
 		}
+		// no file or error reading file
+		final var issuer = new Issuer(oidcParameters.overrideIssuerOpt().orElseGet(() -> oidcParameters.oidcURL()));
+		return getOidcMetadataFromRemote(issuer, oidcParameters.httpConnectTimeout(), oidcParameters.httpReadTimeout());
 	}
 
 	private byte[] getPaddedSecretKeyBytes() {
@@ -233,30 +344,28 @@ public class OIDCClient implements IOIDCClient {
 		try {
 
 			if (oidcParameters.overrideIssuerOpt().isPresent()) {
-				return resolveAlternateIssuerValidation(new Issuer(oidcParameters.oidcURL()), issuer, requestConfigurator);
+				return resolveMetadata(new Issuer(oidcParameters.oidcURL()), issuer);
 			}
-			return OIDCProviderMetadata.resolve(issuer, requestConfigurator);
+			return resolveMetadata(issuer, issuer);
 		} catch (GeneralException | IOException e) {
 			throw new VSystemException(e, "Can't read remote OpenId metadata at '{0}'", issuer.getValue());
 		}
 	}
 
 	/**
-	 * Fork of OIDCProviderMetadata.resolve to change issuer validation.
+	 * Fork of OIDCProviderMetadata.resolve, sent with the shared transport and with another issuer validation.
 	 * Keycloak, if called by internal URL, still return the issuer with his external URL.
 	 */
-	private static OIDCProviderMetadata resolveAlternateIssuerValidation(
+	private OIDCProviderMetadata resolveMetadata(
 			final Issuer issuer,
-			final Issuer returnedIssuer,
-			final HTTPRequestConfigurator requestConfigurator)
+			final Issuer returnedIssuer)
 			throws GeneralException, IOException {
 
 		final var configURL = OIDCProviderMetadata.resolveURL(issuer);
 
 		final var httpRequest = new HTTPRequest(HTTPRequest.Method.GET, configURL);
-		requestConfigurator.configure(httpRequest);
 
-		final var httpResponse = httpRequest.send();
+		final var httpResponse = httpRequest.send(httpTransport);
 
 		if (httpResponse.getStatusCode() != 200) {
 			throw new IOException("Couldn't download OpenID Provider metadata from " + configURL +
@@ -287,7 +396,7 @@ public class OIDCClient implements IOIDCClient {
 	@Override
 	public String getLoginUrl(final URI callbackUri, final IOIDCStateStorage oidcStateStorage, final Optional<Locale> localeOpt, final Map<String, Serializable> additionalInfos,
 			final String... requestedScopes) {
-		loadMetadataIfNeeded(false);
+		final var metadata = getMetadata();
 
 		// Generate random state string to securely pair the callback to this request and a corresponding nonce
 		// save all this in http session paired with the original requested URL to forward user after authentication
@@ -305,7 +414,7 @@ public class OIDCClient implements IOIDCClient {
 				scope,
 				clientID,
 				callbackUri)
-						.endpointURI(ssoMetadata.getAuthorizationEndpointURI())
+						.endpointURI(metadata.getAuthorizationEndpointURI())
 						.state(state)
 						.nonce(nonce)
 						.codeChallenge(codeVerifier, CodeChallengeMethod.S256);
@@ -335,9 +444,10 @@ public class OIDCClient implements IOIDCClient {
 
 		final var state = successResponse.getState();
 		final var stateData = oidcStateStorage.retrieveStateDataFromSession(state.getValue());
-		loadMetadataIfNeeded(false);
+		final var metadata = getMetadata();
 
-		final var oidcTokens = doGetOIDCTokens(successResponse.getAuthorizationCode(), stateData.pkceCodeVerifier(), callbackUri);
+		final var codeVerifier = stateData.pkceCodeVerifier() == null ? null : new CodeVerifier(stateData.pkceCodeVerifier());
+		final var oidcTokens = requestTokens(metadata, new AuthorizationCodeGrant(successResponse.getAuthorizationCode(), callbackUri, codeVerifier), null);
 
 		if (!Boolean.TRUE.equals(oidcParameters.skipIdTokenValidation())) {
 			doValidateToken(oidcTokens.getIDToken(), stateData.nonce());
@@ -363,29 +473,26 @@ public class OIDCClient implements IOIDCClient {
 		return authResponse.toSuccessResponse();
 	}
 
-	private OIDCTokens doGetOIDCTokens(final AuthorizationCode code, final String pkceCodeVerifier, final URI callbackURI) {
+	private OIDCTokens requestTokens(final OIDCProviderMetadata metadata, final AuthorizationGrant grant, final Scope scope) {
 		// The token endpoint
-		final var tokenEndpoint = ssoMetadata.getTokenEndpointURI();
-
-		final AuthorizationGrant codeGrant = new AuthorizationCodeGrant(code, callbackURI, pkceCodeVerifier == null ? null : new CodeVerifier(pkceCodeVerifier));
+		final var tokenEndpoint = metadata.getTokenEndpointURI();
 
 		// Make the token request
-		TokenRequest request;
-		final var optSecret = oidcParameters.oidcClientSecret();
-		if (optSecret.isEmpty() || StringUtil.isBlank(optSecret.get())) {
-			request = new TokenRequest(tokenEndpoint, clientID, codeGrant);
+		final TokenRequest request;
+		final var clientAuthOpt = getClientAuthentication();
+		if (clientAuthOpt.isEmpty()) {
+			if (grant instanceof ClientCredentialsGrant) {
+				throw new VSystemException("client_credentials grant needs clientSecret.");
+			}
+			request = new TokenRequest(tokenEndpoint, clientID, grant, scope);
 		} else {
-			final var clientSecret = new Secret(optSecret.get());
-			final ClientAuthentication clientAuth = new ClientSecretBasic(clientID, clientSecret);
-			request = new TokenRequest(tokenEndpoint, clientAuth, codeGrant);
+			request = new TokenRequest(tokenEndpoint, clientAuthOpt.get(), grant, scope);
 		}
 
 		// Call the endpoint
 		final TokenResponse tokenResponse;
 		try {
-			final var httpRequest = request.toHTTPRequest();
-			requestConfigurator.configure(httpRequest);
-			tokenResponse = OIDCTokenResponseParser.parse(httpRequest.send());
+			tokenResponse = OIDCTokenResponseParser.parse(request.toHTTPRequest().send(httpTransport));
 		} catch (com.nimbusds.oauth2.sdk.ParseException | IOException e) {
 			throw new VSystemException(e, "Unable to retreive token from OIDC provider");
 		}
@@ -399,15 +506,76 @@ public class OIDCClient implements IOIDCClient {
 		return ((OIDCTokenResponse) tokenResponse.toSuccessResponse()).getOIDCTokens();
 	}
 
+	private Optional<ClientAuthentication> getClientAuthentication() {
+		final var optSecret = oidcParameters.oidcClientSecret();
+		if (optSecret.isEmpty() || StringUtil.isBlank(optSecret.get())) {
+			return Optional.empty();
+		}
+		return Optional.of(new ClientSecretBasic(clientID, new Secret(optSecret.get())));
+	}
+
+	private TokenIntrospectionSuccessResponse requestIntrospection(final OIDCProviderMetadata metadata, final String token) {
+		final var introspectionEndpoint = metadata.getIntrospectionEndpointURI();
+		if (introspectionEndpoint == null) {
+			throw new VSystemException("OIDC provider has no introspection endpoint.");
+		}
+		final var clientAuth = getClientAuthentication()
+				.orElseThrow(() -> new VSystemException("Token introspection needs clientSecret."));
+		final var request = new TokenIntrospectionRequest(introspectionEndpoint, clientAuth, new TypelessAccessToken(token));
+
+		final TokenIntrospectionResponse introspectionResponse;
+		try {
+			introspectionResponse = TokenIntrospectionResponse.parse(request.toHTTPRequest().send(httpTransport));
+		} catch (com.nimbusds.oauth2.sdk.ParseException | IOException e) {
+			throw new VSystemException(e, "Unable to introspect token with OIDC provider");
+		}
+
+		if (!introspectionResponse.indicatesSuccess()) {
+			final var errorObject = introspectionResponse.toErrorResponse().getErrorObject();
+			throw new VSystemException("Invalid OIDC introspection response '{0} : {1}'", errorObject.getCode(), errorObject.getDescription());
+		}
+		return introspectionResponse.toSuccessResponse();
+	}
+
 	private void doValidateToken(final JWT idToken, final String expectedNonce) {
 		try {
-			final var claims = idTokenValidator.validate(idToken, new Nonce(expectedNonce));
+			final var claims = idTokenValidator.validate(idToken, expectedNonce == null ? null : new Nonce(expectedNonce));
 			LOG.info("Valid OIDC Id token received for user '{}'.", claims.getSubject());
 		} catch (BadJOSEException | JOSEException e) {
 			throw new VSystemException(e, "Error validating OIDC Id token.");
 		}
 	}
 
+	/**
+	 * Get an access token for this client itself (client_credentials grant), to call other services.
+	 * Tokens are cached until shortly before expiry and refreshed in background while used (see tokenRefreshAheadSeconds) :
+	 * call it for each outbound request, the provider is called once per token lifetime.
+	 *
+	 * @param scopes the requested scopes, none for the provider's default
+	 * @return a valid access token
+	 */
+	@Override
+	public AccessToken getClientCredentialsToken(final String... scopes) {
+		return tokenManager.getClientCredentialsToken(new Scope(scopes));
+	}
+
+	/**
+	 * Refreshes the tokens of a user session (refresh_token grant).
+	 * Concurrent refreshes with the same refresh token share a single call to the provider.
+	 * The ID token, if returned, is validated.
+	 *
+	 * @param refreshToken the current refresh token of the user session
+	 * @return the new tokens, the refresh token is null if the provider doesn't rotate them (keep the current one)
+	 */
+	@Override
+	public OIDCTokens refreshTokens(final String refreshToken) {
+		final var oidcTokens = tokenManager.refreshTokens(refreshToken);
+		if (oidcTokens.getIDToken() != null && !Boolean.TRUE.equals(oidcParameters.skipIdTokenValidation())) {
+			doValidateToken(oidcTokens.getIDToken(), null);
+		}
+		return oidcTokens;
+	}
+
 	/**
 	 * Retrieves the additional infos provided with according getLoginUrl method.
 	 *
@@ -422,6 +590,31 @@ public class OIDCClient implements IOIDCClient {
 		return oidcStateStorage.retrieveAdditionalInfos(state.getValue());
 	}
 
+	/**
+	 * Validates a JWT access token against the provider keys (cached, see OIDCJWKSetSource).
+	 * Verified tokens are cached until they expire (see accessTokenCacheSize).
+	 *
+	 * @param accessToken the serialized access token, without the Bearer prefix
+	 * @return the claims of the valid token
+	 */
+	@Override
+	public JWTClaimsSet validateAccessToken(final String accessToken) {
+		return accessTokenValidator.validate(accessToken);
+	}
+
+	/**
+	 * Introspects an opaque token with the provider introspection endpoint (RFC 7662).
+	 * Results are cached at most introspectionCacheSeconds, and never after the token expiration.
+	 * Concurrent introspections of the same token share a single call to the provider.
+	 *
+	 * @param token the token, without the Bearer prefix
+	 * @return the introspection result, check isActive
+	 */
+	@Override
+	public TokenIntrospectionSuccessResponse introspectToken(final String token) {
+		return tokenIntrospector.introspect(token);
+	}
+
 	/**
 	 * Build the logout URL for the SSO.
 	 *
@@ -458,6 +651,6 @@ public class OIDCClient implements IOIDCClient {
 			logoutParam += localeParamNameOpt.get() + "=" + localeOpt.orElse(Locale.FRENCH).getLanguage();
 		}
 
-		return ssoMetadata.getEndSessionEndpointURI().toString() + logoutParam;
+		return getMetadata().getEndSessionEndpointURI().toString() + logoutParam;
 	}
 }
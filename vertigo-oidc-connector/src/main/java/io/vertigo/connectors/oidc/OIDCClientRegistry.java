@@ -0,0 +1,191 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.oidc;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.vertigo.core.lang.Assertion;
+import io.vertigo.core.lang.VSystemException;
+
+/**
+ * OIDC clients of several tenants (realms), created on first use and closed after an idle delay.
+ * All clients share the same HTTP transport (connections to the provider) and background refresh threads.
+ * Tenants may be restricted to an allow-list, and the number of loaded tenants is capped : tenants often come from the request,
+ * unknown ones are rejected before any client is created.
+ * A client evicted while in use still works, without background refresh : the next getClient creates a new one.
+ *
+ * @author skerdudou
+ */
+public final class OIDCClientRegistry implements AutoCloseable {
+
+	private static final Logger LOG = LogManager.getLogger(OIDCClientRegistry.class);
+	// tenants are used in provider URLs, and often come from the request
+	private static final Pattern TENANT_PATTERN = Pattern.compile("[A-Za-z0-9_.\\-]{1,128}");
+
+	private final Function<String, OIDCParameters> parametersProvider;
+	private final OIDCHttpTransport httpTransport;
+	private final ScheduledExecutorService refreshExecutor;
+	private final Optional<Set<String>> allowedTenantsOpt;
+	private final int maxTenants;
+	private final long idleMillis;
+	private final ScheduledFuture<?> evictionFuture;
+	private final Map<String, TenantClient> tenantClients = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor.
+	 * @param parametersProvider parameters of a tenant
+	 * @param httpTransport transport shared by all tenants
+	 * @param refreshExecutor executor of background refreshes shared by all tenants, shut down on close
+	 * @param allowedTenantsOpt allowed tenants (all valid tenants if empty)
+	 * @param maxTenants max number of tenants loaded at the same time
+	 * @param idleSeconds delay without use before a tenant client is closed
+	 */
+	OIDCClientRegistry(final Function<String, OIDCParameters> parametersProvider, final OIDCHttpTransport httpTransport, final ScheduledExecutorService refreshExecutor,
+			final Optional<Set<String>> allowedTenantsOpt, final int maxTenants, final int idleSeconds) {
+		Assertion.check()
+				.isNotNull(parametersProvider)
+				.isNotNull(httpTransport)
+				.isNotNull(refreshExecutor)
+				.isNotNull(allowedTenantsOpt)
+				.isTrue(allowedTenantsOpt.map(allowedTenants -> allowedTenants.stream().allMatch(tenant -> TENANT_PATTERN.matcher(tenant).matches())).orElse(true),
+						"Invalid OIDC allowed tenants {0}", allowedTenantsOpt)
+				.isTrue(maxTenants > 0, "maxTenants must be strictly positive")
+				.isTrue(idleSeconds > 0, "idleSeconds must be strictly positive");
+		//---
+		this.parametersProvider = parametersProvider;
+		this.httpTransport = httpTransport;
+		this.refreshExecutor = refreshExecutor;
+		this.allowedTenantsOpt = allowedTenantsOpt.map(Set::copyOf);
+		this.maxTenants = maxTenants;
+		idleMillis = idleSeconds * 1000L;
+		final var evictionPeriodSeconds = Math.min(60, idleSeconds);
+		evictionFuture = refreshExecutor.scheduleWithFixedDelay(this::evictIdleClients, evictionPeriodSeconds, evictionPeriodSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Get the client of a tenant, created on first use (provider metadata is loaded at that time).
+	 *
+	 * @param tenant the tenant (realm)
+	 * @return the client of this tenant
+	 * @throws VSystemException if the tenant isn't allowed, or if maxTenants tenants are already loaded
+	 */
+	public IOIDCClient getClient(final String tenant) {
+		Assertion.check()
+				.isNotNull(tenant)
+				.isTrue(TENANT_PATTERN.matcher(tenant).matches(), "Invalid OIDC tenant '{0}'", tenant);
+		//---
+		if (allowedTenantsOpt.isPresent() && !allowedTenantsOpt.get().contains(tenant)) {
+			throw new VSystemException("Unknown OIDC tenant '{0}'", tenant);
+		}
+		while (true) {
+			// creation out of the map lock : a slow provider doesn't block other tenants
+			final var oidcClient = tenantClients.computeIfAbsent(tenant, this::createTenantClient).getClient();
+			if (oidcClient != null) {
+				return oidcClient;
+			}
+			// evicted meanwhile : retried with a new holder
+		}
+	}
+
+	private TenantClient createTenantClient(final String tenant) {
+		// concurrent creations of different tenants may exceed the cap by a few
+		if (tenantClients.size() >= maxTenants) {
+			throw new VSystemException("Too many OIDC tenants loaded ({0}), tenant '{1}' rejected", maxTenants, tenant);
+		}
+		return new TenantClient(tenant);
+	}
+
+	/**
+	 * @return the tenants with a client currently loaded
+	 */
+	public Set<String> getLoadedTenants() {
+		return Set.copyOf(tenantClients.keySet());
+	}
+
+	/**
+	 * Closes all tenant clients and stops background refreshes.
+	 */
+	@Override
+	public void close() {
+		evictionFuture.cancel(false);
+		tenantClients.values().forEach(TenantClient::close);
+		tenantClients.clear();
+		refreshExecutor.shutdownNow();
+	}
+
+	private void evictIdleClients() {
+		final var minLastAccessMillis = System.currentTimeMillis() - idleMillis;
+		tenantClients.forEach((tenant, tenantClient) -> {
+			if (tenantClient.lastAccessMillis < minLastAccessMillis && tenantClients.remove(tenant, tenantClient)) {
+				LOG.info("OIDC client of tenant '{}' idle, closed.", tenant);
+				tenantClient.close();
+			}
+		});
+	}
+
+	private final class TenantClient {
+		private final String tenant;
+		private volatile OIDCClient oidcClient;
+		private volatile boolean closed;
+		private volatile long lastAccessMillis = System.currentTimeMillis();
+
+		TenantClient(final String tenant) {
+			this.tenant = tenant;
+		}
+
+		/**
+		 * @return the client, null once this holder is closed (evicted) : the caller must get the holder from the map again
+		 */
+		OIDCClient getClient() {
+			lastAccessMillis = System.currentTimeMillis();
+			final var client = oidcClient;
+			if (client != null && !closed) {
+				return client;
+			}
+			synchronized (this) {
+				if (closed) {
+					// never create a client in a removed holder : it would never be closed
+					return null;
+				}
+				if (oidcClient == null) {
+					LOG.info("Creating OIDC client of tenant '{}'.", tenant);
+					oidcClient = new OIDCClient(parametersProvider.apply(tenant), Optional.of(httpTransport), Optional.of(refreshExecutor));
+				}
+				return oidcClient;
+			}
+		}
+
+		synchronized void close() {
+			closed = true;
+			if (oidcClient != null) {
+				oidcClient.close();
+			}
+		}
+	}
+}
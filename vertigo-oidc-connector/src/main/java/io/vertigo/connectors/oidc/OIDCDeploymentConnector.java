@@ -22,6 +22,7 @@ import java.util.Optional;
 import javax.inject.Inject;
 
 import io.vertigo.core.lang.Assertion;
+import io.vertigo.core.node.component.Activeable;
 import io.vertigo.core.param.ParamValue;
 import io.vertigo.core.resource.ResourceManager;
 
@@ -30,7 +31,7 @@ import io.vertigo.core.resource.ResourceManager;
  *
  * @author skerdudou
  */
-public class OIDCDeploymentConnector implements IOIDCDeploymentConnector {
+public class OIDCDeploymentConnector implements IOIDCDeploymentConnector, Activeable {
 
 	private final OIDCClient oidcClient;
 	private final String connectorName;
@@ -56,6 +57,14 @@ public class OIDCDeploymentConnector implements IOIDCDeploymentConnector {
 			@ParamValue("localeParamName") final Optional<String> localeParamNameOpt,
 			@ParamValue("proxyHost") final Optional<String> proxyHostOpt,
 			@ParamValue("proxyPort") final Optional<Integer> proxyPortOpt,
+			@ParamValue("httpMaxConcurrentRequests") final Optional<Integer> httpMaxConcurrentRequestsOpt,
+			@ParamValue("metadataRefreshSeconds") final Optional<Integer> metadataRefreshSecondsOpt,
+			@ParamValue("jwksMinRefreshSeconds") final Optional<Integer> jwksMinRefreshSecondsOpt,
+			@ParamValue("accessTokenAudience") final Optional<String> accessTokenAudienceOpt,
+			@ParamValue("accessTokenCacheSize") final Optional<Integer> accessTokenCacheSizeOpt,
+			@ParamValue("tokenRefreshAheadSeconds") final Optional<Integer> tokenRefreshAheadSecondsOpt,
+			@ParamValue("introspectionCacheSeconds") final Optional<Integer> introspectionCacheSecondsOpt,
+			@ParamValue("introspectionCacheSize") final Optional<Integer> introspectionCacheSizeOpt,
 			final ResourceManager resourceManager) {
 
 		Assertion.check()
@@ -77,7 +86,15 @@ public class OIDCDeploymentConnector implements IOIDCDeploymentConnector {
 				.isNotNull(logoutIdParamNameOpt)
 				.isNotNull(localeParamNameOpt)
 				.isNotNull(proxyHostOpt)
-				.isNotNull(proxyPortOpt);
+				.isNotNull(proxyPortOpt)
+				.isNotNull(httpMaxConcurrentRequestsOpt)
+				.isNotNull(metadataRefreshSecondsOpt)
+				.isNotNull(jwksMinRefreshSecondsOpt)
+				.isNotNull(accessTokenAudienceOpt)
+				.isNotNull(accessTokenCacheSizeOpt)
+				.isNotNull(tokenRefreshAheadSecondsOpt)
+				.isNotNull(introspectionCacheSecondsOpt)
+				.isNotNull(introspectionCacheSizeOpt);
 		//---
 		connectorName = connectorNameOpt.orElse("main");
 
@@ -99,7 +116,15 @@ public class OIDCDeploymentConnector implements IOIDCDeploymentConnector {
 				trustStoreUrlOpt,
 				trustStorePasswordOpt,
 				proxyHostOpt,
-				proxyPortOpt.orElse(3128));// default port for http proxy
+				proxyPortOpt.orElse(3128), // default port for http proxy
+				httpMaxConcurrentRequestsOpt.orElse(0),
+				metadataRefreshSecondsOpt.orElse(3600),
+				jwksMinRefreshSecondsOpt.orElse(30),
+				accessTokenAudienceOpt,
+				accessTokenCacheSizeOpt.orElse(10_000),
+				tokenRefreshAheadSecondsOpt.orElse(30),
+				introspectionCacheSecondsOpt.orElse(60),
+				introspectionCacheSizeOpt.orElse(10_000));
 
 		oidcClient = new OIDCClient(oidcParameters);
 	}
@@ -109,6 +134,18 @@ public class OIDCDeploymentConnector implements IOIDCDeploymentConnector {
 		return connectorName;
 	}
 
+	/** {@inheritDoc} */
+	@Override
+	public void start() {
+		//
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void stop() {
+		oidcClient.close();
+	}
+
 	/**
 	 * Get custom client over NimbusDS OIDC client.
 	 *
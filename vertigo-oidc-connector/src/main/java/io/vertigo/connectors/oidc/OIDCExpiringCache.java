@@ -0,0 +1,103 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.oidc;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded cache of values valid until an expiration instant.
+ * When full, expired values are removed first, then arbitrary ones down to 90% of the max size : a value dropped while
+ * still valid is just computed again.
+ *
+ * @author skerdudou
+ * @param <V> value type
+ */
+final class OIDCExpiringCache<V> {
+
+	private final int maxSize;
+	private final Map<String, CachedValue<V>> cachedValues = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor.
+	 * @param maxSize max number of cached values, 0 to disable the cache
+	 */
+	OIDCExpiringCache(final int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @return if values are cached
+	 */
+	boolean isEnabled() {
+		return maxSize > 0;
+	}
+
+	/**
+	 * @param key the key
+	 * @param now current time in millis
+	 * @return the value, null if absent or expired
+	 */
+	V get(final String key, final long now) {
+		final var cachedValue = cachedValues.get(key);
+		if (cachedValue == null) {
+			return null;
+		}
+		if (cachedValue.expiresAtMillis() <= now) {
+			cachedValues.remove(key, cachedValue);
+			return null;
+		}
+		return cachedValue.value();
+	}
+
+	/**
+	 * @param key the key
+	 * @param value the value
+	 * @param expiresAtMillis expiration of the value
+	 * @param now current time in millis
+	 */
+	void put(final String key, final V value, final long expiresAtMillis, final long now) {
+		if (!isEnabled()) {
+			return;
+		}
+		if (cachedValues.size() >= maxSize) {
+			evict(now);
+		}
+		cachedValues.put(key, new CachedValue<>(value, expiresAtMillis));
+	}
+
+	/**
+	 * @return the number of cached values, expired ones included
+	 */
+	int size() {
+		return cachedValues.size();
+	}
+
+	private void evict(final long now) {
+		cachedValues.values().removeIf(cachedValue -> cachedValue.expiresAtMillis() <= now);
+		// still full of valid values : drop some of them
+		final var iterator = cachedValues.keySet().iterator();
+		while (cachedValues.size() >= maxSize * 9 / 10 && iterator.hasNext()) {
+			iterator.next();
+			iterator.remove();
+		}
+	}
+
+	private record CachedValue<V>(V value, long expiresAtMillis) {
+	}
+}
@@ -42,6 +42,13 @@ public class OIDCFeatures extends Features<OIDCFeatures> {
 
 	}
 
+	@Feature("oidc.multiTenant")
+	public OIDCFeatures withMultiTenantConfig(final Param... params) {
+		getModuleConfigBuilder()
+				.addConnector(OIDCMultiTenantConnector.class, params);
+		return this;
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	protected void buildFeatures() {
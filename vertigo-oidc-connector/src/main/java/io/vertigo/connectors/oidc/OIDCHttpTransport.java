@@ -0,0 +1,217 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.oidc;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProxySelector;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+import javax.net.ssl.SSLContext;
+
+import com.nimbusds.jose.util.Resource;
+import com.nimbusds.jose.util.ResourceRetriever;
+import com.nimbusds.oauth2.sdk.http.HTTPRequestSender;
+import com.nimbusds.oauth2.sdk.http.HTTPResponse;
+import com.nimbusds.oauth2.sdk.http.ReadOnlyHTTPRequest;
+import com.nimbusds.oauth2.sdk.http.ReadOnlyHTTPResponse;
+
+import io.vertigo.core.analytics.AnalyticsManager;
+import io.vertigo.core.lang.Assertion;
+
+/**
+ * HTTP transport of all calls to the OIDC provider (metadata, JWK set, token endpoint).
+ * A single HttpClient keeps connections alive, so TLS handshakes are done once per connection instead of once per call.
+ * Concurrent calls can be limited (maxConcurrentRequests), calls are traced with AnalyticsManager (category oidc).
+ *
+ * @author skerdudou
+ */
+final class OIDCHttpTransport implements HTTPRequestSender, ResourceRetriever {
+
+	private static final String ANALYTICS_CATEGORY = "oidc";
+	// managed by the HttpClient itself
+	private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host", "upgrade");
+
+	private final String name;
+	private final HttpClient httpClient;
+	private final Duration readTimeout;
+	private final Optional<Semaphore> concurrencyLimitOpt;
+	private final AnalyticsManager analyticsManager;
+
+	/**
+	 * Constructor.
+	 * @param name name of the transport, used in traces
+	 * @param connectTimeoutMillis connect timeout
+	 * @param readTimeoutMillis response timeout, also max wait for a slot when concurrency is limited
+	 * @param sslContextOpt custom trust store
+	 * @param proxyOpt http proxy
+	 * @param maxConcurrentRequests max concurrent calls, 0 for unlimited
+	 * @param analyticsManager analytics
+	 */
+	OIDCHttpTransport(
+			final String name,
+			final int connectTimeoutMillis,
+			final int readTimeoutMillis,
+			final Optional<SSLContext> sslContextOpt,
+			final Optional<InetSocketAddress> proxyOpt,
+			final int maxConcurrentRequests,
+			final AnalyticsManager analyticsManager) {
+		Assertion.check()
+				.isNotBlank(name)
+				.isTrue(connectTimeoutMillis > 0, "connectTimeout must be strictly positive")
+				.isTrue(readTimeoutMillis > 0, "readTimeout must be strictly positive")
+				.isNotNull(sslContextOpt)
+				.isNotNull(proxyOpt)
+				.isTrue(maxConcurrentRequests >= 0, "maxConcurrentRequests must be positive")
+				.isNotNull(analyticsManager);
+		//---
+		this.name = name;
+		readTimeout = Duration.ofMillis(readTimeoutMillis);
+		concurrencyLimitOpt = maxConcurrentRequests > 0 ? Optional.of(new Semaphore(maxConcurrentRequests)) : Optional.empty();
+		this.analyticsManager = analyticsManager;
+
+		final var httpClientBuilder = HttpClient.newBuilder()
+				.connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+				.followRedirects(HttpClient.Redirect.NORMAL);
+		sslContextOpt.ifPresent(httpClientBuilder::sslContext);
+		proxyOpt.ifPresent(proxy -> httpClientBuilder.proxy(ProxySelector.of(proxy)));
+		httpClient = httpClientBuilder.build();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public ReadOnlyHTTPResponse send(final ReadOnlyHTTPRequest request) throws IOException {
+		final var requestBuilder = HttpRequest.newBuilder(request.getURI())
+				.timeout(request.getReadTimeout() > 0 ? Duration.ofMillis(request.getReadTimeout()) : readTimeout);
+		request.getHeaderMap().forEach((headerName, values) -> {
+			if (!RESTRICTED_HEADERS.contains(headerName.toLowerCase())) {
+				values.forEach(value -> requestBuilder.header(headerName, value));
+			}
+		});
+		final var body = request.getBody();
+		requestBuilder.method(request.getMethod().name(), body == null ? BodyPublishers.noBody() : BodyPublishers.ofString(body));
+
+		final var response = doSend(requestBuilder.build());
+		final var httpResponse = new HTTPResponse(response.statusCode());
+		response.headers().map().forEach((headerName, values) -> {
+			if (!headerName.startsWith(":")) { // HTTP/2 pseudo headers
+				httpResponse.setHeader(headerName, values.toArray(String[]::new));
+			}
+		});
+		httpResponse.setContent(response.body());
+		return httpResponse;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Resource retrieveResource(final URL url) throws IOException {
+		final HttpRequest request;
+		try {
+			request = HttpRequest.newBuilder(url.toURI())
+					.timeout(readTimeout)
+					.GET()
+					.build();
+		} catch (final URISyntaxException e) {
+			throw new IOException(e);
+		}
+		final var response = doSend(request);
+		if (response.statusCode() != 200) {
+			throw new IOException("HTTP " + response.statusCode() + " retrieving " + url);
+		}
+		return new Resource(response.body(), response.headers().firstValue("Content-Type").orElse(null));
+	}
+
+	private HttpResponse<String> doSend(final HttpRequest request) throws IOException {
+		final var span = "/" + name + "/" + request.method();
+		try {
+			return analyticsManager.traceWithReturn(ANALYTICS_CATEGORY, span, tracer -> {
+				tracer.setTag("host", request.uri().getAuthority());
+				tracer.setTag("path", request.uri().getPath());
+				try {
+					final var response = sendWithinConcurrencyLimit(request, waitMillis -> tracer.setMeasure("waitMillis", waitMillis));
+					tracer.setTag("status", String.valueOf(response.statusCode()));
+					return response;
+				} catch (final IOException e) {
+					tracer.setTag("status", "0");
+					throw new TransportException(e);
+				}
+			});
+		} catch (final TransportException e) {
+			throw e.getCause();
+		}
+	}
+
+	private HttpResponse<String> sendWithinConcurrencyLimit(final HttpRequest request, final LongConsumer waitListener) throws IOException {
+		if (concurrencyLimitOpt.isEmpty()) {
+			return sendInterruptibly(request);
+		}
+		final var concurrencyLimit = concurrencyLimitOpt.get();
+		final var start = System.nanoTime();
+		try {
+			if (!concurrencyLimit.tryAcquire(readTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+				throw new IOException("Too many concurrent requests to the OIDC provider");
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+		waitListener.accept(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		try {
+			return sendInterruptibly(request);
+		} finally {
+			concurrencyLimit.release();
+		}
+	}
+
+	private HttpResponse<String> sendInterruptibly(final HttpRequest request) throws IOException {
+		try {
+			return httpClient.send(request, BodyHandlers.ofString());
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Carries IOException through the tracer lambda.
+	 */
+	private static final class TransportException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		TransportException(final IOException cause) {
+			super(cause);
+		}
+
+		@Override
+		public synchronized IOException getCause() {
+			return (IOException) super.getCause();
+		}
+	}
+}
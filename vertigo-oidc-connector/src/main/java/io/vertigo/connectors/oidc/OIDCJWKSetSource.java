@@ -0,0 +1,123 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.oidc;
+
+import java.io.IOException;
+import java.net.URL;
+import java.text.ParseException;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jose.util.ResourceRetriever;
+
+import io.vertigo.core.lang.VSystemException;
+
+/**
+ * JWK set of the OIDC provider, kept in memory.
+ * Reads are lock free on the current JWK set, which is refreshed in background by the OIDCClient.
+ * If no key matches (ie unknown key ID after a key rotation), the JWK set is reloaded at once, at most every minRefreshMillis.
+ *
+ * @author skerdudou
+ */
+final class OIDCJWKSetSource implements JWKSource<SecurityContext> {
+
+	private static final Logger LOG = LogManager.getLogger(OIDCJWKSetSource.class);
+
+	private final Supplier<URL> jwkSetUrlSupplier;
+	private final ResourceRetriever resourceRetriever;
+	private final long minRefreshMillis;
+
+	private volatile JWKSet jwkSet; // null until first load
+	private volatile long lastRefreshMillis;
+
+	/**
+	 * Constructor.
+	 * @param jwkSetUrlSupplier the JWK set URL (from the current provider metadata)
+	 * @param resourceRetriever the retriever (timeouts, proxy, trust store)
+	 * @param minRefreshMillis min delay between two reloads triggered by unknown keys
+	 */
+	OIDCJWKSetSource(final Supplier<URL> jwkSetUrlSupplier, final ResourceRetriever resourceRetriever, final long minRefreshMillis) {
+		this.jwkSetUrlSupplier = jwkSetUrlSupplier;
+		this.resourceRetriever = resourceRetriever;
+		this.minRefreshMillis = minRefreshMillis;
+	}
+
+	@Override
+	public List<JWK> get(final JWKSelector jwkSelector, final SecurityContext context) throws KeySourceException {
+		final var currentJwkSet = jwkSet;
+		if (currentJwkSet != null) {
+			final var keys = jwkSelector.select(currentJwkSet);
+			if (!keys.isEmpty()) {
+				return keys;
+			}
+		}
+		// unknown key : the provider may have rotated its keys
+		try {
+			return jwkSelector.select(refreshIfOlderThan(minRefreshMillis));
+		} catch (final RuntimeException e) {
+			throw new KeySourceException("Unable to load OIDC JWK set", e);
+		}
+	}
+
+	/**
+	 * Reloads the JWK set, the previous one is kept if the provider is unavailable.
+	 */
+	void refresh() {
+		refreshIfOlderThan(0);
+	}
+
+	private JWKSet refreshIfOlderThan(final long maxAgeMillis) {
+		final var loadedJwkSet = jwkSet;
+		if (loadedJwkSet != null && System.currentTimeMillis() - lastRefreshMillis < maxAgeMillis) {
+			return loadedJwkSet; // tokens with unknown keys mustn't contend on the lock
+		}
+		// resolved out of the lock : it may load the provider metadata
+		final var jwkSetUrl = jwkSetUrlSupplier.get();
+		synchronized (this) {
+			final var currentJwkSet = jwkSet;
+			if (System.currentTimeMillis() - lastRefreshMillis < maxAgeMillis) {
+				if (currentJwkSet == null) {
+					throw new VSystemException("OIDC JWK set not loaded, wait before next try.");
+				}
+				return currentJwkSet; // just refreshed (maybe by another thread)
+			}
+			try {
+				final var newJwkSet = JWKSet.parse(resourceRetriever.retrieveResource(jwkSetUrl).getContent());
+				jwkSet = newJwkSet;
+				return newJwkSet;
+			} catch (final IOException | ParseException e) {
+				if (currentJwkSet == null) {
+					throw new VSystemException(e, "Can't read OIDC JWK set at '{0}'", jwkSetUrl);
+				}
+				LOG.warn("Unable to refresh OIDC JWK set at '{}', previous keys are kept.", jwkSetUrl, e);
+				return currentJwkSet;
+			} finally {
+				lastRefreshMillis = System.currentTimeMillis();
+			}
+		}
+	}
+}
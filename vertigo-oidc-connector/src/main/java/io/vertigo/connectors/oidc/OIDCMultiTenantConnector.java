@@ -0,0 +1,213 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.oidc;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+
+import io.vertigo.core.analytics.AnalyticsManager;
+import io.vertigo.core.lang.Assertion;
+import io.vertigo.core.node.component.Activeable;
+import io.vertigo.core.node.component.Connector;
+import io.vertigo.core.param.ParamValue;
+import io.vertigo.core.resource.ResourceManager;
+
+/**
+ * Component to configure OIDC authentication of several tenants (realms) of the same provider.
+ * The url, overrideIssuer and clientName parameters may contain {tenant}, replaced by the tenant of each client.
+ * Tenant clients are created on first use (nothing is loaded at startup) and closed after tenantIdleSeconds without use.
+ * Tenants may be restricted with allowedTenants (; separated), at most maxTenants (default 100) are loaded at the same time.
+ *
+ * @author skerdudou
+ */
+public class OIDCMultiTenantConnector implements Connector<OIDCClientRegistry>, Activeable {
+
+	private static final String TENANT_PLACEHOLDER = "{tenant}";
+
+	private final OIDCClientRegistry oidcClientRegistry;
+	private final String connectorName;
+
+	@Inject
+	public OIDCMultiTenantConnector(
+			@ParamValue("name") final Optional<String> connectorNameOpt,
+			@ParamValue("clientName") final String clientName,
+			@ParamValue("clientSecret") final Optional<String> clientSecretOpt,
+			@ParamValue("url") final String oidcUrl,
+			@ParamValue("overrideIssuer") final Optional<String> overrideIssuerOpt,
+			@ParamValue("httpConnectTimeout") final Optional<Integer> httpConnectTimeoutOpt,
+			@ParamValue("httpReadTimeout") final Optional<Integer> httpReadTimeoutOpt,
+			@ParamValue("jwsAlgorithm") final Optional<String> jwsAlgorithmOpt,
+			@ParamValue("skipIdTokenValidation") final Optional<Boolean> skipIdTokenValidationOpt,
+			@ParamValue("usePKCE") final Optional<Boolean> usePKCEOpt,
+			@ParamValue("trustStoreUrl") final Optional<String> trustStoreUrlOpt,
+			@ParamValue("trustStorePassword") final Optional<String> trustStorePasswordOpt,
+			@ParamValue("logoutRedirectUriParamName") final Optional<String> logoutRedirectUriParamNameOpt,
+			@ParamValue("logoutIdParamName") final Optional<String> logoutIdParamNameOpt,
+			@ParamValue("localeParamName") final Optional<String> localeParamNameOpt,
+			@ParamValue("proxyHost") final Optional<String> proxyHostOpt,
+			@ParamValue("proxyPort") final Optional<Integer> proxyPortOpt,
+			@ParamValue("httpMaxConcurrentRequests") final Optional<Integer> httpMaxConcurrentRequestsOpt,
+			@ParamValue("metadataRefreshSeconds") final Optional<Integer> metadataRefreshSecondsOpt,
+			@ParamValue("jwksMinRefreshSeconds") final Optional<Integer> jwksMinRefreshSecondsOpt,
+			@ParamValue("accessTokenAudience") final Optional<String> accessTokenAudienceOpt,
+			@ParamValue("accessTokenCacheSize") final Optional<Integer> accessTokenCacheSizeOpt,
+			@ParamValue("tokenRefreshAheadSeconds") final Optional<Integer> tokenRefreshAheadSecondsOpt,
+			@ParamValue("introspectionCacheSeconds") final Optional<Integer> introspectionCacheSecondsOpt,
+			@ParamValue("introspectionCacheSize") final Optional<Integer> introspectionCacheSizeOpt,
+			@ParamValue("allowedTenants") final Optional<String> allowedTenantsOpt,
+			@ParamValue("maxTenants") final Optional<Integer> maxTenantsOpt,
+			@ParamValue("tenantIdleSeconds") final Optional<Integer> tenantIdleSecondsOpt,
+			@ParamValue("refreshThreads") final Optional<Integer> refreshThreadsOpt,
+			final ResourceManager resourceManager,
+			final AnalyticsManager analyticsManager) {
+
+		Assertion.check()
+				.isNotNull(connectorNameOpt)
+				.isNotBlank(clientName)
+				.isNotNull(clientSecretOpt)
+				.isNotBlank(oidcUrl)
+				.isTrue(oidcUrl.contains(TENANT_PLACEHOLDER), "url must contain {0}", TENANT_PLACEHOLDER)
+				.isNotNull(overrideIssuerOpt)
+				.isNotNull(httpConnectTimeoutOpt)
+				.isNotNull(httpReadTimeoutOpt)
+				.isNotNull(jwsAlgorithmOpt)
+				.isNotNull(skipIdTokenValidationOpt)
+				.isNotNull(usePKCEOpt)
+				.isNotNull(trustStoreUrlOpt)
+				.isNotNull(trustStorePasswordOpt)
+				.isNotNull(logoutRedirectUriParamNameOpt)
+				.isNotNull(logoutIdParamNameOpt)
+				.isNotNull(localeParamNameOpt)
+				.isNotNull(proxyHostOpt)
+				.isNotNull(proxyPortOpt)
+				.isNotNull(httpMaxConcurrentRequestsOpt)
+				.isNotNull(metadataRefreshSecondsOpt)
+				.isNotNull(jwksMinRefreshSecondsOpt)
+				.isNotNull(accessTokenAudienceOpt)
+				.isNotNull(accessTokenCacheSizeOpt)
+				.isNotNull(tokenRefreshAheadSecondsOpt)
+				.isNotNull(introspectionCacheSecondsOpt)
+				.isNotNull(introspectionCacheSizeOpt)
+				.isNotNull(allowedTenantsOpt)
+				.isNotNull(maxTenantsOpt)
+				.isNotNull(tenantIdleSecondsOpt)
+				.isNotNull(refreshThreadsOpt)
+				.isNotNull(resourceManager)
+				.isNotNull(analyticsManager);
+		//---
+		connectorName = connectorNameOpt.orElse("main");
+
+		// parameters with {tenant} placeholders
+		final var templateParameters = new OIDCParameters(
+				clientName,
+				clientSecretOpt,
+				oidcUrl,
+				overrideIssuerOpt,
+				httpConnectTimeoutOpt.orElse(1000),
+				httpReadTimeoutOpt.orElse(1000),
+				Optional.empty(), // no local metadata file per tenant
+				jwsAlgorithmOpt.orElse("RS256"),
+				skipIdTokenValidationOpt.orElse(Boolean.FALSE),
+				usePKCEOpt.orElse(Boolean.TRUE),
+				logoutRedirectUriParamNameOpt,
+				logoutIdParamNameOpt,
+				localeParamNameOpt,
+				true, // an unavailable tenant must not fail, it is retried later
+				trustStoreUrlOpt,
+				trustStorePasswordOpt,
+				proxyHostOpt,
+				proxyPortOpt.orElse(3128), // default port for http proxy
+				httpMaxConcurrentRequestsOpt.orElse(0),
+				metadataRefreshSecondsOpt.orElse(3600),
+				jwksMinRefreshSecondsOpt.orElse(30),
+				accessTokenAudienceOpt,
+				accessTokenCacheSizeOpt.orElse(10_000),
+				tokenRefreshAheadSecondsOpt.orElse(30),
+				introspectionCacheSecondsOpt.orElse(60),
+				introspectionCacheSizeOpt.orElse(10_000));
+
+		oidcClientRegistry = new OIDCClientRegistry(
+				tenant -> forTenant(templateParameters, tenant),
+				OIDCClient.createHttpTransport(connectorName, templateParameters, resourceManager, analyticsManager),
+				OIDCClient.createRefreshExecutor("oidc-refresh-" + connectorName, refreshThreadsOpt.orElse(2)),
+				allowedTenantsOpt.map(allowedTenants -> Arrays.stream(allowedTenants.split(";")).map(String::trim).collect(Collectors.toSet())),
+				maxTenantsOpt.orElse(100),
+				tenantIdleSecondsOpt.orElse(3600));
+	}
+
+	private static OIDCParameters forTenant(final OIDCParameters template, final String tenant) {
+		return new OIDCParameters(
+				template.oidcClientName().replace(TENANT_PLACEHOLDER, tenant),
+				template.oidcClientSecret(),
+				template.oidcURL().replace(TENANT_PLACEHOLDER, tenant),
+				template.overrideIssuerOpt().map(overrideIssuer -> overrideIssuer.replace(TENANT_PLACEHOLDER, tenant)),
+				template.httpConnectTimeout(),
+				template.httpReadTimeout(),
+				template.localOIDCMetadataOp(),
+				template.jwsAlgorithm(),
+				template.skipIdTokenValidation(),
+				template.usePKCE(),
+				template.logoutRedirectUriParamNameOpt(),
+				template.logoutIdParamNameOpt(),
+				template.localeParamNameOpt(),
+				template.dontFailAtStartup(),
+				template.trustStoreUrlOpt(),
+				template.trustStorePasswordOpt(),
+				template.proxyHostOpt(),
+				template.proxyPort(),
+				template.httpMaxConcurrentRequests(),
+				template.metadataRefreshSeconds(),
+				template.jwksMinRefreshSeconds(),
+				template.accessTokenAudienceOpt(),
+				template.accessTokenCacheSize(),
+				template.tokenRefreshAheadSeconds(),
+				template.introspectionCacheSeconds(),
+				template.introspectionCacheSize());
+	}
+
+	@Override
+	public String getName() {
+		return connectorName;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void start() {
+		//
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void stop() {
+		oidcClientRegistry.close();
+	}
+
+	/**
+	 * Get the registry of tenant clients.
+	 *
+	 * @return the registry
+	 */
+	@Override
+	public OIDCClientRegistry getClient() {
+		return oidcClientRegistry;
+	}
+
+}
@@ -25,8 +25,8 @@ public final record OIDCParameters(
 		Optional<String> oidcClientSecret,
 		String oidcURL,
 		Optional<String> overrideIssuerOpt,
-		int httpConnectTimeout, // milliseconds, used to fetch metadata from OIDC provider
-		int httpReadTimeout, // milliseconds, used to fetch metadata from OIDC provider
+		int httpConnectTimeout, // milliseconds, used for all calls to the OIDC provider
+		int httpReadTimeout, // milliseconds, used for all calls to the OIDC provider
 		Optional<URL> localOIDCMetadataOp,
 		String jwsAlgorithm,
 		Boolean skipIdTokenValidation,
@@ -42,5 +42,17 @@ public final record OIDCParameters(
 		Optional<String> trustStorePasswordOpt,
 
 		Optional<String> proxyHostOpt,
-		int proxyPort) {
+		int proxyPort,
+		int httpMaxConcurrentRequests, // concurrent calls to the OIDC provider, 0 for unlimited
+
+		int metadataRefreshSeconds, // background refresh of metadata and JWK set, 0 to disable
+		int jwksMinRefreshSeconds, // min delay between JWK set reloads on unknown key ID
+
+		Optional<String> accessTokenAudienceOpt,
+		int accessTokenCacheSize, // verified access tokens kept until they expire, 0 to disable
+
+		int tokenRefreshAheadSeconds, // client_credentials tokens are refreshed in background this delay before expiry
+
+		int introspectionCacheSeconds, // max duration of cached introspection results, 0 to disable
+		int introspectionCacheSize) {
 }
@@ -0,0 +1,67 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.oidc;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * De-duplicates concurrent loads of the same key : the first caller loads, the others wait for its result.
+ *
+ * @author skerdudou
+ * @param <K> key type
+ * @param <V> value type
+ */
+final class OIDCSingleFlight<K, V> {
+
+	private final Map<K, CompletableFuture<V>> inFlightLoads = new ConcurrentHashMap<>();
+
+	/**
+	 * Loads the value, or waits for the load of the same key already in progress.
+	 * @param key the key
+	 * @param loader loads the value
+	 * @return the value
+	 */
+	V load(final K key, final Supplier<V> loader) {
+		final var future = new CompletableFuture<V>();
+		final var inFlightLoad = inFlightLoads.putIfAbsent(key, future);
+		if (inFlightLoad != null) {
+			try {
+				return inFlightLoad.join();
+			} catch (final CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw e;
+			}
+		}
+		try {
+			final var value = loader.get();
+			future.complete(value);
+			return value;
+		} catch (final RuntimeException e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlightLoads.remove(key, future);
+		}
+	}
+}
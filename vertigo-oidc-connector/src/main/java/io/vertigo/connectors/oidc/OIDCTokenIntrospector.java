@@ -0,0 +1,153 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.oidc;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import com.nimbusds.oauth2.sdk.TokenIntrospectionSuccessResponse;
+
+import io.vertigo.core.analytics.AnalyticsManager;
+import io.vertigo.core.lang.Assertion;
+
+/**
+ * Introspection of opaque tokens (RFC 7662) with a bounded cache keyed by the SHA-256 hash of tokens.
+ * Results are kept cacheMillis at most, and never after the token expiration : a revoked token is seen as active
+ * during cacheMillis at most.
+ * Concurrent introspections of the same token share a single call to the provider.
+ * Metrics (cache hits, misses, provider calls, errors) are accumulated and sent to analytics once per minute.
+ *
+ * @author skerdudou
+ */
+final class OIDCTokenIntrospector {
+
+	private static final String ANALYTICS_CATEGORY = "oidc";
+	private static final int METRICS_PERIOD_SECONDS = 60;
+
+	private final String name;
+	private final Function<String, TokenIntrospectionSuccessResponse> introspectionRequester;
+	private final long cacheMillis;
+	private final AnalyticsManager analyticsManager;
+	private final ScheduledFuture<?> metricsFuture;
+
+	private final OIDCExpiringCache<TokenIntrospectionSuccessResponse> cachedIntrospections;
+	private final OIDCSingleFlight<String, TokenIntrospectionSuccessResponse> introspectionLoads = new OIDCSingleFlight<>();
+	private final LongAdder cacheHits = new LongAdder();
+	private final LongAdder cacheMisses = new LongAdder();
+	private final LongAdder providerCalls = new LongAdder();
+	private final LongAdder providerErrors = new LongAdder();
+
+	/**
+	 * Constructor.
+	 * @param name name used in analytics
+	 * @param introspectionRequester calls the provider introspection endpoint
+	 * @param cacheSeconds max duration a result is cached, 0 to disable the cache
+	 * @param cacheMaxSize max number of cached results
+	 * @param analyticsManager analytics
+	 * @param metricsExecutor executor sending metrics
+	 */
+	OIDCTokenIntrospector(
+			final String name,
+			final Function<String, TokenIntrospectionSuccessResponse> introspectionRequester,
+			final int cacheSeconds,
+			final int cacheMaxSize,
+			final AnalyticsManager analyticsManager,
+			final ScheduledExecutorService metricsExecutor) {
+		Assertion.check()
+				.isNotBlank(name)
+				.isNotNull(introspectionRequester)
+				.isTrue(cacheSeconds >= 0, "introspectionCacheSeconds must be positive")
+				.isTrue(cacheMaxSize >= 0, "introspectionCacheSize must be positive")
+				.isNotNull(analyticsManager)
+				.isNotNull(metricsExecutor);
+		//---
+		this.name = name;
+		this.introspectionRequester = introspectionRequester;
+		cacheMillis = cacheSeconds * 1000L;
+		cachedIntrospections = new OIDCExpiringCache<>(cacheSeconds > 0 ? cacheMaxSize : 0);
+		this.analyticsManager = analyticsManager;
+		metricsFuture = metricsExecutor.scheduleAtFixedRate(this::sendMetrics, METRICS_PERIOD_SECONDS, METRICS_PERIOD_SECONDS, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * @param token the token to introspect
+	 * @return the introspection result (isActive false for invalid, expired or revoked tokens)
+	 */
+	TokenIntrospectionSuccessResponse introspect(final String token) {
+		final var tokenHash = OIDCAccessTokenValidator.hash(token);
+		final var cachedResponse = cachedIntrospections.get(tokenHash, System.currentTimeMillis());
+		if (cachedResponse != null) {
+			cacheHits.increment();
+			return cachedResponse;
+		}
+		cacheMisses.increment();
+		return introspectionLoads.load(tokenHash, () -> {
+			final var currentResponse = cachedIntrospections.get(tokenHash, System.currentTimeMillis());
+			if (currentResponse != null) {
+				return currentResponse; // just introspected by another thread
+			}
+			return doIntrospect(token, tokenHash);
+		});
+	}
+
+	/**
+	 * Stops sending metrics.
+	 */
+	void close() {
+		metricsFuture.cancel(false);
+		sendMetrics();
+	}
+
+	private TokenIntrospectionSuccessResponse doIntrospect(final String token, final String tokenHash) {
+		providerCalls.increment();
+		final TokenIntrospectionSuccessResponse response;
+		try {
+			response = introspectionRequester.apply(token);
+		} catch (final RuntimeException e) {
+			providerErrors.increment();
+			throw e;
+		}
+		final var now = System.currentTimeMillis();
+		var expiresAtMillis = now + cacheMillis;
+		if (response.isActive() && response.getExpirationTime() != null) {
+			expiresAtMillis = Math.min(expiresAtMillis, response.getExpirationTime().getTime());
+		}
+		cachedIntrospections.put(tokenHash, response, expiresAtMillis, now);
+		return response;
+	}
+
+	private void sendMetrics() {
+		final var hits = cacheHits.sumThenReset();
+		final var misses = cacheMisses.sumThenReset();
+		final var calls = providerCalls.sumThenReset();
+		final var errors = providerErrors.sumThenReset();
+		if (hits + misses == 0) {
+			return; // nothing to report
+		}
+		analyticsManager.trace(ANALYTICS_CATEGORY, "/introspection/" + name, tracer -> {
+			tracer.setMeasure("cacheHits", hits);
+			tracer.setMeasure("cacheMisses", misses);
+			tracer.setMeasure("providerCalls", calls);
+			tracer.setMeasure("providerErrors", errors);
+			tracer.setMeasure("cacheSize", cachedIntrospections.size());
+		});
+	}
+}
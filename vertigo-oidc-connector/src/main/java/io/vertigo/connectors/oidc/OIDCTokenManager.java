@@ -0,0 +1,165 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.oidc;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.nimbusds.oauth2.sdk.AuthorizationGrant;
+import com.nimbusds.oauth2.sdk.ClientCredentialsGrant;
+import com.nimbusds.oauth2.sdk.RefreshTokenGrant;
+import com.nimbusds.oauth2.sdk.Scope;
+import com.nimbusds.oauth2.sdk.token.AccessToken;
+import com.nimbusds.oauth2.sdk.token.RefreshToken;
+import com.nimbusds.openid.connect.sdk.token.OIDCTokens;
+
+import io.vertigo.core.lang.Assertion;
+
+/**
+ * Obtains tokens from the OIDC provider token endpoint.
+ * - client_credentials : tokens are cached by scope until shortly before expiry, and refreshed in background
+ * (refreshAheadMillis before expiry) while they are used. Callers never wait for a refresh, unless the token is about to expire.
+ * - refresh_token : no cache, user sessions keep their tokens.
+ * Concurrent requests for the same scope or the same refresh token share a single call to the provider (rotated refresh
+ * tokens can only be used once).
+ *
+ * @author skerdudou
+ */
+final class OIDCTokenManager {
+
+	private static final Logger LOG = LogManager.getLogger(OIDCTokenManager.class);
+	private static final long EXPIRY_MARGIN_MILLIS = 5_000; // clock skew and transit time
+	private static final long DEFAULT_LIFETIME_MILLIS = 60_000; // when the provider doesn't send expires_in
+
+	private final BiFunction<AuthorizationGrant, Scope, OIDCTokens> tokenRequester;
+	private final ScheduledExecutorService refreshExecutor;
+	private final long refreshAheadMillis;
+
+	private final Map<Scope, CachedToken> clientCredentialsTokens = new ConcurrentHashMap<>();
+	private final OIDCSingleFlight<Scope, CachedToken> clientCredentialsLoads = new OIDCSingleFlight<>();
+	private final OIDCSingleFlight<String, OIDCTokens> refreshLoads = new OIDCSingleFlight<>();
+	private volatile boolean closed;
+
+	/**
+	 * Constructor.
+	 * @param tokenRequester sends a token request (grant, scope or null) to the provider
+	 * @param refreshExecutor executor of background refreshes
+	 * @param refreshAheadMillis delay before expiry to refresh client_credentials tokens in background
+	 */
+	OIDCTokenManager(final BiFunction<AuthorizationGrant, Scope, OIDCTokens> tokenRequester, final ScheduledExecutorService refreshExecutor, final long refreshAheadMillis) {
+		Assertion.check()
+				.isNotNull(tokenRequester)
+				.isNotNull(refreshExecutor)
+				.isTrue(refreshAheadMillis >= 0, "refreshAhead must be positive");
+		//---
+		this.tokenRequester = tokenRequester;
+		this.refreshExecutor = refreshExecutor;
+		this.refreshAheadMillis = refreshAheadMillis;
+	}
+
+	/**
+	 * @param scope the requested scope (empty for the provider's default)
+	 * @return a valid access token for this client
+	 */
+	AccessToken getClientCredentialsToken(final Scope scope) {
+		final var cachedToken = clientCredentialsTokens.get(scope);
+		if (cachedToken != null && cachedToken.isUsable()) {
+			cachedToken.used = true;
+			return cachedToken.accessToken; // hot path
+		}
+		final var newToken = clientCredentialsLoads.load(scope, () -> {
+			final var currentToken = clientCredentialsTokens.get(scope);
+			if (currentToken != null && currentToken != cachedToken && currentToken.isUsable()) {
+				return currentToken; // just fetched by another thread
+			}
+			return fetchClientCredentialsToken(scope);
+		});
+		newToken.used = true;
+		return newToken.accessToken;
+	}
+
+	/**
+	 * @param refreshToken the refresh token of the user session
+	 * @return the new tokens (the refresh token may be rotated)
+	 */
+	OIDCTokens refreshTokens(final String refreshToken) {
+		return refreshLoads.load(refreshToken,
+				() -> tokenRequester.apply(new RefreshTokenGrant(new RefreshToken(refreshToken)), null));
+	}
+
+	/**
+	 * Stops background refreshes (the executor may be shared with other clients).
+	 */
+	void close() {
+		closed = true;
+		clientCredentialsTokens.clear();
+	}
+
+	private CachedToken fetchClientCredentialsToken(final Scope scope) {
+		final var accessToken = tokenRequester.apply(new ClientCredentialsGrant(), scope.isEmpty() ? null : scope).getAccessToken();
+		final var lifetimeMillis = accessToken.getLifetime() > 0 ? accessToken.getLifetime() * 1000 : DEFAULT_LIFETIME_MILLIS;
+		final var newToken = new CachedToken(accessToken, System.currentTimeMillis() + lifetimeMillis);
+		clientCredentialsTokens.put(scope, newToken);
+		// refresh ahead, but not before half the lifetime for short lived tokens
+		final var refreshDelayMillis = Math.max(lifetimeMillis - refreshAheadMillis, lifetimeMillis / 2);
+		try {
+			refreshExecutor.schedule(() -> refreshInBackground(scope, newToken), refreshDelayMillis, TimeUnit.MILLISECONDS);
+		} catch (final RejectedExecutionException e) {
+			LOG.debug("OIDC client closed, token won't be refreshed in background.", e);
+		}
+		return newToken;
+	}
+
+	private void refreshInBackground(final Scope scope, final CachedToken previousToken) {
+		if (closed || clientCredentialsTokens.get(scope) != previousToken) {
+			return; // already replaced (fetched after an expiry)
+		}
+		if (!previousToken.used) {
+			clientCredentialsTokens.remove(scope, previousToken); // unused since last fetch : don't keep it alive
+			return;
+		}
+		try {
+			clientCredentialsLoads.load(scope, () -> fetchClientCredentialsToken(scope));
+		} catch (final RuntimeException e) {
+			// callers use the current token until it is about to expire, then request a new one themselves
+			LOG.warn("Unable to refresh OIDC client_credentials token, current one is kept until expiry.", e);
+		}
+	}
+
+	private static final class CachedToken {
+		private final AccessToken accessToken;
+		private final long expiresAtMillis;
+		private volatile boolean used;
+
+		CachedToken(final AccessToken accessToken, final long expiresAtMillis) {
+			this.accessToken = accessToken;
+			this.expiresAtMillis = expiresAtMillis;
+		}
+
+		boolean isUsable() {
+			return System.currentTimeMillis() < expiresAtMillis - EXPIRY_MARGIN_MILLIS;
+		}
+	}
+}
@@ -0,0 +1,226 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.oidc.state;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.vertigo.connectors.redis.RedisConnector;
+import io.vertigo.core.lang.Assertion;
+import io.vertigo.core.lang.VSystemException;
+import io.vertigo.core.lang.WrappedException;
+import io.vertigo.core.util.StringUtil;
+
+/**
+ * Store OIDC states in Redis, one key per state expiring with the state : the HTTP session is never modified, so login
+ * redirects don't trigger session replication.
+ * States are bound to the browser session by the sessionId (usually the HTTP session id, which is stable until
+ * the user is authenticated) : a state can't be used from another session.
+ * States are stored in an explicit binary format, never with Java serialization : additional infos values must be
+ * String, Boolean, Integer, Long, Double or Date (or null).
+ *
+ * @author skerdudou
+ */
+public final class OIDCRedisStateStorage implements IOIDCStateStorage {
+
+	private static final Logger LOG = LogManager.getLogger(OIDCRedisStateStorage.class);
+
+	private static final String KEY_PREFIX = "oidc:state:";
+	private static final long STATE_TTL = 3600; // seconds
+	private static final byte FORMAT_VERSION = 1;
+	private static final int MAX_STATE_BYTES = 64 * 1024;
+	private static final int MAX_ADDITIONAL_INFOS = 256;
+
+	// additional infos value types
+	private static final byte NULL_TYPE = 0;
+	private static final byte STRING_TYPE = 1;
+	private static final byte BOOLEAN_TYPE = 2;
+	private static final byte INTEGER_TYPE = 3;
+	private static final byte LONG_TYPE = 4;
+	private static final byte DOUBLE_TYPE = 5;
+	private static final byte DATE_TYPE = 6;
+
+	private final RedisConnector redisConnector;
+	private final String sessionId;
+
+	public static OIDCRedisStateStorage of(final RedisConnector redisConnector, final String sessionId) {
+		return new OIDCRedisStateStorage(redisConnector, sessionId);
+	}
+
+	private OIDCRedisStateStorage(final RedisConnector redisConnector, final String sessionId) {
+		Assertion.check()
+				.isNotNull(redisConnector)
+				.isNotBlank(sessionId);
+		//---
+		this.redisConnector = redisConnector;
+		this.sessionId = sessionId;
+	}
+
+	@Override
+	public OIDCStateData retrieveStateDataFromSession(final String state) {
+		if (LOG.isTraceEnabled()) {
+			LOG.trace("Retrieving state '{}' for session '{}'", state, sessionId);
+		}
+		if (!StringUtil.isBlank(state)) {
+			// read and delete at once : a state is used only once, even with concurrent callbacks
+			final var stateData = redisConnector.getClient().getDel(toKey(state));
+			if (stateData != null) {
+				return deserialize(stateData);
+			}
+		}
+		throw new VSystemException("Failed to validate data received from Authorization service - could not validate state");
+	}
+
+	@Override
+	public Map<String, Serializable> retrieveAdditionalInfos(final String state) {
+		if (LOG.isTraceEnabled()) {
+			LOG.trace("Retrieving additional infos for state '{}' for session '{}'", state, sessionId);
+		}
+		if (!StringUtil.isBlank(state)) {
+			final var stateData = redisConnector.getClient().get(toKey(state));
+			if (stateData != null) {
+				return deserialize(stateData).additionalInfos();
+			}
+		}
+		// no state : already used (see OIDCSessionStateStorage), redirects on already authenticated session are still allowed
+		return Map.of();
+	}
+
+	@Override
+	public void storeStateDataInSession(final String state, final String nonce, final String pkceCodeVerifier, final Map<String, Serializable> additionalInfos) {
+		if (LOG.isTraceEnabled()) {
+			LOG.trace("Storing state '{}' for session '{}'", state, sessionId);
+		}
+		final var stateData = new OIDCStateData(nonce, pkceCodeVerifier, new Date(), additionalInfos);
+		redisConnector.getClient().setex(toKey(state), STATE_TTL, serialize(stateData));
+	}
+
+	private byte[] toKey(final String state) {
+		return (KEY_PREFIX + sessionId + ':' + state).getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static byte[] serialize(final OIDCStateData stateData) {
+		final var bytes = new ByteArrayOutputStream();
+		try (var out = new DataOutputStream(bytes)) {
+			out.writeByte(FORMAT_VERSION);
+			out.writeUTF(stateData.nonce());
+			writeNullableString(out, stateData.pkceCodeVerifier());
+			out.writeLong(stateData.stateDate().getTime());
+			final Map<String, Serializable> additionalInfos = stateData.additionalInfos() == null ? Map.of() : stateData.additionalInfos();
+			Assertion.check().isTrue(additionalInfos.size() <= MAX_ADDITIONAL_INFOS, "Too many additional infos ({0}), max {1}", additionalInfos.size(), MAX_ADDITIONAL_INFOS);
+			out.writeShort(additionalInfos.size());
+			for (final var entry : additionalInfos.entrySet()) {
+				out.writeUTF(entry.getKey());
+				writeValue(out, entry.getKey(), entry.getValue());
+			}
+		} catch (final IOException e) {
+			throw WrappedException.wrap(e);
+		}
+		Assertion.check().isTrue(bytes.size() <= MAX_STATE_BYTES, "OIDC state too large ({0} bytes), max {1}", bytes.size(), MAX_STATE_BYTES);
+		return bytes.toByteArray();
+	}
+
+	private static void writeNullableString(final DataOutputStream out, final String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	private static void writeValue(final DataOutputStream out, final String key, final Serializable value) throws IOException {
+		if (value == null) {
+			out.writeByte(NULL_TYPE);
+		} else if (value instanceof final String stringValue) {
+			out.writeByte(STRING_TYPE);
+			out.writeUTF(stringValue);
+		} else if (value instanceof final Boolean booleanValue) {
+			out.writeByte(BOOLEAN_TYPE);
+			out.writeBoolean(booleanValue);
+		} else if (value instanceof final Integer integerValue) {
+			out.writeByte(INTEGER_TYPE);
+			out.writeInt(integerValue);
+		} else if (value instanceof final Long longValue) {
+			out.writeByte(LONG_TYPE);
+			out.writeLong(longValue);
+		} else if (value instanceof final Double doubleValue) {
+			out.writeByte(DOUBLE_TYPE);
+			out.writeDouble(doubleValue);
+		} else if (value instanceof final Date dateValue) {
+			out.writeByte(DATE_TYPE);
+			out.writeLong(dateValue.getTime());
+		} else {
+			throw new VSystemException("Additional info '{0}' of type {1} can't be stored in Redis : use String, Boolean, Integer, Long, Double or Date", key, value.getClass().getName());
+		}
+	}
+
+	private static OIDCStateData deserialize(final byte[] bytes) {
+		// the store is outside of the JVM : its content is read as untrusted input
+		if (bytes.length > MAX_STATE_BYTES) {
+			throw new VSystemException("Invalid OIDC state : too large ({0} bytes)", bytes.length);
+		}
+		try (var in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+			final var formatVersion = in.readByte();
+			if (formatVersion != FORMAT_VERSION) {
+				throw new VSystemException("Invalid OIDC state : unknown format {0}", formatVersion);
+			}
+			final var nonce = in.readUTF();
+			final var pkceCodeVerifier = in.readBoolean() ? in.readUTF() : null;
+			final var stateDate = new Date(in.readLong());
+			final int additionalInfosCount = in.readShort();
+			if (additionalInfosCount < 0 || additionalInfosCount > MAX_ADDITIONAL_INFOS) {
+				throw new VSystemException("Invalid OIDC state : {0} additional infos", additionalInfosCount);
+			}
+			final Map<String, Serializable> additionalInfos = new HashMap<>();
+			for (var i = 0; i < additionalInfosCount; i++) {
+				final var key = in.readUTF();
+				additionalInfos.put(key, readValue(in));
+			}
+			if (in.available() > 0) {
+				throw new VSystemException("Invalid OIDC state : trailing data");
+			}
+			return new OIDCStateData(nonce, pkceCodeVerifier, stateDate, additionalInfos);
+		} catch (final IOException e) {
+			throw new VSystemException(e, "Invalid OIDC state : {0}", e.getMessage());
+		}
+	}
+
+	private static Serializable readValue(final DataInputStream in) throws IOException {
+		final var type = in.readByte();
+		return switch (type) {
+			case NULL_TYPE -> null;
+			case STRING_TYPE -> in.readUTF();
+			case BOOLEAN_TYPE -> in.readBoolean();
+			case INTEGER_TYPE -> in.readInt();
+			case LONG_TYPE -> in.readLong();
+			case DOUBLE_TYPE -> in.readDouble();
+			case DATE_TYPE -> new Date(in.readLong());
+			default -> throw new VSystemException("Invalid OIDC state : unknown additional info type {0}", type);
+		};
+	}
+}
@@ -19,10 +19,8 @@ package io.vertigo.connectors.oidc.state;
 
 import java.io.Serializable;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -38,8 +36,10 @@ public final class OIDCSessionStateStorage implements IOIDCStateStorage {
 
 	private static final Logger LOG = LogManager.getLogger(OIDCSessionStateStorage.class);
 
-	private static final String STATES = "states";
-	private static final Integer STATE_TTL = 3600;
+	private static final String STATES = "oidcStates";
+	private static final String LEGACY_STATES = "states"; // HashMap of previous versions
+	private static final long STATE_TTL_MILLIS = 3600 * 1000L;
+	private static final int MAX_STATES = 20; // per session, pending logins of a user (one per tab)
 	private static final String OIDC_ID_TOKEN = "OIDC_ID_TOKEN";
 
 	private final HttpSession session;
@@ -73,9 +73,9 @@ public final class OIDCSessionStateStorage implements IOIDCStateStorage {
 			dumpStates();
 		}
 		if (!StringUtil.isBlank(state)) {
-			final var states = (Map<String, OIDCStateData>) session.getAttribute(STATES);
+			final var states = (OIDCSessionStates) session.getAttribute(STATES);
 			if (states != null) {
-				final var stateData = states.get(state);
+				final var stateData = states.get(state, minStateDateMillis());
 				if (stateData != null) {
 					return stateData.additionalInfos();
 				}
@@ -88,12 +88,10 @@ public final class OIDCSessionStateStorage implements IOIDCStateStorage {
 	}
 
 	private void dumpStates() {
-		final var states = (Map<String, OIDCStateData>) session.getAttribute(STATES);
+		final var states = (OIDCSessionStates) session.getAttribute(STATES);
 		if (states != null) {
 			LOG.trace("Existing states in session '{}'", session.getId());
-			for (final Map.Entry<String, OIDCStateData> entry : states.entrySet()) {
-				LOG.trace("\tState: '{}' Data: '{}'", entry.getKey(), entry.getValue());
-			}
+			states.forEach((state, stateData) -> LOG.trace("\tState: '{}' Data: '{}'", state, stateData));
 		} else {
 			LOG.trace("No states in session '{}'", session.getId());
 		}
@@ -103,15 +101,10 @@ public final class OIDCSessionStateStorage implements IOIDCStateStorage {
 		if (LOG.isTraceEnabled()) {
 			LOG.trace("Removing state '{}' from session '{}'", state, session.getId());
 		}
-		final var states = (Map<String, OIDCStateData>) session.getAttribute(STATES);
+		final var states = (OIDCSessionStates) session.getAttribute(STATES);
 		if (states != null) {
-			eliminateExpiredStates(states);
-			final var stateData = states.get(state);
+			final var stateData = states.remove(state, minStateDateMillis());
 			if (stateData != null) {
-				states.remove(state);
-				if (LOG.isTraceEnabled()) {
-					LOG.trace("Removing state '{}' from session '{}'", state, session.getId());
-				}
 				session.setAttribute(STATES, states); //needed for correct cluster sync (see fb-contrib:SCSS_SUSPICIOUS_CLUSTERED_SESSION_SUPPORT)
 				return stateData;
 			}
@@ -119,33 +112,24 @@ public final class OIDCSessionStateStorage implements IOIDCStateStorage {
 		return null;
 	}
 
-	private void eliminateExpiredStates(final Map<String, OIDCStateData> map) {
-		final var it = map.entrySet().iterator();
-
-		final var currTime = new Date();
-		while (it.hasNext()) {
-			final var entry = it.next();
-			final var diffInSeconds = TimeUnit.MILLISECONDS.toSeconds(currTime.getTime() - entry.getValue().stateDate().getTime());
-
-			if (diffInSeconds > STATE_TTL) {
-				if (LOG.isTraceEnabled()) {
-					LOG.trace("Removing expired state '{}'", entry.getKey());
-				}
-				it.remove();
-			}
-		}
+	private static long minStateDateMillis() {
+		return System.currentTimeMillis() - STATE_TTL_MILLIS;
 	}
 
 	@Override
 	public void storeStateDataInSession(final String state, final String nonce, final String pkceCodeVerifier, final Map<String, Serializable> additionalInfos) {
 		// state parameter to validate response from Authorization server and nonce parameter to validate idToken
-		final var states = Optional.ofNullable((Map<String, OIDCStateData>) session.getAttribute(STATES))
-				.orElseGet(HashMap::new);
+		final var states = Optional.ofNullable((OIDCSessionStates) session.getAttribute(STATES))
+				.orElseGet(OIDCSessionStates::new);
 		if (LOG.isTraceEnabled()) {
 			LOG.trace("Storing state '{}' in session '{}'", state, session.getId());
 		}
-		states.put(state, new OIDCStateData(nonce, pkceCodeVerifier, new Date(), additionalInfos));
+		final var now = System.currentTimeMillis();
+		states.put(state, new OIDCStateData(nonce, pkceCodeVerifier, new Date(now), additionalInfos), MAX_STATES, now - STATE_TTL_MILLIS);
 		session.setAttribute(STATES, states);
+		if (session.getAttribute(LEGACY_STATES) != null) {
+			session.removeAttribute(LEGACY_STATES);
+		}
 	}
 
 	public static void storeIdTokenInSession(final HttpSession session, final String idToken) {
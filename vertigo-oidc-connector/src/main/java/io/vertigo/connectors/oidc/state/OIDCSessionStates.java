@@ -0,0 +1,112 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.oidc.state;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * OIDC states of a session, in creation order : expired states are always the oldest ones, so they are removed from
+ * the head without scanning the others. The number of states is bounded, the oldest are dropped first.
+ * Serialized in a compact form, as it is replicated with the session.
+ *
+ * @author skerdudou
+ */
+final class OIDCSessionStates implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private transient LinkedHashMap<String, OIDCStateData> states = new LinkedHashMap<>();
+
+	synchronized void put(final String state, final OIDCStateData stateData, final int maxStates, final long minStateDateMillis) {
+		removeExpired(minStateDateMillis);
+		states.put(state, stateData);
+		final var it = states.values().iterator();
+		while (states.size() > maxStates) {
+			it.next();
+			it.remove(); // abandoned logins
+		}
+	}
+
+	synchronized OIDCStateData get(final String state, final long minStateDateMillis) {
+		final var stateData = states.get(state);
+		return stateData == null || stateData.stateDate().getTime() < minStateDateMillis ? null : stateData;
+	}
+
+	synchronized OIDCStateData remove(final String state, final long minStateDateMillis) {
+		removeExpired(minStateDateMillis);
+		return states.remove(state);
+	}
+
+	synchronized void forEach(final BiConsumer<String, OIDCStateData> action) {
+		states.forEach(action);
+	}
+
+	private void removeExpired(final long minStateDateMillis) {
+		final var it = states.values().iterator();
+		while (it.hasNext() && it.next().stateDate().getTime() < minStateDateMillis) {
+			it.remove();
+		}
+	}
+
+	private synchronized void writeObject(final ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(states.size());
+		for (final Map.Entry<String, OIDCStateData> entry : states.entrySet()) {
+			final var stateData = entry.getValue();
+			out.writeUTF(entry.getKey());
+			writeNullableUTF(out, stateData.nonce());
+			writeNullableUTF(out, stateData.pkceCodeVerifier());
+			out.writeLong(stateData.stateDate().getTime());
+			// most logins have no additional infos
+			out.writeObject(stateData.additionalInfos() == null || stateData.additionalInfos().isEmpty() ? null : stateData.additionalInfos());
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		final var size = in.readInt();
+		states = new LinkedHashMap<>();
+		for (var i = 0; i < size; i++) {
+			final var state = in.readUTF();
+			final var nonce = readNullableUTF(in);
+			final var pkceCodeVerifier = readNullableUTF(in);
+			final var stateDate = new Date(in.readLong());
+			final var additionalInfos = (Map<String, Serializable>) in.readObject();
+			states.put(state, new OIDCStateData(nonce, pkceCodeVerifier, stateDate, additionalInfos == null ? Map.of() : additionalInfos));
+		}
+	}
+
+	private static void writeNullableUTF(final ObjectOutputStream out, final String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	private static String readNullableUTF(final ObjectInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.oidc;
+
+import java.io.Serializable;
+import java.net.URI;
+import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.openid.connect.sdk.token.OIDCTokens;
+
+import io.vertigo.connectors.oidc.state.IOIDCStateStorage;
+import io.vertigo.connectors.oidc.state.OIDCStateData;
+import io.vertigo.core.node.AutoCloseableNode;
+import io.vertigo.core.node.component.di.DIInjector;
+import io.vertigo.core.node.config.NodeConfig;
+import io.vertigo.core.param.Param;
+
+/**
+ * Benchmarks of the OIDC login path against an in process stub provider (see OIDCStubProvider).
+ * - loginUrl : authorization request creation (state, nonce, PKCE) and state storage
+ * - parseResponse : code exchange on the token endpoint and ID token validation (signature, claims)
+ * The ID token returned by the stub is signed once, so the provider signature is not measured.
+ * Token requests received by the stub are reported for each iteration of parseResponse (StubCounters).
+ * Throughput and latency percentiles (SampleTime) are measured, run main to add allocation per login (gc profiler).
+ *
+ * @author skerdudou
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class OIDCClientBenchmark {
+
+	private static final String CLIENT_ID = "bench-client";
+	// 64 bytes : long enough for HS512, not padded by the client
+	private static final String CLIENT_SECRET = "bench-secret-0123456789abcdef0123456789abcdef0123456789abcdef012";
+	private static final String NONCE = "bench-nonce";
+	private static final URI CALLBACK_URI = URI.create("http://localhost/callback");
+	private static final URI RESPONSE_URI = URI.create(CALLBACK_URI + "?code=" + NONCE + "&state=bench-state");
+
+	@org.openjdk.jmh.annotations.Param({ "RS256", "ES256", "HS256" })
+	public String jwsAlgorithm;
+
+	@Inject
+	private OIDCDeploymentConnector oidcDeploymentConnector;
+	private OIDCStubProvider stubProvider;
+	private AutoCloseableNode node;
+	private IOIDCClient oidcClient;
+	private final IOIDCStateStorage stateStorage = new ConstantStateStorage();
+	private long reportedTokenRequestCount; // guarded by this
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		stubProvider = new OIDCStubProvider(new OIDCSigningKey(JWSAlgorithm.parse(jwsAlgorithm), 2048, CLIENT_SECRET), CLIENT_ID);
+		node = new AutoCloseableNode(NodeConfig.builder()
+				.addModule(new OIDCFeatures()
+						.withConfig(
+								Param.of("clientName", CLIENT_ID),
+								Param.of("clientSecret", CLIENT_SECRET),
+								Param.of("url", stubProvider.getIssuer()),
+								Param.of("jwsAlgorithm", jwsAlgorithm))
+						.build())
+				.build());
+		DIInjector.injectMembers(this, node.getComponentSpace());
+		oidcClient = oidcDeploymentConnector.getClient();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		node.close();
+		stubProvider.close();
+	}
+
+	@Benchmark
+	public String loginUrl() {
+		return oidcClient.getLoginUrl(CALLBACK_URI, stateStorage, Optional.empty(), Map.of(), "profile");
+	}
+
+	@Benchmark
+	public OIDCTokens parseResponse(final StubCounters stubCounters) {
+		return oidcClient.parseResponse(RESPONSE_URI, CALLBACK_URI, stateStorage);
+	}
+
+	/**
+	 * @return token requests received by the stub since the previous call
+	 */
+	synchronized long takeTokenRequestCount() {
+		final var tokenRequestCount = stubProvider.getTokenRequestCount();
+		final var delta = tokenRequestCount - reportedTokenRequestCount;
+		reportedTokenRequestCount = tokenRequestCount;
+		return delta;
+	}
+
+	/**
+	 * Stub counts of the iteration, reported by JMH as secondary results.
+	 * Counters are summed over threads : the stub count is taken by the first thread ending the iteration.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class StubCounters {
+		public long tokenRequests;
+
+		@TearDown(Level.Iteration)
+		public void takeCounts(final OIDCClientBenchmark benchmark) {
+			tokenRequests = benchmark.takeTokenRequestCount();
+		}
+	}
+
+	/**
+	 * Always returns the same state : the stub provider uses the code as nonce.
+	 */
+	private static final class ConstantStateStorage implements IOIDCStateStorage {
+		private final OIDCStateData stateData = new OIDCStateData(NONCE, null, new Date(), Map.of());
+
+		@Override
+		public OIDCStateData retrieveStateDataFromSession(final String state) {
+			return stateData;
+		}
+
+		@Override
+		public Map<String, Serializable> retrieveAdditionalInfos(final String state) {
+			return stateData.additionalInfos();
+		}
+
+		@Override
+		public void storeStateDataInSession(final String state, final String nonce, final String pkceCodeVerifier, final Map<String, Serializable> additionalInfos) {
+			// nothing
+		}
+	}
+
+	public static void main(final String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(OIDCClientBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build())
+				.run();
+	}
+}
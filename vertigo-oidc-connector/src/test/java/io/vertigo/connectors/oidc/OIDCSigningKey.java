@@ -0,0 +1,119 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.oidc;
+
+import java.nio.charset.StandardCharsets;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSAlgorithm.Family;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jose.jwk.source.ImmutableSecret;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+/**
+ * Signing key of the stub provider : RSA (with key size), EC (curve of the algorithm) or HMAC (client secret).
+ *
+ * @author skerdudou
+ */
+public final class OIDCSigningKey {
+
+	private static final String KEY_ID = "bench-key";
+
+	private final JWSAlgorithm jwsAlgorithm;
+	private final JWSSigner signer;
+	private final JWKSet publicJWKSet; // empty for HMAC
+	private final JWKSource<SecurityContext> verificationKeySource;
+
+	/**
+	 * Constructor.
+	 * @param jwsAlgorithm the signature algorithm
+	 * @param rsaKeySize RSA key size, ignored for other algorithms
+	 * @param hmacSecret shared secret for HMAC algorithms (at least as long as the hash)
+	 */
+	public OIDCSigningKey(final JWSAlgorithm jwsAlgorithm, final int rsaKeySize, final String hmacSecret) {
+		this.jwsAlgorithm = jwsAlgorithm;
+		try {
+			if (Family.RSA.contains(jwsAlgorithm)) {
+				final var rsaKey = new RSAKeyGenerator(rsaKeySize).keyID(KEY_ID).generate();
+				signer = new RSASSASigner(rsaKey);
+				publicJWKSet = new JWKSet(rsaKey.toPublicJWK());
+			} else if (Family.EC.contains(jwsAlgorithm)) {
+				final var ecKey = new ECKeyGenerator(Curve.forJWSAlgorithm(jwsAlgorithm).iterator().next()).keyID(KEY_ID).generate();
+				signer = new ECDSASigner(ecKey);
+				publicJWKSet = new JWKSet(ecKey.toPublicJWK());
+			} else {
+				final var secretBytes = hmacSecret.getBytes(StandardCharsets.UTF_8);
+				signer = new MACSigner(secretBytes);
+				publicJWKSet = new JWKSet();
+				verificationKeySource = new ImmutableSecret<>(secretBytes);
+				return;
+			}
+		} catch (final JOSEException e) {
+			throw new IllegalStateException(e);
+		}
+		verificationKeySource = new ImmutableJWKSet<>(publicJWKSet);
+	}
+
+	/**
+	 * @param claims the claims
+	 * @return the serialized signed JWT
+	 */
+	public String sign(final JWTClaimsSet claims) {
+		final var header = new JWSHeader.Builder(jwsAlgorithm)
+				.keyID(Family.HMAC_SHA.contains(jwsAlgorithm) ? null : KEY_ID)
+				.build();
+		final var signedJWT = new SignedJWT(header, claims);
+		try {
+			signedJWT.sign(signer);
+		} catch (final JOSEException e) {
+			throw new IllegalStateException(e);
+		}
+		return signedJWT.serialize();
+	}
+
+	public JWSAlgorithm getJWSAlgorithm() {
+		return jwsAlgorithm;
+	}
+
+	/**
+	 * @return the public keys, as published by the provider
+	 */
+	public JWKSet getPublicJWKSet() {
+		return publicJWKSet;
+	}
+
+	/**
+	 * @return the keys verifying signatures
+	 */
+	public JWKSource<SecurityContext> getVerificationKeySource() {
+		return verificationKeySource;
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.oidc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In process stub OIDC provider for benchmarks.
+ * - /.well-known/openid-configuration : provider metadata
+ * - /jwks : public keys
+ * - /token : authorization code exchange, the code is used as nonce of the ID token
+ * - /authorize, /logout : declared in metadata only
+ * ID tokens are signed once per code (valid one hour), so benchmarks don't measure the provider signature.
+ *
+ * @author skerdudou
+ */
+public final class OIDCStubProvider implements AutoCloseable {
+
+	private final HttpServer httpServer;
+	private final ExecutorService executor = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+	private final OIDCSigningKey signingKey;
+	private final String clientId;
+	private final Map<String, byte[]> tokenResponses = new ConcurrentHashMap<>();
+	private final LongAdder tokenRequestCount = new LongAdder();
+
+	/**
+	 * Starts the stub on a free port of the loopback interface.
+	 * @param signingKey key signing ID tokens
+	 * @param clientId the client (audience of ID tokens)
+	 */
+	public OIDCStubProvider(final OIDCSigningKey signingKey, final String clientId) {
+		this.signingKey = signingKey;
+		this.clientId = clientId;
+		try {
+			httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		httpServer.setExecutor(executor);
+		httpServer.createContext("/.well-known/openid-configuration", exchange -> respond(exchange, metadata().getBytes(StandardCharsets.UTF_8)));
+		httpServer.createContext("/jwks", exchange -> respond(exchange, signingKey.getPublicJWKSet().toString().getBytes(StandardCharsets.UTF_8)));
+		httpServer.createContext("/token", this::token);
+		httpServer.start();
+	}
+
+	/**
+	 * @return issuer (base url) of the stub, without ending /
+	 */
+	public String getIssuer() {
+		return "http://" + httpServer.getAddress().getHostString() + ":" + httpServer.getAddress().getPort();
+	}
+
+	/**
+	 * @return number of token requests received
+	 */
+	public long getTokenRequestCount() {
+		return tokenRequestCount.sum();
+	}
+
+	private String metadata() {
+		final var issuer = getIssuer();
+		return "{\"issuer\":\"" + issuer + "\","
+				+ "\"authorization_endpoint\":\"" + issuer + "/authorize\","
+				+ "\"token_endpoint\":\"" + issuer + "/token\","
+				+ "\"end_session_endpoint\":\"" + issuer + "/logout\","
+				+ "\"jwks_uri\":\"" + issuer + "/jwks\","
+				+ "\"response_types_supported\":[\"code\"],"
+				+ "\"subject_types_supported\":[\"public\"],"
+				+ "\"id_token_signing_alg_values_supported\":[\"" + signingKey.getJWSAlgorithm().getName() + "\"]}";
+	}
+
+	private void token(final HttpExchange exchange) throws IOException {
+		tokenRequestCount.increment();
+		final var form = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+		var code = "";
+		for (final String param : form.split("&")) {
+			if (param.startsWith("code=")) {
+				code = URLDecoder.decode(param.substring("code=".length()), StandardCharsets.UTF_8);
+			}
+		}
+		respond(exchange, tokenResponses.computeIfAbsent(code, this::tokenResponse));
+	}
+
+	private byte[] tokenResponse(final String nonce) {
+		final var now = System.currentTimeMillis();
+		final var idToken = signingKey.sign(new JWTClaimsSet.Builder()
+				.issuer(getIssuer())
+				.subject("bench-user")
+				.audience(clientId)
+				.issueTime(new Date(now))
+				.expirationTime(new Date(now + 3600_000))
+				.claim("nonce", nonce)
+				.build());
+		return ("{\"access_token\":\"bench-access-token\",\"token_type\":\"Bearer\",\"expires_in\":3600,\"id_token\":\"" + idToken + "\"}")
+				.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static void respond(final HttpExchange exchange, final byte[] body) throws IOException {
+		try (exchange) {
+			exchange.getRequestBody().readAllBytes();
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, body.length);
+			exchange.getResponseBody().write(body);
+		}
+	}
+
+	@Override
+	public void close() {
+		httpServer.stop(0);
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.oidc;
+
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jwt.JWTClaimsSet;
+
+/**
+ * Benchmarks of JWT access token validation (OIDCAccessTokenValidator), without network.
+ * Keys : RSA with several key sizes, EC with the curve of each algorithm, HMAC.
+ * - validate : signature and claims are checked on each call (no cache)
+ * - validateCached : the same token is validated again, served from the validation cache
+ * Run main to add allocation per validation (gc profiler).
+ *
+ * @author skerdudou
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class OIDCTokenValidationBenchmark {
+
+	private static final String ISSUER = "https://idp.bench";
+	private static final String AUDIENCE = "bench-api";
+	private static final String HMAC_SECRET = "bench-secret-0123456789abcdef0123456789abcdef0123456789abcdef012";
+
+	@org.openjdk.jmh.annotations.Param({ "RS256_2048", "RS256_3072", "RS256_4096", "ES256", "ES384", "ES512", "HS256", "HS512" })
+	public String key;
+
+	private String accessToken;
+	private OIDCAccessTokenValidator validator;
+	private OIDCAccessTokenValidator cachedValidator;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		final var keyParts = key.split("_");
+		final var jwsAlgorithm = JWSAlgorithm.parse(keyParts[0]);
+		final var signingKey = new OIDCSigningKey(jwsAlgorithm, keyParts.length > 1 ? Integer.parseInt(keyParts[1]) : 2048, HMAC_SECRET);
+		final var now = System.currentTimeMillis();
+		accessToken = signingKey.sign(new JWTClaimsSet.Builder()
+				.issuer(ISSUER)
+				.subject("bench-user")
+				.audience(AUDIENCE)
+				.issueTime(new Date(now))
+				.expirationTime(new Date(now + 3600_000))
+				.claim("scope", "openid profile")
+				.build());
+		validator = new OIDCAccessTokenValidator(ISSUER, Optional.of(AUDIENCE), jwsAlgorithm, signingKey.getVerificationKeySource(), 0);
+		cachedValidator = new OIDCAccessTokenValidator(ISSUER, Optional.of(AUDIENCE), jwsAlgorithm, signingKey.getVerificationKeySource(), 10_000);
+	}
+
+	@Benchmark
+	public JWTClaimsSet validate() {
+		return validator.validate(accessToken);
+	}
+
+	@Benchmark
+	public JWTClaimsSet validateCached() {
+		return cachedValidator.validate(accessToken);
+	}
+
+	public static void main(final String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(OIDCTokenValidationBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build())
+				.run();
+	}
+}
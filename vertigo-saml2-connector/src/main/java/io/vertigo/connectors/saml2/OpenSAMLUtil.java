@@ -18,15 +18,15 @@
 package io.vertigo.connectors.saml2;
 
 import java.io.ByteArrayInputStream;
-import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Pattern;
 
-import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-
 import org.opensaml.core.config.ConfigurationService;
 import org.opensaml.core.config.InitializationException;
 import org.opensaml.core.config.InitializationService;
@@ -54,34 +54,42 @@ import org.opensaml.xmlsec.keyinfo.impl.BasicKeyInfoGeneratorFactory;
 import org.opensaml.xmlsec.keyinfo.impl.X509KeyInfoGeneratorFactory;
 import org.opensaml.xmlsec.signature.KeyInfo;
 import org.opensaml.xmlsec.signature.support.SignatureConstants;
-import org.xml.sax.SAXException;
 
 import io.vertigo.core.lang.VSystemException;
 import io.vertigo.core.lang.WrappedException;
 import net.shibboleth.shared.component.ComponentInitializationException;
-import net.shibboleth.shared.security.impl.RandomIdentifierGenerationStrategy;
 import net.shibboleth.shared.xml.ParserPool;
+import net.shibboleth.shared.xml.XMLParserException;
 import net.shibboleth.shared.xml.impl.BasicParserPool;
 
 public final class OpenSAMLUtil {
 
-	private static RandomIdentifierGenerationStrategy secureRandomIdGenerator = new RandomIdentifierGenerationStrategy();
+	// striped SecureRandoms, each with its own lock : built once, whatever the number of threads (virtual, short lived, pooled)
+	private static final SecureRandomIdGenerator[] SECURE_RANDOM_ID_GENERATORS = createSecureRandomIdGenerators();
 	private static final Pattern NORMALIZER_PATTERN = Pattern.compile("[\\-\\s]");
 
-	private static ParserPool parserPool;
+	private static volatile ParserPool parserPool;
 
 	private OpenSAMLUtil() {
 		// helper
 	}
 
-	public static synchronized ParserPool initOpenSamlIfNeeded() {
+	public static ParserPool initOpenSamlIfNeeded() {
+		final var currentParserPool = parserPool;
+		if (currentParserPool != null) {
+			return currentParserPool; // called on each response parsing : no lock once initialized
+		}
+		return initOpenSaml();
+	}
+
+	private static synchronized ParserPool initOpenSaml() {
 		if (parserPool != null) {
 			return parserPool;
 		}
-		parserPool = buildParserPool();
+		final var locParserPool = buildParserPool();
 
 		final var registry = new XMLObjectProviderRegistry();
-		registry.setParserPool(parserPool);
+		registry.setParserPool(locParserPool);
 
 		ConfigurationService.register(XMLObjectProviderRegistry.class, registry);
 		try {
@@ -90,7 +98,9 @@ public final class OpenSAMLUtil {
 			throw WrappedException.wrap(e);
 		}
 
-		return parserPool;
+		// published once OpenSAML is fully initialized
+		parserPool = locParserPool;
+		return locParserPool;
 	}
 
 	private static ParserPool buildParserPool() {
@@ -154,7 +164,19 @@ public final class OpenSAMLUtil {
 	}
 
 	public static String generateSecureRandomId() {
-		return secureRandomIdGenerator.generateIdentifier();
+		// Thread.threadId needs java 19
+		final var stripe = (int) (Thread.currentThread().getId() & (SECURE_RANDOM_ID_GENERATORS.length - 1));
+		return SECURE_RANDOM_ID_GENERATORS[stripe].generateIdentifier();
+	}
+
+	private static SecureRandomIdGenerator[] createSecureRandomIdGenerators() {
+		// a power of two, twice the number of processors : few threads share a stripe at the same time
+		final var stripes = Math.min(64, Integer.highestOneBit(2 * Runtime.getRuntime().availableProcessors() - 1) << 1);
+		final var generators = new SecureRandomIdGenerator[stripes];
+		for (var i = 0; i < stripes; i++) {
+			generators[i] = new SecureRandomIdGenerator();
+		}
+		return generators;
 	}
 
 	public static Endpoint urlToEndpoint(final String URL) {
@@ -165,28 +187,51 @@ public final class OpenSAMLUtil {
 		return endpoint;
 	}
 
-	public static Response extractSamlResponse(final ByteArrayInputStream is) {
+	/**
+	 * Parses a SAML Response with the shared hardened parser pool (no DTD nor external entities, comments ignored).
+	 *
+	 * @param is the XML of the response, not closed
+	 * @return the response
+	 */
+	public static Response extractSamlResponse(final InputStream is) {
+		final var locParserPool = initOpenSamlIfNeeded();
 		try {
-			final var factory = DocumentBuilderFactory.newInstance();
-			// for safety, disable function that might fetch external entities
-			factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
-			factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
-			factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
-			factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
-			factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
-
-			factory.setNamespaceAware(true);
-			final var builder = factory.newDocumentBuilder();
-			final var document = builder.parse(is);
-			final var out = XMLObjectProviderRegistrySupport.getUnmarshallerFactory().getUnmarshaller(document.getDocumentElement());
-
-			final var responseXmlObj = out.unmarshall(document.getDocumentElement());
-			return (Response) responseXmlObj;
-		} catch (ParserConfigurationException | SAXException | IOException | UnmarshallingException e) {
+			final var document = locParserPool.parse(is);
+			final var element = document.getDocumentElement();
+			final var unmarshaller = XMLObjectProviderRegistrySupport.getUnmarshallerFactory().getUnmarshaller(element);
+			if (unmarshaller == null) {
+				throw new VSystemException("Unknown SAML element '{0}'.", element.getLocalName());
+			}
+			final var responseXmlObj = unmarshaller.unmarshall(element);
+			if (!(responseXmlObj instanceof final Response response)) {
+				throw new VSystemException("SAML message '{0}' is not a Response.", element.getLocalName());
+			}
+			return response;
+		} catch (final XMLParserException | UnmarshallingException e) {
 			throw WrappedException.wrap(e);
 		}
 	}
 
+	/**
+	 * Parses a base64 encoded SAML Response (SAMLResponse parameter of the HTTP-POST binding), decoded while parsing.
+	 *
+	 * @param base64Is the base64 of the response (line breaks allowed), not closed
+	 * @return the response
+	 */
+	public static Response extractBase64SamlResponse(final InputStream base64Is) {
+		return extractSamlResponse(Base64.getMimeDecoder().wrap(base64Is));
+	}
+
+	/**
+	 * Parses a base64 encoded SAML Response (SAMLResponse parameter of the HTTP-POST binding), decoded while parsing.
+	 *
+	 * @param base64SamlResponse the base64 of the response (line breaks allowed)
+	 * @return the response
+	 */
+	public static Response extractBase64SamlResponse(final String base64SamlResponse) {
+		return extractBase64SamlResponse(new ByteArrayInputStream(base64SamlResponse.getBytes(StandardCharsets.ISO_8859_1)));
+	}
+
 	public static Map<String, Object> extractAttributes(final Assertion assertion) {
 		return assertion.getAttributeStatements().stream()
 				.flatMap(a -> a.getAttributes().stream())
@@ -233,4 +278,51 @@ public final class OpenSAMLUtil {
 			throw WrappedException.wrap(e);
 		}
 	}
+
+	/**
+	 * Secure random IDs : '_' and 16 random bytes in hex (128 bits, as OpenSAML RandomIdentifierGenerationStrategy).
+	 * Uses SHA1PRNG as OpenSAML, but several striped instances instead of a single shared one, each one locked independently.
+	 * Seeded, then reseeded every RESEED_INTERVAL IDs, from the shared non blocking system source.
+	 */
+	private static final class SecureRandomIdGenerator {
+		private static final int ID_BYTES = 16;
+		private static final int SEED_BYTES = 32;
+		private static final int RESEED_INTERVAL = 100_000;
+		private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+		private static final SecureRandom SEED_SOURCE = new SecureRandom();
+
+		private final SecureRandom secureRandom;
+		private final byte[] randomBytes = new byte[ID_BYTES];
+		private int generatedCount;
+
+		SecureRandomIdGenerator() {
+			try {
+				secureRandom = SecureRandom.getInstance("SHA1PRNG");
+			} catch (final NoSuchAlgorithmException e) {
+				throw WrappedException.wrap(e);
+			}
+			secureRandom.setSeed(nextSeed()); // before any use : replaces self seeding
+		}
+
+		synchronized String generateIdentifier() {
+			if (++generatedCount >= RESEED_INTERVAL) {
+				generatedCount = 0;
+				secureRandom.setSeed(nextSeed()); // supplements the state
+			}
+			secureRandom.nextBytes(randomBytes);
+			final var id = new char[1 + ID_BYTES * 2];
+			id[0] = '_'; // an xsd:ID can't start with a digit
+			for (var i = 0; i < ID_BYTES; i++) {
+				id[1 + i * 2] = HEX_DIGITS[(randomBytes[i] >> 4) & 0xF];
+				id[2 + i * 2] = HEX_DIGITS[randomBytes[i] & 0xF];
+			}
+			return new String(id);
+		}
+
+		private static byte[] nextSeed() {
+			final var seed = new byte[SEED_BYTES];
+			SEED_SOURCE.nextBytes(seed);
+			return seed;
+		}
+	}
 }
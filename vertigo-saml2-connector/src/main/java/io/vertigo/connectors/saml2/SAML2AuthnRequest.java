@@ -0,0 +1,38 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.saml2;
+
+import java.util.Optional;
+
+/**
+ * A SAML AuthnRequest ready to send.
+ * - HTTP-POST binding : post samlRequest (and relayState) to url
+ * - HTTP-Redirect binding : redirect to url (samlRequest, relayState and signature are in the query)
+ *
+ * @param id ID of the request, to check InResponseTo of the response
+ * @param url form action (POST) or redirect URL (Redirect)
+ * @param samlRequest the SAMLRequest parameter : base64 signed XML (POST) or base64 deflated XML (Redirect)
+ * @param relayStateOpt the RelayState parameter
+ * @author skerdudou
+ */
+public record SAML2AuthnRequest(
+		String id,
+		String url,
+		String samlRequest,
+		Optional<String> relayStateOpt) {
+}
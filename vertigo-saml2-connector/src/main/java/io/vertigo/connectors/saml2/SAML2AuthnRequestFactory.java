@@ -0,0 +1,313 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.saml2;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.cert.CertificateEncodingException;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.zip.Deflater;
+
+import org.opensaml.saml.common.xml.SAMLConstants;
+import org.opensaml.saml.saml2.core.NameIDType;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.security.x509.X509Credential;
+import org.opensaml.xmlsec.signature.support.SignatureConstants;
+
+import io.vertigo.core.lang.Assertion;
+import io.vertigo.core.lang.VSystemException;
+import io.vertigo.core.lang.WrappedException;
+
+/**
+ * Creates signed SAML AuthnRequests (HTTP-POST or HTTP-Redirect binding) of the service provider.
+ * The request is pre-built once in its exclusive canonical form (the form signed) : per request, only ID and IssueInstant are
+ * inserted, the digest and the signature are computed on these bytes without marshalling nor canonicalizing any XML.
+ * Signature objects are initialized with the private key once per thread.
+ * The template is rebuilt if the login URL of the identity provider changes (refreshed metadata).
+ * The KeyInfo of POST signatures is the one of the SP metadata : the certificate, or the RSA key value with extractPublicKeyFromCertificate.
+ *
+ * @author skerdudou
+ */
+public final class SAML2AuthnRequestFactory {
+
+	private static final String DS_NS = "http://www.w3.org/2000/09/xmldsig#";
+	private static final String ALGO_ID_C14N_EXCL = "http://www.w3.org/2001/10/xml-exc-c14n#";
+	private static final String ALGO_ID_ENVELOPED = "http://www.w3.org/2000/09/xmldsig#enveloped-signature";
+
+	private final SAML2Parameters samlParameters;
+	private final String assertionConsumerServiceUrl;
+	private final String signatureAlgorithmURI;
+	private final String jcaSignatureAlgorithm;
+	private final String digestAlgorithmURI;
+	private final String jcaDigestAlgorithm;
+	private final String keyInfo;
+	private final ThreadLocal<Signature> signers;
+	private volatile RequestTemplate requestTemplate;
+
+	/**
+	 * Constructor.
+	 * @param samlParameters the SAML parameters (issuer, signature type, SP credential, IdP login URL)
+	 * @param assertionConsumerServiceUrl URL receiving the response of the identity provider (HTTP-POST binding)
+	 */
+	public SAML2AuthnRequestFactory(final SAML2Parameters samlParameters, final String assertionConsumerServiceUrl) {
+		Assertion.check()
+				.isNotNull(samlParameters)
+				.isNotBlank(assertionConsumerServiceUrl);
+		//---
+		this.samlParameters = samlParameters;
+		this.assertionConsumerServiceUrl = assertionConsumerServiceUrl;
+		signatureAlgorithmURI = OpenSAMLUtil.resolveSignatureType(samlParameters.getSignatureType());
+		switch (signatureAlgorithmURI) {
+			case SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA1 -> {
+				jcaSignatureAlgorithm = "SHA1withRSA";
+				digestAlgorithmURI = SignatureConstants.ALGO_ID_DIGEST_SHA1;
+				jcaDigestAlgorithm = "SHA-1";
+			}
+			case SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA384 -> {
+				jcaSignatureAlgorithm = "SHA384withRSA";
+				digestAlgorithmURI = SignatureConstants.ALGO_ID_DIGEST_SHA384;
+				jcaDigestAlgorithm = "SHA-384";
+			}
+			case SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA512 -> {
+				jcaSignatureAlgorithm = "SHA512withRSA";
+				digestAlgorithmURI = SignatureConstants.ALGO_ID_DIGEST_SHA512;
+				jcaDigestAlgorithm = "SHA-512";
+			}
+			default -> {
+				jcaSignatureAlgorithm = "SHA256withRSA";
+				digestAlgorithmURI = SignatureConstants.ALGO_ID_DIGEST_SHA256;
+				jcaDigestAlgorithm = "SHA-256";
+			}
+		}
+		final var spCredential = samlParameters.getSpCredential();
+		final PrivateKey privateKey = spCredential.getPrivateKey();
+		if (privateKey == null) {
+			throw new VSystemException("SAML SP credential has no private key, unable to sign requests.");
+		}
+		keyInfo = buildKeyInfo(spCredential, samlParameters.isExtractPublicKeyFromCertificate());
+		signers = ThreadLocal.withInitial(() -> {
+			try {
+				final var signer = Signature.getInstance(jcaSignatureAlgorithm);
+				signer.initSign(privateKey);
+				return signer; // reset after each sign, reusable by this thread
+			} catch (final GeneralSecurityException e) {
+				throw WrappedException.wrap(e);
+			}
+		});
+		signers.get(); // fail at startup if the key is not usable
+		requestTemplate = buildRequestTemplate(samlParameters.getLoginUrl());
+	}
+
+	/**
+	 * Creates an AuthnRequest for the HTTP-POST binding, with an enveloped XML signature.
+	 *
+	 * @param relayStateOpt the RelayState (sent beside the request, not signed)
+	 * @return the request
+	 */
+	public SAML2AuthnRequest createPostRequest(final Optional<String> relayStateOpt) {
+		Assertion.check().isNotNull(relayStateOpt);
+		//---
+		final var template = getRequestTemplate();
+		final var id = OpenSAMLUtil.generateSecureRandomId();
+		final var issueInstant = formatInstant(Instant.now());
+
+		// digest of the request without signature (enveloped-signature transform), already in canonical form
+		final var digestValue = Base64.getEncoder().encodeToString(digest(template.toXml(id, issueInstant, "")));
+		final var signedInfoContent = new StringBuilder(1024)
+				.append("<ds:CanonicalizationMethod Algorithm=\"").append(ALGO_ID_C14N_EXCL).append("\"></ds:CanonicalizationMethod>")
+				.append("<ds:SignatureMethod Algorithm=\"").append(signatureAlgorithmURI).append("\"></ds:SignatureMethod>")
+				.append("<ds:Reference URI=\"#").append(id).append("\">")
+				.append("<ds:Transforms>")
+				.append("<ds:Transform Algorithm=\"").append(ALGO_ID_ENVELOPED).append("\"></ds:Transform>")
+				.append("<ds:Transform Algorithm=\"").append(ALGO_ID_C14N_EXCL).append("\"></ds:Transform>")
+				.append("</ds:Transforms>")
+				.append("<ds:DigestMethod Algorithm=\"").append(digestAlgorithmURI).append("\"></ds:DigestMethod>")
+				.append("<ds:DigestValue>").append(digestValue).append("</ds:DigestValue>")
+				.append("</ds:Reference>")
+				.toString();
+		// exclusive canonical form of SignedInfo alone : declares the ds namespace
+		final var canonicalSignedInfo = "<ds:SignedInfo xmlns:ds=\"" + DS_NS + "\">" + signedInfoContent + "</ds:SignedInfo>";
+		final var signatureValue = Base64.getEncoder().encodeToString(sign(canonicalSignedInfo.getBytes(StandardCharsets.UTF_8)));
+
+		final var signatureElement = "<ds:Signature xmlns:ds=\"" + DS_NS + "\">"
+				+ "<ds:SignedInfo>" + signedInfoContent + "</ds:SignedInfo>"
+				+ "<ds:SignatureValue>" + signatureValue + "</ds:SignatureValue>"
+				+ keyInfo
+				+ "</ds:Signature>";
+		final var samlRequest = Base64.getEncoder().encodeToString(template.toXml(id, issueInstant, signatureElement));
+		return new SAML2AuthnRequest(id, template.destination(), samlRequest, relayStateOpt);
+	}
+
+	/**
+	 * Creates an AuthnRequest for the HTTP-Redirect binding : deflated request, signed query string.
+	 *
+	 * @param relayStateOpt the RelayState (signed with the request)
+	 * @return the request, url is the full redirect URL
+	 */
+	public SAML2AuthnRequest createRedirectRequest(final Optional<String> relayStateOpt) {
+		Assertion.check().isNotNull(relayStateOpt);
+		//---
+		final var template = getRequestTemplate();
+		final var id = OpenSAMLUtil.generateSecureRandomId();
+		final var samlRequest = Base64.getEncoder().encodeToString(deflate(template.toXml(id, formatInstant(Instant.now()), "")));
+
+		final var query = new StringBuilder(samlRequest.length() * 2)
+				.append("SAMLRequest=").append(URLEncoder.encode(samlRequest, StandardCharsets.UTF_8));
+		relayStateOpt.ifPresent(relayState -> query.append("&RelayState=").append(URLEncoder.encode(relayState, StandardCharsets.UTF_8)));
+		query.append("&SigAlg=").append(URLEncoder.encode(signatureAlgorithmURI, StandardCharsets.UTF_8));
+		final var signature = Base64.getEncoder().encodeToString(sign(query.toString().getBytes(StandardCharsets.UTF_8)));
+		query.append("&Signature=").append(URLEncoder.encode(signature, StandardCharsets.UTF_8));
+
+		final var destination = template.destination();
+		final var url = destination + (destination.indexOf('?') < 0 ? '?' : '&') + query;
+		return new SAML2AuthnRequest(id, url, samlRequest, relayStateOpt);
+	}
+
+	private RequestTemplate getRequestTemplate() {
+		final var loginUrl = samlParameters.getLoginUrl();
+		var currentTemplate = requestTemplate;
+		if (!currentTemplate.destination().equals(loginUrl)) {
+			currentTemplate = buildRequestTemplate(loginUrl);
+			requestTemplate = currentTemplate;
+		}
+		return currentTemplate;
+	}
+
+	private RequestTemplate buildRequestTemplate(final String destination) {
+		// exclusive canonical form : namespace declarations then attributes sorted by name, no empty element shortcut
+		final var beforeId = "<saml2p:AuthnRequest xmlns:saml2p=\"" + SAMLConstants.SAML20P_NS + "\""
+				+ " AssertionConsumerServiceURL=\"" + escapeAttribute(assertionConsumerServiceUrl) + "\""
+				+ " Destination=\"" + escapeAttribute(destination) + "\""
+				+ " ID=\"";
+		final var beforeIssueInstant = "\" IssueInstant=\"";
+		final var beforeSignature = "\""
+				+ " ProtocolBinding=\"" + SAMLConstants.SAML2_POST_BINDING_URI + "\""
+				+ " Version=\"2.0\">"
+				+ "<saml2:Issuer xmlns:saml2=\"" + SAMLConstants.SAML20_NS + "\">" + escapeText(samlParameters.getSamlClientName()) + "</saml2:Issuer>";
+		// Signature is after Issuer (schema order)
+		final var afterSignature = "<saml2p:NameIDPolicy AllowCreate=\"true\" Format=\"" + NameIDType.TRANSIENT + "\"></saml2p:NameIDPolicy>"
+				+ "</saml2p:AuthnRequest>";
+		return new RequestTemplate(destination, beforeId, beforeIssueInstant, beforeSignature, afterSignature);
+	}
+
+	private byte[] digest(final byte[] content) {
+		try {
+			return MessageDigest.getInstance(jcaDigestAlgorithm).digest(content);
+		} catch (final GeneralSecurityException e) {
+			throw WrappedException.wrap(e);
+		}
+	}
+
+	private byte[] sign(final byte[] content) {
+		final var signer = signers.get();
+		try {
+			signer.update(content);
+			return signer.sign();
+		} catch (final GeneralSecurityException e) {
+			throw WrappedException.wrap(e);
+		}
+	}
+
+	private static byte[] deflate(final byte[] content) {
+		final var deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true); // raw deflate (RFC 1951)
+		try {
+			deflater.setInput(content);
+			deflater.finish();
+			final var out = new ByteArrayOutputStream(content.length);
+			final var buffer = new byte[1024];
+			while (!deflater.finished()) {
+				out.write(buffer, 0, deflater.deflate(buffer));
+			}
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static String buildKeyInfo(final Credential credential, final boolean extractPublicKeyFromCertificate) {
+		// same choice as OpenSAMLUtil.getKeyInfo (SP metadata)
+		if (!extractPublicKeyFromCertificate && credential instanceof final X509Credential x509Credential) {
+			try {
+				return "<ds:KeyInfo><ds:X509Data><ds:X509Certificate>"
+						+ Base64.getEncoder().encodeToString(x509Credential.getEntityCertificate().getEncoded())
+						+ "</ds:X509Certificate></ds:X509Data></ds:KeyInfo>";
+			} catch (final CertificateEncodingException e) {
+				throw WrappedException.wrap(e);
+			}
+		}
+		if (credential.getPublicKey() instanceof final RSAPublicKey rsaPublicKey) {
+			return "<ds:KeyInfo><ds:KeyValue><ds:RSAKeyValue>"
+					+ "<ds:Modulus>" + encodeCryptoBinary(rsaPublicKey.getModulus()) + "</ds:Modulus>"
+					+ "<ds:Exponent>" + encodeCryptoBinary(rsaPublicKey.getPublicExponent()) + "</ds:Exponent>"
+					+ "</ds:RSAKeyValue></ds:KeyValue></ds:KeyInfo>";
+		}
+		return ""; // no public key : the identity provider knows it from the SP metadata
+	}
+
+	private static String encodeCryptoBinary(final BigInteger value) {
+		// ds:CryptoBinary : unsigned big endian, without the sign byte
+		final var bytes = value.toByteArray();
+		return Base64.getEncoder().encodeToString(bytes.length > 1 && bytes[0] == 0 ? Arrays.copyOfRange(bytes, 1, bytes.length) : bytes);
+	}
+
+	private static String formatInstant(final Instant instant) {
+		return DateTimeFormatter.ISO_INSTANT.format(instant.truncatedTo(ChronoUnit.MILLIS));
+	}
+
+	private static String escapeAttribute(final String value) {
+		return value.replace("&", "&amp;")
+				.replace("<", "&lt;")
+				.replace("\"", "&quot;")
+				.replace("\t", "&#x9;")
+				.replace("\n", "&#xA;")
+				.replace("\r", "&#xD;");
+	}
+
+	private static String escapeText(final String value) {
+		return value.replace("&", "&amp;")
+				.replace("<", "&lt;")
+				.replace(">", "&gt;")
+				.replace("\r", "&#xD;");
+	}
+
+	private record RequestTemplate(String destination, String beforeId, String beforeIssueInstant, String beforeSignature, String afterSignature) {
+
+		byte[] toXml(final String id, final String issueInstant, final String signature) {
+			return new StringBuilder(beforeId.length() + beforeSignature.length() + afterSignature.length() + signature.length() + 128)
+					.append(beforeId).append(id)
+					.append(beforeIssueInstant).append(issueInstant)
+					.append(beforeSignature)
+					.append(signature)
+					.append(afterSignature)
+					.toString()
+					.getBytes(StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -17,11 +17,14 @@
  */
 package io.vertigo.connectors.saml2;
 
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 
 import io.vertigo.core.lang.Assertion;
+import io.vertigo.core.lang.VSystemException;
 import io.vertigo.core.node.component.Connector;
 import io.vertigo.core.param.ParamValue;
 import io.vertigo.core.resource.ResourceManager;
@@ -36,6 +39,9 @@ public class SAML2DeploymentConnector implements Connector<SAML2Parameters> {
 
 	private final SAML2Parameters samlParameters;
 	private final String connectorName;
+	private final SAML2IpConfigPlugin ipConfig;
+	// parameters of the other identity providers of a federation, by entityID
+	private final Map<String, SAML2Parameters> idpSamlParameters = new ConcurrentHashMap<>();
 
 	@Inject
 	public SAML2DeploymentConnector(
@@ -60,6 +66,7 @@ public class SAML2DeploymentConnector implements Connector<SAML2Parameters> {
 				.isNotNull(resourceManager);
 		//---
 		connectorName = connectorNameOpt.orElse("main");
+		this.ipConfig = ipConfig;
 		samlParameters = new SAML2Parameters(
 				clientName,
 				externalUrlOpt,
@@ -67,9 +74,9 @@ public class SAML2DeploymentConnector implements Connector<SAML2Parameters> {
 				cryptAssertionOpt.orElse(true),
 				extractPublicKeyFromCertificateOpt.orElse(false),
 				spKeyConfig.getCredentials(),
-				ipConfig.getLoginUrl(),
-				ipConfig.getLogoutUrl(),
-				ipConfig.getPublicCredentials());
+				ipConfig::getLoginUrl, // may be refreshed by the plugin (metadata)
+				ipConfig::getLogoutUrl,
+				ipConfig::getPublicCredentials);
 	}
 
 	@Override
@@ -86,4 +93,32 @@ public class SAML2DeploymentConnector implements Connector<SAML2Parameters> {
 		return samlParameters;
 	}
 
+	/**
+	 * Get config value object of another identity provider, known by the identity provider plugin (federation metadata).
+	 * The service provider configuration is shared, identity provider values follow metadata refreshes.
+	 * @param idpEntityId entityID of the identity provider
+	 * @return the config
+	 */
+	public SAML2Parameters getClient(final String idpEntityId) {
+		Assertion.check().isNotBlank(idpEntityId);
+		//---
+		getIdp(idpEntityId); // unknown identity providers are not cached
+		return idpSamlParameters.computeIfAbsent(idpEntityId, entityId -> new SAML2Parameters(
+				samlParameters.getSamlClientName(),
+				samlParameters.getExternalUrlOpt(),
+				samlParameters.getSignatureType(),
+				samlParameters.isCryptAssertion(),
+				samlParameters.isExtractPublicKeyFromCertificate(),
+				samlParameters.getSpCredentials(),
+				() -> getIdp(entityId).loginUrl(),
+				() -> getIdp(entityId).logoutUrlOpt()
+						.orElseThrow(() -> new VSystemException("No logout URL for SAML identity provider '{0}'.", entityId)),
+				() -> getIdp(entityId).signingCredentials()));
+	}
+
+	private SAML2IdpMetadata getIdp(final String idpEntityId) {
+		return ipConfig.getIdp(idpEntityId)
+				.orElseThrow(() -> new VSystemException("Unknown SAML identity provider '{0}'.", idpEntityId));
+	}
+
 }
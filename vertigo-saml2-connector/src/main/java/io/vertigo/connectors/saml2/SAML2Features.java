@@ -17,6 +17,7 @@
  */
 package io.vertigo.connectors.saml2;
 
+import io.vertigo.connectors.saml2.plugins.ip.SAML2IpConfigFederationPlugin;
 import io.vertigo.connectors.saml2.plugins.ip.SAML2IpConfigFilePlugin;
 import io.vertigo.connectors.saml2.plugins.ip.SAML2IpConfigKeystorePlugin;
 import io.vertigo.connectors.saml2.plugins.ip.SAML2IpConfigMetadataPlugin;
@@ -97,6 +98,13 @@ public class SAML2Features extends Features<SAML2Features> {
 		return this;
 	}
 
+	@Feature("saml.ip.federation")
+	public SAML2Features withIpFederationMetadata(final Param... params) {
+		getModuleConfigBuilder()
+				.addPlugin(SAML2IpConfigFederationPlugin.class, params);
+		return this;
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	protected void buildFeatures() {
@@ -0,0 +1,40 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.saml2;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.opensaml.security.credential.Credential;
+
+/**
+ * An identity provider of a federation (see SAML2IpConfigPlugin.getIdp).
+ * Instances are immutable : a refreshed identity provider is a new instance, an unchanged one keeps its instance and its credentials list.
+ *
+ * @param entityId entityID of the identity provider
+ * @param loginUrl SingleSignOnService (HTTP-POST)
+ * @param logoutUrlOpt SingleLogoutService (HTTP-POST)
+ * @param signingCredentials public credentials of the identity provider
+ * @author skerdudou
+ */
+public record SAML2IdpMetadata(
+		String entityId,
+		String loginUrl,
+		Optional<String> logoutUrlOpt,
+		List<Credential> signingCredentials) {
+}
@@ -18,11 +18,18 @@
 package io.vertigo.connectors.saml2;
 
 import java.util.List;
+import java.util.Optional;
 
 import org.opensaml.security.credential.Credential;
 
 import io.vertigo.core.node.component.Plugin;
 
+/**
+ * Identity provider configuration.
+ * Values may change over time (refreshed metadata) : they are read on each use, the credentials list instance changes only when credentials change.
+ *
+ * @author skerdudou
+ */
 public interface SAML2IpConfigPlugin extends Plugin {
 
 	String getLoginUrl();
@@ -30,4 +37,13 @@ public interface SAML2IpConfigPlugin extends Plugin {
 	List<Credential> getPublicCredentials();
 
 	String getLogoutUrl();
+
+	/**
+	 * Other identity providers, for plugins knowing several of them (federation metadata).
+	 * @param entityId entityID of the identity provider
+	 * @return the identity provider, empty if unknown
+	 */
+	default Optional<SAML2IdpMetadata> getIdp(final String entityId) {
+		return Optional.empty();
+	}
 }
@@ -19,6 +19,7 @@ package io.vertigo.connectors.saml2;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import org.opensaml.security.credential.Credential;
 
@@ -33,9 +34,11 @@ public final class SAML2Parameters {
 	private final boolean extractPublicKeyFromCertificate;
 
 	private final List<Credential> spCredentials;
-	private final String loginUrl;
-	private final String logoutUrl;
-	private final List<Credential> ipPublicCredentials;
+	// identity provider configuration may be refreshed (metadata), read on each access
+	private final Supplier<String> loginUrlSupplier;
+	private final Supplier<String> logoutUrlSupplier;
+	private final Supplier<List<Credential>> ipPublicCredentialsSupplier;
+	private volatile IpSignatureValidator ipSignatureValidator;
 
 	public SAML2Parameters(
 			final String samlClientName,
@@ -47,6 +50,24 @@ public final class SAML2Parameters {
 			final String loginUrl,
 			final String logoutUrl,
 			final List<Credential> ipPublicCredentials) {
+		this(samlClientName, externalUrlOpt, signatureType, cryptAssertion, extractPublicKeyFromCertificate, spCredentials,
+				() -> loginUrl, () -> logoutUrl, () -> ipPublicCredentials);
+	}
+
+	/**
+	 * Constructor with an identity provider configuration that may change (refreshed metadata).
+	 * The credentials supplier must return the same list instance as long as credentials don't change.
+	 */
+	public SAML2Parameters(
+			final String samlClientName,
+			final Optional<String> externalUrlOpt,
+			final String signatureType,
+			final boolean cryptAssertion,
+			final boolean extractPublicKeyFromCertificate,
+			final List<Credential> spCredentials,
+			final Supplier<String> loginUrlSupplier,
+			final Supplier<String> logoutUrlSupplier,
+			final Supplier<List<Credential>> ipPublicCredentialsSupplier) {
 
 		this.samlClientName = samlClientName;
 		this.externalUrlOpt = externalUrlOpt;
@@ -54,9 +75,10 @@ public final class SAML2Parameters {
 		this.cryptAssertion = cryptAssertion;
 		this.extractPublicKeyFromCertificate = extractPublicKeyFromCertificate;
 		this.spCredentials = spCredentials;
-		this.loginUrl = loginUrl;
-		this.logoutUrl = logoutUrl;
-		this.ipPublicCredentials = ipPublicCredentials;
+		this.loginUrlSupplier = loginUrlSupplier;
+		this.logoutUrlSupplier = logoutUrlSupplier;
+		this.ipPublicCredentialsSupplier = ipPublicCredentialsSupplier;
+		getIpSignatureValidator(); // built at startup
 	}
 
 	public String getSamlClientName() {
@@ -88,15 +110,32 @@ public final class SAML2Parameters {
 	}
 
 	public String getLoginUrl() {
-		return loginUrl;
+		return loginUrlSupplier.get();
 	}
 
 	public String getLogoutUrl() {
-		return logoutUrl;
+		return logoutUrlSupplier.get();
 	}
 
 	public List<Credential> getIpPublicCredentials() {
-		return ipPublicCredentials;
+		return ipPublicCredentialsSupplier.get();
+	}
+
+	/**
+	 * @return validator of identity provider signatures, built once per version of its public credentials
+	 */
+	public SAML2SignatureValidator getIpSignatureValidator() {
+		final var ipPublicCredentials = ipPublicCredentialsSupplier.get();
+		var currentValidator = ipSignatureValidator;
+		if (currentValidator == null || currentValidator.credentials() != ipPublicCredentials) {
+			// credentials refreshed : concurrent callers may build it twice, only one is kept
+			currentValidator = new IpSignatureValidator(ipPublicCredentials, new SAML2SignatureValidator(ipPublicCredentials));
+			ipSignatureValidator = currentValidator;
+		}
+		return currentValidator.validator();
+	}
+
+	private record IpSignatureValidator(List<Credential> credentials, SAML2SignatureValidator validator) {
 	}
 
 }
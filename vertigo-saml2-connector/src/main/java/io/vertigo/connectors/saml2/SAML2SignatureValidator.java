@@ -0,0 +1,213 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.saml2;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.crypto.dsig.XMLSignature;
+
+import org.opensaml.saml.common.SignableSAMLObject;
+import org.opensaml.saml.security.impl.SAMLSignatureProfileValidator;
+import org.opensaml.security.SecurityException;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.security.credential.CredentialSupport;
+import org.opensaml.security.credential.UsageType;
+import org.opensaml.security.credential.impl.StaticCredentialResolver;
+import org.opensaml.security.criteria.UsageCriterion;
+import org.opensaml.xmlsec.algorithm.AlgorithmSupport;
+import org.opensaml.xmlsec.algorithm.SignatureAlgorithm;
+import org.opensaml.xmlsec.config.impl.DefaultSecurityConfigurationBootstrap;
+import org.opensaml.xmlsec.keyinfo.KeyInfoCredentialResolver;
+import org.opensaml.xmlsec.signature.Signature;
+import org.opensaml.xmlsec.signature.support.SignatureConstants;
+import org.opensaml.xmlsec.signature.support.SignatureException;
+import org.opensaml.xmlsec.signature.support.SignatureTrustEngine;
+import org.opensaml.xmlsec.signature.support.impl.ExplicitKeySignatureTrustEngine;
+import org.w3c.dom.Element;
+
+import io.vertigo.core.lang.Assertion;
+import io.vertigo.core.lang.VSystemException;
+import net.shibboleth.shared.resolver.CriteriaSet;
+
+/**
+ * Validates signatures of the identity provider (responses, assertions, redirect binding messages) against its trusted public credentials.
+ * Trust engines are built once per signature algorithm, with only the credentials usable by this algorithm : validations don't
+ * rebuild credential resolvers nor parse keys. Thread safe, shared by all requests.
+ * Signature and digest algorithms are checked against included and excluded algorithms (as OpenSAML SignatureValidationParameters) :
+ * by default any algorithm of the registry but SHA-1 and MD5 ones.
+ *
+ * @author skerdudou
+ */
+public final class SAML2SignatureValidator {
+
+	/** Default excluded algorithms : SHA-1 and MD5, broken or deprecated. */
+	public static final Set<String> DEFAULT_EXCLUDED_ALGORITHMS = Set.of(
+			SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA1,
+			SignatureConstants.ALGO_ID_SIGNATURE_DSA_SHA1,
+			SignatureConstants.ALGO_ID_SIGNATURE_ECDSA_SHA1,
+			SignatureConstants.ALGO_ID_MAC_HMAC_SHA1,
+			SignatureConstants.ALGO_ID_DIGEST_SHA1,
+			SignatureConstants.ALGO_ID_SIGNATURE_NOT_RECOMMENDED_RSA_MD5,
+			SignatureConstants.ALGO_ID_MAC_HMAC_NOT_RECOMMENDED_MD5,
+			SignatureConstants.ALGO_ID_DIGEST_NOT_RECOMMENDED_MD5);
+
+	private final List<Credential> trustedCredentials;
+	private final Set<String> includedAlgorithms;
+	private final Set<String> excludedAlgorithms;
+	private final KeyInfoCredentialResolver keyInfoCredentialResolver;
+	private final SAMLSignatureProfileValidator profileValidator = new SAMLSignatureProfileValidator();
+	private final Map<String, SignatureTrustEngine> trustEnginesByAlgorithm = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor, with default algorithms : all but DEFAULT_EXCLUDED_ALGORITHMS.
+	 * @param trustedCredentials public credentials of the identity provider
+	 */
+	public SAML2SignatureValidator(final List<Credential> trustedCredentials) {
+		this(trustedCredentials, Set.of(), DEFAULT_EXCLUDED_ALGORITHMS);
+	}
+
+	/**
+	 * Constructor.
+	 * @param trustedCredentials public credentials of the identity provider
+	 * @param includedAlgorithms accepted signature and digest algorithm URIs, all if empty
+	 * @param excludedAlgorithms rejected signature and digest algorithm URIs, even if included
+	 */
+	public SAML2SignatureValidator(final List<Credential> trustedCredentials, final Set<String> includedAlgorithms, final Set<String> excludedAlgorithms) {
+		Assertion.check()
+				.isNotNull(trustedCredentials)
+				.isNotNull(includedAlgorithms)
+				.isNotNull(excludedAlgorithms);
+		//---
+		OpenSAMLUtil.initOpenSamlIfNeeded(); // algorithm registry
+		this.trustedCredentials = trustedCredentials.stream()
+				.filter(Objects::nonNull) // unresolved credentials
+				.toList();
+		this.includedAlgorithms = Set.copyOf(includedAlgorithms);
+		this.excludedAlgorithms = Set.copyOf(excludedAlgorithms);
+		keyInfoCredentialResolver = DefaultSecurityConfigurationBootstrap.buildBasicInlineKeyInfoCredentialResolver();
+	}
+
+	/**
+	 * Validates the XML signature of a SAML object (Response or Assertion) : SAML signature profile (references, transforms)
+	 * signature and digest algorithms, and cryptographic signature with a trusted credential.
+	 *
+	 * @param samlObject the signed SAML object
+	 * @throws VSystemException if the object is not signed, the signature is invalid or an algorithm is not accepted
+	 */
+	public void validate(final SignableSAMLObject samlObject) {
+		Assertion.check().isNotNull(samlObject);
+		//---
+		final Signature signature = samlObject.getSignature();
+		if (!samlObject.isSigned() || signature == null) {
+			throw new VSystemException("SAML object '{0}' is not signed.", samlObject.getElementQName().getLocalPart());
+		}
+		try {
+			profileValidator.validate(signature);
+		} catch (final SignatureException e) {
+			throw new VSystemException(e, "SAML signature doesn't match SAML signature profile.");
+		}
+		checkDigestAlgorithms(signature);
+		final boolean valid;
+		try {
+			valid = getTrustEngine(signature.getSignatureAlgorithm()).validate(signature, newSigningCriteria());
+		} catch (final SecurityException e) {
+			throw new VSystemException(e, "Unable to validate SAML signature.");
+		}
+		if (!valid) {
+			throw new VSystemException("SAML signature is not valid.");
+		}
+	}
+
+	/**
+	 * Validates a detached signature (HTTP-Redirect binding : Signature and SigAlg query parameters).
+	 *
+	 * @param algorithmURI the signature algorithm (SigAlg parameter)
+	 * @param signature the decoded signature
+	 * @param signedContent the signed query string (SAMLRequest or SAMLResponse, RelayState and SigAlg, as received)
+	 * @throws VSystemException if the signature is invalid or its algorithm is not accepted
+	 */
+	public void validate(final String algorithmURI, final byte[] signature, final byte[] signedContent) {
+		Assertion.check()
+				.isNotBlank(algorithmURI)
+				.isNotNull(signature)
+				.isNotNull(signedContent);
+		//---
+		final boolean valid;
+		try {
+			valid = getTrustEngine(algorithmURI).validate(signature, signedContent, algorithmURI, newSigningCriteria(), null);
+		} catch (final SecurityException e) {
+			throw new VSystemException(e, "Unable to validate SAML signature.");
+		}
+		if (!valid) {
+			throw new VSystemException("SAML signature is not valid.");
+		}
+	}
+
+	private SignatureTrustEngine getTrustEngine(final String algorithmURI) {
+		if (algorithmURI == null) {
+			throw new VSystemException("SAML signature without algorithm.");
+		}
+		checkAlgorithm(algorithmURI);
+		// unknown algorithms are rejected before being cached : the map is bounded by the algorithm registry
+		return trustEnginesByAlgorithm.computeIfAbsent(algorithmURI, this::createTrustEngine);
+	}
+
+	private void checkDigestAlgorithms(final Signature signature) {
+		final Element signatureElement = signature.getDOM();
+		if (signatureElement == null) {
+			return; // not unmarshalled : no XML signature to validate, rejected by the trust engine
+		}
+		final var digestMethods = signatureElement.getElementsByTagNameNS(XMLSignature.XMLNS, "DigestMethod");
+		for (var i = 0; i < digestMethods.getLength(); i++) {
+			checkAlgorithm(((Element) digestMethods.item(i)).getAttributeNS(null, "Algorithm"));
+		}
+	}
+
+	private void checkAlgorithm(final String algorithmURI) {
+		if ((!includedAlgorithms.isEmpty() && !includedAlgorithms.contains(algorithmURI)) || excludedAlgorithms.contains(algorithmURI)) {
+			throw new VSystemException("SAML signature algorithm '{0}' not accepted.", algorithmURI);
+		}
+	}
+
+	private SignatureTrustEngine createTrustEngine(final String algorithmURI) {
+		final var algorithmRegistry = AlgorithmSupport.getGlobalAlgorithmRegistry();
+		final var algorithmDescriptor = algorithmRegistry == null ? null : algorithmRegistry.get(algorithmURI);
+		if (!(algorithmDescriptor instanceof final SignatureAlgorithm signatureAlgorithm)) {
+			throw new VSystemException("Unsupported SAML signature algorithm '{0}'.", algorithmURI);
+		}
+		final List<Credential> algorithmCredentials = trustedCredentials.stream()
+				.filter(credential -> {
+					final var key = CredentialSupport.extractVerificationKey(credential);
+					return key != null && signatureAlgorithm.getKey().equals(key.getAlgorithm());
+				})
+				.toList();
+		if (algorithmCredentials.isEmpty()) {
+			throw new VSystemException("No trusted SAML credential for signature algorithm '{0}'.", algorithmURI);
+		}
+		return new ExplicitKeySignatureTrustEngine(new StaticCredentialResolver(algorithmCredentials), keyInfoCredentialResolver);
+	}
+
+	private static CriteriaSet newSigningCriteria() {
+		// CriteriaSet is mutable : one per validation
+		return new CriteriaSet(new UsageCriterion(UsageType.SIGNING));
+	}
+}
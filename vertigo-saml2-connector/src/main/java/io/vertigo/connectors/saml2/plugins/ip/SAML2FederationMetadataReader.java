@@ -0,0 +1,292 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.saml2.plugins.ip;
+
+import java.io.InputStream;
+import java.security.PublicKey;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.stax.ext.InboundXMLSec;
+import org.apache.xml.security.stax.ext.XMLSec;
+import org.apache.xml.security.stax.ext.XMLSecurityProperties;
+import org.apache.xml.security.stax.securityEvent.SignedElementSecurityEvent;
+
+import io.vertigo.core.lang.Assertion;
+import io.vertigo.core.lang.VSystemException;
+
+/**
+ * Reads a SAML metadata aggregate (EntitiesDescriptor of a federation) in one streaming pass : the aggregate signature is
+ * verified while identity providers are extracted, without DOM nor OpenSAML objects.
+ * Only SAML 2 identity providers are kept (entityID, HTTP-POST endpoints, signing certificates), other entities are skipped.
+ * The aggregate must be signed on its root element with the federation key ; signatures of entities, if any, must use the same key.
+ * validUntil of the aggregate and of identity providers (entity or IDPSSODescriptor) are returned : already expired ones are
+ * rejected here, the caller must check them again while using the identity providers.
+ * Thread safe.
+ *
+ * @author skerdudou
+ */
+final class SAML2FederationMetadataReader {
+
+	private static final String MD_NS = "urn:oasis:names:tc:SAML:2.0:metadata";
+	private static final String DS_NS = "http://www.w3.org/2000/09/xmldsig#";
+	private static final String SAML20P_NS = "urn:oasis:names:tc:SAML:2.0:protocol";
+	private static final String SAML2_POST_BINDING_URI = "urn:oasis:names:tc:SAML:2.0:bindings:HTTP-POST";
+	private static final Pattern WHITESPACES_PATTERN = Pattern.compile("\\s+");
+
+	private final XMLInputFactory xmlInputFactory;
+	private final InboundXMLSec inboundXMLSec;
+
+	/**
+	 * Constructor.
+	 * @param verificationKey public key of the federation, signing aggregates
+	 */
+	SAML2FederationMetadataReader(final PublicKey verificationKey) {
+		Assertion.check().isNotNull(verificationKey);
+		//---
+		xmlInputFactory = XMLInputFactory.newFactory();
+		xmlInputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+		xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+		final var securityProperties = new XMLSecurityProperties();
+		securityProperties.setSignatureVerificationKey(verificationKey);
+		securityProperties.setIdAttributeNS(new QName("ID")); // SAML references
+		try {
+			inboundXMLSec = XMLSec.getInboundWSSec(securityProperties);
+		} catch (final XMLSecurityException e) {
+			throw new VSystemException(e, "Unable to configure SAML federation metadata signature validation.");
+		}
+	}
+
+	/**
+	 * Reads and verifies an aggregate.
+	 * @param inputStream the aggregate, not closed
+	 * @param now current instant, for validUntil
+	 * @return identity providers of the aggregate, in document order (an entityID appears once), with their validUntil
+	 * @throws VSystemException if the aggregate is not readable, not signed, badly signed or expired
+	 */
+	FederationMetadata read(final InputStream inputStream, final Instant now) {
+		Assertion.check()
+				.isNotNull(inputStream)
+				.isNotNull(now);
+		//---
+		final List<SignedElementSecurityEvent> signedElementEvents = new ArrayList<>();
+		try {
+			final var xmlStreamReader = inboundXMLSec.processInMessage(xmlInputFactory.createXMLStreamReader(inputStream), null, securityEvent -> {
+				if (securityEvent instanceof final SignedElementSecurityEvent signedElementEvent) {
+					signedElementEvents.add(signedElementEvent);
+				}
+			});
+			// signatures are verified when their signed element ends : the whole aggregate must be read before using it
+			final var federationMetadata = readEntities(xmlStreamReader, now);
+			xmlStreamReader.close(); // checks that all signature references were processed
+			checkRootSigned(federationMetadata.rootName(), signedElementEvents);
+			return federationMetadata;
+		} catch (final XMLStreamException e) {
+			throw new VSystemException(e, "Unable to read SAML federation metadata : {0}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Entities are only read where the aggregate signature covers them : the root, or a child of the root EntitiesDescriptor or
+	 * of a nested one. Any other element is skipped with its content, especially ds:Signature whose ds:Object is excluded from
+	 * the digest by the enveloped signature transform.
+	 */
+	private static FederationMetadata readEntities(final XMLStreamReader reader, final Instant now) throws XMLStreamException {
+		QName rootName = null;
+		Optional<Instant> validUntilOpt = Optional.empty();
+		var entityCount = 0;
+		final List<MetadataIdp> idps = new ArrayList<>();
+		final Set<String> entityIds = new HashSet<>();
+		while (reader.hasNext()) {
+			// only EntitiesDescriptor elements stay open here : every START_ELEMENT is the root or a child of an EntitiesDescriptor
+			if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+				continue;
+			}
+			if (rootName == null) {
+				rootName = reader.getName();
+				if (!MD_NS.equals(rootName.getNamespaceURI())
+						|| !("EntitiesDescriptor".equals(rootName.getLocalPart()) || "EntityDescriptor".equals(rootName.getLocalPart()))) {
+					throw new VSystemException("Not a SAML metadata : unexpected root element '{0}'.", rootName);
+				}
+				validUntilOpt = readValidUntil(reader);
+				if (validUntilOpt.isPresent() && validUntilOpt.get().isBefore(now)) {
+					throw new VSystemException("SAML federation metadata expired since {0}.", validUntilOpt.get());
+				}
+			}
+			if (isElement(reader, MD_NS, "EntityDescriptor")) {
+				entityCount++;
+				readEntity(reader, now)
+						.filter(idp -> entityIds.add(idp.entityId())) // entityIDs must be unique in an aggregate, the first one is kept otherwise
+						.ifPresent(idps::add);
+			} else if (!isElement(reader, MD_NS, "EntitiesDescriptor")) {
+				skipElement(reader); // ds:Signature, md:Extensions, ...
+			}
+		}
+		return new FederationMetadata(rootName, validUntilOpt, entityCount, idps);
+	}
+
+	private static void skipElement(final XMLStreamReader reader) throws XMLStreamException {
+		var depth = 1;
+		while (depth > 0) {
+			switch (reader.next()) {
+				case XMLStreamConstants.START_ELEMENT -> depth++;
+				case XMLStreamConstants.END_ELEMENT -> depth--;
+				default -> {
+					// text, comments
+				}
+			}
+		}
+	}
+
+	private static Optional<MetadataIdp> readEntity(final XMLStreamReader reader, final Instant now) throws XMLStreamException {
+		final var entityId = reader.getAttributeValue(null, "entityID");
+		var validUntilOpt = readValidUntil(reader);
+		final List<String> signingCertificates = new ArrayList<>();
+		String loginUrl = null;
+		String logoutUrl = null;
+		var idp = false;
+		var depth = 1;
+		var idpDescriptorDepth = 0; // depth of the current IDPSSODescriptor, 0 outside
+		String keyUse = null; // use of the current KeyDescriptor, null outside
+		while (depth > 0) {
+			switch (reader.next()) {
+				case XMLStreamConstants.START_ELEMENT -> {
+					depth++;
+					if (idpDescriptorDepth == 0) {
+						// only a direct child of the entity : not the content of its ds:Signature
+						if (depth == 2 && isElement(reader, MD_NS, "IDPSSODescriptor") && supportsSaml2(reader)) {
+							idp = true;
+							idpDescriptorDepth = depth;
+							validUntilOpt = min(validUntilOpt, readValidUntil(reader));
+						}
+					} else if (isElement(reader, MD_NS, "KeyDescriptor")) {
+						keyUse = Optional.ofNullable(reader.getAttributeValue(null, "use")).orElse("signing"); // no use : signing and encryption
+					} else if (isElement(reader, DS_NS, "X509Certificate") && "signing".equals(keyUse)) {
+						signingCertificates.add(WHITESPACES_PATTERN.matcher(reader.getElementText()).replaceAll(""));
+						depth--; // END_ELEMENT consumed
+					} else if (isElement(reader, MD_NS, "SingleSignOnService") && loginUrl == null && isPostBinding(reader)) {
+						loginUrl = reader.getAttributeValue(null, "Location");
+					} else if (isElement(reader, MD_NS, "SingleLogoutService") && logoutUrl == null && isPostBinding(reader)) {
+						logoutUrl = reader.getAttributeValue(null, "Location");
+					}
+				}
+				case XMLStreamConstants.END_ELEMENT -> {
+					if (depth == idpDescriptorDepth) {
+						idpDescriptorDepth = 0;
+					} else if (isElement(reader, MD_NS, "KeyDescriptor")) {
+						keyUse = null;
+					}
+					depth--;
+				}
+				default -> {
+					// text, comments
+				}
+			}
+		}
+		if (!idp || entityId == null || loginUrl == null || signingCertificates.isEmpty()
+				|| validUntilOpt.isPresent() && validUntilOpt.get().isBefore(now)) {
+			return Optional.empty(); // not a usable identity provider
+		}
+		return Optional.of(new MetadataIdp(entityId, loginUrl, Optional.ofNullable(logoutUrl), List.copyOf(signingCertificates), validUntilOpt));
+	}
+
+	private static void checkRootSigned(final QName rootName, final List<SignedElementSecurityEvent> signedElementEvents) {
+		final var rootSigned = rootName != null && signedElementEvents.stream()
+				.anyMatch(signedElementEvent -> signedElementEvent.isSigned() && List.of(rootName).equals(signedElementEvent.getElementPath()));
+		if (!rootSigned) {
+			throw new VSystemException("SAML federation metadata is not signed.");
+		}
+	}
+
+	private static boolean isElement(final XMLStreamReader reader, final String namespaceURI, final String localName) {
+		return localName.equals(reader.getLocalName()) && namespaceURI.equals(reader.getNamespaceURI());
+	}
+
+	private static boolean supportsSaml2(final XMLStreamReader reader) {
+		final var protocolSupportEnumeration = reader.getAttributeValue(null, "protocolSupportEnumeration");
+		return protocolSupportEnumeration != null
+				&& Arrays.asList(WHITESPACES_PATTERN.split(protocolSupportEnumeration.strip())).contains(SAML20P_NS);
+	}
+
+	private static boolean isPostBinding(final XMLStreamReader reader) {
+		return SAML2_POST_BINDING_URI.equals(reader.getAttributeValue(null, "Binding"));
+	}
+
+	private static Optional<Instant> readValidUntil(final XMLStreamReader reader) {
+		return Optional.ofNullable(reader.getAttributeValue(null, "validUntil"))
+				.map(SAML2FederationMetadataReader::parseDateTime);
+	}
+
+	private static Optional<Instant> min(final Optional<Instant> instant1Opt, final Optional<Instant> instant2Opt) {
+		if (instant1Opt.isEmpty()) {
+			return instant2Opt;
+		}
+		if (instant2Opt.isEmpty()) {
+			return instant1Opt;
+		}
+		return instant1Opt.get().isBefore(instant2Opt.get()) ? instant1Opt : instant2Opt;
+	}
+
+	private static Instant parseDateTime(final String dateTime) {
+		try {
+			return Instant.parse(dateTime);
+		} catch (final DateTimeParseException e) {
+			// xsd:dateTime without time zone
+			return LocalDateTime.parse(dateTime).toInstant(ZoneOffset.UTC);
+		}
+	}
+
+	/**
+	 * Content of an aggregate.
+	 * @param rootName root element
+	 * @param validUntilOpt validUntil of the aggregate
+	 * @param entityCount number of entities, identity providers or not
+	 * @param idps identity providers
+	 */
+	record FederationMetadata(QName rootName, Optional<Instant> validUntilOpt, int entityCount, List<MetadataIdp> idps) {
+	}
+
+	/**
+	 * An identity provider, as published in an aggregate.
+	 * @param entityId entityID
+	 * @param loginUrl SingleSignOnService (HTTP-POST)
+	 * @param logoutUrlOpt SingleLogoutService (HTTP-POST)
+	 * @param signingCertificates base64 DER of signing certificates, without whitespaces
+	 * @param validUntilOpt validUntil of the entity or of its IDPSSODescriptor (the soonest one)
+	 */
+	record MetadataIdp(String entityId, String loginUrl, Optional<String> logoutUrlOpt, List<String> signingCertificates, Optional<Instant> validUntilOpt) {
+	}
+}
@@ -0,0 +1,393 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.saml2.plugins.ip;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import javax.inject.Inject;
+
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.security.x509.BasicX509Credential;
+
+import io.vertigo.connectors.saml2.SAML2IdpMetadata;
+import io.vertigo.connectors.saml2.SAML2IpConfigPlugin;
+import io.vertigo.connectors.saml2.plugins.CertUtil;
+import io.vertigo.connectors.saml2.plugins.ip.SAML2FederationMetadataReader.FederationMetadata;
+import io.vertigo.connectors.saml2.plugins.ip.SAML2FederationMetadataReader.MetadataIdp;
+import io.vertigo.core.lang.Assertion;
+import io.vertigo.core.lang.VSystemException;
+import io.vertigo.core.lang.WrappedException;
+import io.vertigo.core.node.component.Activeable;
+import io.vertigo.core.param.ParamValue;
+import io.vertigo.core.resource.ResourceManager;
+import io.vertigo.core.util.StringUtil;
+
+/**
+ * Identity providers from the metadata aggregates of SAML federations (files or URLs, separated by ;), with thousands of entities.
+ * - aggregates are streamed (no DOM) and their signature is verified once per download, with the federation certificate
+ *   (metadataSigningCertFiles : one for all aggregates or one per aggregate)
+ * - only identity providers are kept, indexed by entityID
+ * - aggregates are loaded in parallel at startup, then refreshed in background every metadataRefreshSeconds : an unchanged
+ *   aggregate (HTTP ETag or Last-Modified, file modification date) is not downloaded again, unchanged identity providers keep their
+ *   instance and credentials
+ * - an unusable refreshed aggregate (signature, validUntil, download) is ignored, the previous one is kept
+ * - validUntil of aggregates and identity providers is enforced at each refresh and each lookup : an expired identity provider
+ *   is no longer available, even if its aggregate can't be refreshed (fail closed)
+ * The identity provider of this plugin is entityId, the others are available with getIdp. An entityID published by several
+ * aggregates is taken from the first one.
+ *
+ * @author skerdudou
+ */
+public class SAML2IpConfigFederationPlugin implements SAML2IpConfigPlugin, Activeable {
+
+	private static final Logger LOG = LogManager.getLogger(SAML2IpConfigFederationPlugin.class);
+
+	private final String entityId;
+	private final int metadataRefreshSeconds;
+	private final List<FederationAggregate> aggregates;
+	private final Optional<CloseableHttpClient> httpClientOpt;
+	private final ScheduledExecutorService refreshExecutor;
+	private volatile Map<String, PublishedIdp> idpsByEntityId;
+
+	@Inject
+	public SAML2IpConfigFederationPlugin(
+			@ParamValue("metadataUrls") final String metadataUrls,
+			@ParamValue("metadataSigningCertFiles") final String metadataSigningCertFiles,
+			@ParamValue("entityId") final String entityId,
+			@ParamValue("metadataRefreshSeconds") final Optional<Integer> metadataRefreshSecondsOpt,
+			@ParamValue("httpConnectTimeout") final Optional<Integer> httpConnectTimeoutOpt,
+			@ParamValue("httpReadTimeout") final Optional<Integer> httpReadTimeoutOpt,
+			final ResourceManager resourceManager) {
+		Assertion.check()
+				.isNotBlank(metadataUrls)
+				.isNotBlank(metadataSigningCertFiles)
+				.isNotBlank(entityId)
+				.isNotNull(metadataRefreshSecondsOpt)
+				.isNotNull(resourceManager);
+		//---
+		this.entityId = entityId;
+		metadataRefreshSeconds = metadataRefreshSecondsOpt.orElse(3600);
+		Assertion.check().isTrue(metadataRefreshSeconds > 0, "metadataRefreshSeconds must be positive");
+
+		final var metadataUrlList = splitList(metadataUrls).stream()
+				.map(resourceManager::resolve)
+				.toList();
+		final var readers = splitList(metadataSigningCertFiles).stream()
+				.map(certFile -> CertUtil.readX509FromString(SAML2IpConfigFilePlugin.readFileContent(resourceManager, certFile)))
+				.map(certificate -> new SAML2FederationMetadataReader(certificate.getPublicKey()))
+				.toList();
+		Assertion.check().isTrue(readers.size() == 1 || readers.size() == metadataUrlList.size(),
+				"One metadata signing certificate for all metadata URLs, or one per metadata URL");
+
+		// one pool of connections for all metadata URLs
+		httpClientOpt = metadataUrlList.stream().anyMatch(Predicate.not(SAML2IpConfigMetadataPlugin::isFile))
+				? Optional.of(SAML2IpConfigMetadataPlugin.createHttpClient(httpConnectTimeoutOpt.orElse(1000), httpReadTimeoutOpt.orElse(5000)))
+				: Optional.empty();
+		aggregates = IntStream.range(0, metadataUrlList.size())
+				.mapToObj(i -> new FederationAggregate(metadataUrlList.get(i), readers.get(readers.size() == 1 ? 0 : i), httpClientOpt))
+				.toList();
+		refreshExecutor = Executors.newScheduledThreadPool(Math.min(aggregates.size(), 4), runnable -> {
+			final var thread = new Thread(runnable, "saml2-federation-refresh");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		// aggregates are independent : loaded in parallel, the connector needs them at startup
+		final var loads = aggregates.stream()
+				.map(aggregate -> CompletableFuture.runAsync(aggregate::load, refreshExecutor))
+				.toArray(CompletableFuture[]::new);
+		try {
+			CompletableFuture.allOf(loads).join();
+		} catch (final CompletionException e) {
+			refreshExecutor.shutdownNow();
+			throw new VSystemException(e.getCause(), "Unable to load SAML federation metadata.");
+		}
+		publishIdps();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void start() {
+		// each aggregate has its own refresh : a slow download doesn't delay the others
+		aggregates.forEach(aggregate -> refreshExecutor.scheduleWithFixedDelay(() -> refresh(aggregate), metadataRefreshSeconds, metadataRefreshSeconds, TimeUnit.SECONDS));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void stop() {
+		refreshExecutor.shutdownNow();
+		httpClientOpt.ifPresent(httpClient -> {
+			try {
+				httpClient.close();
+			} catch (final IOException e) {
+				throw WrappedException.wrap(e);
+			}
+		});
+	}
+
+	private void refresh(final FederationAggregate aggregate) {
+		try {
+			if (!aggregate.load()) {
+				LOG.debug("SAML federation metadata {} unchanged.", aggregate.url);
+			}
+		} catch (final RuntimeException e) {
+			// not thrown : it would cancel next refreshes
+			LOG.warn("Refreshed SAML federation metadata {} unusable, previous one kept.", aggregate.url, e);
+		}
+		// even when unchanged or unusable : identity providers expired since the last refresh are removed
+		publishIdps();
+	}
+
+	private synchronized void publishIdps() {
+		final var now = Instant.now();
+		final Map<String, PublishedIdp> newIdpsByEntityId = new HashMap<>();
+		for (final FederationAggregate aggregate : aggregates) {
+			final var loadedMetadata = aggregate.loadedMetadata;
+			if (isExpired(loadedMetadata.validUntilOpt(), now)) {
+				LOG.warn("SAML federation metadata {} expired since {}, its identity providers are no longer available.", aggregate.url, loadedMetadata.validUntilOpt().get());
+				continue;
+			}
+			loadedMetadata.idpEntries().forEach((idpEntityId, idpEntry) -> {
+				final var validUntilOpt = Stream.of(loadedMetadata.validUntilOpt(), idpEntry.metadataIdp().validUntilOpt())
+						.flatMap(Optional::stream)
+						.min(Comparator.naturalOrder());
+				if (!isExpired(validUntilOpt, now)) {
+					newIdpsByEntityId.putIfAbsent(idpEntityId, new PublishedIdp(idpEntry.idp(), validUntilOpt));
+				}
+			});
+		}
+		idpsByEntityId = Collections.unmodifiableMap(newIdpsByEntityId);
+	}
+
+	private static boolean isExpired(final Optional<Instant> validUntilOpt, final Instant now) {
+		return validUntilOpt.isPresent() && validUntilOpt.get().isBefore(now);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Optional<SAML2IdpMetadata> getIdp(final String idpEntityId) {
+		Assertion.check().isNotBlank(idpEntityId);
+		//---
+		// expired between two refreshes : no longer available
+		return Optional.ofNullable(idpsByEntityId.get(idpEntityId))
+				.filter(publishedIdp -> !isExpired(publishedIdp.validUntilOpt(), Instant.now()))
+				.map(PublishedIdp::idp);
+	}
+
+	private SAML2IdpMetadata getDefaultIdp() {
+		return getIdp(entityId)
+				.orElseThrow(() -> new VSystemException("Identity provider '{0}' not found in SAML federation metadata.", entityId));
+	}
+
+	@Override
+	public String getLoginUrl() {
+		return getDefaultIdp().loginUrl();
+	}
+
+	@Override
+	public String getLogoutUrl() {
+		final var idp = getDefaultIdp();
+		return idp.logoutUrlOpt()
+				.orElseThrow(() -> new VSystemException("No logout URL (HTTP-POST) for identity provider '{0}' in SAML federation metadata.", idp.entityId()));
+	}
+
+	@Override
+	public List<Credential> getPublicCredentials() {
+		return getDefaultIdp().signingCredentials();
+	}
+
+	private static List<String> splitList(final String values) {
+		return Arrays.stream(values.split(";"))
+				.map(String::strip)
+				.filter(Predicate.not(StringUtil::isBlank))
+				.toList();
+	}
+
+	/**
+	 * A metadata aggregate and its identity providers.
+	 * Loads of an aggregate are sequential (startup, then its scheduled refresh), identity providers are read by any thread.
+	 */
+	private static final class FederationAggregate {
+		private final URL url;
+		private final SAML2FederationMetadataReader reader;
+		private final Optional<CloseableHttpClient> httpClientOpt;
+		private final CertificateFactory certificateFactory;
+		private String etag;
+		private String lastModified;
+		private long fileLastModified;
+		private volatile LoadedMetadata loadedMetadata = new LoadedMetadata(Optional.empty(), Map.of());
+
+		FederationAggregate(final URL url, final SAML2FederationMetadataReader reader, final Optional<CloseableHttpClient> httpClientOpt) {
+			this.url = url;
+			this.reader = reader;
+			this.httpClientOpt = httpClientOpt;
+			try {
+				certificateFactory = CertificateFactory.getInstance("X.509");
+			} catch (final CertificateException e) {
+				throw WrappedException.wrap(e);
+			}
+		}
+
+		/**
+		 * @return if the aggregate changed
+		 */
+		boolean load() {
+			return SAML2IpConfigMetadataPlugin.isFile(url) ? loadFile() : loadHttp();
+		}
+
+		private boolean loadFile() {
+			final var file = new File(url.getPath());
+			final var currentFileLastModified = file.lastModified();
+			if (currentFileLastModified != 0 && currentFileLastModified == fileLastModified) {
+				return false;
+			}
+			try (var inputStream = Files.newInputStream(file.toPath())) {
+				update(reader.read(inputStream, Instant.now()));
+			} catch (final IOException e) {
+				throw WrappedException.wrap(e);
+			}
+			fileLastModified = currentFileLastModified;
+			return true;
+		}
+
+		private boolean loadHttp() {
+			final var httpGet = new HttpGet(url.toExternalForm());
+			// conditional request : an unchanged aggregate is neither downloaded nor parsed
+			if (etag != null) {
+				httpGet.setHeader(HttpHeaders.IF_NONE_MATCH, etag);
+			}
+			if (lastModified != null) {
+				httpGet.setHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+			}
+			try {
+				return httpClientOpt.get().execute(httpGet, response -> {
+					if (response.getCode() == HttpStatus.SC_NOT_MODIFIED) {
+						return false;
+					}
+					if (response.getCode() != HttpStatus.SC_OK || response.getEntity() == null) {
+						throw new VSystemException("Unable to download SAML federation metadata {0} : HTTP status {1}.", url, response.getCode());
+					}
+					try (var inputStream = response.getEntity().getContent()) {
+						update(reader.read(inputStream, Instant.now()));
+					}
+					etag = getHeaderValue(response, HttpHeaders.ETAG);
+					lastModified = getHeaderValue(response, HttpHeaders.LAST_MODIFIED);
+					return true;
+				});
+			} catch (final IOException e) {
+				throw WrappedException.wrap(e);
+			}
+		}
+
+		private static String getHeaderValue(final ClassicHttpResponse response, final String headerName) {
+			final Header header = response.getFirstHeader(headerName);
+			return header == null ? null : header.getValue();
+		}
+
+		private void update(final FederationMetadata federationMetadata) {
+			final var previousIdpEntries = loadedMetadata.idpEntries();
+			final Map<String, IdpEntry> newIdpEntries = new HashMap<>();
+			var changedCount = 0;
+			for (final MetadataIdp metadataIdp : federationMetadata.idps()) {
+				final var previousIdpEntry = previousIdpEntries.get(metadataIdp.entityId());
+				if (previousIdpEntry != null && previousIdpEntry.metadataIdp().equals(metadataIdp)) {
+					newIdpEntries.put(metadataIdp.entityId(), previousIdpEntry); // unchanged : same instance
+				} else {
+					changedCount++;
+					toIdpEntry(metadataIdp, previousIdpEntry)
+							.ifPresent(idpEntry -> newIdpEntries.put(metadataIdp.entityId(), idpEntry));
+				}
+			}
+			final var removedCount = previousIdpEntries.keySet().stream()
+					.filter(Predicate.not(newIdpEntries::containsKey))
+					.count();
+			LOG.info("SAML federation metadata {} loaded : {} entities, {} identity providers ({} new or changed, {} removed).",
+					url, federationMetadata.entityCount(), newIdpEntries.size(), changedCount, removedCount);
+			loadedMetadata = new LoadedMetadata(federationMetadata.validUntilOpt(), Collections.unmodifiableMap(newIdpEntries));
+		}
+
+		private Optional<IdpEntry> toIdpEntry(final MetadataIdp metadataIdp, final IdpEntry previousIdpEntry) {
+			final List<Credential> signingCredentials;
+			if (previousIdpEntry != null && previousIdpEntry.metadataIdp().signingCertificates().equals(metadataIdp.signingCertificates())) {
+				// same keys : same list instance, signature validators are not rebuilt
+				signingCredentials = previousIdpEntry.idp().signingCredentials();
+			} else {
+				try {
+					signingCredentials = metadataIdp.signingCertificates().stream()
+							.map(this::toCredential)
+							.toList();
+				} catch (final VSystemException | IllegalArgumentException e) {
+					LOG.warn("Identity provider {} of SAML federation metadata {} ignored : invalid signing certificate.", metadataIdp.entityId(), url, e);
+					return Optional.empty();
+				}
+			}
+			return Optional.of(new IdpEntry(metadataIdp,
+					new SAML2IdpMetadata(metadataIdp.entityId(), metadataIdp.loginUrl(), metadataIdp.logoutUrlOpt(), signingCredentials)));
+		}
+
+		private Credential toCredential(final String base64Certificate) {
+			try {
+				return new BasicX509Credential((X509Certificate) certificateFactory.generateCertificate(
+						new ByteArrayInputStream(Base64.getDecoder().decode(base64Certificate))));
+			} catch (final CertificateException e) {
+				throw new VSystemException(e, "Invalid certificate.");
+			}
+		}
+	}
+
+	private record LoadedMetadata(Optional<Instant> validUntilOpt, Map<String, IdpEntry> idpEntries) {
+	}
+
+	private record IdpEntry(MetadataIdp metadataIdp, SAML2IdpMetadata idp) {
+	}
+
+	private record PublishedIdp(SAML2IdpMetadata idp, Optional<Instant> validUntilOpt) {
+	}
+}
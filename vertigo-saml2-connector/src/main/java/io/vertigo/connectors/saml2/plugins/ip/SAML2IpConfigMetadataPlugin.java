@@ -18,17 +18,29 @@
 package io.vertigo.connectors.saml2.plugins.ip;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
+import java.security.Key;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Function;
 
 import javax.inject.Inject;
 
-import org.apache.hc.client5.http.classic.HttpClient;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
-
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.opensaml.core.criterion.EntityIdCriterion;
 import org.opensaml.saml.common.xml.SAMLConstants;
 import org.opensaml.saml.criterion.EntityRoleCriterion;
@@ -44,6 +56,7 @@ import org.opensaml.saml.saml2.metadata.IDPSSODescriptor;
 import org.opensaml.saml.saml2.metadata.SPSSODescriptor;
 import org.opensaml.saml.security.impl.MetadataCredentialResolver;
 import org.opensaml.security.credential.Credential;
+import org.opensaml.security.credential.CredentialSupport;
 import org.opensaml.security.credential.UsageType;
 import org.opensaml.security.criteria.UsageCriterion;
 import org.opensaml.xmlsec.config.impl.DefaultSecurityConfigurationBootstrap;
@@ -53,6 +66,7 @@ import io.vertigo.connectors.saml2.SAML2IpConfigPlugin;
 import io.vertigo.connectors.saml2.plugins.CertUtil;
 import io.vertigo.core.lang.VSystemException;
 import io.vertigo.core.lang.WrappedException;
+import io.vertigo.core.node.component.Activeable;
 import io.vertigo.core.param.ParamValue;
 import io.vertigo.core.resource.ResourceManager;
 import io.vertigo.core.util.StringUtil;
@@ -61,11 +75,25 @@ import net.shibboleth.shared.resolver.CriteriaSet;
 import net.shibboleth.shared.resolver.ResolverException;
 import net.shibboleth.shared.xml.ParserPool;
 
-public class SAML2IpConfigMetadataPlugin implements SAML2IpConfigPlugin {
+/**
+ * Identity provider configuration from SAML metadata (file or URL), with an optional next metadata and certificate for key rollovers.
+ * Metadata are reloaded by OpenSAML resolvers in background (between metadataMinRefreshSeconds and metadataMaxRefreshSeconds,
+ * according to the cacheDuration and validUntil of metadata, files only when modified).
+ * Endpoints and credentials are a snapshot, swapped atomically on the first use after a reload : a certificate rollover doesn't need a restart.
+ * If a reloaded metadata is unusable, the previous snapshot is kept.
+ *
+ * @author skerdudou
+ */
+public class SAML2IpConfigMetadataPlugin implements SAML2IpConfigPlugin, Activeable {
 
-	private final String loginUrl;
-	private final String logoutUrl;
-	private final List<Credential> signingCredentials;
+	private static final Logger LOG = LogManager.getLogger(SAML2IpConfigMetadataPlugin.class);
+
+	private final Optional<String> simpleLogoutUrlOpt;
+	private final Optional<Credential> alternateCredentialOpt;
+	private final Optional<CloseableHttpClient> httpClientOpt;
+	private final AbstractReloadingMetadataResolver metadataResolver;
+	private final Optional<AbstractReloadingMetadataResolver> nextMetadataResolverOpt;
+	private volatile IpMetadata ipMetadata;
 
 	@Inject
 	public SAML2IpConfigMetadataPlugin(
@@ -73,45 +101,156 @@ public class SAML2IpConfigMetadataPlugin implements SAML2IpConfigPlugin {
 			@ParamValue("nextMetadataFile") final Optional<String> nextMetadataFileOpt,
 			@ParamValue("nextCertFile") final Optional<String> alternateCertFileOpt,
 			@ParamValue("simpleLogoutUrl") final Optional<String> simpleLogoutUrl,
+			@ParamValue("metadataMinRefreshSeconds") final Optional<Integer> metadataMinRefreshSecondsOpt,
+			@ParamValue("metadataMaxRefreshSeconds") final Optional<Integer> metadataMaxRefreshSecondsOpt,
+			@ParamValue("httpConnectTimeout") final Optional<Integer> httpConnectTimeoutOpt,
+			@ParamValue("httpReadTimeout") final Optional<Integer> httpReadTimeoutOpt,
 			final ResourceManager resourceManager) {
 
 		final var parserPool = OpenSAMLUtil.initOpenSamlIfNeeded();
+		simpleLogoutUrlOpt = simpleLogoutUrl;
+		final var minRefreshDelay = Duration.ofSeconds(metadataMinRefreshSecondsOpt.orElse(300)); // OpenSAML defaults
+		final var maxRefreshDelay = Duration.ofSeconds(metadataMaxRefreshSecondsOpt.orElse(4 * 3600));
 
 		final var metadataFileUrl = resourceManager.resolve(metadataFilePath);
-		final var metadataResolver = getMetadataResolver(metadataFileUrl, parserPool);
+		final var nextMetadataFileUrlOpt = nextMetadataFileOpt
+				.filter(nextMetadataFile -> !StringUtil.isBlank(nextMetadataFile))
+				.map(resourceManager::resolve);
 
-		final var idpEntityDescriptor = getEntityDescriptor(metadataResolver);
+		// one pool of connections for all metadata URLs
+		httpClientOpt = !isFile(metadataFileUrl) || nextMetadataFileUrlOpt.filter(url -> !isFile(url)).isPresent()
+				? Optional.of(createHttpClient(httpConnectTimeoutOpt.orElse(1000), httpReadTimeoutOpt.orElse(5000)))
+				: Optional.empty();
 
-		loginUrl = resolveLoginUrl(idpEntityDescriptor);
-		logoutUrl = simpleLogoutUrl.orElseGet(() -> resolveLogoutUrl(idpEntityDescriptor));
+		metadataResolver = getMetadataResolver(metadataFileUrl, parserPool, httpClientOpt, minRefreshDelay, maxRefreshDelay);
+		nextMetadataResolverOpt = nextMetadataFileUrlOpt
+				.map(nextMetadataFileUrl -> getMetadataResolver(nextMetadataFileUrl, parserPool, httpClientOpt, minRefreshDelay, maxRefreshDelay));
 
-		signingCredentials = new ArrayList<>();
-		signingCredentials.add(resolveIdpCredential(metadataResolver, idpEntityDescriptor));
+		alternateCredentialOpt = alternateCertFileOpt
+				.filter(alternateCertFile -> !StringUtil.isBlank(alternateCertFile))
+				.map(CertUtil::getCredentialFromString);
+
+		ipMetadata = resolveIpMetadata(metadataResolver.getLastUpdate(), getNextLastUpdate(), Optional.empty());
+	}
 
-		if (nextMetadataFileOpt.isPresent() && !StringUtil.isBlank(nextMetadataFileOpt.get())) {
-			final var metadataFile2Url = resourceManager.resolve(nextMetadataFileOpt.get());
-			final var metadataResolver2 = getMetadataResolver(metadataFile2Url, parserPool);
-			final var idpEntityDescriptor2 = getEntityDescriptor(metadataResolver);
-			signingCredentials.add(resolveIdpCredential(metadataResolver2, idpEntityDescriptor2));
+	/** {@inheritDoc} */
+	@Override
+	public void start() {
+		// resolvers already initialized
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void stop() {
+		metadataResolver.destroy();
+		nextMetadataResolverOpt.ifPresent(AbstractReloadingMetadataResolver::destroy);
+		httpClientOpt.ifPresent(httpClient -> {
+			try {
+				httpClient.close();
+			} catch (final IOException e) {
+				throw WrappedException.wrap(e);
+			}
+		});
+	}
+
+	private IpMetadata getIpMetadata() {
+		final var currentIpMetadata = ipMetadata;
+		if (currentIpMetadata.isUpToDate(metadataResolver.getLastUpdate(), getNextLastUpdate())) {
+			return currentIpMetadata;
+		}
+		return reloadIpMetadata();
+	}
+
+	private synchronized IpMetadata reloadIpMetadata() {
+		final var lastUpdate = metadataResolver.getLastUpdate();
+		final var nextLastUpdate = getNextLastUpdate();
+		final var previousIpMetadata = ipMetadata;
+		if (previousIpMetadata.isUpToDate(lastUpdate, nextLastUpdate)) {
+			return previousIpMetadata; // reloaded by another thread
+		}
+		IpMetadata newIpMetadata;
+		try {
+			newIpMetadata = resolveIpMetadata(lastUpdate, nextLastUpdate, Optional.of(previousIpMetadata));
+			LOG.info("SAML IdP metadata reloaded, login url {}, {} signing credential(s){}.", newIpMetadata.loginUrl(), newIpMetadata.signingCredentials().size(),
+					newIpMetadata.signingCredentials() == previousIpMetadata.signingCredentials() ? " unchanged" : " changed");
+		} catch (final VSystemException | WrappedException e) {
+			LOG.warn("Reloaded SAML IdP metadata unusable, previous one kept.", e);
+			// not retried until the next reload
+			newIpMetadata = new IpMetadata(lastUpdate, nextLastUpdate, previousIpMetadata.loginUrl(), previousIpMetadata.logoutUrl(), previousIpMetadata.signingCredentials());
 		}
+		ipMetadata = newIpMetadata;
+		return newIpMetadata;
+	}
+
+	private IpMetadata resolveIpMetadata(final Instant lastUpdate, final Instant nextLastUpdate, final Optional<IpMetadata> previousIpMetadataOpt) {
+		final var idpEntityDescriptor = getEntityDescriptor(metadataResolver);
+
+		final var loginUrl = resolveLoginUrl(idpEntityDescriptor);
+		final var logoutUrl = simpleLogoutUrlOpt.orElseGet(() -> resolveLogoutUrl(idpEntityDescriptor));
 
-		if (alternateCertFileOpt.isPresent() && !StringUtil.isBlank(alternateCertFileOpt.get())) {
-			signingCredentials.add(CertUtil.getCredentialFromString(alternateCertFileOpt.get()));
+		final List<Credential> signingCredentials = new ArrayList<>();
+		signingCredentials.add(resolveIdpCredential(metadataResolver, idpEntityDescriptor));
+		if (nextMetadataResolverOpt.isPresent()) {
+			final var nextMetadataResolver = nextMetadataResolverOpt.get();
+			signingCredentials.add(resolveIdpCredential(nextMetadataResolver, getEntityDescriptor(nextMetadataResolver)));
 		}
+		alternateCredentialOpt.ifPresent(signingCredentials::add);
+
+		// same keys : same list instance, signature validators are not rebuilt
+		final var unchangedCredentialsOpt = previousIpMetadataOpt
+				.map(IpMetadata::signingCredentials)
+				.filter(previousCredentials -> getPublicKeys(previousCredentials).equals(getPublicKeys(signingCredentials)));
+		return new IpMetadata(lastUpdate, nextLastUpdate, loginUrl, logoutUrl, unchangedCredentialsOpt.orElseGet(() -> Collections.unmodifiableList(signingCredentials)));
 	}
 
-	private static AbstractReloadingMetadataResolver getMetadataResolver(final URL metadataFileUrl, final ParserPool parserPool) {
+	private Instant getNextLastUpdate() {
+		return nextMetadataResolverOpt
+				.map(AbstractReloadingMetadataResolver::getLastUpdate)
+				.orElse(null);
+	}
+
+	private static List<Key> getPublicKeys(final List<Credential> credentials) {
+		return credentials.stream()
+				.map(CredentialSupport::extractVerificationKey)
+				.toList();
+	}
+
+	static boolean isFile(final URL url) {
+		return "file".equals(url.getProtocol());
+	}
+
+	static CloseableHttpClient createHttpClient(final int connectTimeoutMillis, final int readTimeoutMillis) {
+		final var connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+				.setDefaultConnectionConfig(ConnectionConfig.custom()
+						.setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMillis))
+						.setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMillis))
+						.build())
+				.setMaxConnPerRoute(2)
+				.setMaxConnTotal(4)
+				.build();
+		return HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(RequestConfig.custom()
+						.setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMillis))
+						.build())
+				.evictIdleConnections(TimeValue.ofMinutes(1))
+				.build();
+	}
+
+	private static AbstractReloadingMetadataResolver getMetadataResolver(final URL metadataFileUrl, final ParserPool parserPool, final Optional<CloseableHttpClient> httpClientOpt,
+			final Duration minRefreshDelay, final Duration maxRefreshDelay) {
 		try {
 			final AbstractReloadingMetadataResolver metadataResolver;
-			if ("file".equals(metadataFileUrl.getProtocol())) {
+			if (isFile(metadataFileUrl)) {
 				final var f = new File(metadataFileUrl.getPath());
 				metadataResolver = new FilesystemMetadataResolver(f);
 			} else {
-				final HttpClient client = HttpClients.createDefault();
-				metadataResolver = new HTTPMetadataResolver(client, metadataFileUrl.toExternalForm());
+				metadataResolver = new HTTPMetadataResolver(httpClientOpt.get(), metadataFileUrl.toExternalForm());
 			}
 			metadataResolver.setId(metadataResolver.getClass().getCanonicalName());
 			metadataResolver.setParserPool(parserPool);
+			metadataResolver.setMinRefreshDelay(minRefreshDelay);
+			metadataResolver.setMaxRefreshDelay(maxRefreshDelay);
 			metadataResolver.initialize();
 			return metadataResolver;
 		} catch (final ResolverException | ComponentInitializationException e) {
@@ -186,16 +325,23 @@ public class SAML2IpConfigMetadataPlugin implements SAML2IpConfigPlugin {
 
 	@Override
 	public String getLoginUrl() {
-		return loginUrl;
+		return getIpMetadata().loginUrl();
 	}
 
 	@Override
 	public String getLogoutUrl() {
-		return logoutUrl;
+		return getIpMetadata().logoutUrl();
 	}
 
 	@Override
 	public List<Credential> getPublicCredentials() {
-		return signingCredentials;
+		return getIpMetadata().signingCredentials();
+	}
+
+	private record IpMetadata(Instant lastUpdate, Instant nextLastUpdate, String loginUrl, String logoutUrl, List<Credential> signingCredentials) {
+
+		boolean isUpToDate(final Instant currentLastUpdate, final Instant currentNextLastUpdate) {
+			return Objects.equals(lastUpdate, currentLastUpdate) && Objects.equals(nextLastUpdate, currentNextLastUpdate);
+		}
 	}
 }
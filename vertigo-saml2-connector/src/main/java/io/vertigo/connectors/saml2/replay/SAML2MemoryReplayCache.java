@@ -0,0 +1,227 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.saml2.replay;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.vertigo.core.lang.Assertion;
+import io.vertigo.core.lang.VSystemException;
+import io.vertigo.core.lang.WrappedException;
+
+/**
+ * In memory replay cache, for a single node.
+ * Assertion IDs are kept as 64 bits hashes (no String retained) in buckets of one minute of expiration, each bucket is an
+ * open addressing set of longs : expired assertions are dropped a whole bucket at a time, without scan nor per entry object.
+ * At most maxEntries IDs are kept : when full of unexpired IDs, new assertions are rejected (fail closed, with a VSystemException)
+ * until some expire, since dropping an unexpired ID would allow its replay. Size maxEntries for the peak logins per MAX_RETENTION.
+ *
+ * @author skerdudou
+ */
+public final class SAML2MemoryReplayCache implements SAML2ReplayCache {
+
+	private static final Logger LOG = LogManager.getLogger(SAML2MemoryReplayCache.class);
+	private static final long BUCKET_MILLIS = 60_000;
+
+	private final int maxEntries;
+	// bucket index (expiration / BUCKET_MILLIS) -> hashes of IDs expiring in this bucket, guarded by this
+	private final NavigableMap<Long, LongHashSet> buckets = new TreeMap<>();
+	private int size;
+
+	/**
+	 * Constructor.
+	 * @param maxEntries max number of kept assertion IDs
+	 */
+	public SAML2MemoryReplayCache(final int maxEntries) {
+		Assertion.check().isTrue(maxEntries > 0, "maxEntries must be strictly positive");
+		//---
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @throws VSystemException if the cache is full of unexpired assertions
+	 */
+	@Override
+	public boolean checkAndStore(final String assertionId, final Instant notOnOrAfter) {
+		return switch (checkAndStore(assertionId, notOnOrAfter, System.currentTimeMillis())) {
+			case FIRST_USE -> true;
+			case REPLAYED -> false;
+			case FULL -> throw new VSystemException("SAML replay cache full ({0} assertions), assertion rejected.", maxEntries);
+		};
+	}
+
+	CheckResult checkAndStore(final String assertionId, final Instant notOnOrAfter, final long now) {
+		Assertion.check().isNotBlank(assertionId);
+		//---
+		return checkAndStore(hash(digest(assertionId)), notOnOrAfter, now); // hashed out of the lock
+	}
+
+	CheckResult checkAndStore(final long idHash, final Instant notOnOrAfter, final long now) {
+		Assertion.check().isNotNull(notOnOrAfter);
+		//---
+		final var expiresAtMillis = Math.min(Math.max(notOnOrAfter.toEpochMilli(), now), now + MAX_RETENTION.toMillis());
+		synchronized (this) {
+			if (contains(idHash, now)) {
+				return CheckResult.REPLAYED;
+			}
+			if (size >= maxEntries) {
+				// never drop unexpired IDs : their assertions could be replayed
+				LOG.warn("SAML replay cache full ({} assertions), assertion not stored.", maxEntries);
+				return CheckResult.FULL;
+			}
+			buckets.computeIfAbsent(Math.floorDiv(expiresAtMillis, BUCKET_MILLIS), bucketIndex -> new LongHashSet()).add(idHash);
+			size++;
+			return CheckResult.FIRST_USE;
+		}
+	}
+
+	/**
+	 * @param idHash hash of the assertion ID
+	 * @param now current time in millis
+	 * @return if this ID is kept and unexpired, without storing it
+	 */
+	synchronized boolean contains(final long idHash, final long now) {
+		removeExpired(now);
+		for (final LongHashSet bucket : buckets.values()) {
+			if (bucket.contains(idHash)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return number of kept assertion IDs (expired ones may be counted until next check)
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	private void removeExpired(final long now) {
+		// a bucket is expired when its end is passed
+		final var expiredBuckets = buckets.headMap(Math.floorDiv(now, BUCKET_MILLIS), false);
+		for (final LongHashSet bucket : expiredBuckets.values()) {
+			size -= bucket.size();
+		}
+		expiredBuckets.clear();
+	}
+
+	/**
+	 * @param assertionId the assertion ID, controlled by the sender (unbounded length)
+	 * @return SHA-256 of the ID
+	 */
+	static byte[] digest(final String assertionId) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(assertionId.getBytes(StandardCharsets.UTF_8));
+		} catch (final NoSuchAlgorithmException e) {
+			throw WrappedException.wrap(e);
+		}
+	}
+
+	/**
+	 * @param digest SHA-256 of the ID
+	 * @return the 64 bits hash kept in this cache
+	 */
+	static long hash(final byte[] digest) {
+		final var idHash = ByteBuffer.wrap(digest).getLong();
+		return idHash == LongHashSet.EMPTY ? 1 : idHash;
+	}
+
+	/**
+	 * Result of a check.
+	 */
+	enum CheckResult {
+		/** first use, ID stored */
+		FIRST_USE,
+		/** ID already stored */
+		REPLAYED,
+		/** first use but cache full of unexpired IDs, ID not stored */
+		FULL
+	}
+
+	/**
+	 * Open addressing set of longs (linear probing), 0 is reserved for empty slots.
+	 */
+	private static final class LongHashSet {
+		static final long EMPTY = 0;
+
+		private long[] table = new long[16];
+		private int size;
+
+		boolean contains(final long value) {
+			final var mask = table.length - 1;
+			var index = spread(value) & mask;
+			while (table[index] != EMPTY) {
+				if (table[index] == value) {
+					return true;
+				}
+				index = (index + 1) & mask;
+			}
+			return false;
+		}
+
+		void add(final long value) {
+			if ((size + 1) * 2 > table.length) {
+				resize();
+			}
+			if (insert(table, value)) {
+				size++;
+			}
+		}
+
+		int size() {
+			return size;
+		}
+
+		private void resize() {
+			final var newTable = new long[table.length * 2];
+			for (final long value : table) {
+				if (value != EMPTY) {
+					insert(newTable, value);
+				}
+			}
+			table = newTable;
+		}
+
+		private static boolean insert(final long[] table, final long value) {
+			final var mask = table.length - 1;
+			var index = spread(value) & mask;
+			while (table[index] != EMPTY) {
+				if (table[index] == value) {
+					return false;
+				}
+				index = (index + 1) & mask;
+			}
+			table[index] = value;
+			return true;
+		}
+
+		private static int spread(final long value) {
+			return (int) (value ^ (value >>> 32));
+		}
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.saml2.replay;
+
+import java.time.Instant;
+import java.util.Base64;
+
+import io.vertigo.connectors.redis.RedisConnector;
+import io.vertigo.core.lang.Assertion;
+import redis.clients.jedis.params.SetParams;
+
+/**
+ * Replay cache shared by all nodes, stored in Redis : one key per assertion, set only if absent (SET NX) and expiring with the assertion.
+ * Keys are SHA-256 of assertion IDs. Replays already seen by this node are rejected from a local SAML2MemoryReplayCache without calling Redis,
+ * assertions are stored in this local cache only once stored in Redis.
+ * Redis is the reference : when the local cache is full, assertions are still checked (and stored) in Redis only.
+ *
+ * @author skerdudou
+ */
+public final class SAML2RedisReplayCache implements SAML2ReplayCache {
+
+	private static final String KEY_PREFIX = "saml2:replay:";
+	private static final long MIN_TTL_MILLIS = 1000;
+
+	private final RedisConnector redisConnector;
+	private final SAML2MemoryReplayCache localReplayCache;
+
+	/**
+	 * @param redisConnector the Redis connector
+	 * @param localMaxEntries max number of assertion IDs kept in the local cache
+	 * @return the replay cache
+	 */
+	public static SAML2RedisReplayCache of(final RedisConnector redisConnector, final int localMaxEntries) {
+		return new SAML2RedisReplayCache(redisConnector, localMaxEntries);
+	}
+
+	private SAML2RedisReplayCache(final RedisConnector redisConnector, final int localMaxEntries) {
+		Assertion.check().isNotNull(redisConnector);
+		//---
+		this.redisConnector = redisConnector;
+		localReplayCache = new SAML2MemoryReplayCache(localMaxEntries);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean checkAndStore(final String assertionId, final Instant notOnOrAfter) {
+		Assertion.check()
+				.isNotBlank(assertionId)
+				.isNotNull(notOnOrAfter);
+		//---
+		final var digest = SAML2MemoryReplayCache.digest(assertionId);
+		final var idHash = SAML2MemoryReplayCache.hash(digest);
+		final var now = System.currentTimeMillis();
+		if (localReplayCache.contains(idHash, now)) {
+			return false;
+		}
+		final var ttlMillis = Math.min(Math.max(notOnOrAfter.toEpochMilli() - now, MIN_TTL_MILLIS), MAX_RETENTION.toMillis());
+		// key of fixed length : the ID is controlled by the sender
+		final var key = KEY_PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+		// null if the key already exists : used on another node
+		if (redisConnector.getClient().set(key, "1", SetParams.setParams().nx().px(ttlMillis)) == null) {
+			return false;
+		}
+		// stored locally only once stored in Redis : a Redis failure doesn't burn the assertion on this node
+		localReplayCache.checkAndStore(idHash, notOnOrAfter, now);
+		return true;
+	}
+}
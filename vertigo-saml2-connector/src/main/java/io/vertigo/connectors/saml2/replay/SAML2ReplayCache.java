@@ -0,0 +1,79 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.saml2.replay;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.opensaml.saml.saml2.core.Assertion;
+import org.opensaml.saml.saml2.core.SubjectConfirmation;
+
+import io.vertigo.core.lang.VSystemException;
+
+/**
+ * Replay cache of SAML assertions : an assertion ID is accepted once, until the assertion expires.
+ * Check assertions after their signature validation.
+ *
+ * @author skerdudou
+ */
+public interface SAML2ReplayCache {
+
+	/** Retention of assertions without NotOnOrAfter. */
+	Duration DEFAULT_RETENTION = Duration.ofHours(1);
+	/** Max retention, whatever the NotOnOrAfter of the assertion. */
+	Duration MAX_RETENTION = Duration.ofDays(1);
+
+	/**
+	 * Checks that an assertion ID is used for the first time, and keeps it until its expiration.
+	 *
+	 * @param assertionId the assertion ID
+	 * @param notOnOrAfter expiration of the assertion
+	 * @return true if first use, false if replayed
+	 * @throws VSystemException if the ID can't be kept (fail closed : an assertion is never accepted without being kept)
+	 */
+	boolean checkAndStore(String assertionId, Instant notOnOrAfter);
+
+	/**
+	 * Checks that an assertion is used for the first time, kept until its latest NotOnOrAfter (conditions and bearer subject confirmations).
+	 *
+	 * @param assertion the assertion, already validated
+	 * @throws VSystemException if the assertion is replayed, or can't be kept
+	 */
+	default void check(final Assertion assertion) {
+		if (!checkAndStore(assertion.getID(), getExpiration(assertion))) {
+			throw new VSystemException("SAML assertion '{0}' already used.", assertion.getID());
+		}
+	}
+
+	private static Instant getExpiration(final Assertion assertion) {
+		Instant expiration = null;
+		if (assertion.getConditions() != null) {
+			expiration = assertion.getConditions().getNotOnOrAfter();
+		}
+		if (assertion.getSubject() != null) {
+			for (final SubjectConfirmation subjectConfirmation : assertion.getSubject().getSubjectConfirmations()) {
+				final var subjectConfirmationData = subjectConfirmation.getSubjectConfirmationData();
+				if (subjectConfirmationData != null && subjectConfirmationData.getNotOnOrAfter() != null
+						&& (expiration == null || subjectConfirmationData.getNotOnOrAfter().isAfter(expiration))) {
+					expiration = subjectConfirmationData.getNotOnOrAfter();
+				}
+			}
+		}
+		return expiration != null ? expiration : Instant.now().plus(DEFAULT_RETENTION);
+	}
+}
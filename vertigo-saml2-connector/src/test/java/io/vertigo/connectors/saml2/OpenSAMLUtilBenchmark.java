@@ -0,0 +1,156 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.saml2;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
+import org.opensaml.core.xml.io.UnmarshallingException;
+import org.opensaml.saml.saml2.core.Response;
+import org.xml.sax.SAXException;
+
+import io.vertigo.core.lang.WrappedException;
+
+/**
+ * Benchmarks of SAML Response parsing, from the base64 SAMLResponse parameter of the HTTP-POST binding.
+ * - documentBuilderPerResponse : previous implementation, a DocumentBuilderFactory and a DocumentBuilder per response
+ * - parserPool : base64 decoded in a byte array, then parsed with the shared OpenSAML parser pool
+ * - parserPoolStreaming : base64 decoded while parsing with the shared OpenSAML parser pool
+ * Responses are unsigned, signature validation is not measured.
+ * Run main to add allocation per response (gc profiler).
+ *
+ * @author skerdudou
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class OpenSAMLUtilBenchmark {
+
+	@Param({ "5", "50" })
+	public int attributeCount;
+
+	private String base64SamlResponse;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		OpenSAMLUtil.initOpenSamlIfNeeded();
+		base64SamlResponse = Base64.getMimeEncoder().encodeToString(buildSamlResponse(attributeCount).getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Benchmark
+	public Response documentBuilderPerResponse() {
+		return extractWithDocumentBuilder(new ByteArrayInputStream(Base64.getMimeDecoder().decode(base64SamlResponse)));
+	}
+
+	@Benchmark
+	public Response parserPool() {
+		return OpenSAMLUtil.extractSamlResponse(new ByteArrayInputStream(Base64.getMimeDecoder().decode(base64SamlResponse)));
+	}
+
+	@Benchmark
+	public Response parserPoolStreaming() {
+		return OpenSAMLUtil.extractBase64SamlResponse(base64SamlResponse);
+	}
+
+	private static Response extractWithDocumentBuilder(final ByteArrayInputStream is) {
+		try {
+			final var factory = DocumentBuilderFactory.newInstance();
+			factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+			factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+			factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+			factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+			factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+
+			factory.setNamespaceAware(true);
+			final var builder = factory.newDocumentBuilder();
+			final var document = builder.parse(is);
+			final var out = XMLObjectProviderRegistrySupport.getUnmarshallerFactory().getUnmarshaller(document.getDocumentElement());
+			return (Response) out.unmarshall(document.getDocumentElement());
+		} catch (ParserConfigurationException | SAXException | IOException | UnmarshallingException e) {
+			throw WrappedException.wrap(e);
+		}
+	}
+
+	private static String buildSamlResponse(final int attributeCount) {
+		final var instant = "2026-01-01T00:00:00Z";
+		final var attributes = new StringBuilder();
+		for (var i = 0; i < attributeCount; i++) {
+			attributes.append("<saml:Attribute Name=\"attribute").append(i).append("\" NameFormat=\"urn:oasis:names:tc:SAML:2.0:attrname-format:basic\">")
+					.append("<saml:AttributeValue>value of attribute ").append(i).append("</saml:AttributeValue>")
+					.append("</saml:Attribute>");
+		}
+		return "<samlp:Response xmlns:samlp=\"urn:oasis:names:tc:SAML:2.0:protocol\" xmlns:saml=\"urn:oasis:names:tc:SAML:2.0:assertion\""
+				+ " ID=\"_response\" Version=\"2.0\" IssueInstant=\"" + instant + "\" Destination=\"https://sp.bench/saml/acs\" InResponseTo=\"_request\">"
+				+ "<saml:Issuer>https://idp.bench</saml:Issuer>"
+				+ "<samlp:Status><samlp:StatusCode Value=\"urn:oasis:names:tc:SAML:2.0:status:Success\"/></samlp:Status>"
+				+ "<saml:Assertion ID=\"_assertion\" Version=\"2.0\" IssueInstant=\"" + instant + "\">"
+				+ "<saml:Issuer>https://idp.bench</saml:Issuer>"
+				+ "<saml:Subject>"
+				+ "<saml:NameID Format=\"urn:oasis:names:tc:SAML:2.0:nameid-format:transient\">_bench-user</saml:NameID>"
+				+ "<saml:SubjectConfirmation Method=\"urn:oasis:names:tc:SAML:2.0:cm:bearer\">"
+				+ "<saml:SubjectConfirmationData NotOnOrAfter=\"" + instant + "\" Recipient=\"https://sp.bench/saml/acs\" InResponseTo=\"_request\"/>"
+				+ "</saml:SubjectConfirmation>"
+				+ "</saml:Subject>"
+				+ "<saml:Conditions NotBefore=\"" + instant + "\" NotOnOrAfter=\"" + instant + "\">"
+				+ "<saml:AudienceRestriction><saml:Audience>https://sp.bench</saml:Audience></saml:AudienceRestriction>"
+				+ "</saml:Conditions>"
+				+ "<saml:AuthnStatement AuthnInstant=\"" + instant + "\" SessionIndex=\"_session\">"
+				+ "<saml:AuthnContext><saml:AuthnContextClassRef>urn:oasis:names:tc:SAML:2.0:ac:classes:PasswordProtectedTransport</saml:AuthnContextClassRef></saml:AuthnContext>"
+				+ "</saml:AuthnStatement>"
+				+ "<saml:AttributeStatement>" + attributes + "</saml:AttributeStatement>"
+				+ "</saml:Assertion>"
+				+ "</samlp:Response>";
+	}
+
+	public static void main(final String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(OpenSAMLUtilBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build())
+				.run();
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.saml2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class OpenSAMLUtilTest {
+
+	private static final Pattern ID_PATTERN = Pattern.compile("_[0-9a-f]{32}");
+
+	@Test
+	public void testGenerateSecureRandomId() {
+		for (var i = 0; i < 1000; i++) {
+			final var id = OpenSAMLUtil.generateSecureRandomId();
+			Assertions.assertTrue(ID_PATTERN.matcher(id).matches(), id);
+		}
+	}
+
+	@Test
+	public void testGenerateSecureRandomIdUnique() throws Exception {
+		// many short lived threads share the striped generators
+		final Set<String> ids = ConcurrentHashMap.newKeySet();
+		final List<Thread> threads = new ArrayList<>();
+		for (var i = 0; i < 200; i++) {
+			threads.add(new Thread(() -> {
+				for (var j = 0; j < 500; j++) {
+					ids.add(OpenSAMLUtil.generateSecureRandomId());
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		Assertions.assertEquals(200 * 500, ids.size());
+	}
+}
@@ -0,0 +1,243 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.saml2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.Inflater;
+
+import javax.xml.crypto.KeySelector;
+import javax.xml.crypto.dsig.XMLSignature;
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+import javax.xml.crypto.dsig.dom.DOMValidateContext;
+import javax.xml.crypto.dsig.keyinfo.KeyValue;
+import javax.xml.crypto.dsig.keyinfo.X509Data;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.opensaml.security.credential.BasicCredential;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.security.x509.BasicX509Credential;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Requests are checked with the JDK XML signature API, independent of the way the factory builds them.
+ */
+public class SAML2AuthnRequestFactoryTest {
+
+	private static final String DS_NS = "http://www.w3.org/2000/09/xmldsig#";
+	private static final String SAML20_NS = "urn:oasis:names:tc:SAML:2.0:assertion";
+	private static final String ACS_URL = "https://sp.example/saml/acs";
+	private static final String LOGIN_URL = "https://idp.example/sso";
+	private static final String CLIENT_NAME = "https://sp.example";
+
+	private static X509Certificate certificate;
+	private static PrivateKey privateKey;
+
+	@BeforeAll
+	public static void setUp(@TempDir final Path tempDir) throws Exception {
+		// self-signed SP key, generated with the keytool of the running JDK
+		final var keyStoreFile = tempDir.resolve("sp.p12");
+		final var keytool = Path.of(System.getProperty("java.home"), "bin", "keytool").toString();
+		final var process = new ProcessBuilder(keytool, "-genkeypair", "-alias", "sp", "-keyalg", "RSA", "-keysize", "2048", "-dname", "CN=sp.example",
+				"-validity", "1", "-storetype", "PKCS12", "-keystore", keyStoreFile.toString(), "-storepass", "changeit")
+				.redirectErrorStream(true)
+				.start();
+		process.getInputStream().transferTo(OutputStream.nullOutputStream());
+		Assertions.assertEquals(0, process.waitFor());
+		final var keyStore = KeyStore.getInstance("PKCS12");
+		try (var inputStream = Files.newInputStream(keyStoreFile)) {
+			keyStore.load(inputStream, "changeit".toCharArray());
+		}
+		certificate = (X509Certificate) keyStore.getCertificate("sp");
+		privateKey = (PrivateKey) keyStore.getKey("sp", "changeit".toCharArray());
+	}
+
+	@Test
+	public void testPostRsaSha1() throws Exception {
+		checkPostRequest("RSA-SHA1", LOGIN_URL, CLIENT_NAME);
+	}
+
+	@Test
+	public void testPostRsaSha256() throws Exception {
+		checkPostRequest("RSA-SHA256", LOGIN_URL, CLIENT_NAME);
+	}
+
+	@Test
+	public void testPostRsaSha512() throws Exception {
+		checkPostRequest("RSA-SHA512", LOGIN_URL, CLIENT_NAME);
+	}
+
+	@Test
+	public void testPostSpecialCharacters() throws Exception {
+		checkPostRequest("RSA-SHA256", "https://idp.example/sso?tenant=a&b=\"c\"<d>", "SP & \"co\" <test>");
+	}
+
+	@Test
+	public void testRedirect() throws Exception {
+		checkRedirectRequest(LOGIN_URL, CLIENT_NAME, Optional.of("/page?a=1&b=2"));
+		checkRedirectRequest(LOGIN_URL, CLIENT_NAME, Optional.empty());
+	}
+
+	@Test
+	public void testRedirectSpecialCharacters() throws Exception {
+		checkRedirectRequest("https://idp.example/sso?tenant=a&b=\"c\"<d>", "SP & \"co\" <test>", Optional.of("relay & \"state\""));
+	}
+
+	@Test
+	public void testKeyInfoCertificate() throws Exception {
+		final var factory = new SAML2AuthnRequestFactory(parameters("RSA-SHA256", false, new BasicX509Credential(certificate, privateKey), LOGIN_URL, CLIENT_NAME), ACS_URL);
+		final var keyInfoContent = validatePostSignature(parse(Base64.getDecoder().decode(factory.createPostRequest(Optional.empty()).samlRequest())))
+				.getKeyInfo().getContent().get(0);
+		final var x509Content = ((X509Data) keyInfoContent).getContent();
+		Assertions.assertEquals(List.of(certificate), x509Content);
+	}
+
+	@Test
+	public void testKeyInfoKeyValue() throws Exception {
+		// extractPublicKeyFromCertificate : the key value, as in the SP metadata
+		final var factory = new SAML2AuthnRequestFactory(parameters("RSA-SHA256", true, new BasicX509Credential(certificate, privateKey), LOGIN_URL, CLIENT_NAME), ACS_URL);
+		final var keyInfoContent = validatePostSignature(parse(Base64.getDecoder().decode(factory.createPostRequest(Optional.empty()).samlRequest())))
+				.getKeyInfo().getContent().get(0);
+		Assertions.assertEquals(certificate.getPublicKey(), ((KeyValue) keyInfoContent).getPublicKey());
+	}
+
+	@Test
+	public void testNoKeyInfo() throws Exception {
+		// private key only : BasicCredential constructors require a public key
+		final var privateKeyCredential = new BasicCredential() {
+			{
+				setPrivateKey(privateKey);
+			}
+		};
+		final var factory = new SAML2AuthnRequestFactory(parameters("RSA-SHA256", true, privateKeyCredential, LOGIN_URL, CLIENT_NAME), ACS_URL);
+		Assertions.assertNull(validatePostSignature(parse(Base64.getDecoder().decode(factory.createPostRequest(Optional.empty()).samlRequest()))).getKeyInfo());
+	}
+
+	private static void checkPostRequest(final String signatureType, final String loginUrl, final String clientName) throws Exception {
+		final var factory = new SAML2AuthnRequestFactory(parameters(signatureType, false, new BasicX509Credential(certificate, privateKey), loginUrl, clientName), ACS_URL);
+		// twice : the template and the signers are reused
+		for (var i = 0; i < 2; i++) {
+			final var request = factory.createPostRequest(Optional.of("relay"));
+			Assertions.assertEquals(loginUrl, request.url());
+			Assertions.assertEquals(Optional.of("relay"), request.relayStateOpt());
+
+			final var document = parse(Base64.getDecoder().decode(request.samlRequest()));
+			checkRequest(document, request.id(), loginUrl, clientName);
+			validatePostSignature(document);
+		}
+	}
+
+	private static void checkRedirectRequest(final String loginUrl, final String clientName, final Optional<String> relayStateOpt) throws Exception {
+		final var factory = new SAML2AuthnRequestFactory(parameters("RSA-SHA256", false, new BasicX509Credential(certificate, privateKey), loginUrl, clientName), ACS_URL);
+		final var request = factory.createRedirectRequest(relayStateOpt);
+		final var separator = loginUrl.indexOf('?') < 0 ? '?' : '&';
+		Assertions.assertTrue(request.url().startsWith(loginUrl + separator));
+
+		// the signature covers the query as sent : SAMLRequest=...[&RelayState=...]&SigAlg=...
+		final var query = request.url().substring(loginUrl.length() + 1);
+		final var signatureIndex = query.indexOf("&Signature=");
+		final var signedQuery = query.substring(0, signatureIndex);
+		final var parameters = signedQuery.split("&");
+		Assertions.assertEquals(relayStateOpt.isPresent() ? 3 : 2, parameters.length);
+		Assertions.assertTrue(parameters[0].startsWith("SAMLRequest="));
+		relayStateOpt.ifPresent(relayState -> Assertions.assertEquals("RelayState=" + relayState, URLDecoder.decode(parameters[1], StandardCharsets.UTF_8)));
+		Assertions.assertEquals("SigAlg=http://www.w3.org/2001/04/xmldsig-more#rsa-sha256", URLDecoder.decode(parameters[parameters.length - 1], StandardCharsets.UTF_8));
+
+		final var verifier = Signature.getInstance("SHA256withRSA");
+		verifier.initVerify(certificate.getPublicKey());
+		verifier.update(signedQuery.getBytes(StandardCharsets.UTF_8));
+		final var signatureValue = URLDecoder.decode(query.substring(signatureIndex + "&Signature=".length()), StandardCharsets.UTF_8);
+		Assertions.assertTrue(verifier.verify(Base64.getDecoder().decode(signatureValue)));
+
+		final var samlRequest = URLDecoder.decode(parameters[0].substring("SAMLRequest=".length()), StandardCharsets.UTF_8);
+		Assertions.assertEquals(request.samlRequest(), samlRequest);
+		final var document = parse(inflate(Base64.getDecoder().decode(samlRequest)));
+		checkRequest(document, request.id(), loginUrl, clientName);
+		Assertions.assertEquals(0, document.getElementsByTagNameNS(DS_NS, "Signature").getLength());
+	}
+
+	private static void checkRequest(final Document document, final String id, final String loginUrl, final String clientName) {
+		final var authnRequest = document.getDocumentElement();
+		Assertions.assertEquals("AuthnRequest", authnRequest.getLocalName());
+		Assertions.assertEquals(id, authnRequest.getAttribute("ID"));
+		Assertions.assertEquals(loginUrl, authnRequest.getAttribute("Destination"));
+		Assertions.assertEquals(ACS_URL, authnRequest.getAttribute("AssertionConsumerServiceURL"));
+		Assertions.assertEquals(clientName, authnRequest.getElementsByTagNameNS(SAML20_NS, "Issuer").item(0).getTextContent());
+	}
+
+	private static XMLSignature validatePostSignature(final Document document) throws Exception {
+		final var authnRequest = document.getDocumentElement();
+		authnRequest.setIdAttributeNS(null, "ID", true);
+		final var signatureElement = (Element) authnRequest.getElementsByTagNameNS(DS_NS, "Signature").item(0);
+		Assertions.assertNotNull(signatureElement);
+		Assertions.assertEquals(authnRequest, signatureElement.getParentNode());
+		Assertions.assertEquals("Issuer", signatureElement.getPreviousSibling().getLocalName()); // schema order
+
+		final var validateContext = new DOMValidateContext(KeySelector.singletonKeySelector(certificate.getPublicKey()), signatureElement);
+		validateContext.setProperty("org.jcp.xml.dsig.secureValidation", Boolean.FALSE); // allows rsa-sha1
+		final var signature = XMLSignatureFactory.getInstance("DOM").unmarshalXMLSignature(validateContext);
+		Assertions.assertTrue(signature.validate(validateContext));
+		final var reference = signature.getSignedInfo().getReferences().get(0);
+		Assertions.assertEquals("#" + authnRequest.getAttribute("ID"), reference.getURI());
+		return signature;
+	}
+
+	private static SAML2Parameters parameters(final String signatureType, final boolean extractPublicKeyFromCertificate, final Credential spCredential,
+			final String loginUrl, final String clientName) {
+		return new SAML2Parameters(clientName, Optional.empty(), signatureType, false, extractPublicKeyFromCertificate, List.of(spCredential),
+				loginUrl, loginUrl, List.of(new BasicX509Credential(certificate)));
+	}
+
+	private static Document parse(final byte[] xml) throws Exception {
+		final var documentBuilderFactory = DocumentBuilderFactory.newInstance();
+		documentBuilderFactory.setNamespaceAware(true);
+		return documentBuilderFactory.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+	}
+
+	private static byte[] inflate(final byte[] deflated) throws Exception {
+		final var inflater = new Inflater(true);
+		try {
+			inflater.setInput(deflated);
+			final var out = new ByteArrayOutputStream();
+			final var buffer = new byte[1024];
+			while (!inflater.finished()) {
+				out.write(buffer, 0, inflater.inflate(buffer));
+			}
+			return out.toByteArray();
+		} finally {
+			inflater.end();
+		}
+	}
+}
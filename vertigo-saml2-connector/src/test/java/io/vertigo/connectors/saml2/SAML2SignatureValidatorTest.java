@@ -0,0 +1,180 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.saml2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.Inflater;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
+import org.opensaml.saml.common.SignableSAMLObject;
+import org.opensaml.security.credential.BasicCredential;
+import org.opensaml.xmlsec.signature.support.SignatureConstants;
+
+import io.vertigo.core.lang.VSystemException;
+
+/**
+ * Signed messages are built by SAML2AuthnRequestFactory (signed with the JDK), then parsed and validated with OpenSAML.
+ */
+public class SAML2SignatureValidatorTest {
+
+	private static final String ACS_URL = "https://sp.example/saml/acs";
+	private static final String LOGIN_URL = "https://idp.example/sso";
+
+	private static KeyPair keyPair;
+	private static KeyPair otherKeyPair;
+
+	@BeforeAll
+	public static void setUp() throws Exception {
+		final var keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+		keyPairGenerator.initialize(2048);
+		keyPair = keyPairGenerator.generateKeyPair();
+		otherKeyPair = keyPairGenerator.generateKeyPair();
+	}
+
+	@Test
+	public void testValid() throws Exception {
+		final var validator = newValidator(keyPair);
+		validator.validate(parse(postRequest("RSA-SHA256")));
+		validator.validate(parse(postRequest("RSA-SHA512")));
+		final var redirectRequest = RedirectRequest.of(newFactory("RSA-SHA256").createRedirectRequest(Optional.of("relay")));
+		validator.validate(redirectRequest.sigAlg(), redirectRequest.signature(), redirectRequest.signedContent());
+	}
+
+	@Test
+	public void testTampered() throws Exception {
+		final var validator = newValidator(keyPair);
+		final var tampered = postRequest("RSA-SHA256").replace("Destination=\"" + LOGIN_URL + "\"", "Destination=\"https://evil.example/sso\"");
+		Assertions.assertThrows(VSystemException.class, () -> validator.validate(parse(tampered)));
+
+		final var redirectRequest = RedirectRequest.of(newFactory("RSA-SHA256").createRedirectRequest(Optional.of("relay")));
+		final var tamperedContent = new String(redirectRequest.signedContent(), StandardCharsets.UTF_8).replace("RelayState=relay", "RelayState=other")
+				.getBytes(StandardCharsets.UTF_8);
+		Assertions.assertThrows(VSystemException.class, () -> validator.validate(redirectRequest.sigAlg(), redirectRequest.signature(), tamperedContent));
+	}
+
+	@Test
+	public void testUnknownKey() throws Exception {
+		// signed with a key not trusted : the KeyInfo of the message is not a trust anchor
+		final var validator = newValidator(otherKeyPair);
+		final var authnRequest = parse(postRequest("RSA-SHA256"));
+		Assertions.assertThrows(VSystemException.class, () -> validator.validate(authnRequest));
+
+		final var redirectRequest = RedirectRequest.of(newFactory("RSA-SHA256").createRedirectRequest(Optional.empty()));
+		Assertions.assertThrows(VSystemException.class, () -> validator.validate(redirectRequest.sigAlg(), redirectRequest.signature(), redirectRequest.signedContent()));
+	}
+
+	@Test
+	public void testUnsigned() throws Exception {
+		final var validator = newValidator(keyPair);
+		// redirect binding : the message itself is not signed
+		final var redirectRequest = newFactory("RSA-SHA256").createRedirectRequest(Optional.empty());
+		final var unsigned = new String(inflate(Base64.getDecoder().decode(redirectRequest.samlRequest())), StandardCharsets.UTF_8);
+		final var authnRequest = parse(unsigned);
+		final var exception = Assertions.assertThrows(VSystemException.class, () -> validator.validate(authnRequest));
+		Assertions.assertTrue(exception.getMessage().contains("not signed"), exception.getMessage());
+	}
+
+	@Test
+	public void testUnsupportedAlgorithm() throws Exception {
+		// SHA-1 excluded by default
+		final var validator = newValidator(keyPair);
+		final var authnRequest = parse(postRequest("RSA-SHA1"));
+		final var exception = Assertions.assertThrows(VSystemException.class, () -> validator.validate(authnRequest));
+		Assertions.assertTrue(exception.getMessage().contains("not accepted"), exception.getMessage());
+
+		final var redirectRequest = RedirectRequest.of(newFactory("RSA-SHA1").createRedirectRequest(Optional.empty()));
+		Assertions.assertThrows(VSystemException.class, () -> validator.validate(redirectRequest.sigAlg(), redirectRequest.signature(), redirectRequest.signedContent()));
+		// not a signature algorithm
+		Assertions.assertThrows(VSystemException.class, () -> validator.validate(SignatureConstants.ALGO_ID_DIGEST_SHA256, redirectRequest.signature(), redirectRequest.signedContent()));
+
+		// accepted once no more excluded
+		final var sha1Validator = new SAML2SignatureValidator(List.of(new BasicCredential(keyPair.getPublic())), Set.of(), Set.of());
+		sha1Validator.validate(authnRequest);
+		sha1Validator.validate(redirectRequest.sigAlg(), redirectRequest.signature(), redirectRequest.signedContent());
+	}
+
+	@Test
+	public void testIncludedAlgorithms() throws Exception {
+		final var validator = new SAML2SignatureValidator(List.of(new BasicCredential(keyPair.getPublic())),
+				Set.of(SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA512, SignatureConstants.ALGO_ID_DIGEST_SHA512), Set.of());
+		validator.validate(parse(postRequest("RSA-SHA512")));
+		final var authnRequest = parse(postRequest("RSA-SHA256"));
+		Assertions.assertThrows(VSystemException.class, () -> validator.validate(authnRequest));
+	}
+
+	private static SAML2SignatureValidator newValidator(final KeyPair trustedKeyPair) {
+		return new SAML2SignatureValidator(List.of(new BasicCredential(trustedKeyPair.getPublic())));
+	}
+
+	private static SAML2AuthnRequestFactory newFactory(final String signatureType) {
+		// KeyInfo with the public key : ignored by the validator, only trusted credentials are used
+		final var parameters = new SAML2Parameters("https://sp.example", Optional.empty(), signatureType, false, true,
+				List.of(new BasicCredential(keyPair.getPublic(), keyPair.getPrivate())), LOGIN_URL, LOGIN_URL, List.of());
+		return new SAML2AuthnRequestFactory(parameters, ACS_URL);
+	}
+
+	private static String postRequest(final String signatureType) {
+		return new String(Base64.getDecoder().decode(newFactory(signatureType).createPostRequest(Optional.empty()).samlRequest()), StandardCharsets.UTF_8);
+	}
+
+	private static SignableSAMLObject parse(final String xml) throws Exception {
+		final var parserPool = OpenSAMLUtil.initOpenSamlIfNeeded();
+		final var element = parserPool.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8))).getDocumentElement();
+		return (SignableSAMLObject) XMLObjectProviderRegistrySupport.getUnmarshallerFactory().getUnmarshaller(element).unmarshall(element);
+	}
+
+	private static byte[] inflate(final byte[] deflated) throws Exception {
+		final var inflater = new Inflater(true);
+		try {
+			inflater.setInput(deflated);
+			final var out = new ByteArrayOutputStream();
+			final var buffer = new byte[1024];
+			while (!inflater.finished()) {
+				out.write(buffer, 0, inflater.inflate(buffer));
+			}
+			return out.toByteArray();
+		} finally {
+			inflater.end();
+		}
+	}
+
+	private record RedirectRequest(String sigAlg, byte[] signature, byte[] signedContent) {
+
+		static RedirectRequest of(final SAML2AuthnRequest request) {
+			// the signature covers the query as sent : SAMLRequest=...[&RelayState=...]&SigAlg=...
+			final var query = request.url().substring(LOGIN_URL.length() + 1);
+			final var signatureIndex = query.indexOf("&Signature=");
+			final var signedQuery = query.substring(0, signatureIndex);
+			final var sigAlg = URLDecoder.decode(signedQuery.substring(signedQuery.indexOf("&SigAlg=") + "&SigAlg=".length()), StandardCharsets.UTF_8);
+			final var signature = Base64.getDecoder().decode(URLDecoder.decode(query.substring(signatureIndex + "&Signature=".length()), StandardCharsets.UTF_8));
+			return new RedirectRequest(sigAlg, signature, signedQuery.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+}
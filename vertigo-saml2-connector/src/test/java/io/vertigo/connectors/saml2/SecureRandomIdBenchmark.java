@@ -0,0 +1,74 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.saml2;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.shibboleth.shared.security.impl.RandomIdentifierGenerationStrategy;
+
+/**
+ * Benchmarks of secure random ID generation (IDs of SAML requests).
+ * - sharedStrategy : previous implementation, one OpenSAML RandomIdentifierGenerationStrategy (synchronized SecureRandom) for all threads
+ * - generateSecureRandomId : OpenSAMLUtil, striped SecureRandoms indexed by thread id
+ * Run main to measure throughput with 1, 4, 16 and 64 threads.
+ *
+ * @author skerdudou
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SecureRandomIdBenchmark {
+
+	private final RandomIdentifierGenerationStrategy sharedStrategy = new RandomIdentifierGenerationStrategy();
+
+	@Benchmark
+	public String sharedStrategy() {
+		return sharedStrategy.generateIdentifier();
+	}
+
+	@Benchmark
+	public String generateSecureRandomId() {
+		return OpenSAMLUtil.generateSecureRandomId();
+	}
+
+	public static void main(final String[] args) throws RunnerException {
+		for (final int threads : new int[] { 1, 4, 16, 64 }) {
+			new Runner(new OptionsBuilder()
+					.include(SecureRandomIdBenchmark.class.getSimpleName())
+					.threads(threads)
+					.build())
+					.run();
+		}
+	}
+}
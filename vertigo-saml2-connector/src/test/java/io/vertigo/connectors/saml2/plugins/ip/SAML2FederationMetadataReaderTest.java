@@ -0,0 +1,193 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.saml2.plugins.ip;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import javax.xml.crypto.dsig.CanonicalizationMethod;
+import javax.xml.crypto.dsig.DigestMethod;
+import javax.xml.crypto.dsig.SignatureMethod;
+import javax.xml.crypto.dsig.Transform;
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+import javax.xml.crypto.dsig.dom.DOMSignContext;
+import javax.xml.crypto.dsig.spec.C14NMethodParameterSpec;
+import javax.xml.crypto.dsig.spec.TransformParameterSpec;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import io.vertigo.core.lang.VSystemException;
+
+public class SAML2FederationMetadataReaderTest {
+
+	private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+	private static final String CERTIFICATE = "MIIBszCCAVmgAwIBAgIUQ2VydGlmaWNhdGU=";
+
+	private static KeyPair federationKeyPair;
+	private static SAML2FederationMetadataReader reader;
+
+	@BeforeAll
+	public static void setUp() throws Exception {
+		final var keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+		keyPairGenerator.initialize(2048);
+		federationKeyPair = keyPairGenerator.generateKeyPair();
+		reader = new SAML2FederationMetadataReader(federationKeyPair.getPublic());
+	}
+
+	@Test
+	public void testSigned() throws Exception {
+		final var federationMetadata = reader.read(toInputStream(sign(aggregate("_agg"), "_agg")), NOW);
+		Assertions.assertEquals(3, federationMetadata.entityCount());
+		Assertions.assertEquals(Optional.of(Instant.parse("2026-02-01T00:00:00Z")), federationMetadata.validUntilOpt());
+		Assertions.assertEquals(2, federationMetadata.idps().size());
+
+		final var idp1 = federationMetadata.idps().get(0);
+		Assertions.assertEquals("https://idp1", idp1.entityId());
+		Assertions.assertEquals("https://idp1/sso", idp1.loginUrl());
+		Assertions.assertEquals(Optional.of("https://idp1/slo"), idp1.logoutUrlOpt());
+		Assertions.assertEquals(List.of(CERTIFICATE), idp1.signingCertificates());
+		Assertions.assertEquals(Optional.empty(), idp1.validUntilOpt());
+
+		final var idp2 = federationMetadata.idps().get(1);
+		Assertions.assertEquals("https://idp2", idp2.entityId());
+		Assertions.assertEquals(Optional.of(Instant.parse("2026-01-15T00:00:00Z")), idp2.validUntilOpt());
+	}
+
+	@Test
+	public void testExpiredIdpSkipped() throws Exception {
+		final var federationMetadata = reader.read(toInputStream(sign(aggregate("_agg"), "_agg")), Instant.parse("2026-01-20T00:00:00Z"));
+		Assertions.assertEquals(List.of("https://idp1"), federationMetadata.idps().stream().map(SAML2FederationMetadataReader.MetadataIdp::entityId).toList());
+	}
+
+	@Test
+	public void testExpired() throws Exception {
+		final var signed = sign(aggregate("_agg"), "_agg");
+		Assertions.assertThrows(VSystemException.class, () -> reader.read(toInputStream(signed), Instant.parse("2026-03-01T00:00:00Z")));
+	}
+
+	@Test
+	public void testUnsigned() {
+		Assertions.assertThrows(VSystemException.class, () -> reader.read(toInputStream(aggregate("_agg")), NOW));
+	}
+
+	@Test
+	public void testOtherKey() throws Exception {
+		final var keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+		keyPairGenerator.initialize(2048);
+		final var otherReader = new SAML2FederationMetadataReader(keyPairGenerator.generateKeyPair().getPublic());
+		final var signed = sign(aggregate("_agg"), "_agg");
+		Assertions.assertThrows(VSystemException.class, () -> otherReader.read(toInputStream(signed), NOW));
+	}
+
+	@Test
+	public void testTampered() throws Exception {
+		final var tampered = sign(aggregate("_agg"), "_agg").replace("https://idp1/sso", "https://evil/sso");
+		Assertions.assertThrows(VSystemException.class, () -> reader.read(toInputStream(tampered), NOW));
+	}
+
+	@Test
+	public void testWrapped() throws Exception {
+		// the genuine signed aggregate, nested in an unsigned root adding its own identity provider
+		final var signed = sign(aggregate("_agg"), "_agg");
+		final var wrapped = "<md:EntitiesDescriptor xmlns:md=\"urn:oasis:names:tc:SAML:2.0:metadata\" ID=\"_evil\">"
+				+ idp("https://evil", "")
+				+ signed
+				+ "</md:EntitiesDescriptor>";
+		Assertions.assertThrows(VSystemException.class, () -> reader.read(toInputStream(wrapped), NOW));
+	}
+
+	@Test
+	public void testWrappedInSignatureObject() throws Exception {
+		// an identity provider added in a ds:Object of the aggregate signature : left out of the digest by the enveloped transform
+		final var wrapped = sign(aggregate("_agg"), "_agg")
+				.replace("</Signature>", "<Object>" + idp("https://evil", "").replace("ENCRYPTION", CERTIFICATE) + "</Object></Signature>");
+		Assertions.assertTrue(wrapped.contains("https://evil"));
+		final var federationMetadata = reader.read(toInputStream(wrapped), NOW);
+		Assertions.assertEquals(List.of("https://idp1", "https://idp2"), federationMetadata.idps().stream().map(SAML2FederationMetadataReader.MetadataIdp::entityId).toList());
+		Assertions.assertEquals(3, federationMetadata.entityCount());
+	}
+
+	private static String aggregate(final String id) {
+		return "<md:EntitiesDescriptor xmlns:md=\"urn:oasis:names:tc:SAML:2.0:metadata\" ID=\"" + id + "\" Name=\"federation\" validUntil=\"2026-02-01T00:00:00Z\">"
+				+ idp("https://idp1", "")
+				+ "<md:EntityDescriptor entityID=\"https://sp\">"
+				+ "<md:SPSSODescriptor protocolSupportEnumeration=\"urn:oasis:names:tc:SAML:2.0:protocol\">"
+				+ "<md:AssertionConsumerService Binding=\"urn:oasis:names:tc:SAML:2.0:bindings:HTTP-POST\" Location=\"https://sp/acs\" index=\"0\"/>"
+				+ "</md:SPSSODescriptor>"
+				+ "</md:EntityDescriptor>"
+				+ idp("https://idp2", " validUntil=\"2026-01-15T00:00:00Z\"")
+				+ "</md:EntitiesDescriptor>";
+	}
+
+	private static String idp(final String entityId, final String validUntilAttribute) {
+		return "<md:EntityDescriptor entityID=\"" + entityId + "\"" + validUntilAttribute + ">"
+				+ "<md:IDPSSODescriptor protocolSupportEnumeration=\"urn:oasis:names:tc:SAML:2.0:protocol\">"
+				+ "<md:KeyDescriptor use=\"encryption\"><ds:KeyInfo xmlns:ds=\"http://www.w3.org/2000/09/xmldsig#\"><ds:X509Data><ds:X509Certificate>ENCRYPTION</ds:X509Certificate></ds:X509Data></ds:KeyInfo></md:KeyDescriptor>"
+				+ "<md:KeyDescriptor use=\"signing\"><ds:KeyInfo xmlns:ds=\"http://www.w3.org/2000/09/xmldsig#\"><ds:X509Data><ds:X509Certificate>\n" + CERTIFICATE + "\n</ds:X509Certificate></ds:X509Data></ds:KeyInfo></md:KeyDescriptor>"
+				+ "<md:SingleLogoutService Binding=\"urn:oasis:names:tc:SAML:2.0:bindings:HTTP-POST\" Location=\"" + entityId + "/slo\"/>"
+				+ "<md:SingleSignOnService Binding=\"urn:oasis:names:tc:SAML:2.0:bindings:HTTP-Redirect\" Location=\"" + entityId + "/sso-redirect\"/>"
+				+ "<md:SingleSignOnService Binding=\"urn:oasis:names:tc:SAML:2.0:bindings:HTTP-POST\" Location=\"" + entityId + "/sso\"/>"
+				+ "</md:IDPSSODescriptor>"
+				+ "</md:EntityDescriptor>";
+	}
+
+	/**
+	 * Enveloped signature of the root element, as published by federations.
+	 */
+	private static String sign(final String xml, final String id) throws Exception {
+		final var documentBuilderFactory = DocumentBuilderFactory.newInstance();
+		documentBuilderFactory.setNamespaceAware(true);
+		final var document = documentBuilderFactory.newDocumentBuilder().parse(toInputStream(xml));
+		final var root = document.getDocumentElement();
+		root.setIdAttributeNS(null, "ID", true);
+
+		final var signatureFactory = XMLSignatureFactory.getInstance("DOM");
+		final var reference = signatureFactory.newReference("#" + id, signatureFactory.newDigestMethod(DigestMethod.SHA256, null),
+				List.of(signatureFactory.newTransform(Transform.ENVELOPED, (TransformParameterSpec) null),
+						signatureFactory.newTransform(CanonicalizationMethod.EXCLUSIVE, (TransformParameterSpec) null)),
+				null, null);
+		final var signedInfo = signatureFactory.newSignedInfo(
+				signatureFactory.newCanonicalizationMethod(CanonicalizationMethod.EXCLUSIVE, (C14NMethodParameterSpec) null),
+				signatureFactory.newSignatureMethod(SignatureMethod.RSA_SHA256, null),
+				List.of(reference));
+		signatureFactory.newXMLSignature(signedInfo, null).sign(new DOMSignContext(federationKeyPair.getPrivate(), root, root.getFirstChild()));
+
+		final var transformer = TransformerFactory.newInstance().newTransformer();
+		transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+		final var bytes = new ByteArrayOutputStream();
+		transformer.transform(new DOMSource(document), new StreamResult(bytes));
+		return bytes.toString(StandardCharsets.UTF_8);
+	}
+
+	private static ByteArrayInputStream toInputStream(final String xml) {
+		return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+	}
+}
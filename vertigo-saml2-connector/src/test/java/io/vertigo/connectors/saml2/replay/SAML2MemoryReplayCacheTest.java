@@ -0,0 +1,69 @@
+/*
+ * vertigo - application development platform
+ *
+ * Copyright (C) 2013-2026, Vertigo.io, team@vertigo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.vertigo.connectors.saml2.replay;
+
+import java.time.Instant;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.vertigo.connectors.saml2.replay.SAML2MemoryReplayCache.CheckResult;
+import io.vertigo.core.lang.VSystemException;
+
+public class SAML2MemoryReplayCacheTest {
+
+	private static final long MINUTE_MILLIS = 60_000;
+
+	@Test
+	public void testReplayRejected() {
+		final var replayCache = new SAML2MemoryReplayCache(10);
+		final var notOnOrAfter = Instant.now().plusSeconds(300);
+		Assertions.assertTrue(replayCache.checkAndStore("_id1", notOnOrAfter));
+		Assertions.assertFalse(replayCache.checkAndStore("_id1", notOnOrAfter));
+		Assertions.assertTrue(replayCache.checkAndStore("_id2", notOnOrAfter));
+		Assertions.assertEquals(2, replayCache.size());
+	}
+
+	@Test
+	public void testAcceptedAgainAfterExpiry() {
+		final var replayCache = new SAML2MemoryReplayCache(10);
+		final var now = System.currentTimeMillis();
+		final var notOnOrAfter = Instant.ofEpochMilli(now + 5 * MINUTE_MILLIS);
+		Assertions.assertEquals(CheckResult.FIRST_USE, replayCache.checkAndStore("_id1", notOnOrAfter, now));
+		Assertions.assertEquals(CheckResult.REPLAYED, replayCache.checkAndStore("_id1", notOnOrAfter, now + 4 * MINUTE_MILLIS));
+		// kept until the end of its one minute bucket
+		Assertions.assertEquals(CheckResult.FIRST_USE, replayCache.checkAndStore("_id1", notOnOrAfter, now + 7 * MINUTE_MILLIS));
+		Assertions.assertEquals(1, replayCache.size());
+	}
+
+	@Test
+	public void testFullCacheFailsClosed() {
+		final var replayCache = new SAML2MemoryReplayCache(2);
+		final var now = System.currentTimeMillis();
+		final var notOnOrAfter = Instant.ofEpochMilli(now + 5 * MINUTE_MILLIS);
+		Assertions.assertEquals(CheckResult.FIRST_USE, replayCache.checkAndStore("_id1", notOnOrAfter, now));
+		Assertions.assertEquals(CheckResult.FIRST_USE, replayCache.checkAndStore("_id2", notOnOrAfter, now));
+		Assertions.assertEquals(CheckResult.FULL, replayCache.checkAndStore("_id3", notOnOrAfter, now));
+		// unexpired IDs are never dropped
+		Assertions.assertEquals(CheckResult.REPLAYED, replayCache.checkAndStore("_id1", notOnOrAfter, now));
+		Assertions.assertEquals(CheckResult.REPLAYED, replayCache.checkAndStore("_id2", notOnOrAfter, now));
+		Assertions.assertThrows(VSystemException.class, () -> replayCache.checkAndStore("_id3", Instant.now().plusSeconds(300)));
+		// room again once expired
+		Assertions.assertEquals(CheckResult.FIRST_USE, replayCache.checkAndStore("_id3", notOnOrAfter, now + 7 * MINUTE_MILLIS));
+	}
+}